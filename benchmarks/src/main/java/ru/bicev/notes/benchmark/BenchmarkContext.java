@@ -0,0 +1,64 @@
+package ru.bicev.notes.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import ru.bicev.notes.NotesApplication;
+
+/**
+ * Starts the application for benchmarks, without a web server for those that
+ * go through the service layer. Uses an in-memory H2 database unless
+ * {@code -Dbench.datasource.url} points to a real one, in which case Flyway
+ * migrations are applied as in production.
+ */
+public final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    public static ConfigurableApplicationContext start() {
+        return start(WebApplicationType.NONE, Map.of());
+    }
+
+    /**
+     * Starts the application with Tomcat on a random port; {@code overrides}
+     * are applied on top of the benchmark defaults.
+     */
+    public static ConfigurableApplicationContext startWeb(Map<String, Object> overrides) {
+        Map<String, Object> properties = new HashMap<>(overrides);
+        properties.putIfAbsent("server.port", "0");
+        return start(WebApplicationType.SERVLET, properties);
+    }
+
+    private static ConfigurableApplicationContext start(WebApplicationType type, Map<String, Object> overrides) {
+        Map<String, Object> properties = new HashMap<>();
+        String url = System.getProperty("bench.datasource.url");
+        if (url == null) {
+            properties.put("spring.datasource.url", "jdbc:h2:mem:bench;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+            properties.put("spring.flyway.enabled", "false");
+            properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        } else {
+            properties.put("spring.datasource.url", url);
+            properties.put("spring.datasource.username", System.getProperty("bench.datasource.username", ""));
+            properties.put("spring.datasource.password", System.getProperty("bench.datasource.password", ""));
+            properties.put("spring.flyway.baseline-on-migrate", "true");
+            properties.put("spring.flyway.baseline-version", "1");
+        }
+        properties.put("spring.jpa.properties.hibernate.jdbc.batch_size", "50");
+        properties.put("spring.jpa.properties.hibernate.order_inserts", "true");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("logging.level.root", "WARN");
+        properties.put("jwt.secret", "benchmark-secret-key-benchmark-secret-key-benchmark");
+        properties.put("jwt.expiration", "3600000");
+        properties.putAll(overrides);
+        return new SpringApplicationBuilder(NotesApplication.class)
+                .web(type)
+                .properties(properties)
+                .run();
+    }
+
+}
@@ -0,0 +1,39 @@
+package ru.bicev.notes.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.bicev.notes.security.JwtFilter;
+
+/**
+ * Public-path check JwtFilter runs before anything else on every request.
+ * Authenticated API paths match none of the prefixes and are the common
+ * case.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtFilterBenchmark {
+
+    @Param({ "/api/notes/42", "/api/users/login", "/actuator/prometheus" })
+    private String path;
+
+    @Benchmark
+    public boolean isPublicPath() {
+        return JwtFilter.isPublicPath(path);
+    }
+
+}
@@ -0,0 +1,96 @@
+package ru.bicev.notes.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import ru.bicev.notes.service.JwtService;
+
+/**
+ * Cost of authenticating one request in JwtFilter: the original three
+ * parse-and-verify passes against a single verification and a cache hit.
+ * The remaining benchmarks cover the public JwtService methods with the
+ * cache enabled, as the application runs them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+    private static final String EMAIL = "benchmark@email.com";
+
+    private SecretKey secretKey;
+    private JwtService cachedService;
+    private JwtService uncachedService;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        secretKey = Keys.hmacShaKeyFor(
+                "benchmark-secret-key-benchmark-secret-key-benchmark".getBytes(StandardCharsets.UTF_8));
+        cachedService = new JwtService(secretKey, TimeUnit.HOURS.toMillis(1), TimeUnit.DAYS.toMillis(30), 10_000);
+        uncachedService = new JwtService(secretKey, TimeUnit.HOURS.toMillis(1), TimeUnit.DAYS.toMillis(30), 0);
+        token = cachedService.generateToken(1L, EMAIL);
+        cachedService.validateToken(token);
+    }
+
+    @Benchmark
+    public boolean tripleParse() {
+        String email = parse(token).getSubject();
+        return email.equals(parse(token).getSubject()) && !parse(token).getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public Claims validateOnce() {
+        return uncachedService.validateToken(token);
+    }
+
+    @Benchmark
+    public Claims validateCached() {
+        return cachedService.validateToken(token);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return cachedService.generateToken(1L, EMAIL);
+    }
+
+    @Benchmark
+    public String extractUsername() {
+        return cachedService.extractUsername(token);
+    }
+
+    @Benchmark
+    public boolean isTokenValid() {
+        return cachedService.isTokenValid(token, EMAIL);
+    }
+
+    @Benchmark
+    public boolean isTokenExpired() {
+        return cachedService.isTokenExpired(token);
+    }
+
+    private Claims parse(String jwt) {
+        return Jwts.parser().verifyWith(secretKey).build().parseSignedClaims(jwt).getPayload();
+    }
+
+}
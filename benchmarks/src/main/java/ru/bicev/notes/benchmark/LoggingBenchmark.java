@@ -0,0 +1,120 @@
+package ru.bicev.notes.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import ru.bicev.notes.dto.NoteDto;
+import ru.bicev.notes.service.JwtService;
+import ru.bicev.notes.service.NoteService;
+import ru.bicev.notes.service.UserService;
+
+/**
+ * Request throughput under the logging setup the application used to ship,
+ * plain text written synchronously with every statement printed by
+ * show-sql ({@code sync}), against the production one: asynchronous JSON
+ * with sampled success events ({@code async}). Each operation is an
+ * authenticated GET of a note over HTTP, which logs in JwtFilter and
+ * NoteServiceImpl and runs two statements.
+ *
+ * stdout goes to a temporary file for the whole trial, as it would to a
+ * container runtime, so the log volume is paid in I/O and not in JMH's
+ * console; its size is printed at the end of the trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class LoggingBenchmark {
+
+    private static final int NOTES = 100;
+
+    @Param({ "sync", "async" })
+    private String logging;
+
+    private ConfigurableApplicationContext context;
+    private PrintStream stdout;
+    private Path logFile;
+    private HttpClient httpClient;
+    private List<HttpRequest> requests;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stdout = System.out;
+        logFile = Files.createTempFile("notes-logging-benchmark", ".log");
+        System.setOut(new PrintStream(new BufferedOutputStream(Files.newOutputStream(logFile)), true));
+
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("logging.level.root", "INFO");
+        if ("sync".equals(logging)) {
+            overrides.put("spring.profiles.active", "dev");
+            overrides.put("spring.jpa.show-sql", "true");
+        }
+        context = BenchmarkContext.startWeb(overrides);
+
+        String email = "bench-" + System.nanoTime() + "@email.com";
+        Long userId = context.getBean(UserService.class).registerUser(email, "password").getId();
+        List<NoteDto> batch = new ArrayList<>(NOTES);
+        for (int i = 0; i < NOTES; i++) {
+            batch.add(new NoteDto(null, null, "Logged note " + i, List.of("TAG" + i % 10, "BENCH")));
+        }
+        String authorization = "Bearer " + context.getBean(JwtService.class).generateToken(userId, email);
+        String baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort()
+                + "/api/notes/";
+        requests = context.getBean(NoteService.class).createNotes(batch, userId).stream()
+                .map(note -> HttpRequest.newBuilder(URI.create(baseUrl + note.getId()))
+                        .header("Authorization", authorization)
+                        .GET()
+                        .build())
+                .toList();
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        System.out.close();
+        System.setOut(stdout);
+        System.out.printf("%n%s logging wrote %d KiB%n", logging, Files.size(logFile) / 1024);
+        Files.delete(logFile);
+    }
+
+    @Benchmark
+    public int getNote() throws IOException, InterruptedException {
+        HttpRequest request = requests.get(ThreadLocalRandom.current().nextInt(requests.size()));
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+}
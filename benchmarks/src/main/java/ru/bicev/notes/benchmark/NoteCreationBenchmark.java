@@ -0,0 +1,78 @@
+package ru.bicev.notes.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import ru.bicev.notes.dto.NoteDto;
+import ru.bicev.notes.service.NoteService;
+import ru.bicev.notes.service.UserService;
+
+/**
+ * Inserting a block of tagged notes through N createNote calls against a
+ * single createNotes batch. Run with {@code -Dbench.datasource.url} to measure
+ * against PostgreSQL, where every avoided round trip counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NoteCreationBenchmark {
+
+    @Param({ "1000" })
+    private int notes;
+
+    private ConfigurableApplicationContext context;
+    private NoteService noteService;
+    private Long userId;
+    private List<NoteDto> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        noteService = context.getBean(NoteService.class);
+        userId = context.getBean(UserService.class)
+                .registerUser("bench-" + System.nanoTime() + "@email.com", "password")
+                .getId();
+        batch = new ArrayList<>(notes);
+        for (int i = 0; i < notes; i++) {
+            batch.add(new NoteDto(null, null, "Benchmark note " + i, List.of("TAG" + i % 10, "BENCH")));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int createOneByOne() {
+        for (NoteDto noteDto : batch) {
+            noteService.createNote(noteDto, userId);
+        }
+        return batch.size();
+    }
+
+    @Benchmark
+    public List<NoteDto> createBatch() {
+        return noteService.createNotes(batch, userId);
+    }
+
+}
@@ -0,0 +1,97 @@
+package ru.bicev.notes.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ru.bicev.notes.dto.NoteDto;
+import ru.bicev.notes.entity.Note;
+import ru.bicev.notes.entity.Tag;
+import ru.bicev.notes.entity.User;
+import ru.bicev.notes.util.NoteMapper;
+
+/**
+ * Turning loaded notes into a response: entity to DTO mapping, which
+ * upper-cases every tag in {@link NoteDto#setTags}, and Jackson
+ * serialization of a page of DTOs. A page holds 50 notes, as the list
+ * endpoints return by default.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NoteMappingBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+
+    @Param({ "3", "50" })
+    private int tagsPerNote;
+
+    private ObjectMapper objectMapper;
+    private List<Note> notes;
+    private List<NoteDto> noteDtos;
+    private List<String> tagNames;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        User user = new User();
+        user.setId(1L);
+        user.setEmail("benchmark@email.com");
+        tagNames = new ArrayList<>(tagsPerNote);
+        List<Tag> tags = new ArrayList<>(tagsPerNote);
+        for (int i = 0; i < tagsPerNote; i++) {
+            tagNames.add("Tag" + i);
+            tags.add(new Tag(1L, "TAG" + i));
+        }
+        notes = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            Note note = new Note(user, "Benchmark note " + i + " with some text to serialize");
+            note.setId((long) i);
+            note.setVersion(1L);
+            note.addTags(tags);
+            notes.add(note);
+        }
+        noteDtos = NoteMapper.toDtoList(notes);
+    }
+
+    @Benchmark
+    public NoteDto toDto() {
+        return NoteMapper.toDto(notes.get(0));
+    }
+
+    @Benchmark
+    public List<NoteDto> toDtoList() {
+        return NoteMapper.toDtoList(notes);
+    }
+
+    @Benchmark
+    public NoteDto setTags() {
+        NoteDto noteDto = new NoteDto();
+        noteDto.setTags(tagNames);
+        return noteDto;
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(noteDtos);
+    }
+
+}
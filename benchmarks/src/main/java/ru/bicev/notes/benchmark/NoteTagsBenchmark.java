@@ -0,0 +1,67 @@
+package ru.bicev.notes.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.bicev.notes.entity.Note;
+import ru.bicev.notes.entity.Tag;
+
+/**
+ * Tag lookups on a loaded note, which the service runs before every tag
+ * change. The looked-up tag is the last one added, the worst case for a
+ * scan. {@code removeTags} puts the three removed tags back afterwards so
+ * every invocation finds them; the figure includes those three insertions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NoteTagsBenchmark {
+
+    @Param({ "10", "1000" })
+    private int tags;
+
+    private Note note;
+    private String lastTag;
+    private String[] removedTags;
+
+    @Setup
+    public void setUp() {
+        List<Tag> allTags = new ArrayList<>(tags);
+        for (int i = 0; i < tags; i++) {
+            allTags.add(new Tag(1L, "TAG" + i));
+        }
+        note = new Note();
+        note.addTags(allTags);
+        lastTag = "tag" + (tags - 1);
+        removedTags = new String[] { "TAG0", "TAG" + tags / 2, "TAG" + (tags - 1) };
+    }
+
+    @Benchmark
+    public boolean containsTag() {
+        return note.containsTag(lastTag);
+    }
+
+    @Benchmark
+    public List<Tag> removeTags() {
+        List<Tag> removed = note.removeTags(removedTags);
+        note.addTags(removed);
+        return removed;
+    }
+
+}
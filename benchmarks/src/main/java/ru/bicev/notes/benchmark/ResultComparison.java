@@ -0,0 +1,90 @@
+package ru.bicev.notes.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares two JMH result files written with {@code -rf json}: a baseline
+ * and a run of the change under test. A benchmark counts as changed only
+ * when the two 99.9% confidence intervals do not overlap; anything else is
+ * reported as noise. Exits with status 1 if any benchmark regressed, so it
+ * can gate a build.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar ru.bicev.notes.benchmark.ResultComparison baseline.json current.json
+ * </pre>
+ */
+public final class ResultComparison {
+
+    private ResultComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: ResultComparison <baseline.json> <current.json>");
+            System.exit(2);
+        }
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> current = read(new File(args[1]));
+
+        boolean regressed = false;
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-70s %s%n", entry.getKey(), "new");
+                continue;
+            }
+            JsonNode after = entry.getValue();
+            double beforeScore = score(before);
+            double afterScore = score(after);
+            boolean overlap = Math.abs(afterScore - beforeScore) <= error(before) + error(after);
+            boolean better = lowerIsBetter(after) ? afterScore < beforeScore : afterScore > beforeScore;
+            String verdict = overlap ? "noise" : better ? "improved" : "REGRESSED";
+            regressed |= "REGRESSED".equals(verdict);
+            System.out.printf("%-70s %12.3f -> %12.3f %-8s %+7.1f%%  %s%n", entry.getKey(), beforeScore, afterScore,
+                    after.path("primaryMetric").path("scoreUnit").asText(),
+                    (afterScore - beforeScore) / beforeScore * 100, verdict);
+        }
+        System.exit(regressed ? 1 : 0);
+    }
+
+    /**
+     * Results keyed by benchmark name and parameter values, in name order.
+     */
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new TreeMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            Map<String, String> params = new LinkedHashMap<>();
+            result.path("params").fields().forEachRemaining(param -> params.put(param.getKey(),
+                    param.getValue().asText()));
+            String name = result.path("benchmark").asText().replace("ru.bicev.notes.benchmark.", "");
+            results.put(params.isEmpty() ? name : name + params, result);
+        }
+        return results;
+    }
+
+    private static double score(JsonNode result) {
+        return result.path("primaryMetric").path("score").asDouble();
+    }
+
+    /**
+     * Half-width of the confidence interval; JMH reports NaN when there are
+     * too few iterations to compute one.
+     */
+    private static double error(JsonNode result) {
+        double error = result.path("primaryMetric").path("scoreError").asDouble();
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+    private static boolean lowerIsBetter(JsonNode result) {
+        String mode = result.path("mode").asText();
+        return !"thrpt".equals(mode);
+    }
+
+}
@@ -0,0 +1,143 @@
+package ru.bicev.notes.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import ru.bicev.notes.entity.Note;
+import ru.bicev.notes.repository.NoteRepository;
+import ru.bicev.notes.service.UserService;
+
+/**
+ * Substring tag search over a user with 100,000 distinct tags and 1,000,000
+ * note_tags rows. Compares the previous JOIN + DISTINCT query with the
+ * current EXISTS query, each with and without the trigram index.
+ *
+ * PostgreSQL only: run with {@code -Dbench.datasource.url}. The data set is
+ * generated on the first run (about half a minute) and reused afterwards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TagSearchBenchmark {
+
+    private static final String EMAIL = "tag-search-bench@email.com";
+    private static final int TAGS = 100_000;
+    private static final int NOTES = 200_000;
+    private static final int TAGS_PER_NOTE = 5;
+
+    private static final String PREVIOUS_QUERY = """
+                SELECT DISTINCT n FROM Note n JOIN n.tags t
+                WHERE t.userId = :userId AND t.name LIKE :pattern AND n.user.id = :userId AND n.id > 0
+                ORDER BY n.id
+            """;
+
+    @Param({ "true", "false" })
+    private boolean trigramIndex;
+
+    private ConfigurableApplicationContext context;
+    private NoteRepository noteRepository;
+    private EntityManagerFactory entityManagerFactory;
+    private Long userId;
+    private String tagPart;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (System.getProperty("bench.datasource.url") == null) {
+            throw new IllegalStateException("TagSearchBenchmark needs PostgreSQL, pass -Dbench.datasource.url");
+        }
+        context = BenchmarkContext.start();
+        noteRepository = context.getBean(NoteRepository.class);
+        entityManagerFactory = context.getBean(EntityManagerFactory.class);
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+
+        List<Long> existing = jdbc.queryForList("SELECT id FROM users WHERE email = ?", Long.class, EMAIL);
+        if (existing.isEmpty()) {
+            userId = context.getBean(UserService.class).registerUser(EMAIL, "password").getId();
+            generateData(jdbc);
+        } else {
+            userId = existing.get(0);
+        }
+
+        if (trigramIndex) {
+            jdbc.execute("CREATE INDEX IF NOT EXISTS idx_tags_name_trgm ON tags USING gin (name gin_trgm_ops)");
+        } else {
+            jdbc.execute("DROP INDEX IF EXISTS idx_tags_name_trgm");
+        }
+        jdbc.execute("ANALYZE tags");
+
+        // Four hex digits of an existing tag: matches a few dozen tags and several hundred notes.
+        tagPart = jdbc.queryForObject(
+                "SELECT substr(name, 9, 4) FROM tags WHERE users_id = ? ORDER BY id OFFSET 12345 LIMIT 1",
+                String.class, userId);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.getBean(JdbcTemplate.class)
+                .execute("CREATE INDEX IF NOT EXISTS idx_tags_name_trgm ON tags USING gin (name gin_trgm_ops)");
+        context.close();
+    }
+
+    @Benchmark
+    public List<Note> previousQuery() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.createQuery(PREVIOUS_QUERY, Note.class)
+                    .setParameter("userId", userId)
+                    .setParameter("pattern", "%" + tagPart + "%")
+                    .setMaxResults(51)
+                    .getResultList();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    @Benchmark
+    public List<Note> findPageByTagPart() {
+        return noteRepository.findPageByTagPart(tagPart, userId, 0, Limit.of(51));
+    }
+
+    private void generateData(JdbcTemplate jdbc) {
+        jdbc.update("""
+                    INSERT INTO tags (id, users_id, name)
+                    SELECT nextval('tags_seq'), ?, 'TAG-' || upper(md5(g::text)) FROM generate_series(1, ?) g
+                """, userId, TAGS);
+        jdbc.update("""
+                    INSERT INTO notes (id, text, users_id)
+                    SELECT nextval('notes_seq'), 'Benchmark note ' || g, ? FROM generate_series(1, ?) g
+                """, userId, NOTES);
+        // Tag k of note i is tag number (7i + 20011k) mod TAGS, which is distinct for k < 5.
+        jdbc.update("""
+                    INSERT INTO note_tags (note_id, tag_id)
+                    SELECT n.id, t.id
+                    FROM (SELECT id, row_number() OVER (ORDER BY id) - 1 AS rn FROM notes WHERE users_id = ?) n
+                    CROSS JOIN generate_series(0, ?) k
+                    JOIN (SELECT id, row_number() OVER (ORDER BY id) - 1 AS rn FROM tags WHERE users_id = ?) t
+                      ON t.rn = (n.rn * 7 + k * 20011) % ?
+                """, userId, TAGS_PER_NOTE - 1, userId, TAGS);
+        jdbc.execute("ANALYZE");
+    }
+
+}
@@ -0,0 +1,215 @@
+package ru.bicev.notes.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ru.bicev.notes.dto.JwtResponse;
+import ru.bicev.notes.dto.LoginRequest;
+import ru.bicev.notes.dto.NoteDto;
+import ru.bicev.notes.service.NoteService;
+import ru.bicev.notes.service.UserService;
+
+/**
+ * Closed-loop HTTP load test of the note endpoints, run once with Tomcat on
+ * platform threads and once on virtual threads. Each of
+ * {@code load.concurrency} clients repeatedly lists a page of notes (70%),
+ * reads one note (20%) or creates a note (10%) as one of the seeded users, and
+ * the run reports throughput and p50/p99 latency per mode.
+ *
+ * Not a JMH benchmark; run it from the shaded jar:
+ * {@code java -cp target/benchmarks.jar ru.bicev.notes.benchmark.ThreadModeLoadTest}.
+ * Tunables are system properties: {@code load.concurrency} (1000),
+ * {@code load.duration} and {@code load.warmup} in seconds (20 and 5),
+ * {@code load.users} (50), {@code load.notes} per user (200) and
+ * {@code load.modes} ({@code platform,virtual}). {@code -Dbench.datasource.url}
+ * selects PostgreSQL as for the JMH benchmarks, and any
+ * {@code spring.datasource.hikari.*} system property sizes the pool.
+ */
+public final class ThreadModeLoadTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ThreadModeLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = Integer.getInteger("load.concurrency", 1000);
+        int duration = Integer.getInteger("load.duration", 20);
+        int warmup = Integer.getInteger("load.warmup", 5);
+        int users = Integer.getInteger("load.users", 50);
+        int notes = Integer.getInteger("load.notes", 200);
+        List<String> results = new ArrayList<>();
+        for (String mode : System.getProperty("load.modes", "platform,virtual").split(",")) {
+            results.add(run(mode.trim(), concurrency, duration, warmup, users, notes));
+        }
+        System.out.printf("%nconcurrency=%d, duration=%ds, users=%d, notes per user=%d%n", concurrency, duration,
+                users, notes);
+        System.out.printf("%-10s %12s %10s %10s %10s%n", "mode", "requests/s", "p50 ms", "p99 ms", "errors");
+        results.forEach(System.out::println);
+    }
+
+    private static String run(String mode, int concurrency, int duration, int warmup, int users, int notes)
+            throws Exception {
+        boolean virtual = switch (mode) {
+            case "platform" -> false;
+            case "virtual" -> true;
+            default -> throw new IllegalArgumentException("Unknown mode: " + mode);
+        };
+        ConfigurableApplicationContext context = BenchmarkContext
+                .startWeb(Map.of("spring.threads.virtual.enabled", String.valueOf(virtual)));
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            String baseUrl = "http://localhost:"
+                    + ((WebServerApplicationContext) context).getWebServer().getPort() + "/api";
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clients)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+            List<Client> seeded = seed(context, httpClient, baseUrl, mode, users, notes);
+
+            long start = System.nanoTime();
+            long measureFrom = start + warmup * 1_000_000_000L;
+            long stopAt = measureFrom + duration * 1_000_000_000L;
+            List<Future<Worker>> futures = new ArrayList<>(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                Worker worker = new Worker(httpClient, baseUrl, seeded.get(i % seeded.size()), measureFrom, stopAt);
+                futures.add(clients.submit(worker::call));
+            }
+            long[] latencies = new long[0];
+            long errors = 0;
+            for (Future<Worker> future : futures) {
+                Worker worker = future.get();
+                int offset = latencies.length;
+                latencies = Arrays.copyOf(latencies, offset + worker.count);
+                System.arraycopy(worker.latencies, 0, latencies, offset, worker.count);
+                errors += worker.errors;
+            }
+            Arrays.sort(latencies);
+            return String.format("%-10s %12.0f %10.1f %10.1f %10d", mode, latencies.length / (double) duration,
+                    percentile(latencies, 0.50), percentile(latencies, 0.99), errors);
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Registers the users and gives each one {@code notes} notes through the
+     * service layer, then logs them in over HTTP.
+     */
+    private static List<Client> seed(ConfigurableApplicationContext context, HttpClient httpClient, String baseUrl,
+            String mode, int users, int notes) throws Exception {
+        UserService userService = context.getBean(UserService.class);
+        NoteService noteService = context.getBean(NoteService.class);
+        List<Client> clients = new ArrayList<>(users);
+        for (int u = 0; u < users; u++) {
+            String email = "load-" + mode + "-" + System.nanoTime() + "@email.com";
+            Long userId = userService.registerUser(email, "password").getId();
+            List<NoteDto> batch = new ArrayList<>(notes);
+            for (int n = 0; n < notes; n++) {
+                batch.add(new NoteDto(null, null, "Load note " + n, List.of("TAG" + n % 10, "LOAD")));
+            }
+            long[] noteIds = noteService.createNotes(batch, userId).stream().mapToLong(NoteDto::getId).toArray();
+            HttpRequest login = HttpRequest.newBuilder(URI.create(baseUrl + "/users/login"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers
+                            .ofString(objectMapper.writeValueAsString(new LoginRequest(email, "password"))))
+                    .build();
+            String body = httpClient.send(login, HttpResponse.BodyHandlers.ofString()).body();
+            clients.add(new Client("Bearer " + objectMapper.readValue(body, JwtResponse.class).getToken(), noteIds));
+        }
+        return clients;
+    }
+
+    private static double percentile(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    private record Client(String authorization, long[] noteIds) {
+    }
+
+    private static final class Worker {
+
+        private final HttpClient httpClient;
+        private final String baseUrl;
+        private final Client client;
+        private final long measureFrom;
+        private final long stopAt;
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+
+        private Worker(HttpClient httpClient, String baseUrl, Client client, long measureFrom, long stopAt) {
+            this.httpClient = httpClient;
+            this.baseUrl = baseUrl;
+            this.client = client;
+            this.measureFrom = measureFrom;
+            this.stopAt = stopAt;
+        }
+
+        private Worker call() throws InterruptedException {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long now;
+            while ((now = System.nanoTime()) < stopAt) {
+                HttpRequest request = nextRequest(random);
+                boolean ok;
+                try {
+                    int status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    ok = status < 400;
+                } catch (IOException e) {
+                    ok = false;
+                }
+                long end = System.nanoTime();
+                if (now >= measureFrom && end <= stopAt) {
+                    if (!ok) {
+                        errors++;
+                    }
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = end - now;
+                }
+            }
+            return this;
+        }
+
+        private HttpRequest nextRequest(ThreadLocalRandom random) {
+            int roll = random.nextInt(100);
+            HttpRequest.Builder builder;
+            if (roll < 70) {
+                builder = HttpRequest.newBuilder(URI.create(baseUrl + "/notes/user?size=20")).GET();
+            } else if (roll < 90) {
+                long noteId = client.noteIds()[random.nextInt(client.noteIds().length)];
+                builder = HttpRequest.newBuilder(URI.create(baseUrl + "/notes/" + noteId)).GET();
+            } else {
+                builder = HttpRequest.newBuilder(URI.create(baseUrl + "/notes"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(
+                                "{\"text\":\"Load test note\",\"tags\":[\"LOAD\",\"TAG" + random.nextInt(10) + "\"]}"));
+            }
+            return builder.header("Authorization", client.authorization()).timeout(Duration.ofSeconds(60)).build();
+        }
+
+    }
+
+}
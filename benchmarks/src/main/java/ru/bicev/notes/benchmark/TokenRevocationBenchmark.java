@@ -0,0 +1,54 @@
+package ru.bicev.notes.benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.bicev.notes.util.BloomFilter;
+
+/**
+ * Revocation check JwtFilter runs on every authenticated request, against a
+ * filter holding {@code revoked} token ids. The checked id is not revoked,
+ * the common case, which is answered without the database. Run with
+ * {@code -prof gc} to confirm the check does not allocate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenRevocationBenchmark {
+
+    @Param({ "1000", "100000" })
+    private int revoked;
+
+    private BloomFilter filter;
+    private String jti;
+
+    @Setup
+    public void setUp() {
+        filter = new BloomFilter(100_000, 0.01);
+        for (int i = 0; i < revoked; i++) {
+            filter.add(UUID.randomUUID().toString());
+        }
+        jti = UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public boolean mightContain() {
+        return filter.mightContain(jti);
+    }
+
+}
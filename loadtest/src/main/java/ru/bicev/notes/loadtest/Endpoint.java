@@ -0,0 +1,49 @@
+package ru.bicev.notes.loadtest;
+
+import java.util.Random;
+
+/**
+ * Requests a load test client sends, with the share of traffic each one
+ * gets. Weights add up to 100: reads dominate, writes are a third of the
+ * traffic, and registration and login, which hash a password, are rare.
+ */
+enum Endpoint {
+
+    REGISTER("POST /api/users/register", 1),
+    LOGIN("POST /api/users/login", 3),
+    LIST("GET /api/notes/user", 25),
+    GET("GET /api/notes/{id}", 15),
+    CREATE("POST /api/notes", 10),
+    EDIT("PATCH /api/notes/{id}", 10),
+    ADD_TAGS("POST /api/notes/{id}/tags", 8),
+    REMOVE_TAGS("DELETE /api/notes/{id}/tags", 7),
+    FIND_BY_TAGS("GET /api/notes/tags", 8),
+    FIND_BY_TAG_PART("GET /api/notes/tagpart", 5),
+    SEARCH("GET /api/notes/search", 8);
+
+    private static final Endpoint[] VALUES = values();
+
+    private final String label;
+    private final int weight;
+
+    Endpoint(String label, int weight) {
+        this.label = label;
+        this.weight = weight;
+    }
+
+    String label() {
+        return label;
+    }
+
+    static Endpoint pick(Random random) {
+        int roll = random.nextInt(100);
+        for (Endpoint endpoint : VALUES) {
+            roll -= endpoint.weight;
+            if (roll < 0) {
+                return endpoint;
+            }
+        }
+        throw new IllegalStateException("Endpoint weights do not add up to 100");
+    }
+
+}
@@ -0,0 +1,70 @@
+package ru.bicev.notes.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Response times of one endpoint in nanoseconds, with error counts. Each
+ * worker fills its own instance; they are merged once the run is over, so
+ * nothing here is synchronized.
+ */
+final class Latencies {
+
+    private long[] nanos = new long[256];
+    private int count;
+    private long errors;
+    private long conflicts;
+    private boolean sorted;
+
+    void record(long latencyNanos, int status) {
+        if (count == nanos.length) {
+            nanos = Arrays.copyOf(nanos, count * 2);
+        }
+        nanos[count++] = latencyNanos;
+        sorted = false;
+        // Concurrent edits of the same note are expected to lose the optimistic lock now and then.
+        if (status == 409) {
+            conflicts++;
+        } else if (status >= 400 || status < 0) {
+            errors++;
+        }
+    }
+
+    void merge(Latencies other) {
+        if (count + other.count > nanos.length) {
+            nanos = Arrays.copyOf(nanos, count + other.count);
+        }
+        System.arraycopy(other.nanos, 0, nanos, count, other.count);
+        count += other.count;
+        errors += other.errors;
+        conflicts += other.conflicts;
+        sorted = false;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long errors() {
+        return errors;
+    }
+
+    long conflicts() {
+        return conflicts;
+    }
+
+    /**
+     * Nearest-rank percentile in milliseconds, NaN without samples.
+     */
+    double percentile(double percentile) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (!sorted) {
+            Arrays.sort(nanos, 0, count);
+            sorted = true;
+        }
+        int index = (int) Math.ceil(percentile * count) - 1;
+        return nanos[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+}
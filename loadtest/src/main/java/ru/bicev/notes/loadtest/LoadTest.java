@@ -0,0 +1,226 @@
+package ru.bicev.notes.loadtest;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import ru.bicev.notes.NotesApplication;
+import ru.bicev.notes.dto.JwtResponse;
+import ru.bicev.notes.dto.LoginRequest;
+import ru.bicev.notes.dto.NoteDto;
+import ru.bicev.notes.service.NoteService;
+import ru.bicev.notes.service.UserService;
+
+/**
+ * End-to-end load test: starts the application with Tomcat on a random port
+ * and an in-memory H2 database, seeds users with tagged notes, and drives the
+ * traffic mix of {@link Endpoint} through the real HTTP stack, JwtFilter
+ * included, from {@code load.concurrency} closed-loop clients. Reports
+ * throughput and p50/p99/p999 latency per endpoint. Needs no network or
+ * external database.
+ *
+ * Tunables are system properties: {@code load.users} (100), {@code load.notes}
+ * per user (100), {@code load.tags} per user (50), {@code load.concurrency}
+ * (64), {@code load.duration} and {@code load.warmup} in seconds (60 and 10)
+ * and {@code load.seed} (42). {@code load.report} names a file to write the
+ * results to as JSON. Any other {@code spring.*} or {@code notes.*} system
+ * property is passed to the application.
+ */
+public final class LoadTest {
+
+    static final String PASSWORD = "password";
+
+    private static final String[] WORDS = {
+            "meeting", "project", "release", "budget", "travel", "doctor", "groceries", "invoice", "backup",
+            "deadline", "review", "holiday", "birthday", "report", "server", "database", "migration", "garden",
+            "recipe", "training", "contract", "payment", "lecture", "exam", "library", "ticket", "insurance",
+            "apartment", "repair", "interview", "conference", "presentation", "roadmap", "feedback", "support",
+            "customer", "delivery", "warehouse", "schedule", "workout" };
+
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .enable(SerializationFeature.INDENT_OUTPUT);
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int users = Integer.getInteger("load.users", 100);
+        int notes = Integer.getInteger("load.notes", 100);
+        int tags = Integer.getInteger("load.tags", 50);
+        int concurrency = Integer.getInteger("load.concurrency", 64);
+        int duration = Integer.getInteger("load.duration", 60);
+        int warmup = Integer.getInteger("load.warmup", 10);
+        long seed = Long.getLong("load.seed", 42L);
+
+        ConfigurableApplicationContext context = start();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            String baseUrl = "http://localhost:"
+                    + ((WebServerApplicationContext) context).getWebServer().getPort() + "/api";
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(executor)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+            System.out.printf("Seeding %d users with %d notes and %d tags each%n", users, notes, tags);
+            List<Client> clients = seed(context, httpClient, baseUrl, users, notes, tags, new Random(seed));
+
+            System.out.printf("Running %d clients for %ds after %ds of warmup%n", concurrency, duration, warmup);
+            long start = System.nanoTime();
+            long measureFrom = start + warmup * 1_000_000_000L;
+            long stopAt = measureFrom + duration * 1_000_000_000L;
+            List<Future<Map<Endpoint, Latencies>>> futures = new ArrayList<>(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                Worker worker = new Worker(httpClient, baseUrl, clients.get(i % clients.size()), i, seed + i,
+                        measureFrom, stopAt);
+                futures.add(executor.submit(worker::call));
+            }
+            Map<Endpoint, Latencies> merged = new EnumMap<>(Endpoint.class);
+            for (Endpoint endpoint : Endpoint.values()) {
+                merged.put(endpoint, new Latencies());
+            }
+            Latencies total = new Latencies();
+            for (Future<Map<Endpoint, Latencies>> future : futures) {
+                future.get().forEach((endpoint, latencies) -> {
+                    merged.get(endpoint).merge(latencies);
+                    total.merge(latencies);
+                });
+            }
+            report(merged, total, duration, new Settings(users, notes, tags, concurrency, duration, warmup, seed));
+        } finally {
+            context.close();
+        }
+    }
+
+    static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    static String text(Random random) {
+        StringBuilder text = new StringBuilder(word(random));
+        for (int i = 0; i < 7; i++) {
+            text.append(' ').append(word(random));
+        }
+        return text.toString();
+    }
+
+    private static ConfigurableApplicationContext start() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", "0");
+        properties.put("spring.datasource.url", "jdbc:h2:mem:loadtest;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        properties.put("spring.flyway.enabled", "false");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        properties.put("spring.jpa.properties.hibernate.jdbc.batch_size", "50");
+        properties.put("spring.jpa.properties.hibernate.order_inserts", "true");
+        properties.put("spring.threads.virtual.enabled", "true");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("logging.level.root", "WARN");
+        properties.put("jwt.secret", "loadtest-secret-key-loadtest-secret-key-loadtest-secret");
+        properties.put("jwt.expiration", "86400000");
+        // System properties override the defaults above, as they would for the application itself.
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith("spring.") || name.startsWith("notes.")
+                        || name.startsWith("server.") || name.startsWith("logging."))
+                .forEach(name -> properties.put(name, System.getProperty(name)));
+        return new SpringApplicationBuilder(NotesApplication.class)
+                .web(WebApplicationType.SERVLET)
+                .properties(properties)
+                .run();
+    }
+
+    /**
+     * Registers the users and writes their notes through the service layer,
+     * each note getting three of the user's tags and eight words of text,
+     * then logs the users in over HTTP.
+     */
+    private static List<Client> seed(ConfigurableApplicationContext context, HttpClient httpClient, String baseUrl,
+            int users, int notes, int tags, Random random) throws Exception {
+        UserService userService = context.getBean(UserService.class);
+        NoteService noteService = context.getBean(NoteService.class);
+        String[] tagNames = new String[tags];
+        for (int t = 0; t < tags; t++) {
+            tagNames[t] = String.format("TAG%03d", t);
+        }
+        List<Client> clients = new ArrayList<>(users);
+        for (int u = 0; u < users; u++) {
+            String email = "load-user-" + u + "@email.com";
+            Long userId = userService.registerUser(email, PASSWORD).getId();
+            List<NoteDto> batch = new ArrayList<>(notes);
+            for (int n = 0; n < notes; n++) {
+                batch.add(new NoteDto(null, null, text(random), List.of(tagNames[random.nextInt(tags)],
+                        tagNames[random.nextInt(tags)], tagNames[random.nextInt(tags)])));
+            }
+            long[] noteIds = noteService.createNotes(batch, userId).stream().mapToLong(NoteDto::getId).toArray();
+            HttpRequest login = HttpRequest.newBuilder(URI.create(baseUrl + "/users/login"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers
+                            .ofString(objectMapper.writeValueAsString(new LoginRequest(email, PASSWORD))))
+                    .build();
+            String body = httpClient.send(login, HttpResponse.BodyHandlers.ofString()).body();
+            clients.add(new Client(email, "Bearer " + objectMapper.readValue(body, JwtResponse.class).getToken(),
+                    noteIds, tagNames));
+        }
+        return clients;
+    }
+
+    private static void report(Map<Endpoint, Latencies> latencies, Latencies total, int duration, Settings settings)
+            throws Exception {
+        List<Result> results = new ArrayList<>();
+        latencies.forEach((endpoint, endpointLatencies) -> results
+                .add(Result.of(endpoint.label(), endpointLatencies, duration)));
+        results.add(Result.of("total", total, duration));
+
+        System.out.printf("%n%-30s %9s %11s %9s %9s %9s %7s %9s%n", "endpoint", "requests", "requests/s", "p50 ms",
+                "p99 ms", "p999 ms", "errors", "conflicts");
+        for (Result result : results) {
+            System.out.printf("%-30s %9d %11.1f %9.1f %9.1f %9.1f %7d %9d%n", result.endpoint(), result.requests(),
+                    result.throughput(), result.p50(), result.p99(), result.p999(), result.errors(),
+                    result.conflicts());
+        }
+        String reportFile = System.getProperty("load.report");
+        if (reportFile != null) {
+            objectMapper.writeValue(new File(reportFile), new Report(settings, results));
+            System.out.printf("%nResults written to %s%n", reportFile);
+        }
+    }
+
+    record Client(String email, String authorization, long[] noteIds, String[] tags) {
+    }
+
+    private record Settings(int users, int notes, int tags, int concurrency, int duration, int warmup, long seed) {
+    }
+
+    private record Result(String endpoint, long requests, double throughput, double p50, double p99, double p999,
+            long errors, long conflicts) {
+
+        static Result of(String endpoint, Latencies latencies, int duration) {
+            return new Result(endpoint, latencies.count(), latencies.count() / (double) duration,
+                    latencies.percentile(0.50), latencies.percentile(0.99), latencies.percentile(0.999),
+                    latencies.errors(), latencies.conflicts());
+        }
+
+    }
+
+    private record Report(Settings settings, List<Result> results) {
+    }
+
+}
@@ -0,0 +1,113 @@
+package ru.bicev.notes.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * One closed-loop client: sends a request picked by {@link Endpoint#pick},
+ * waits for the response and sends the next one until the run ends. Only
+ * requests that start after the warmup and finish before the end are
+ * recorded. The request sequence depends only on the seed, so two runs with
+ * the same settings send the same traffic.
+ */
+final class Worker {
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final LoadTest.Client client;
+    private final int id;
+    private final Random random;
+    private final long measureFrom;
+    private final long stopAt;
+    private final Map<Endpoint, Latencies> latencies = new EnumMap<>(Endpoint.class);
+    private int registered;
+
+    Worker(HttpClient httpClient, String baseUrl, LoadTest.Client client, int id, long seed, long measureFrom,
+            long stopAt) {
+        this.httpClient = httpClient;
+        this.baseUrl = baseUrl;
+        this.client = client;
+        this.id = id;
+        this.random = new Random(seed);
+        this.measureFrom = measureFrom;
+        this.stopAt = stopAt;
+        for (Endpoint endpoint : Endpoint.values()) {
+            latencies.put(endpoint, new Latencies());
+        }
+    }
+
+    Map<Endpoint, Latencies> call() throws InterruptedException {
+        long now;
+        while ((now = System.nanoTime()) < stopAt) {
+            Endpoint endpoint = Endpoint.pick(random);
+            HttpRequest request = request(endpoint);
+            int status;
+            try {
+                status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            } catch (IOException e) {
+                status = -1;
+            }
+            long end = System.nanoTime();
+            if (now >= measureFrom && end <= stopAt) {
+                latencies.get(endpoint).record(end - now, status);
+            }
+        }
+        return latencies;
+    }
+
+    private HttpRequest request(Endpoint endpoint) {
+        HttpRequest.Builder builder = switch (endpoint) {
+            case REGISTER -> json("/users/register", "POST", credentials(
+                    "load-new-" + id + "-" + registered++ + "@email.com"));
+            case LOGIN -> json("/users/login", "POST", credentials(client.email()));
+            case LIST -> get("/notes/user?size=20");
+            case GET -> get("/notes/" + noteId());
+            case CREATE -> json("/notes", "POST",
+                    "{\"text\":\"" + LoadTest.text(random) + "\",\"tags\":[\"" + tag() + "\",\"" + tag() + "\"]}");
+            case EDIT -> json("/notes/" + noteId(), "PATCH", "{\"text\":\"" + LoadTest.text(random) + "\"}")
+                    .setHeader("Content-Type", "application/merge-patch+json");
+            case ADD_TAGS -> json("/notes/" + noteId() + "/tags", "POST", "[\"" + tag() + "\"]");
+            case REMOVE_TAGS -> json("/notes/" + noteId() + "/tags", "DELETE", "[\"" + tag() + "\"]");
+            case FIND_BY_TAGS -> get("/notes/tags?size=20&tags=" + tag());
+            case FIND_BY_TAG_PART -> get("/notes/tagpart?size=20&tagpart=" + tag().substring(2));
+            case SEARCH -> get("/notes/search?size=20&q="
+                    + URLEncoder.encode(LoadTest.word(random), StandardCharsets.UTF_8));
+        };
+        if (endpoint != Endpoint.REGISTER && endpoint != Endpoint.LOGIN) {
+            builder.header("Authorization", client.authorization());
+        }
+        return builder.timeout(Duration.ofSeconds(60)).build();
+    }
+
+    private HttpRequest.Builder get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET();
+    }
+
+    private HttpRequest.Builder json(String path, String method, String body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .setHeader("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(body));
+    }
+
+    private static String credentials(String email) {
+        return "{\"email\":\"" + email + "\",\"password\":\"" + LoadTest.PASSWORD + "\"}";
+    }
+
+    private long noteId() {
+        return client.noteIds()[random.nextInt(client.noteIds().length)];
+    }
+
+    private String tag() {
+        return client.tags()[random.nextInt(client.tags().length)];
+    }
+
+}
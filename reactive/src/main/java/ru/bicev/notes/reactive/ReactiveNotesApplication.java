@@ -0,0 +1,27 @@
+package ru.bicev.notes.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.security.reactive.ReactiveUserDetailsServiceAutoConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import ru.bicev.notes.config.JwtConfig;
+import ru.bicev.notes.controller.GlobalExceptionHandler;
+import ru.bicev.notes.service.JwtService;
+
+/**
+ * The notes API on WebFlux and R2DBC. Token verification and error responses
+ * are the servlet application's own classes; component scanning stays inside
+ * this package so none of its servlet or JPA beans are picked up.
+ */
+@SpringBootApplication(exclude = ReactiveUserDetailsServiceAutoConfiguration.class)
+@Import({ JwtConfig.class, JwtService.class, GlobalExceptionHandler.class })
+@EnableScheduling
+public class ReactiveNotesApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(ReactiveNotesApplication.class, args);
+    }
+
+}
@@ -0,0 +1,73 @@
+package ru.bicev.notes.reactive.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+
+import io.swagger.v3.oas.models.Components;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.security.SecurityRequirement;
+import io.swagger.v3.oas.models.security.SecurityScheme;
+import ru.bicev.notes.reactive.security.JwtWebFilter;
+import ru.bicev.notes.reactive.service.ReactiveTokenService;
+import ru.bicev.notes.service.JwtService;
+
+/**
+ * Tokens are issued by the servlet application's login endpoint and verified
+ * here with the same secret, and revoked by its logout endpoint; this module
+ * has no users of its own.
+ */
+@Configuration
+@EnableWebFluxSecurity
+public class SecurityConfig {
+
+    private final JwtService jwtService;
+    private final ReactiveTokenService tokenService;
+
+    public SecurityConfig(JwtService jwtService, ReactiveTokenService tokenService) {
+        this.jwtService = jwtService;
+        this.tokenService = tokenService;
+    }
+
+    @Bean
+    public JwtWebFilter jwtWebFilter() {
+        return new JwtWebFilter(jwtService, tokenService);
+    }
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        return http.csrf(csrf -> csrf.disable())
+                .httpBasic(basic -> basic.disable())
+                .formLogin(form -> form.disable())
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .authorizeExchange(exchange -> exchange
+                        .pathMatchers(
+                                "/v3/api-docs/**",
+                                "/swagger-ui/**",
+                                "/swagger-ui.html",
+                                "/swagger-resources/**",
+                                "/webjars/**")
+                        .permitAll()
+                        .anyExchange().authenticated())
+                .addFilterAt(jwtWebFilter(), SecurityWebFiltersOrder.AUTHENTICATION)
+                .build();
+    }
+
+    @Bean
+    public OpenAPI customOpenAPI() {
+        return new OpenAPI()
+                .addSecurityItem(new SecurityRequirement().addList("bearerAuth"))
+                .components(new Components()
+                        .addSecuritySchemes("bearerAuth",
+                                new SecurityScheme()
+                                        .name("Authorization")
+                                        .type(SecurityScheme.Type.HTTP)
+                                        .scheme("bearer")
+                                        .bearerFormat("JWT")));
+    }
+
+}
@@ -0,0 +1,307 @@
+package ru.bicev.notes.reactive.controller;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.validation.Valid;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bicev.notes.dto.BulkTagRequest;
+import ru.bicev.notes.dto.BulkTagResponse;
+import ru.bicev.notes.dto.ErrorResponse;
+import ru.bicev.notes.dto.NoteDto;
+import ru.bicev.notes.dto.NotePage;
+import ru.bicev.notes.dto.TagCountDto;
+import ru.bicev.notes.reactive.service.ReactiveNoteService;
+import ru.bicev.notes.security.UserPrincipal;
+
+/**
+ * The {@code /api/notes} contract of the servlet application's
+ * {@code NoteController}. Every listing additionally streams as
+ * newline-delimited JSON when requested with
+ * {@code Accept: application/x-ndjson}: all matching notes after the page
+ * token are written as the client reads them, without a page envelope.
+ */
+@RestController
+@RequestMapping("/api/notes")
+public class ReactiveNoteController {
+
+    private static final String DEFAULT_PAGE_SIZE = "50";
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final ReactiveNoteService noteService;
+
+    public ReactiveNoteController(ReactiveNoteService noteService) {
+        this.noteService = noteService;
+    }
+
+    @Operation(summary = "New note creation")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Success creation")
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    @PostMapping
+    public Mono<ResponseEntity<NoteDto>> createNote(@RequestBody NoteDto noteDto) {
+        return currentUser().flatMap(user -> noteService.createNote(noteDto, user))
+                .map(createdNote -> new ResponseEntity<>(createdNote, HttpStatus.CREATED));
+    }
+
+    @Operation(summary = "Batch note creation", description = "Creates up to 5000 notes in a single transaction")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Success creation"),
+            @ApiResponse(responseCode = "400", description = "Too many notes in a batch", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    @PostMapping("/batch")
+    public Mono<ResponseEntity<List<NoteDto>>> createNotes(@RequestBody List<NoteDto> noteDtos) {
+        return currentUser().flatMap(user -> noteService.createNotes(noteDtos, user))
+                .map(createdNotes -> new ResponseEntity<>(createdNotes, HttpStatus.CREATED));
+    }
+
+    @Operation(summary = "Retrieving note by its id and current user")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Note found"),
+            @ApiResponse(responseCode = "404", description = "Note not found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    @GetMapping("/{noteId}")
+    public Mono<ResponseEntity<NoteDto>> findByIdAndUser(
+            @Parameter(name = "id", description = "Note id", required = true) @PathVariable Long noteId) {
+        return currentUser().flatMap(user -> noteService.findByIdAndUser(noteId, user)).map(ResponseEntity::ok);
+    }
+
+    @Operation(summary = "Note editing")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Success editing"),
+            @ApiResponse(responseCode = "404", description = "Note not found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    @PutMapping("/{noteId}")
+    public Mono<ResponseEntity<NoteDto>> updateNote(
+            @Parameter(name = "id", description = "Note id", required = true) @PathVariable Long noteId,
+            @Valid @RequestBody NoteDto noteDto) {
+        return currentUser().flatMap(user -> noteService.editNote(noteId, noteDto, user)).map(ResponseEntity::ok);
+    }
+
+    @Operation(summary = "Deleting note by its id")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Success deleting"),
+            @ApiResponse(responseCode = "404", description = "Note not found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    @DeleteMapping("/{noteId}")
+    public Mono<ResponseEntity<Void>> deleteNote(
+            @Parameter(name = "id", description = "Note id", required = true) @PathVariable Long noteId) {
+        return currentUser().flatMap(user -> noteService.deleteNote(noteId, user))
+                .thenReturn(ResponseEntity.noContent().build());
+    }
+
+    @Operation(summary = "Adding tags to a note")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Success adding"),
+            @ApiResponse(responseCode = "404", description = "Note not found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    @PostMapping("/{noteId}/tags")
+    public Mono<ResponseEntity<NoteDto>> addTags(
+            @Parameter(name = "id", description = "Note id", required = true) @PathVariable Long noteId,
+            @RequestBody List<String> tags) {
+        return currentUser().flatMap(user -> noteService.addTags(noteId, user, tags)).map(ResponseEntity::ok);
+    }
+
+    @Operation(summary = "Deleting tags from a note")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Success deleting"),
+            @ApiResponse(responseCode = "404", description = "Note not found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    @DeleteMapping("/{noteId}/tags")
+    public Mono<ResponseEntity<NoteDto>> deleteTags(
+            @Parameter(name = "id", description = "Note id", required = true) @PathVariable Long noteId,
+            @RequestBody List<String> tags) {
+        return currentUser().flatMap(user -> noteService.removeTags(noteId, user, tags)).map(ResponseEntity::ok);
+    }
+
+    @Operation(summary = "Adding tags to many notes", description = "Targets either a list of note ids or every note that has all filter tags")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Success adding"),
+            @ApiResponse(responseCode = "400", description = "Invalid target", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    @PostMapping("/tags/bulk")
+    public Mono<ResponseEntity<BulkTagResponse>> addTagsBulk(@RequestBody BulkTagRequest request) {
+        return currentUser().flatMap(user -> noteService.addTagsBulk(request, user.id())).map(ResponseEntity::ok);
+    }
+
+    @Operation(summary = "Deleting tags from many notes", description = "Targets either a list of note ids or every note that has all filter tags")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Success deleting"),
+            @ApiResponse(responseCode = "400", description = "Invalid target", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    @DeleteMapping("/tags/bulk")
+    public Mono<ResponseEntity<BulkTagResponse>> deleteTagsBulk(@RequestBody BulkTagRequest request) {
+        return currentUser().flatMap(user -> noteService.removeTagsBulk(request, user.id())).map(ResponseEntity::ok);
+    }
+
+    @Operation(summary = "Find a note by list of tags")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200"),
+            @ApiResponse(responseCode = "400", description = "Invalid page token", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    @GetMapping("/tags")
+    public Mono<ResponseEntity<NotePage>> findByAllTags(
+            @Parameter(name = "tags", description = "List of tags", required = true) @RequestParam List<String> tags,
+            @Parameter(name = "exclude", description = "Tags the notes must not have") @RequestParam(required = false) List<String> exclude,
+            @Parameter(name = "pageToken", description = "Next page token from the previous response") @RequestParam(required = false) String pageToken,
+            @Parameter(name = "size", description = "Page size, up to 500") @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        return currentUser().flatMap(user -> noteService.findByAllTags(tags, exclude, user, pageToken, size))
+                .map(ResponseEntity::ok);
+    }
+
+    @Operation(summary = "Stream notes having all of the tags")
+    @ApiResponse(responseCode = "200")
+    @SecurityRequirement(name = "bearerAuth")
+    @GetMapping(value = "/tags", produces = NDJSON)
+    public Flux<NoteDto> streamByAllTags(
+            @Parameter(name = "tags", description = "List of tags", required = true) @RequestParam List<String> tags,
+            @Parameter(name = "exclude", description = "Tags the notes must not have") @RequestParam(required = false) List<String> exclude,
+            @Parameter(name = "pageToken", description = "Page token to continue after") @RequestParam(required = false) String pageToken) {
+        return currentUser().flatMapMany(user -> noteService.streamByAllTags(tags, exclude, user, pageToken));
+    }
+
+    @Operation(summary = "Find notes having any of the tags")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200"),
+            @ApiResponse(responseCode = "400", description = "Invalid page token", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    @GetMapping("/tags/any")
+    public Mono<ResponseEntity<NotePage>> findByAnyTags(
+            @Parameter(name = "tags", description = "List of tags", required = true) @RequestParam List<String> tags,
+            @Parameter(name = "exclude", description = "Tags the notes must not have") @RequestParam(required = false) List<String> exclude,
+            @Parameter(name = "pageToken", description = "Next page token from the previous response") @RequestParam(required = false) String pageToken,
+            @Parameter(name = "size", description = "Page size, up to 500") @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        return currentUser().flatMap(user -> noteService.findByAnyTags(tags, exclude, user, pageToken, size))
+                .map(ResponseEntity::ok);
+    }
+
+    @Operation(summary = "Stream notes having any of the tags")
+    @ApiResponse(responseCode = "200")
+    @SecurityRequirement(name = "bearerAuth")
+    @GetMapping(value = "/tags/any", produces = NDJSON)
+    public Flux<NoteDto> streamByAnyTags(
+            @Parameter(name = "tags", description = "List of tags", required = true) @RequestParam List<String> tags,
+            @Parameter(name = "exclude", description = "Tags the notes must not have") @RequestParam(required = false) List<String> exclude,
+            @Parameter(name = "pageToken", description = "Page token to continue after") @RequestParam(required = false) String pageToken) {
+        return currentUser().flatMapMany(user -> noteService.streamByAnyTags(tags, exclude, user, pageToken));
+    }
+
+    @Operation(summary = "Full-text search over note text", description = "Not available in this module: the search index lives in the servlet application")
+    @ApiResponse(responseCode = "501", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    @SecurityRequirement(name = "bearerAuth")
+    @GetMapping("/search")
+    public Mono<ResponseEntity<ErrorResponse>> searchNotes() {
+        ErrorResponse errorResponse = new ErrorResponse("Full-text search is served by the servlet application",
+                HttpStatus.NOT_IMPLEMENTED.value(), LocalDateTime.now());
+        return Mono.just(new ResponseEntity<>(errorResponse, HttpStatus.NOT_IMPLEMENTED));
+    }
+
+    @Operation(summary = "Find notes by tag part")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200"),
+            @ApiResponse(responseCode = "400", description = "Invalid page token", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    @GetMapping("/tagpart")
+    public Mono<ResponseEntity<NotePage>> findByTagPart(
+            @Parameter(name = "tagpart", description = "Tag part", required = true) @RequestParam String tagpart,
+            @Parameter(name = "pageToken", description = "Next page token from the previous response") @RequestParam(required = false) String pageToken,
+            @Parameter(name = "size", description = "Page size, up to 500") @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        return currentUser().flatMap(user -> noteService.findByTagPart(tagpart, user, pageToken, size))
+                .map(ResponseEntity::ok);
+    }
+
+    @Operation(summary = "Stream notes by tag part")
+    @ApiResponse(responseCode = "200")
+    @SecurityRequirement(name = "bearerAuth")
+    @GetMapping(value = "/tagpart", produces = NDJSON)
+    public Flux<NoteDto> streamByTagPart(
+            @Parameter(name = "tagpart", description = "Tag part", required = true) @RequestParam String tagpart,
+            @Parameter(name = "pageToken", description = "Page token to continue after") @RequestParam(required = false) String pageToken) {
+        return currentUser().flatMapMany(user -> noteService.streamByTagPart(tagpart, user, pageToken));
+    }
+
+    @Operation(summary = "Find all notes for a user")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200"),
+            @ApiResponse(responseCode = "400", description = "Invalid page token", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    @GetMapping("/user")
+    public Mono<ResponseEntity<NotePage>> findByUser(
+            @Parameter(name = "pageToken", description = "Next page token from the previous response") @RequestParam(required = false) String pageToken,
+            @Parameter(name = "size", description = "Page size, up to 500") @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        return currentUser().flatMap(user -> noteService.findByUser(user, pageToken, size)).map(ResponseEntity::ok);
+    }
+
+    @Operation(summary = "Stream all notes for a user")
+    @ApiResponse(responseCode = "200")
+    @SecurityRequirement(name = "bearerAuth")
+    @GetMapping(value = "/user", produces = NDJSON)
+    public Flux<NoteDto> streamByUser(
+            @Parameter(name = "pageToken", description = "Page token to continue after") @RequestParam(required = false) String pageToken) {
+        return currentUser().flatMapMany(user -> noteService.streamByUser(user, pageToken));
+    }
+
+    @Operation(summary = "Find all tags for current user")
+    @ApiResponse(responseCode = "200")
+    @SecurityRequirement(name = "bearerAuth")
+    @GetMapping("/tags/all")
+    public Mono<ResponseEntity<List<String>>> getAllTags() {
+        return currentUser().flatMap(user -> noteService.getAllTags(user.id())).map(ResponseEntity::ok);
+    }
+
+    @Operation(summary = "Tag statistics for current user", description = "Each tag in use with the number of notes that have it, most used first")
+    @ApiResponse(responseCode = "200")
+    @SecurityRequirement(name = "bearerAuth")
+    @GetMapping("/tags/stats")
+    public Mono<ResponseEntity<List<TagCountDto>>> getTagStats() {
+        return currentUser().flatMap(user -> noteService.getTagStats(user.id())).map(ResponseEntity::ok);
+    }
+
+    @Operation(summary = "Export all notes of current user", description = "Streams notes as newline-delimited JSON, one note per line")
+    @ApiResponse(responseCode = "200")
+    @SecurityRequirement(name = "bearerAuth")
+    @GetMapping(value = "/export", produces = NDJSON)
+    public Flux<NoteDto> exportNotes() {
+        return currentUser().flatMapMany(user -> noteService.streamByUser(user, null));
+    }
+
+    private Mono<UserPrincipal> currentUser() {
+        return ReactiveSecurityContextHolder.getContext()
+                .map(context -> (UserPrincipal) context.getAuthentication().getPrincipal());
+    }
+
+}
@@ -0,0 +1,31 @@
+package ru.bicev.notes.reactive.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Row of the {@code notes} table. R2DBC has no associations, so the owner is
+ * kept as an id and tags are read separately through {@code note_tags}.
+ */
+@Table("notes")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class NoteRow {
+
+    @Id
+    private Long id;
+
+    private String text;
+
+    @Column("users_id")
+    private Long userId;
+
+}
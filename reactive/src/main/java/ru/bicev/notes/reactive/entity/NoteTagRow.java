@@ -0,0 +1,7 @@
+package ru.bicev.notes.reactive.entity;
+
+/**
+ * Tag name of a note, one row per {@code note_tags} entry.
+ */
+public record NoteTagRow(Long noteId, String name) {
+}
@@ -0,0 +1,56 @@
+package ru.bicev.notes.reactive.entity;
+
+import java.util.Objects;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Entry of a user's tag dictionary, the {@code tags} table shared with the
+ * servlet application.
+ */
+@Table("tags")
+@Getter
+@Setter
+@NoArgsConstructor
+public class TagRow {
+
+    @Id
+    private Long id;
+
+    @Column("users_id")
+    private Long userId;
+
+    private String name;
+
+    @Column("note_count")
+    private int noteCount;
+
+    public TagRow(Long userId, String name) {
+        this.userId = userId;
+        this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TagRow)) {
+            return false;
+        }
+        TagRow other = (TagRow) o;
+        return Objects.equals(userId, other.userId) && Objects.equals(name, other.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(userId, name);
+    }
+
+}
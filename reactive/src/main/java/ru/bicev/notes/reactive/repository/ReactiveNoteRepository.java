@@ -0,0 +1,108 @@
+package ru.bicev.notes.reactive.repository;
+
+import java.util.Collection;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bicev.notes.reactive.entity.NoteRow;
+import ru.bicev.notes.reactive.entity.NoteTagRow;
+
+/**
+ * Page queries return notes without tags; the tags of a whole page are read
+ * with {@link #findTagNames(Collection)}, so every listing takes two
+ * statements regardless of its size. Tag id filters are bound as arrays, so
+ * an empty exclusion list needs no separate query.
+ */
+public interface ReactiveNoteRepository extends ReactiveCrudRepository<NoteRow, Long> {
+
+    Mono<NoteRow> findByIdAndUserId(Long id, Long userId);
+
+    @Query("SELECT * FROM notes WHERE users_id = :userId AND id > :after ORDER BY id LIMIT :limit")
+    Flux<NoteRow> findPageByUser(@Param("userId") Long userId, @Param("after") long after,
+            @Param("limit") int limit);
+
+    @Query("""
+                SELECT n.* FROM notes n
+                WHERE n.users_id = :userId AND n.id > :after
+                AND EXISTS (SELECT 1 FROM note_tags nt JOIN tags t ON t.id = nt.tag_id
+                            WHERE nt.note_id = n.id AND t.users_id = :userId AND t.name LIKE :pattern)
+                ORDER BY n.id LIMIT :limit
+            """)
+    Flux<NoteRow> findPageByTagPart(@Param("pattern") String pattern, @Param("userId") Long userId,
+            @Param("after") long after, @Param("limit") int limit);
+
+    @Query("""
+                SELECT n.* FROM notes n
+                WHERE n.users_id = :userId AND n.id > :after
+                AND n.id IN (SELECT nt.note_id FROM note_tags nt WHERE nt.tag_id = ANY(:tagIds)
+                             GROUP BY nt.note_id HAVING COUNT(*) = :tagCount)
+                AND NOT EXISTS (SELECT 1 FROM note_tags x WHERE x.note_id = n.id AND x.tag_id = ANY(:excludeIds))
+                ORDER BY n.id LIMIT :limit
+            """)
+    Flux<NoteRow> findPageByAllTags(@Param("tagIds") Long[] tagIds, @Param("tagCount") long tagCount,
+            @Param("excludeIds") Long[] excludeIds, @Param("userId") Long userId, @Param("after") long after,
+            @Param("limit") int limit);
+
+    @Query("""
+                SELECT n.* FROM notes n
+                WHERE n.users_id = :userId AND n.id > :after
+                AND EXISTS (SELECT 1 FROM note_tags nt WHERE nt.note_id = n.id AND nt.tag_id = ANY(:tagIds))
+                AND NOT EXISTS (SELECT 1 FROM note_tags x WHERE x.note_id = n.id AND x.tag_id = ANY(:excludeIds))
+                ORDER BY n.id LIMIT :limit
+            """)
+    Flux<NoteRow> findPageByAnyTags(@Param("tagIds") Long[] tagIds, @Param("excludeIds") Long[] excludeIds,
+            @Param("userId") Long userId, @Param("after") long after, @Param("limit") int limit);
+
+    @Query("""
+                SELECT n.* FROM notes n
+                WHERE n.users_id = :userId AND n.id > :after
+                AND NOT EXISTS (SELECT 1 FROM note_tags x WHERE x.note_id = n.id AND x.tag_id = ANY(:excludeIds))
+                ORDER BY n.id LIMIT :limit
+            """)
+    Flux<NoteRow> findPageExcludingTags(@Param("excludeIds") Long[] excludeIds, @Param("userId") Long userId,
+            @Param("after") long after, @Param("limit") int limit);
+
+    @Query("""
+                SELECT nt.note_id, t.name FROM note_tags nt JOIN tags t ON t.id = nt.tag_id
+                WHERE nt.note_id IN (:noteIds)
+                ORDER BY nt.note_id, t.id
+            """)
+    Flux<NoteTagRow> findTagNames(@Param("noteIds") Collection<Long> noteIds);
+
+    @Modifying
+    @Query("UPDATE notes SET text = :text, version = version + 1 WHERE id = :id")
+    Mono<Integer> updateText(@Param("id") Long id, @Param("text") String text);
+
+    /**
+     * Versions are the ETags of the servlet application; every change to a
+     * note's text or tags made here has to move them on as well.
+     */
+    @Modifying
+    @Query("UPDATE notes SET version = version + 1 WHERE id = :id")
+    Mono<Integer> incrementVersion(@Param("id") Long id);
+
+    /**
+     * Bulk tag changes bump only the notes their statements returned.
+     */
+    @Modifying
+    @Query("UPDATE notes SET version = version + 1 WHERE id IN (:noteIds)")
+    Mono<Integer> incrementVersions(@Param("noteIds") Collection<Long> noteIds);
+
+    @Modifying
+    @Query("UPDATE users SET notes_version = notes_version + 1 WHERE id = :userId")
+    Mono<Integer> incrementNotesVersion(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("DELETE FROM note_tags WHERE note_id = :noteId")
+    Mono<Integer> removeAllTags(@Param("noteId") Long noteId);
+
+    @Modifying
+    @Query("DELETE FROM note_tags WHERE note_id = :noteId AND tag_id IN (:tagIds)")
+    Mono<Integer> removeTags(@Param("noteId") Long noteId, @Param("tagIds") Collection<Long> tagIds);
+
+}
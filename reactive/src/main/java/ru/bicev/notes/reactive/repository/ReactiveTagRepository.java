@@ -0,0 +1,43 @@
+package ru.bicev.notes.reactive.repository;
+
+import java.util.Collection;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bicev.notes.dto.TagCountDto;
+import ru.bicev.notes.reactive.entity.TagRow;
+
+public interface ReactiveTagRepository extends ReactiveCrudRepository<TagRow, Long> {
+
+    Flux<TagRow> findByUserIdAndNameIn(Long userId, Collection<String> names);
+
+    @Query("SELECT t.* FROM tags t JOIN note_tags nt ON nt.tag_id = t.id WHERE nt.note_id = :noteId ORDER BY t.id")
+    Flux<TagRow> findByNoteId(@Param("noteId") Long noteId);
+
+    @Query("SELECT name FROM tags WHERE users_id = :userId AND note_count > 0 ORDER BY name")
+    Flux<String> findNamesInUse(@Param("userId") Long userId);
+
+    @Query("""
+                SELECT name, note_count FROM tags
+                WHERE users_id = :userId AND note_count > 0
+                ORDER BY note_count DESC, name
+            """)
+    Flux<TagCountDto> findCountsInUse(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("UPDATE tags SET note_count = note_count + :delta WHERE id IN (:ids)")
+    Mono<Integer> adjustNoteCount(@Param("ids") Collection<Long> ids, @Param("delta") int delta);
+
+    @Modifying
+    @Query("""
+                UPDATE tags SET note_count = (SELECT COUNT(*) FROM note_tags nt WHERE nt.tag_id = tags.id)
+                WHERE id IN (:ids)
+            """)
+    Mono<Integer> recountNotes(@Param("ids") Collection<Long> ids);
+
+}
@@ -0,0 +1,83 @@
+package ru.bicev.notes.reactive.security;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import io.jsonwebtoken.Claims;
+import reactor.core.publisher.Mono;
+import ru.bicev.notes.reactive.service.ReactiveTokenService;
+import ru.bicev.notes.security.UserPrincipal;
+import ru.bicev.notes.service.JwtService;
+
+/**
+ * WebFlux counterpart of {@code JwtFilter}: the same public paths, the same
+ * status codes, the same revocation check, and the same
+ * {@link UserPrincipal}, which is put into the reactive security context
+ * instead of a thread-local one.
+ */
+public class JwtWebFilter implements WebFilter {
+
+    private static final List<String> PUBLIC_PATHS = List.of(
+            "/swagger-ui", "/swagger-ui.html",
+            "/v3/api-docs", "/swagger-resources", "/webjars");
+
+    private final JwtService jwtService;
+    private final ReactiveTokenService tokenService;
+    private static final Logger logger = LoggerFactory.getLogger(JwtWebFilter.class);
+
+    public JwtWebFilter(JwtService jwtService, ReactiveTokenService tokenService) {
+        this.jwtService = jwtService;
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        logger.debug("Path : {}", path);
+        if (PUBLIC_PATHS.stream().anyMatch(path::startsWith)) {
+            return chain.filter(exchange);
+        }
+
+        String authHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            logger.warn("Invalid or missing Authorization header on path: {}", path);
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Authorization header missing or invalid"));
+        }
+        String jwt = authHeader.substring(7);
+        Claims claims;
+        try {
+            claims = jwtService.validateToken(jwt);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid token format: {}", JwtService.fingerprint(jwt));
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid token format"));
+        }
+        return tokenService.isRevoked(claims.getId()).flatMap(revoked -> {
+            if (revoked) {
+                logger.warn("Token is revoked: {}", JwtService.fingerprint(jwt));
+                return Mono.error(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid or expired token"));
+            }
+            String email = claims.getSubject();
+            Long userId = claims.get(JwtService.USER_ID_CLAIM, Long.class);
+            if (userId == null || email == null) {
+                logger.warn("Token has no user id or subject");
+                return Mono.error(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid or expired token"));
+            }
+            UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(
+                    new UserPrincipal(userId, email), null, List.of());
+            logger.debug("User authenticated: {}", email);
+            return chain.filter(exchange).contextWrite(ReactiveSecurityContextHolder.withAuthentication(auth));
+        });
+    }
+
+}
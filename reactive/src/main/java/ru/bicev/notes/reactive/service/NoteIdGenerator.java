@@ -0,0 +1,17 @@
+package ru.bicev.notes.reactive.service;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+
+/**
+ * Note ids from {@code notes_seq}, in the blocks the servlet application's
+ * {@code Note} entity uses.
+ */
+@Component
+public class NoteIdGenerator extends PooledIdGenerator {
+
+    public NoteIdGenerator(DatabaseClient databaseClient) {
+        super(databaseClient, "notes_seq");
+    }
+
+}
@@ -0,0 +1,104 @@
+package ru.bicev.notes.reactive.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Hands out ids from a sequence the way Hibernate's pooled optimizer does in
+ * the servlet application: every sequence value is the upper bound of a block
+ * of {@value #ALLOCATION_SIZE} ids owned by whoever fetched it. Using the
+ * values as ids directly would collide with blocks the servlet application
+ * has already taken.
+ */
+public abstract class PooledIdGenerator {
+
+    /**
+     * Must match the increment of the sequence and the allocation size on the
+     * JPA entity.
+     */
+    private static final int ALLOCATION_SIZE = 50;
+
+    private final DatabaseClient databaseClient;
+    private final String nextValueSql;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long next = 1;
+    private long hi = 0;
+
+    protected PooledIdGenerator(DatabaseClient databaseClient, String sequenceName) {
+        this.databaseClient = databaseClient;
+        this.nextValueSql = "SELECT nextval('" + sequenceName + "')";
+    }
+
+    /**
+     * Returns {@code count} unused ids, fetching as many sequence blocks as the
+     * current one is short of.
+     */
+    public Mono<List<Long>> next(int count) {
+        return Mono.defer(() -> {
+            List<Long> ids = new ArrayList<>(count);
+            take(ids, count);
+            int missing = count - ids.size();
+            if (missing == 0) {
+                return Mono.just(ids);
+            }
+            int blocks = (missing + ALLOCATION_SIZE - 1) / ALLOCATION_SIZE;
+            return Flux.range(0, blocks)
+                    .concatMap(i -> nextValue())
+                    .collectList()
+                    .map(values -> {
+                        for (long value : values) {
+                            long from = value - ALLOCATION_SIZE + 1;
+                            long to = Math.min(value, from + (count - ids.size()) - 1);
+                            for (long id = from; id <= to; id++) {
+                                ids.add(id);
+                            }
+                            if (to < value) {
+                                release(to + 1, value);
+                            }
+                        }
+                        return ids;
+                    });
+        });
+    }
+
+    private void take(List<Long> ids, int count) {
+        lock.lock();
+        try {
+            while (ids.size() < count && next <= hi) {
+                ids.add(next++);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Keeps the unused rest of a block for later calls. If another call has
+     * refilled the pool meanwhile, the rest is dropped, as Hibernate drops the
+     * rest of a block on restart.
+     */
+    private void release(long from, long to) {
+        lock.lock();
+        try {
+            if (next > hi) {
+                next = from;
+                hi = to;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Mono<Long> nextValue() {
+        return databaseClient.sql(nextValueSql)
+                .map(row -> row.get(0, Long.class))
+                .one();
+    }
+
+}
@@ -0,0 +1,66 @@
+package ru.bicev.notes.reactive.service;
+
+import java.util.List;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bicev.notes.dto.BulkTagRequest;
+import ru.bicev.notes.dto.BulkTagResponse;
+import ru.bicev.notes.dto.NoteDto;
+import ru.bicev.notes.dto.NotePage;
+import ru.bicev.notes.dto.TagCountDto;
+import ru.bicev.notes.security.UserPrincipal;
+
+/**
+ * Reactive counterpart of {@code NoteService}. Methods take the whole
+ * principal because notes are no longer joined to the users table: the owner's
+ * email in every {@link NoteDto} comes from the token.
+ *
+ * The {@code stream...} methods return every matching note after the page
+ * token, read in keyset chunks as the subscriber requests them.
+ */
+public interface ReactiveNoteService {
+
+    Mono<NoteDto> createNote(NoteDto noteDto, UserPrincipal user);
+
+    Mono<List<NoteDto>> createNotes(List<NoteDto> noteDtos, UserPrincipal user);
+
+    Mono<Void> deleteNote(Long noteId, UserPrincipal user);
+
+    Mono<NoteDto> editNote(Long noteId, NoteDto noteDto, UserPrincipal user);
+
+    Mono<NoteDto> addTags(Long noteId, UserPrincipal user, List<String> tags);
+
+    Mono<NoteDto> removeTags(Long noteId, UserPrincipal user, List<String> tags);
+
+    Mono<BulkTagResponse> addTagsBulk(BulkTagRequest request, Long userId);
+
+    Mono<BulkTagResponse> removeTagsBulk(BulkTagRequest request, Long userId);
+
+    Mono<NoteDto> findByIdAndUser(Long noteId, UserPrincipal user);
+
+    Mono<NotePage> findByAllTags(List<String> tags, List<String> excludeTags, UserPrincipal user, String pageToken,
+            int size);
+
+    Flux<NoteDto> streamByAllTags(List<String> tags, List<String> excludeTags, UserPrincipal user,
+            String pageToken);
+
+    Mono<NotePage> findByAnyTags(List<String> tags, List<String> excludeTags, UserPrincipal user, String pageToken,
+            int size);
+
+    Flux<NoteDto> streamByAnyTags(List<String> tags, List<String> excludeTags, UserPrincipal user,
+            String pageToken);
+
+    Mono<NotePage> findByTagPart(String tagPart, UserPrincipal user, String pageToken, int size);
+
+    Flux<NoteDto> streamByTagPart(String tagPart, UserPrincipal user, String pageToken);
+
+    Mono<NotePage> findByUser(UserPrincipal user, String pageToken, int size);
+
+    Flux<NoteDto> streamByUser(UserPrincipal user, String pageToken);
+
+    Mono<List<String>> getAllTags(Long userId);
+
+    Mono<List<TagCountDto>> getTagStats(Long userId);
+
+}
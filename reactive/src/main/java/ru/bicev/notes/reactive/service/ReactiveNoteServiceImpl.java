@@ -0,0 +1,740 @@
+package ru.bicev.notes.reactive.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
+import ru.bicev.notes.dto.BulkTagRequest;
+import ru.bicev.notes.dto.BulkTagResponse;
+import ru.bicev.notes.dto.NoteDto;
+import ru.bicev.notes.dto.NotePage;
+import ru.bicev.notes.dto.TagCountDto;
+import ru.bicev.notes.exception.BatchSizeExceededException;
+import ru.bicev.notes.exception.InvalidBulkRequestException;
+import ru.bicev.notes.exception.NoteNotFoundException;
+import ru.bicev.notes.reactive.entity.NoteRow;
+import ru.bicev.notes.reactive.entity.NoteTagRow;
+import ru.bicev.notes.reactive.entity.TagRow;
+import ru.bicev.notes.reactive.repository.ReactiveNoteRepository;
+import ru.bicev.notes.reactive.repository.ReactiveTagRepository;
+import ru.bicev.notes.security.UserPrincipal;
+import ru.bicev.notes.util.NoteMapper;
+import ru.bicev.notes.util.PageTokens;
+import ru.bicev.notes.util.ReturningSql;
+
+/**
+ * Writes keep the same invariants as the servlet application: tags are
+ * resolved against the user's dictionary, and per-tag note counters change in
+ * the same transaction as {@code note_tags}. The servlet application's
+ * in-memory tag index does not see these writes. Creations, text edits and
+ * deletions are recorded in {@code note_changes}, from which the servlet
+ * application's search index picks them up at its next sync.
+ */
+@Service
+public class ReactiveNoteServiceImpl implements ReactiveNoteService {
+
+    private static final String INSERT_NOTE = "INSERT INTO notes (id, text, users_id) VALUES ($1, $2, $3)";
+    private static final String INSERT_NOTE_TAG = "INSERT INTO note_tags (note_id, tag_id) VALUES ($1, $2)";
+    private static final String INSERT_NOTE_CHANGE =
+            "INSERT INTO note_changes (note_id, changed_at) VALUES ($1, $2)";
+    private static final String INSERT_TAG = """
+                INSERT INTO tags (id, users_id, name, note_count) VALUES ($1, $2, $3, 0) ON CONFLICT DO NOTHING
+            """;
+    private static final String ADD_TAG_TO_NOTES = """
+                INSERT INTO note_tags (note_id, tag_id)
+                SELECT n.id, :tagId FROM notes n
+                WHERE n.users_id = :userId AND n.id IN (:noteIds)
+                AND NOT EXISTS (SELECT 1 FROM note_tags nt WHERE nt.note_id = n.id AND nt.tag_id = :tagId)
+            """;
+    private static final String ADD_TAG_TO_TAGGED_NOTES = """
+                INSERT INTO note_tags (note_id, tag_id)
+                SELECT m.note_id, :tagId FROM (
+                    SELECT f.note_id FROM note_tags f WHERE f.tag_id IN (:filterTagIds)
+                    GROUP BY f.note_id HAVING COUNT(*) = :filterCount
+                ) m
+                WHERE NOT EXISTS (SELECT 1 FROM note_tags nt WHERE nt.note_id = m.note_id AND nt.tag_id = :tagId)
+            """;
+    private static final String REMOVE_TAGS_FROM_NOTES =
+            "DELETE FROM note_tags WHERE tag_id IN (:tagIds) AND note_id IN (:noteIds)";
+    private static final String REMOVE_TAGS_FROM_TAGGED_NOTES = """
+                DELETE FROM note_tags
+                WHERE tag_id IN (:tagIds)
+                AND note_id IN (SELECT f.note_id FROM note_tags f WHERE f.tag_id IN (:filterTagIds)
+                                GROUP BY f.note_id HAVING COUNT(*) = :filterCount)
+            """;
+
+    private final ReactiveNoteRepository noteRepository;
+    private final ReactiveTagRepository tagRepository;
+    private final NoteIdGenerator noteIdGenerator;
+    private final TagIdGenerator tagIdGenerator;
+    private final DatabaseClient databaseClient;
+    private final ReturningSql returning;
+    private final int maxBatchSize;
+    private static final int STREAM_CHUNK = 500;
+    private static final int VERSION_CHUNK = 1000;
+    private static final Long[] NO_IDS = new Long[0];
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveNoteServiceImpl.class);
+
+    public ReactiveNoteServiceImpl(ReactiveNoteRepository noteRepository, ReactiveTagRepository tagRepository,
+            NoteIdGenerator noteIdGenerator, TagIdGenerator tagIdGenerator, DatabaseClient databaseClient,
+            @Value("${notes.batch.max-size:5000}") int maxBatchSize) {
+        this.noteRepository = noteRepository;
+        this.tagRepository = tagRepository;
+        this.noteIdGenerator = noteIdGenerator;
+        this.tagIdGenerator = tagIdGenerator;
+        this.databaseClient = databaseClient;
+        this.returning = ReturningSql.forDatabase(databaseClient.getConnectionFactory().getMetadata().getName());
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Transactional
+    @Override
+    public Mono<NoteDto> createNote(NoteDto noteDto, UserPrincipal user) {
+        return insertNotes(List.of(noteDto), user)
+                .flatMap(created -> notesChanged(user.id()).thenReturn(created.get(0)))
+                .doOnNext(created -> logger.info("Note created: id={}, user={}", created.getId(), user.id()));
+    }
+
+    /**
+     * Inserts all notes and their tags in one transaction, each table with a
+     * single batched statement.
+     */
+    @Transactional
+    @Override
+    public Mono<List<NoteDto>> createNotes(List<NoteDto> noteDtos, UserPrincipal user) {
+        if (noteDtos.size() > maxBatchSize) {
+            logger.warn("Batch of {} notes exceeds the limit of {} for user={}", noteDtos.size(), maxBatchSize,
+                    user.id());
+            return Mono.error(new BatchSizeExceededException("Batch may contain at most " + maxBatchSize + " notes"));
+        }
+        return insertNotes(noteDtos, user)
+                .flatMap(created -> notesChanged(user.id()).thenReturn(created))
+                .doOnNext(created -> logger.info("Notes created: count={}, user={}", created.size(), user.id()));
+    }
+
+    @Transactional
+    @Override
+    public Mono<Void> deleteNote(Long noteId, UserPrincipal user) {
+        return getNoteByIdAndUser(noteId, user.id())
+                .flatMap(note -> tagRepository.findByNoteId(noteId).map(TagRow::getId).collectList())
+                .flatMap(tagIds -> noteRepository.removeAllTags(noteId)
+                        .then(noteRepository.deleteById(noteId))
+                        .then(recordChanges(List.of(noteId)))
+                        .then(adjustNoteCounts(tagIds, -1))
+                        .then(notesChanged(user.id())))
+                .doOnSuccess(ignored -> logger.info("Note deleted: id={}, user={}", noteId, user.id()));
+    }
+
+    @Transactional
+    @Override
+    public Mono<NoteDto> editNote(Long noteId, NoteDto noteDto, UserPrincipal user) {
+        return getNoteByIdAndUser(noteId, user.id())
+                .flatMap(note -> tagRepository.findByNoteId(noteId).collectList())
+                .flatMap(tags -> resolveTags(user.id(), noteDto.getTags()).map(resolved -> Tuples.of(tags, resolved)))
+                .flatMap(current -> {
+                    Collection<TagRow> tags = current.getT2().values();
+                    Set<TagRow> removed = new HashSet<>(current.getT1());
+                    removed.removeAll(tags);
+                    List<TagRow> added = tags.stream().filter(tag -> !current.getT1().contains(tag)).toList();
+                    List<TagRow> result = new ArrayList<>(current.getT1());
+                    result.retainAll(tags);
+                    result.addAll(added);
+                    List<Long> removedIds = removed.stream().map(TagRow::getId).toList();
+                    return noteRepository.updateText(noteId, noteDto.getText())
+                            .then(recordChanges(List.of(noteId)))
+                            .then(removedIds.isEmpty() ? Mono.empty() : noteRepository.removeTags(noteId, removedIds))
+                            .then(insertNoteTags(noteId, added))
+                            .then(adjustNoteCounts(removedIds, -1))
+                            .then(adjustNoteCounts(added.stream().map(TagRow::getId).toList(), 1))
+                            .then(notesChanged(user.id()))
+                            .thenReturn(toDto(noteId, user, noteDto.getText(), result));
+                })
+                .doOnNext(edited -> logger.info("Note edited: id={}, user={}", noteId, user.id()));
+    }
+
+    @Transactional
+    @Override
+    public Mono<NoteDto> addTags(Long noteId, UserPrincipal user, List<String> tags) {
+        return getNoteByIdAndUser(noteId, user.id())
+                .flatMap(note -> tagRepository.findByNoteId(noteId).collectList().flatMap(current -> {
+                    if (tags == null || tags.isEmpty()) {
+                        logger.warn("No tags provided to add/remove for note with id: {}", noteId);
+                        return Mono.just(toDto(noteId, user, note.getText(), current));
+                    }
+                    return resolveTags(user.id(), tags).flatMap(resolved -> {
+                        List<TagRow> added = resolved.values().stream().filter(tag -> !current.contains(tag))
+                                .toList();
+                        List<TagRow> result = new ArrayList<>(current);
+                        result.addAll(added);
+                        return insertNoteTags(noteId, added)
+                                .then(adjustNoteCounts(added.stream().map(TagRow::getId).toList(), 1))
+                                .then(added.isEmpty() ? Mono.empty() : noteRepository.incrementVersion(noteId))
+                                .then(notesChanged(user.id()))
+                                .thenReturn(toDto(noteId, user, note.getText(), result));
+                    });
+                }))
+                .doOnNext(updated -> logger.info("Added tags: {} to note with id: {}", tags, noteId));
+    }
+
+    @Transactional
+    @Override
+    public Mono<NoteDto> removeTags(Long noteId, UserPrincipal user, List<String> tags) {
+        return getNoteByIdAndUser(noteId, user.id())
+                .flatMap(note -> tagRepository.findByNoteId(noteId).collectList().flatMap(current -> {
+                    if (tags == null || tags.isEmpty()) {
+                        logger.warn("No tags provided to add/remove for note with id: {}", noteId);
+                        return Mono.just(toDto(noteId, user, note.getText(), current));
+                    }
+                    List<String> upperTags = toUpperCase(tags);
+                    List<TagRow> removed = current.stream().filter(tag -> upperTags.contains(tag.getName())).toList();
+                    List<TagRow> result = new ArrayList<>(current);
+                    result.removeAll(removed);
+                    List<Long> removedIds = removed.stream().map(TagRow::getId).toList();
+                    return (removedIds.isEmpty() ? Mono.<Integer>empty() : noteRepository.removeTags(noteId, removedIds))
+                            .then(adjustNoteCounts(removedIds, -1))
+                            .then(removedIds.isEmpty() ? Mono.empty() : noteRepository.incrementVersion(noteId))
+                            .then(notesChanged(user.id()))
+                            .thenReturn(toDto(noteId, user, note.getText(), result));
+                }))
+                .doOnNext(updated -> logger.info("Removed tags: {} from note with id: {}", tags, noteId));
+    }
+
+    /**
+     * Each INSERT returns the notes it tagged; only those get a new version.
+     */
+    @Transactional
+    @Override
+    public Mono<BulkTagResponse> addTagsBulk(BulkTagRequest request, Long userId) {
+        List<String> tags = toUpperCase(request.getTags());
+        if (tags.isEmpty()) {
+            logger.warn("No tags provided to add/remove in bulk for user={}", userId);
+            return Mono.just(new BulkTagResponse(0));
+        }
+        return Mono.fromCallable(() -> targetsNoteIds(request)).flatMap(byNoteIds -> {
+            if (byNoteIds) {
+                return resolveTags(userId, tags).flatMapMany(resolved -> Flux.fromIterable(resolved.values()))
+                        .concatMap(tag -> changedNotes(returning.inserted(ADD_TAG_TO_NOTES, "note_id"),
+                                Map.of("tagId", tag.getId(), "noteIds", request.getNoteIds(), "userId", userId))
+                                .flatMap(tagged -> adjustNoteCounts(List.of(tag.getId()), tagged.size())
+                                        .thenReturn(tagged)))
+                        .flatMapIterable(Function.identity())
+                        .collectList();
+            }
+            List<String> filterTags = toUpperCase(request.getFilterTags());
+            return findTagIds(userId, filterTags).flatMap(filterTagIds -> {
+                if (filterTagIds.size() < filterTags.size()) {
+                    logger.info("No notes match filter tags: {} for user={}", filterTags, userId);
+                    return Mono.just(List.<Long>of());
+                }
+                return resolveTags(userId, tags).flatMapMany(resolved -> Flux.fromIterable(resolved.values()))
+                        .concatMap(tag -> changedNotes(returning.inserted(ADD_TAG_TO_TAGGED_NOTES, "note_id"),
+                                Map.of("tagId", tag.getId(), "filterTagIds", filterTagIds,
+                                        "filterCount", (long) filterTagIds.size()))
+                                .flatMap(tagged -> adjustNoteCounts(List.of(tag.getId()), tagged.size())
+                                        .thenReturn(tagged)))
+                        .flatMapIterable(Function.identity())
+                        .collectList();
+            });
+        }).flatMap(tagged -> bulkChanged(tagged, userId).thenReturn(tagged.size())).map(changed -> {
+            logger.info("Bulk added tags: {} to {} notes for user={}", tags, changed, userId);
+            return new BulkTagResponse(changed);
+        });
+    }
+
+    /**
+     * The DELETE returns the notes it untagged; only those get a new version.
+     */
+    @Transactional
+    @Override
+    public Mono<BulkTagResponse> removeTagsBulk(BulkTagRequest request, Long userId) {
+        List<String> tags = toUpperCase(request.getTags());
+        if (tags.isEmpty()) {
+            logger.warn("No tags provided to add/remove in bulk for user={}", userId);
+            return Mono.just(new BulkTagResponse(0));
+        }
+        return Mono.fromCallable(() -> targetsNoteIds(request))
+                .flatMap(byNoteIds -> findTagIds(userId, tags).map(tagIds -> Tuples.of(byNoteIds, tagIds)))
+                .flatMap(target -> {
+                    List<Long> tagIds = target.getT2();
+                    if (tagIds.isEmpty()) {
+                        logger.info("None of the tags: {} exist for user={}", tags, userId);
+                        return Mono.just(0);
+                    }
+                    Mono<List<Long>> untagged;
+                    if (target.getT1()) {
+                        untagged = changedNotes(returning.deleted(REMOVE_TAGS_FROM_NOTES, "note_id"),
+                                Map.of("tagIds", tagIds, "noteIds", request.getNoteIds()));
+                    } else {
+                        List<String> filterTags = toUpperCase(request.getFilterTags());
+                        untagged = findTagIds(userId, filterTags).flatMap(filterTagIds -> {
+                            if (filterTagIds.size() < filterTags.size()) {
+                                logger.info("No notes match filter tags: {} for user={}", filterTags, userId);
+                                return Mono.just(List.<Long>of());
+                            }
+                            return changedNotes(returning.deleted(REMOVE_TAGS_FROM_TAGGED_NOTES, "note_id"),
+                                    Map.of("tagIds", tagIds, "filterTagIds", filterTagIds,
+                                            "filterCount", (long) filterTagIds.size()));
+                        });
+                    }
+                    return untagged.flatMap(removed -> (removed.isEmpty()
+                            ? Mono.<Integer>empty()
+                            : tagRepository.recountNotes(tagIds))
+                            .then(bulkChanged(removed, userId))
+                            .thenReturn(removed.size()));
+                })
+                .map(changed -> {
+                    logger.info("Bulk removed {} tags: {} for user={}", changed, tags, userId);
+                    return new BulkTagResponse(changed);
+                });
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public Mono<NoteDto> findByIdAndUser(Long noteId, UserPrincipal user) {
+        return getNoteByIdAndUser(noteId, user.id())
+                .flatMap(note -> withTags(List.of(note), user))
+                .map(notes -> notes.get(0))
+                .doOnNext(found -> logger.info("Searched note with id: {} and user={}", noteId, user.id()));
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public Mono<NotePage> findByAllTags(List<String> tags, List<String> excludeTags, UserPrincipal user,
+            String pageToken, int size) {
+        logger.info("Searched notes with tags: {} excluding: {} for user={}", tags, excludeTags, user.id());
+        return allTagsQuery(tags, excludeTags, user.id()).flatMap(query -> page(query, user, pageToken, size));
+    }
+
+    @Override
+    public Flux<NoteDto> streamByAllTags(List<String> tags, List<String> excludeTags, UserPrincipal user,
+            String pageToken) {
+        logger.info("Streamed notes with tags: {} excluding: {} for user={}", tags, excludeTags, user.id());
+        return allTagsQuery(tags, excludeTags, user.id()).flatMapMany(query -> stream(query, user, pageToken));
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public Mono<NotePage> findByAnyTags(List<String> tags, List<String> excludeTags, UserPrincipal user,
+            String pageToken, int size) {
+        logger.info("Searched notes with any of tags: {} excluding: {} for user={}", tags, excludeTags, user.id());
+        return anyTagsQuery(tags, excludeTags, user.id()).flatMap(query -> page(query, user, pageToken, size));
+    }
+
+    @Override
+    public Flux<NoteDto> streamByAnyTags(List<String> tags, List<String> excludeTags, UserPrincipal user,
+            String pageToken) {
+        logger.info("Streamed notes with any of tags: {} excluding: {} for user={}", tags, excludeTags, user.id());
+        return anyTagsQuery(tags, excludeTags, user.id()).flatMapMany(query -> stream(query, user, pageToken));
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public Mono<NotePage> findByTagPart(String tagPart, UserPrincipal user, String pageToken, int size) {
+        logger.info("Searched notes with tagPart: {} for user={}", tagPart, user.id());
+        return page(tagPartQuery(tagPart, user.id()), user, pageToken, size);
+    }
+
+    @Override
+    public Flux<NoteDto> streamByTagPart(String tagPart, UserPrincipal user, String pageToken) {
+        logger.info("Streamed notes with tagPart: {} for user={}", tagPart, user.id());
+        return stream(tagPartQuery(tagPart, user.id()), user, pageToken);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public Mono<NotePage> findByUser(UserPrincipal user, String pageToken, int size) {
+        logger.info("Searched notes for user={}", user.id());
+        return page(userQuery(user.id()), user, pageToken, size);
+    }
+
+    /**
+     * Not transactional on purpose: each chunk borrows a connection for its
+     * two queries only, so a slow client does not hold one for the whole
+     * stream.
+     */
+    @Override
+    public Flux<NoteDto> streamByUser(UserPrincipal user, String pageToken) {
+        logger.info("Streamed notes for user={}", user.id());
+        return stream(userQuery(user.id()), user, pageToken);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public Mono<List<String>> getAllTags(Long userId) {
+        logger.info("Searched tags for user={}", userId);
+        return tagRepository.findNamesInUse(userId).collectList();
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public Mono<List<TagCountDto>> getTagStats(Long userId) {
+        logger.info("Searched tag stats for user={}", userId);
+        return tagRepository.findCountsInUse(userId).collectList();
+    }
+
+    /**
+     * One keyset page of a note listing: fetches {@code limit} notes with ids
+     * greater than {@code after}, in id order.
+     */
+    @FunctionalInterface
+    private interface PageQuery {
+
+        PageQuery EMPTY = (after, limit) -> Flux.empty();
+
+        Flux<NoteRow> fetch(long after, int limit);
+
+    }
+
+    private PageQuery userQuery(Long userId) {
+        return (after, limit) -> noteRepository.findPageByUser(userId, after, limit);
+    }
+
+    private PageQuery tagPartQuery(String tagPart, Long userId) {
+        String pattern = "%" + tagPart.toUpperCase() + "%";
+        return (after, limit) -> noteRepository.findPageByTagPart(pattern, userId, after, limit);
+    }
+
+    /**
+     * A note matches when it has every tag and none of the excluded ones; a
+     * tag the user has never used matches nothing.
+     */
+    private Mono<PageQuery> allTagsQuery(List<String> tags, List<String> excludeTags, Long userId) {
+        List<String> all = toUpperCase(tags);
+        List<String> none = toUpperCase(excludeTags);
+        return findTagIdsByName(userId, Stream.concat(all.stream(), none.stream()).toList()).map(ids -> {
+            if (!ids.keySet().containsAll(all)) {
+                return PageQuery.EMPTY;
+            }
+            Long[] allIds = idsOf(all, ids);
+            Long[] noneIds = idsOf(none, ids);
+            if (allIds.length == 0) {
+                return (after, limit) -> noteRepository.findPageExcludingTags(noneIds, userId, after, limit);
+            }
+            return (after, limit) -> noteRepository.findPageByAllTags(allIds, allIds.length, noneIds, userId,
+                    after, limit);
+        });
+    }
+
+    private Mono<PageQuery> anyTagsQuery(List<String> tags, List<String> excludeTags, Long userId) {
+        List<String> any = toUpperCase(tags);
+        List<String> none = toUpperCase(excludeTags);
+        return findTagIdsByName(userId, Stream.concat(any.stream(), none.stream()).toList()).map(ids -> {
+            Long[] anyIds = idsOf(any, ids);
+            if (anyIds.length == 0) {
+                return PageQuery.EMPTY;
+            }
+            Long[] noneIds = idsOf(none, ids);
+            return (after, limit) -> noteRepository.findPageByAnyTags(anyIds, noneIds, userId, after, limit);
+        });
+    }
+
+    private Mono<NotePage> page(PageQuery query, UserPrincipal user, String pageToken, int size) {
+        return Mono.defer(() -> {
+            int pageSize = PageTokens.pageSize(size);
+            return query.fetch(PageTokens.decode(pageToken), pageSize + 1).collectList()
+                    .flatMap(notes -> withTags(notes, user))
+                    .map(notes -> toPage(notes, pageSize));
+        });
+    }
+
+    /**
+     * Reads the listing in chunks of {@value #STREAM_CHUNK}; the next chunk is
+     * queried only once the subscriber has asked for the notes of the current
+     * one.
+     */
+    private Flux<NoteDto> stream(PageQuery query, UserPrincipal user, String pageToken) {
+        return Flux.defer(() -> chunk(query, user, PageTokens.decode(pageToken))
+                .expand(chunk -> chunk.size() < STREAM_CHUNK
+                        ? Mono.empty()
+                        : chunk(query, user, chunk.get(chunk.size() - 1).getId()))
+                .concatMapIterable(Function.identity()));
+    }
+
+    private Mono<List<NoteDto>> chunk(PageQuery query, UserPrincipal user, long after) {
+        return query.fetch(after, STREAM_CHUNK).collectList().flatMap(notes -> withTags(notes, user));
+    }
+
+    /**
+     * Maps notes to DTOs, reading the tags of all of them with one query.
+     */
+    private Mono<List<NoteDto>> withTags(List<NoteRow> notes, UserPrincipal user) {
+        if (notes.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        return noteRepository.findTagNames(notes.stream().map(NoteRow::getId).toList())
+                .collectMultimap(NoteTagRow::noteId, NoteTagRow::name)
+                .map(tags -> notes.stream()
+                        .map(note -> NoteMapper.toDto(note.getId(), user.email(), note.getText(),
+                                new ArrayList<>(tags.getOrDefault(note.getId(), List.of()))))
+                        .toList());
+    }
+
+    private Mono<List<NoteDto>> insertNotes(List<NoteDto> noteDtos, UserPrincipal user) {
+        if (noteDtos.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        List<String> names = noteDtos.stream()
+                .filter(noteDto -> noteDto.getTags() != null)
+                .flatMap(noteDto -> noteDto.getTags().stream())
+                .toList();
+        return resolveTags(user.id(), names)
+                .flatMap(tags -> noteIdGenerator.next(noteDtos.size()).map(ids -> Tuples.of(tags, ids)))
+                .flatMap(resolved -> {
+                    Map<String, TagRow> tags = resolved.getT1();
+                    List<Long> ids = resolved.getT2();
+                    List<NoteDto> created = new ArrayList<>(noteDtos.size());
+                    List<Object[]> noteRows = new ArrayList<>(noteDtos.size());
+                    List<Object[]> tagRows = new ArrayList<>();
+                    Map<Long, Integer> counts = new HashMap<>();
+                    for (int i = 0; i < noteDtos.size(); i++) {
+                        NoteDto noteDto = noteDtos.get(i);
+                        Long id = ids.get(i);
+                        Set<TagRow> noteTags = new LinkedHashSet<>();
+                        if (noteDto.getTags() != null) {
+                            noteDto.getTags().forEach(name -> noteTags.add(tags.get(name.toUpperCase())));
+                        }
+                        noteRows.add(new Object[] { id, noteDto.getText(), user.id() });
+                        for (TagRow tag : noteTags) {
+                            tagRows.add(new Object[] { id, tag.getId() });
+                            counts.merge(tag.getId(), 1, Integer::sum);
+                        }
+                        created.add(toDto(id, user, noteDto.getText(), noteTags));
+                    }
+                    return insertBatch(INSERT_NOTE, noteRows, Long.class, String.class, Long.class)
+                            .then(insertBatch(INSERT_NOTE_TAG, tagRows, Long.class, Long.class))
+                            .then(recordChanges(ids))
+                            .then(adjustNoteCounts(counts))
+                            .thenReturn(created);
+                });
+    }
+
+    private Mono<Void> insertNoteTags(Long noteId, List<TagRow> tags) {
+        List<Object[]> rows = tags.stream().map(tag -> new Object[] { noteId, tag.getId() }).toList();
+        return insertBatch(INSERT_NOTE_TAG, rows, Long.class, Long.class).then();
+    }
+
+    /**
+     * Records a change of each note for the servlet application's search
+     * index sync.
+     */
+    private Mono<Void> recordChanges(List<Long> noteIds) {
+        long changedAt = System.currentTimeMillis();
+        List<Object[]> rows = noteIds.stream().map(noteId -> new Object[] { noteId, changedAt }).toList();
+        return insertBatch(INSERT_NOTE_CHANGE, rows, Long.class, Long.class).then();
+    }
+
+    /**
+     * Runs one insert for all rows as a single batched statement on the
+     * transaction's connection.
+     */
+    private Mono<Long> insertBatch(String sql, List<Object[]> rows, Class<?>... types) {
+        if (rows.isEmpty()) {
+            return Mono.just(0L);
+        }
+        return databaseClient.inConnection(connection -> {
+            Statement statement = connection.createStatement(sql);
+            for (int i = 0; i < rows.size(); i++) {
+                if (i > 0) {
+                    statement.add();
+                }
+                Object[] row = rows.get(i);
+                for (int column = 0; column < row.length; column++) {
+                    if (row[column] == null) {
+                        statement.bindNull(column, types[column]);
+                    } else {
+                        statement.bind(column, row[column]);
+                    }
+                }
+            }
+            return Flux.from(statement.execute()).flatMap(Result::getRowsUpdated).reduce(0L, Long::sum);
+        });
+    }
+
+    /**
+     * Runs a bulk INSERT or DELETE of {@code note_tags} rewritten by
+     * {@link ReturningSql}, yielding the note id of every row it touched.
+     */
+    private Mono<List<Long>> changedNotes(String sql, Map<String, Object> parameters) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql);
+        for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+            spec = spec.bind(parameter.getKey(), parameter.getValue());
+        }
+        return spec.map(row -> row.get(0, Long.class)).all().collectList();
+    }
+
+    /**
+     * Bumps the versions of the notes a bulk tag change touched, in chunks
+     * that keep the IN list within the driver's parameter limit. Nothing is
+     * bumped when no note changed.
+     */
+    private Mono<Void> bulkChanged(List<Long> noteIds, Long userId) {
+        if (noteIds.isEmpty()) {
+            return Mono.empty();
+        }
+        List<Long> ids = new ArrayList<>(new HashSet<>(noteIds));
+        return Flux.range(0, (ids.size() + VERSION_CHUNK - 1) / VERSION_CHUNK)
+                .concatMap(chunk -> noteRepository.incrementVersions(
+                        ids.subList(chunk * VERSION_CHUNK, Math.min((chunk + 1) * VERSION_CHUNK, ids.size()))))
+                .then(notesChanged(userId));
+    }
+
+    private Mono<NoteRow> getNoteByIdAndUser(Long noteId, Long userId) {
+        return noteRepository.findByIdAndUserId(noteId, userId).switchIfEmpty(Mono.defer(() -> {
+            logger.warn("Note with id: {} was not found", noteId);
+            return Mono.error(new NoteNotFoundException("Note was not found"));
+        }));
+    }
+
+    /**
+     * Moves on the user's notes version, which the servlet application serves
+     * as the ETag of listings and tag lists.
+     */
+    private Mono<Void> notesChanged(Long userId) {
+        return noteRepository.incrementNotesVersion(userId).then();
+    }
+
+    /**
+     * Maps tag names to entries of the user's tag dictionary, creating the
+     * missing ones. Names are upper-cased; the map keeps their first-seen order.
+     */
+    private Mono<Map<String, TagRow>> resolveTags(Long userId, Collection<String> names) {
+        if (names == null || names.isEmpty()) {
+            return Mono.just(new LinkedHashMap<>());
+        }
+        Set<String> upperNames = new LinkedHashSet<>();
+        names.forEach(name -> upperNames.add(name.toUpperCase()));
+        return tagRepository.findByUserIdAndNameIn(userId, upperNames)
+                .collectMap(TagRow::getName)
+                .flatMap(existing -> {
+                    List<String> missing = upperNames.stream()
+                            .filter(name -> !existing.containsKey(name))
+                            .toList();
+                    Mono<List<TagRow>> created = missing.isEmpty()
+                            ? Mono.just(List.of())
+                            : insertTags(userId, missing);
+                    return created.map(saved -> {
+                        Map<String, TagRow> all = new HashMap<>(existing);
+                        saved.forEach(tag -> all.put(tag.getName(), tag));
+                        Map<String, TagRow> resolved = new LinkedHashMap<>();
+                        upperNames.forEach(name -> resolved.put(name, all.get(name)));
+                        return resolved;
+                    });
+                });
+    }
+
+    /**
+     * Inserts the names in one batch that skips names a concurrent transaction
+     * has just created, then reads them back so they map to the rows that won.
+     */
+    private Mono<List<TagRow>> insertTags(Long userId, List<String> names) {
+        return tagIdGenerator.next(names.size())
+                .flatMap(ids -> {
+                    List<Object[]> rows = new ArrayList<>(names.size());
+                    for (int i = 0; i < names.size(); i++) {
+                        rows.add(new Object[] { ids.get(i), userId, names.get(i) });
+                    }
+                    return insertBatch(INSERT_TAG, rows, Long.class, Long.class, String.class);
+                })
+                .doOnNext(inserted -> logger.info("Tags created: {} for user={}", inserted, userId))
+                .then(tagRepository.findByUserIdAndNameIn(userId, names).collectList());
+    }
+
+    /**
+     * Applies per-tag note count changes with one UPDATE per distinct delta.
+     */
+    private Mono<Void> adjustNoteCounts(Map<Long, Integer> deltas) {
+        Map<Integer, List<Long>> byDelta = new HashMap<>();
+        deltas.forEach((tagId, delta) -> byDelta.computeIfAbsent(delta, d -> new ArrayList<>()).add(tagId));
+        return Flux.fromIterable(byDelta.entrySet())
+                .concatMap(entry -> adjustNoteCounts(entry.getValue(), entry.getKey()))
+                .then();
+    }
+
+    private Mono<Void> adjustNoteCounts(Collection<Long> tagIds, int delta) {
+        if (tagIds.isEmpty() || delta == 0) {
+            return Mono.empty();
+        }
+        return tagRepository.adjustNoteCount(tagIds.stream().sorted().toList(), delta).then();
+    }
+
+    private Mono<List<Long>> findTagIds(Long userId, List<String> names) {
+        if (names.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        return tagRepository.findByUserIdAndNameIn(userId, names).map(TagRow::getId).collectList();
+    }
+
+    private Mono<Map<String, Long>> findTagIdsByName(Long userId, List<String> names) {
+        if (names.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        return tagRepository.findByUserIdAndNameIn(userId, names).collectMap(TagRow::getName, TagRow::getId);
+    }
+
+    private static Long[] idsOf(List<String> names, Map<String, Long> ids) {
+        return names.isEmpty()
+                ? NO_IDS
+                : names.stream().map(ids::get).filter(id -> id != null).toArray(Long[]::new);
+    }
+
+    /**
+     * Checks that the request has exactly one target and returns {@code true}
+     * when it is a list of note ids rather than a tag filter.
+     */
+    private boolean targetsNoteIds(BulkTagRequest request) {
+        boolean hasNoteIds = request.getNoteIds() != null && !request.getNoteIds().isEmpty();
+        boolean hasFilter = request.getFilterTags() != null && !request.getFilterTags().isEmpty();
+        if (hasNoteIds == hasFilter) {
+            throw new InvalidBulkRequestException("Either noteIds or filterTags must be provided");
+        }
+        if (hasNoteIds && request.getNoteIds().size() > maxBatchSize) {
+            throw new BatchSizeExceededException("Batch may contain at most " + maxBatchSize + " notes");
+        }
+        return hasNoteIds;
+    }
+
+    private List<String> toUpperCase(List<String> tags) {
+        if (tags == null) {
+            return List.of();
+        }
+        return tags.stream().map(String::toUpperCase).distinct().collect(Collectors.toList());
+    }
+
+    private NoteDto toDto(Long noteId, UserPrincipal user, String text, Collection<TagRow> tags) {
+        return NoteMapper.toDto(noteId, user.email(), text, tags.stream().map(TagRow::getName).toList());
+    }
+
+    /**
+     * Builds a page from a query that fetched one row more than the page size;
+     * the extra row only signals that another page exists.
+     */
+    private NotePage toPage(List<NoteDto> notes, int pageSize) {
+        if (notes.size() <= pageSize) {
+            return new NotePage(notes, null);
+        }
+        List<NoteDto> page = notes.subList(0, pageSize);
+        return new NotePage(page, PageTokens.encode(page.get(pageSize - 1).getId()));
+    }
+
+}
@@ -0,0 +1,100 @@
+package ru.bicev.notes.reactive.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import reactor.core.publisher.Mono;
+import ru.bicev.notes.util.BloomFilter;
+import ru.bicev.notes.util.RevocationFilter;
+
+/**
+ * Revocation check of the reactive API against the {@code revoked_tokens}
+ * table the servlet application writes on logout. Works like
+ * {@code TokenService#isRevoked}: a {@link RevocationFilter} answers for
+ * tokens that were never revoked, and the table is asked only on a filter
+ * hit.
+ *
+ * This module revokes nothing itself, so the filter learns about
+ * revocations only by being rebuilt, every
+ * {@code jwt.revocation.rebuild-interval} milliseconds (10 s by default
+ * here). A rebuild reads live access token ids only, a set bounded by the
+ * access token lifetime, so it stays cheap at that rate. Expired rows are
+ * purged by the servlet application.
+ */
+@Service
+public class ReactiveTokenService implements SmartInitializingSingleton {
+
+    private static final String FIND_LIVE_ACCESS_IDS =
+            "SELECT jti FROM revoked_tokens WHERE expires_at > $1 AND refresh = FALSE";
+    private static final String COUNT_REVOKED = "SELECT COUNT(*) FROM revoked_tokens WHERE jti = $1";
+
+    private final DatabaseClient databaseClient;
+    private final RevocationFilter revokedIds;
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveTokenService.class);
+
+    public ReactiveTokenService(DatabaseClient databaseClient,
+            @Value("${jwt.revocation.expected-entries:100000}") int expectedEntries) {
+        this.databaseClient = databaseClient;
+        this.revokedIds = new RevocationFilter(expectedEntries);
+    }
+
+    /**
+     * Builds the filter before the server accepts requests. Runs once all
+     * singletons exist rather than in the constructor, so the schema
+     * initializer, where there is one, has run.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuildFilter().block();
+    }
+
+    /**
+     * Replaces the filter with one built from the live access token ids in
+     * the table. A failed rebuild keeps the current filter.
+     */
+    @Scheduled(initialDelayString = "${jwt.revocation.rebuild-interval:10000}",
+            fixedDelayString = "${jwt.revocation.rebuild-interval:10000}")
+    public Mono<Void> rebuildFilter() {
+        return Mono.defer(() -> {
+            BloomFilter rebuilt = revokedIds.beginRebuild();
+            return databaseClient.sql(FIND_LIVE_ACCESS_IDS)
+                    .bind(0, System.currentTimeMillis())
+                    .map(row -> row.get(0, String.class))
+                    .all()
+                    .doOnNext(rebuilt::add)
+                    .count()
+                    .doOnNext(revoked -> {
+                        if (revoked > revokedIds.expectedEntries()) {
+                            logger.warn("Revocation filter holds {} ids, more than jwt.revocation.expected-entries={}",
+                                    revoked, revokedIds.expectedEntries());
+                        }
+                        revokedIds.finishRebuild(rebuilt);
+                        logger.debug("Revocation filter loaded: revoked={}", revoked);
+                    });
+        }).onErrorResume(e -> {
+            logger.error("Revocation filter rebuild failed", e);
+            return Mono.empty();
+        }).then();
+    }
+
+    /**
+     * Whether the token id was revoked. Tokens issued before ids were
+     * introduced have none and cannot be revoked.
+     */
+    public Mono<Boolean> isRevoked(String jti) {
+        if (jti == null || !revokedIds.mightContain(jti)) {
+            return Mono.just(false);
+        }
+        return databaseClient.sql(COUNT_REVOKED)
+                .bind(0, jti)
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .map(count -> count > 0);
+    }
+
+}
@@ -0,0 +1,17 @@
+package ru.bicev.notes.reactive.service;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tag ids from {@code tags_seq}, in the blocks the servlet application's
+ * {@code Tag} entity uses.
+ */
+@Component
+public class TagIdGenerator extends PooledIdGenerator {
+
+    public TagIdGenerator(DatabaseClient databaseClient) {
+        super(databaseClient, "tags_seq");
+    }
+
+}
@@ -0,0 +1,386 @@
+package ru.bicev.notes.reactive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import reactor.test.StepVerifier;
+import ru.bicev.notes.dto.BulkTagRequest;
+import ru.bicev.notes.dto.NoteDto;
+import ru.bicev.notes.dto.NotePage;
+import ru.bicev.notes.reactive.service.ReactiveTokenService;
+import ru.bicev.notes.service.JwtService;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class ReactiveIntegrationTest {
+
+    private static final AtomicInteger users = new AtomicInteger();
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private ReactiveTokenService tokenService;
+
+    @Test
+    public void createAndFindNote() {
+        String token = newUser();
+
+        NoteDto created = createNote(token, new NoteDto(null, null, "Reactive note", List.of("First tag", "second")));
+
+        assertNotNull(created.getId());
+        assertEquals(List.of("FIRST TAG", "SECOND"), created.getTags());
+
+        webTestClient.get().uri("/api/notes/{id}", created.getId())
+                .header("Authorization", "Bearer " + token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.text").isEqualTo("Reactive note")
+                .jsonPath("$.userEmail").isEqualTo(emailOf(token))
+                .jsonPath("$.tags.length()").isEqualTo(2);
+    }
+
+    @Test
+    public void findNoteOfAnotherUser() {
+        NoteDto created = createNote(newUser(), new NoteDto(null, null, "Private note", List.of()));
+
+        webTestClient.get().uri("/api/notes/{id}", created.getId())
+                .header("Authorization", "Bearer " + newUser())
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Note was not found");
+    }
+
+    @Test
+    public void createNotesAllocatesDistinctIds() {
+        String token = newUser();
+
+        List<NoteDto> created = createNotes(token, 120, i -> List.of("Batch"));
+        NoteDto single = createNote(token, new NoteDto(null, null, "After batch", List.of()));
+
+        HashSet<Long> ids = new HashSet<>();
+        created.forEach(note -> ids.add(note.getId()));
+        ids.add(single.getId());
+        assertEquals(121, ids.size());
+    }
+
+    @Test
+    public void findByUserPages() {
+        String token = newUser();
+        createNotes(token, 5, i -> List.of("Page"));
+
+        NotePage first = getPage(token, "/api/notes/user?size=3");
+        assertEquals(3, first.getNotes().size());
+        assertNotNull(first.getNextPageToken());
+
+        NotePage second = getPage(token, "/api/notes/user?size=3&pageToken=" + first.getNextPageToken());
+        assertEquals(2, second.getNotes().size());
+        assertNull(second.getNextPageToken());
+    }
+
+    @Test
+    public void streamByUserReadsEveryChunk() {
+        String token = newUser();
+        createNotes(token, 1200, i -> List.of("Stream" + i % 3));
+
+        StepVerifier.create(webTestClient.get().uri("/api/notes/user")
+                .header("Authorization", "Bearer " + token)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(NoteDto.class)
+                .getResponseBody()
+                .map(NoteDto::getId)
+                .distinct()
+                .count())
+                .expectNext(1200L)
+                .verifyComplete();
+
+        NotePage page = getPage(token, "/api/notes/user?size=500");
+        StepVerifier.create(webTestClient.get()
+                .uri("/api/notes/tags?tags=stream0&pageToken=" + page.getNextPageToken())
+                .header("Authorization", "Bearer " + token)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(NoteDto.class)
+                .getResponseBody()
+                .count())
+                .expectNext(233L)
+                .verifyComplete();
+    }
+
+    @Test
+    public void exportNotes() {
+        String token = newUser();
+        createNotes(token, 3, i -> List.of("Export"));
+
+        StepVerifier.create(webTestClient.get().uri("/api/notes/export")
+                .header("Authorization", "Bearer " + token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith("application/x-ndjson")
+                .returnResult(NoteDto.class)
+                .getResponseBody()
+                .map(NoteDto::getTags))
+                .expectNext(List.of("EXPORT"), List.of("EXPORT"), List.of("EXPORT"))
+                .verifyComplete();
+    }
+
+    @Test
+    public void findByTags() {
+        String token = newUser();
+        createNotes(token, 6, i -> i % 2 == 0 ? List.of("Even", "Group" + i % 3) : List.of("Odd", "Group" + i % 3));
+
+        assertEquals(3, getPage(token, "/api/notes/tags?tags=even").getNotes().size());
+        assertEquals(1, getPage(token, "/api/notes/tags?tags=even,group0").getNotes().size());
+        assertEquals(2, getPage(token, "/api/notes/tags?tags=even&exclude=group0").getNotes().size());
+        assertEquals(0, getPage(token, "/api/notes/tags?tags=even,missing").getNotes().size());
+        assertEquals(4, getPage(token, "/api/notes/tags/any?tags=group0,group1").getNotes().size());
+        assertEquals(2, getPage(token, "/api/notes/tags/any?tags=group0,group1&exclude=odd").getNotes().size());
+        assertEquals(0, getPage(token, "/api/notes/tags/any?tags=missing").getNotes().size());
+        assertEquals(6, getPage(token, "/api/notes/tagpart?tagpart=rou").getNotes().size());
+    }
+
+    @Test
+    public void editNoteAndTagStats() {
+        String token = newUser();
+        NoteDto note = createNote(token, new NoteDto(null, null, "Edited", List.of("Keep", "Drop")));
+        createNote(token, new NoteDto(null, null, "Other", List.of("Keep")));
+
+        webTestClient.put().uri("/api/notes/{id}", note.getId())
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new NoteDto(null, null, "Edited text", List.of("Keep", "New")))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.text").isEqualTo("Edited text")
+                .jsonPath("$.tags").isEqualTo(List.of("KEEP", "NEW"));
+
+        webTestClient.get().uri("/api/notes/tags/stats")
+                .header("Authorization", "Bearer " + token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].name").isEqualTo("KEEP")
+                .jsonPath("$[0].noteCount").isEqualTo(2)
+                .jsonPath("$[1].name").isEqualTo("NEW")
+                .jsonPath("$[1].noteCount").isEqualTo(1);
+    }
+
+    @Test
+    public void addAndRemoveTags() {
+        String token = newUser();
+        NoteDto note = createNote(token, new NoteDto(null, null, "Tagged", List.of("One")));
+
+        webTestClient.post().uri("/api/notes/{id}/tags", note.getId())
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(List.of("two", "one"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.tags").isEqualTo(List.of("ONE", "TWO"));
+
+        webTestClient.method(HttpMethod.DELETE).uri("/api/notes/{id}/tags", note.getId())
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(List.of("one"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.tags").isEqualTo(List.of("TWO"));
+
+        webTestClient.get().uri("/api/notes/tags/all")
+                .header("Authorization", "Bearer " + token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$").isEqualTo(List.of("TWO"));
+    }
+
+    @Test
+    public void bulkTags() {
+        String token = newUser();
+        createNotes(token, 4, i -> i < 3 ? List.of("Filter") : List.of("Other"));
+
+        webTestClient.post().uri("/api/notes/tags/bulk")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new BulkTagRequest(null, List.of("filter"), List.of("Bulk")))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.changedTags").isEqualTo(3);
+
+        webTestClient.method(HttpMethod.DELETE).uri("/api/notes/tags/bulk")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new BulkTagRequest(null, List.of("filter"), List.of("bulk")))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.changedTags").isEqualTo(3);
+
+        webTestClient.post().uri("/api/notes/tags/bulk")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new BulkTagRequest(null, null, List.of("Bulk")))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void deleteNote() {
+        String token = newUser();
+        NoteDto note = createNote(token, new NoteDto(null, null, "Deleted", List.of("Gone")));
+
+        webTestClient.delete().uri("/api/notes/{id}", note.getId())
+                .header("Authorization", "Bearer " + token)
+                .exchange()
+                .expectStatus().isNoContent();
+
+        webTestClient.get().uri("/api/notes/{id}", note.getId())
+                .header("Authorization", "Bearer " + token)
+                .exchange()
+                .expectStatus().isNotFound();
+        webTestClient.get().uri("/api/notes/tags/stats")
+                .header("Authorization", "Bearer " + token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(0);
+    }
+
+    @Test
+    public void invalidPageToken() {
+        webTestClient.get().uri("/api/notes/user?pageToken=invalid")
+                .header("Authorization", "Bearer " + newUser())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Invalid page token");
+    }
+
+    @Test
+    public void authorizationRequired() {
+        webTestClient.get().uri("/api/notes/user")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.get().uri("/api/notes/user")
+                .header("Authorization", "Bearer invalid")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void revokedTokenIsRejected() {
+        String token = newUser();
+        databaseClient.sql("INSERT INTO revoked_tokens (jti, expires_at) VALUES (:jti, :expiresAt)")
+                .bind("jti", jwtService.validateToken(token).getId())
+                .bind("expiresAt", System.currentTimeMillis() + 60_000)
+                .then()
+                .block();
+
+        tokenService.rebuildFilter().block();
+
+        webTestClient.get().uri("/api/notes/user")
+                .header("Authorization", "Bearer " + token)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isUnauthorized();
+        webTestClient.get().uri("/api/notes/user")
+                .header("Authorization", "Bearer " + newUser())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    public void searchIsNotServed() {
+        webTestClient.get().uri("/api/notes/search?q=text")
+                .header("Authorization", "Bearer " + newUser())
+                .exchange()
+                .expectStatus().isEqualTo(501);
+    }
+
+    private String newUser() {
+        String email = "reactive" + users.incrementAndGet() + "@email.com";
+        Long userId = databaseClient.sql("INSERT INTO users (email, password) VALUES (:email, 'password')")
+                .bind("email", email)
+                .filter(statement -> statement.returnGeneratedValues("id"))
+                .map(row -> row.get("id", Long.class))
+                .one()
+                .block();
+        return jwtService.generateToken(userId, email);
+    }
+
+    private String emailOf(String token) {
+        return jwtService.extractUsername(token);
+    }
+
+    private NoteDto createNote(String token, NoteDto noteDto) {
+        return webTestClient.post().uri("/api/notes")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(noteDto)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(NoteDto.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private List<NoteDto> createNotes(String token, int count, IntFunction<List<String>> tags) {
+        List<NoteDto> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            batch.add(new NoteDto(null, null, "Note " + i, tags.apply(i)));
+        }
+        return webTestClient.post().uri("/api/notes/batch")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(batch)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBodyList(NoteDto.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private NotePage getPage(String token, String uri) {
+        return webTestClient.get().uri(uri)
+                .header("Authorization", "Bearer " + token)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(NotePage.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+}
@@ -0,0 +1,52 @@
+-- The schema the servlet application's migrations leave behind, minus the
+-- PostgreSQL-only trigram index.
+
+CREATE TABLE users (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email VARCHAR(255) NOT NULL UNIQUE,
+    password VARCHAR(255) NOT NULL,
+    notes_version BIGINT NOT NULL DEFAULT 0
+);
+
+CREATE TABLE notes (
+    id BIGINT PRIMARY KEY,
+    text VARCHAR(255),
+    users_id BIGINT REFERENCES users (id),
+    version BIGINT NOT NULL DEFAULT 0
+);
+
+CREATE INDEX idx_notes_users_id_id ON notes (users_id, id);
+
+CREATE SEQUENCE notes_seq START WITH 50 INCREMENT BY 50;
+
+CREATE TABLE tags (
+    id BIGINT PRIMARY KEY,
+    users_id BIGINT NOT NULL REFERENCES users (id),
+    name VARCHAR(255) NOT NULL,
+    note_count INT NOT NULL DEFAULT 0,
+    CONSTRAINT uk_tags_users_id_name UNIQUE (users_id, name)
+);
+
+CREATE SEQUENCE tags_seq START WITH 50 INCREMENT BY 50;
+
+CREATE TABLE note_tags (
+    note_id BIGINT NOT NULL REFERENCES notes (id),
+    tag_id BIGINT NOT NULL REFERENCES tags (id),
+    PRIMARY KEY (note_id, tag_id)
+);
+
+CREATE INDEX idx_note_tags_tag_id ON note_tags (tag_id, note_id);
+
+CREATE TABLE note_changes (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    note_id BIGINT NOT NULL,
+    changed_at BIGINT NOT NULL
+);
+
+CREATE INDEX idx_note_changes_changed_at ON note_changes (changed_at);
+
+CREATE TABLE revoked_tokens (
+    jti VARCHAR(36) PRIMARY KEY,
+    expires_at BIGINT NOT NULL,
+    refresh BOOLEAN NOT NULL DEFAULT FALSE
+);
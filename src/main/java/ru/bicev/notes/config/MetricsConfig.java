@@ -0,0 +1,36 @@
+package ru.bicev.notes.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Metrics the actuator does not provide on its own. Request latency, the
+ * Hikari pools and Hibernate statistics are bound by Spring Boot; this adds
+ * the per-request statement count.
+ */
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+
+    private final StatementCounter statementCounter;
+
+    public MetricsConfig(MeterRegistry meterRegistry) {
+        this.statementCounter = new StatementCounter(meterRegistry);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer statementCounterCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, statementCounter);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(statementCounter);
+    }
+
+}
@@ -1,16 +1,58 @@
 package ru.bicev.notes.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import ru.bicev.notes.security.BoundedPasswordEncoder;
+import ru.bicev.notes.security.TimedPasswordEncoder;
 
 @Configuration
 public class PasswordConfig {
 
+    /**
+     * Hashing threads default to half the cores, so logins alone never
+     * saturate the machine.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder(MeterRegistry meterRegistry,
+            @Value("${notes.password.bcrypt-strength:10}") int strength,
+            @Value("${notes.password.threads:0}") int threads,
+            @Value("${notes.password.queue-size:64}") int queueSize) {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new BoundedPasswordEncoder(
+                new TimedPasswordEncoder(new StrengthCheckingEncoder(strength), meterRegistry),
+                poolSize, queueSize, meterRegistry);
+    }
+
+    /**
+     * Asks for a rehash whenever the stored cost differs from the configured
+     * one; the stock encoder only upgrades to a higher cost.
+     */
+    private static class StrengthCheckingEncoder extends BCryptPasswordEncoder {
+
+        private final int strength;
+
+        StrengthCheckingEncoder(int strength) {
+            super(strength);
+            this.strength = strength;
+        }
+
+        @Override
+        public boolean upgradeEncoding(String encodedPassword) {
+            // $2a$10$ followed by salt and hash
+            if (encodedPassword == null || encodedPassword.length() < 7) {
+                return false;
+            }
+            try {
+                return Integer.parseInt(encodedPassword.substring(4, 6)) != strength;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
     }
 
 }
@@ -0,0 +1,89 @@
+package ru.bicev.notes.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Enabled by {@code notes.datasource.replica-urls}. The primary pool is built
+ * from {@code spring.datasource.*} as usual; each replica URL gets its own
+ * pool with the same credentials and {@code spring.datasource.hikari.*}
+ * settings unless {@code notes.datasource.replica-username} and
+ * {@code replica-password} are given.
+ *
+ * The exposed data source hands out connections lazily, so by the time one
+ * is needed the transaction is known to be read-only or not. Read-only ones
+ * are routed by {@link ReplicaRoutingDataSource}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "notes.datasource.replica-urls")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties properties,
+            Environment environment, MeterRegistry meterRegistry,
+            @Value("${notes.datasource.replica-urls}") List<String> replicaUrls,
+            @Value("${notes.datasource.replica-username:}") String replicaUsername,
+            @Value("${notes.datasource.replica-password:}") String replicaPassword,
+            @Value("${notes.datasource.replica-connection-timeout:2000}") long connectionTimeout,
+            @Value("${notes.datasource.replica-retry-after:30000}") long retryAfter,
+            @Value("${notes.datasource.read-your-writes-window:5000}") long readYourWritesWindow,
+            @Value("${notes.datasource.read-your-writes-max-users:10000}") int maxWriters) {
+        HikariDataSource primary = pool(properties, environment, meterRegistry, "primary");
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            HikariDataSource replica = pool(properties, environment, meterRegistry,
+                    "replica-" + (replicas.size() + 1));
+            replica.setJdbcUrl(url.trim());
+            if (StringUtils.hasText(replicaUsername)) {
+                replica.setUsername(replicaUsername);
+                replica.setPassword(replicaPassword);
+            }
+            // A replica that is down must neither block startup nor hold up reads for long.
+            replica.setInitializationFailTimeout(-1);
+            replica.setConnectionTimeout(connectionTimeout);
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primary, replicas, maxWriters, readYourWritesWindow, retryAfter);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(
+                replicaRoutingDataSource.writeDataSource());
+        dataSource.setReadOnlyDataSource(replicaRoutingDataSource);
+        return dataSource;
+    }
+
+    /**
+     * The pools are not beans, so their metrics are bound here; they are
+     * tagged with the pool name.
+     */
+    private HikariDataSource pool(DataSourceProperties properties, Environment environment,
+            MeterRegistry meterRegistry, String name) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        pool.setMetricRegistry(meterRegistry);
+        return pool;
+    }
+
+}
@@ -0,0 +1,133 @@
+package ru.bicev.notes.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import ru.bicev.notes.security.UserPrincipal;
+import ru.bicev.notes.util.AfterCommit;
+import ru.bicev.notes.util.BoundedCache;
+
+/**
+ * Hands out connections for read-only transactions. Replicas are used in
+ * turn; one that fails to give a connection is skipped for
+ * {@code retryAfterMillis}, and when none is available the primary serves the
+ * read. A user whose write committed less than {@code readYourWritesMillis}
+ * ago reads from the primary as well, so replication lag never hides their
+ * own changes.
+ *
+ * Writes are recorded by {@link #writeDataSource()}, which wraps the primary
+ * for read-write transactions.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final BoundedCache<Long, Boolean> recentWriters;
+    private final long readYourWritesMillis;
+    private final long retryAfterMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    public ReplicaRoutingDataSource(DataSource primary, List<? extends DataSource> replicas, int maxWriters,
+            long readYourWritesMillis, long retryAfterMillis) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.recentWriters = new BoundedCache<>(maxWriters);
+        this.readYourWritesMillis = readYourWritesMillis;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Long userId = currentUserId();
+        if (userId != null && recentWriters.get(userId) != null) {
+            return primary.getConnection();
+        }
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(replicas.size(), 1));
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.downUntil > System.currentTimeMillis()) {
+                continue;
+            }
+            try {
+                return replica.dataSource.getConnection();
+            } catch (SQLException e) {
+                replica.downUntil = System.currentTimeMillis() + retryAfterMillis;
+                logger.warn("Replica {} is unavailable, skipping it for {} ms: {}", replica.dataSource,
+                        retryAfterMillis, e.getMessage());
+            }
+        }
+        return primary.getConnection();
+    }
+
+    /**
+     * Explicit credentials belong to the primary's account, so such
+     * connections always go to the primary.
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * The primary, wrapped so that every read-write transaction of an
+     * authenticated user opens that user's read-your-writes window when it
+     * commits.
+     */
+    public DataSource writeDataSource() {
+        return new DelegatingDataSource(primary) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Long userId = currentUserId();
+                if (userId != null) {
+                    AfterCommit.run(() -> recentWriters.put(userId, Boolean.TRUE,
+                            System.currentTimeMillis() + readYourWritesMillis));
+                }
+                return super.getConnection();
+            }
+        };
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+        if (primary instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return principal.id();
+        }
+        return null;
+    }
+
+    private static final class Replica {
+
+        private final DataSource dataSource;
+        private volatile long downUntil;
+
+        private Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+    }
+
+}
@@ -2,8 +2,6 @@ package ru.bicev.notes.config;
 
 import java.util.Collections;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -12,20 +10,23 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import io.swagger.v3.oas.models.Components;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.security.SecurityRequirement;
 import io.swagger.v3.oas.models.security.SecurityScheme;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import ru.bicev.notes.security.JwtFilter;
+import ru.bicev.notes.security.UserPrincipal;
 import ru.bicev.notes.service.JwtService;
-import ru.bicev.notes.entity.User;
-import ru.bicev.notes.exception.UserNotFoundException;
-import ru.bicev.notes.repository.UserRepository;
+import ru.bicev.notes.service.TokenService;
+import ru.bicev.notes.service.UserService;
+import ru.bicev.notes.dto.UserDto;
+import ru.bicev.notes.exception.AccessDeniedException;
 
 @Configuration
 @EnableWebSecurity
@@ -33,26 +34,30 @@ import ru.bicev.notes.repository.UserRepository;
 public class SecurityConfig {
 
     private final JwtService jwtService;
-
-    private static Logger logger = LoggerFactory.getLogger(SecurityConfig.class);
+    private final TokenService tokenService;
+    private final MeterRegistry meterRegistry;
 
     @Bean
     public JwtFilter jwtFilter() {
-        return new JwtFilter(jwtService);
+        return new JwtFilter(jwtService, tokenService, meterRegistry);
     }
 
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         return http.csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(auth -> auth
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(
                                 "/api/users/login",
                                 "/api/users/register",
+                                "/api/users/refresh",
+                                "/api/users/logout",
                                 "/v3/api-docs/**",
                                 "/swagger-ui/**",
                                 "/swagger-ui.html",
                                 "/swagger-resources/**",
-                                "/webjars/**")
+                                "/webjars/**",
+                                "/actuator/**")
                         .permitAll()
                         .anyRequest().authenticated())
                 .sessionManagement(sess -> sess.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
@@ -60,22 +65,24 @@ public class SecurityConfig {
                 .build();
     }
 
+    /**
+     * Same check as POST /api/users/login; the login endpoint calls
+     * {@link UserService#authenticate} directly, so a login verifies the
+     * password once.
+     */
     @Bean
-    public AuthenticationManager authenticationManager(UserRepository userRepository, PasswordEncoder passwordEncoder)
-            throws Exception {
+    public AuthenticationManager authenticationManager(UserService userService) {
         return authentication -> {
             var email = authentication.getPrincipal().toString();
             var password = authentication.getCredentials().toString();
-            User user = userRepository.findByEmail(email).orElseThrow(() -> {
-                return new UserNotFoundException("User not found");
-            });
-
-            if (!passwordEncoder.matches(password, user.getPassword())) {
-                logger.warn("Invalid email: {} or password: {}", email, password);
+            UserDto user;
+            try {
+                user = userService.authenticate(email, password);
+            } catch (AccessDeniedException e) {
                 throw new BadCredentialsException("Invalid email or password");
             }
-            logger.info("User authenticated: {}", email);
-            return new UsernamePasswordAuthenticationToken(email, null, Collections.emptyList());
+            return new UsernamePasswordAuthenticationToken(new UserPrincipal(user.getId(), user.getEmail()), null,
+                    Collections.emptyList());
         };
     }
 
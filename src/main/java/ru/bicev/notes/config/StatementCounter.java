@@ -0,0 +1,57 @@
+package ru.bicev.notes.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Records how many JDBC statements each request prepared, per endpoint, as
+ * {@code notes.http.statements}. Hibernate reports every statement to
+ * {@link #inspect(String)} on the thread that runs it, which for a
+ * synchronous request is the request's own thread; requests that continue
+ * asynchronously, like the export, are not recorded.
+ */
+public class StatementCounter implements StatementInspector, HandlerInterceptor {
+
+    private static final ThreadLocal<int[]> statements = ThreadLocal.withInitial(() -> new int[1]);
+
+    private final MeterRegistry meterRegistry;
+
+    public StatementCounter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        statements.get()[0]++;
+        return sql;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        statements.get()[0] = 0;
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            Exception ex) {
+        if (request.getDispatcherType() != DispatcherType.REQUEST) {
+            return;
+        }
+        Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        DistributionSummary.builder("notes.http.statements")
+                .description("JDBC statements prepared per request")
+                .tag("method", request.getMethod())
+                .tag("uri", uri == null ? "UNKNOWN" : uri.toString())
+                .register(meterRegistry)
+                .record(statements.get()[0]);
+    }
+
+}
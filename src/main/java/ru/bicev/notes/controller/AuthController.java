@@ -2,12 +2,12 @@ package ru.bicev.notes.controller;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -20,9 +20,9 @@ import jakarta.validation.Valid;
 import ru.bicev.notes.dto.ErrorResponse;
 import ru.bicev.notes.dto.JwtResponse;
 import ru.bicev.notes.dto.LoginRequest;
+import ru.bicev.notes.dto.RefreshRequest;
 import ru.bicev.notes.dto.UserDto;
-import ru.bicev.notes.exception.AccessDeniedException;
-import ru.bicev.notes.service.JwtService;
+import ru.bicev.notes.service.TokenService;
 import ru.bicev.notes.service.UserService;
 
 @RestController
@@ -30,14 +30,12 @@ import ru.bicev.notes.service.UserService;
 public class AuthController {
 
     private final UserService userService;
-    private final AuthenticationManager authManager;
-    private final JwtService jwtService;
+    private final TokenService tokenService;
     private static final Logger logger = LoggerFactory.getLogger(AuthController.class);
 
-    public AuthController(UserService userService, AuthenticationManager authManager, JwtService jwtService) {
+    public AuthController(UserService userService, TokenService tokenService) {
         this.userService = userService;
-        this.authManager = authManager;
-        this.jwtService = jwtService;
+        this.tokenService = tokenService;
     }
 
     @Operation(summary = "User's registration")
@@ -45,6 +43,9 @@ public class AuthController {
             @ApiResponse(responseCode = "201", description = "Success registration"),
             @ApiResponse(responseCode = "409", description = "Email already in use",
         content = @Content(mediaType = "application/json",
+            schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Too many passwords being hashed, retry later",
+            content = @Content(mediaType = "application/json",
             schema = @Schema(implementation = ErrorResponse.class)))
     })
     @PostMapping("/register")
@@ -55,27 +56,50 @@ public class AuthController {
         return new ResponseEntity<>(userDto, HttpStatus.CREATED);
     }
 
-    @Operation(summary = "User's authorization", description = "Returns Json web token if authorization was success")
+    @Operation(summary = "User's authorization", description = "Returns a short-lived access token and a refresh token if authorization was success")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Success login"),
             @ApiResponse(responseCode = "403", description = "Invalid credentials",
             content = @Content(mediaType = "application/json",
+            schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Too many passwords being hashed, retry later",
+            content = @Content(mediaType = "application/json",
             schema = @Schema(implementation = ErrorResponse.class)))
     })
     @PostMapping("/login")
     public ResponseEntity<JwtResponse> login(
             @Valid @RequestBody LoginRequest loginRequest) {
-        if (!userService.checkCredentials(loginRequest.getEmail(), loginRequest.getPassword())) {
-            throw new AccessDeniedException("Invalid password");
-        }
-
-        authManager.authenticate(
-                new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword()));
-
-        String token = jwtService.generateToken(loginRequest.getEmail());
-        JwtResponse jwt = new JwtResponse(token);
+        UserDto user = userService.authenticate(loginRequest.getEmail(), loginRequest.getPassword());
+        JwtResponse jwt = tokenService.issue(user.getId(), user.getEmail());
         logger.info("User with email: {} logged in", loginRequest.getEmail());
         return ResponseEntity.ok(jwt);
     }
 
+    @Operation(summary = "Token refresh", description = "Exchanges a refresh token for a new access token and refresh token. Each refresh token can be used once")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "New tokens issued"),
+            @ApiResponse(responseCode = "401", description = "Refresh token is invalid, expired or already used",
+            content = @Content(mediaType = "application/json",
+            schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @PostMapping("/refresh")
+    public ResponseEntity<JwtResponse> refresh(@Valid @RequestBody RefreshRequest refreshRequest) {
+        return ResponseEntity.ok(tokenService.refresh(refreshRequest.getRefreshToken()));
+    }
+
+    @Operation(summary = "Logout", description = "Revokes the refresh token and the access token from the Authorization header, if there is one")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Tokens revoked"),
+            @ApiResponse(responseCode = "401", description = "Refresh token is invalid or expired",
+            content = @Content(mediaType = "application/json",
+            schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@Valid @RequestBody RefreshRequest refreshRequest,
+            @RequestHeader(name = HttpHeaders.AUTHORIZATION, required = false) String authHeader) {
+        String accessToken = authHeader != null && authHeader.startsWith("Bearer ") ? authHeader.substring(7) : null;
+        tokenService.logout(refreshRequest.getRefreshToken(), accessToken);
+        return ResponseEntity.noContent().build();
+    }
+
 }
@@ -2,6 +2,8 @@ package ru.bicev.notes.controller;
 
 import java.time.LocalDateTime;
 
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -9,8 +11,15 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 
 import ru.bicev.notes.dto.ErrorResponse;
 import ru.bicev.notes.exception.AccessDeniedException;
+import ru.bicev.notes.exception.BatchSizeExceededException;
 import ru.bicev.notes.exception.DuplicateUserException;
+import ru.bicev.notes.exception.InvalidBulkRequestException;
+import ru.bicev.notes.exception.InvalidPageTokenException;
+import ru.bicev.notes.exception.InvalidTokenException;
+import ru.bicev.notes.exception.InvalidPatchException;
+import ru.bicev.notes.exception.NoteModifiedException;
 import ru.bicev.notes.exception.NoteNotFoundException;
+import ru.bicev.notes.exception.PasswordHashingBusyException;
 import ru.bicev.notes.exception.UserNotFoundException;
 
 @ControllerAdvice
@@ -36,6 +45,50 @@ public class GlobalExceptionHandler {
         return buildErrorResponse(ex.getMessage(), HttpStatus.CONFLICT);
     }
 
+    @ExceptionHandler(InvalidTokenException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidTokenException(InvalidTokenException ex) {
+        return buildErrorResponse(ex.getMessage(), HttpStatus.UNAUTHORIZED);
+    }
+
+    @ExceptionHandler(InvalidPageTokenException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidPageTokenException(InvalidPageTokenException ex) {
+        return buildErrorResponse(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(BatchSizeExceededException.class)
+    public ResponseEntity<ErrorResponse> handleBatchSizeExceededException(BatchSizeExceededException ex) {
+        return buildErrorResponse(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(InvalidBulkRequestException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidBulkRequestException(InvalidBulkRequestException ex) {
+        return buildErrorResponse(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(InvalidPatchException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidPatchException(InvalidPatchException ex) {
+        return buildErrorResponse(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(NoteModifiedException.class)
+    public ResponseEntity<ErrorResponse> handleNoteModifiedException(NoteModifiedException ex) {
+        return buildErrorResponse(ex.getMessage(), HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponse> handleOptimisticLockingFailureException(
+            OptimisticLockingFailureException ex) {
+        return buildErrorResponse("Note was modified concurrently", HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<ErrorResponse> handlePasswordHashingBusyException(PasswordHashingBusyException ex) {
+        ResponseEntity<ErrorResponse> response = buildErrorResponse(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+        return ResponseEntity.status(response.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(response.getBody());
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleGenericException(Exception ex) {
         return buildErrorResponse(ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
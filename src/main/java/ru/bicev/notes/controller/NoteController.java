@@ -4,11 +4,14 @@ import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -16,6 +19,10 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -25,19 +32,42 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import jakarta.validation.Valid;
+import ru.bicev.notes.dto.BulkTagRequest;
+import ru.bicev.notes.dto.BulkTagResponse;
 import ru.bicev.notes.dto.ErrorResponse;
 import ru.bicev.notes.dto.NoteDto;
+import ru.bicev.notes.dto.NotePage;
+import ru.bicev.notes.dto.NotePatch;
+import ru.bicev.notes.dto.NoteSearchPage;
+import ru.bicev.notes.dto.TagCountDto;
+import ru.bicev.notes.security.UserPrincipal;
 import ru.bicev.notes.service.NoteService;
+import ru.bicev.notes.util.ETags;
+import ru.bicev.notes.util.NdjsonNoteWriter;
 
 @RestController
 @RequestMapping("/api/notes")
 public class NoteController {
 
+    private static final String DEFAULT_PAGE_SIZE = "50";
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String MERGE_PATCH = "application/merge-patch+json";
+
+    private static final int EXPORT_FLUSH_EVERY = 100;
+
+    /**
+     * Clients may keep responses that carry an ETag but must revalidate them
+     * with If-None-Match before each use.
+     */
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     private final NoteService noteService;
+    private final ObjectMapper objectMapper;
     private static final Logger logger = LoggerFactory.getLogger(NoteController.class);
 
-    public NoteController(NoteService noteService) {
+    public NoteController(NoteService noteService, ObjectMapper objectMapper) {
         this.noteService = noteService;
+        this.objectMapper = objectMapper;
     }
 
     @Operation(summary = "New note creation")
@@ -48,35 +78,74 @@ public class NoteController {
     @SecurityRequirement(name = "bearerAuth")
     @PostMapping
     public ResponseEntity<NoteDto> createNote(@RequestBody NoteDto noteDto) {
-        NoteDto createdNote = noteService.createNote(noteDto, getEmailFromPrincipal());
+        NoteDto createdNote = noteService.createNote(noteDto, getUserIdFromPrincipal());
         return new ResponseEntity<>(createdNote, HttpStatus.CREATED);
     }
 
-    @Operation(summary = "Retrieving note by its id and current user")
+    @Operation(summary = "Batch note creation", description = "Creates up to 5000 notes in a single transaction")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Success creation"),
+            @ApiResponse(responseCode = "400", description = "Too many notes in a batch", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "404", description = "User not found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    @PostMapping("/batch")
+    public ResponseEntity<List<NoteDto>> createNotes(@RequestBody List<NoteDto> noteDtos) {
+        List<NoteDto> createdNotes = noteService.createNotes(noteDtos, getUserIdFromPrincipal());
+        return new ResponseEntity<>(createdNotes, HttpStatus.CREATED);
+    }
+
+    @Operation(summary = "Retrieving note by its id and current user", description = "Returns an ETag; with If-None-Match set to it, an unchanged note is answered with 304")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Note found"),
+            @ApiResponse(responseCode = "304", description = "Note not modified"),
             @ApiResponse(responseCode = "404", description = "Note not found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
     })
     @SecurityRequirement(name = "bearerAuth")
     @GetMapping("/{noteId}")
     public ResponseEntity<NoteDto> findByIdAndUser(
-            @Parameter(name = "id", description = "Note id", required = true) @PathVariable Long noteId) {
-        NoteDto foundNote = noteService.findByIdAndUser(noteId, getEmailFromPrincipal());
-        return ResponseEntity.ok(foundNote);
+            @Parameter(name = "id", description = "Note id", required = true) @PathVariable Long noteId,
+            WebRequest request) {
+        return noteService.findByIdAndUser(noteId, getUserIdFromPrincipal(),
+                version -> request.checkNotModified(ETags.note(noteId, version)))
+                .map(foundNote -> ResponseEntity.ok().cacheControl(REVALIDATE).body(foundNote))
+                // Empty when checkNotModified has already answered 304.
+                .orElse(null);
     }
 
-    @Operation(summary = "Note editing")
+    @Operation(summary = "Note editing", description = "With If-Match set to the note's ETag, the note is only changed if nobody changed it since")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Success editing"),
-            @ApiResponse(responseCode = "404", description = "Note not found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+            @ApiResponse(responseCode = "404", description = "Note not found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "409", description = "Note was modified concurrently", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "412", description = "Note does not match If-Match", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
     })
     @SecurityRequirement(name = "bearerAuth")
     @PutMapping("/{noteId}")
     public ResponseEntity<NoteDto> updateNote(
             @Parameter(name = "id", description = "Note id", required = true) @PathVariable Long noteId,
-            @Valid @RequestBody NoteDto noteDto) {
-        NoteDto editedNote = noteService.editNote(noteId, noteDto, getEmailFromPrincipal());
-        return ResponseEntity.ok(editedNote);
+            @Valid @RequestBody NoteDto noteDto, WebRequest request) {
+        NoteDto editedNote = noteService.editNote(noteId, noteDto, getUserIdFromPrincipal(),
+                version -> request.checkNotModified(ETags.note(noteId, version)));
+        return ResponseEntity.ok().eTag(ETags.note(noteId, editedNote.getVersion())).body(editedNote);
+    }
+
+    @Operation(summary = "Partial note editing", description = "JSON Merge Patch: only text and tags present in the body are changed, \"tags\": null removes all tags. If-Match works as for editing")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Success editing"),
+            @ApiResponse(responseCode = "400", description = "Blank text", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "404", description = "Note not found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "409", description = "Note was modified concurrently", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "412", description = "Note does not match If-Match", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    @PatchMapping(value = "/{noteId}", consumes = { MERGE_PATCH, MediaType.APPLICATION_JSON_VALUE })
+    public ResponseEntity<NoteDto> patchNote(
+            @Parameter(name = "id", description = "Note id", required = true) @PathVariable Long noteId,
+            @RequestBody NotePatch patch, WebRequest request) {
+        NoteDto patchedNote = noteService.patchNote(noteId, patch, getUserIdFromPrincipal(),
+                version -> request.checkNotModified(ETags.note(noteId, version)));
+        return ResponseEntity.ok().eTag(ETags.note(noteId, patchedNote.getVersion())).body(patchedNote);
     }
 
     @Operation(summary = "Deleting note by its id")
@@ -88,7 +157,7 @@ public class NoteController {
     @DeleteMapping("{noteId}")
     public ResponseEntity<Void> deleteNote(
             @Parameter(name = "id", description = "Note id", required = true) @PathVariable Long noteId) {
-        noteService.deleteNote(noteId, getEmailFromPrincipal());
+        noteService.deleteNote(noteId, getUserIdFromPrincipal());
         return ResponseEntity.noContent().build();
 
     }
@@ -103,7 +172,7 @@ public class NoteController {
     public ResponseEntity<NoteDto> addTags(
             @Parameter(name = "id", description = "Note id", required = true) @PathVariable Long noteId,
             @RequestBody String... tags) {
-        NoteDto updatedNote = noteService.addTags(noteId, getEmailFromPrincipal(), tags);
+        NoteDto updatedNote = noteService.addTags(noteId, getUserIdFromPrincipal(), tags);
         return ResponseEntity.ok(updatedNote);
     }
 
@@ -117,58 +186,162 @@ public class NoteController {
     public ResponseEntity<NoteDto> deleteTags(
             @Parameter(name = "id", description = "Note id", required = true) @PathVariable Long noteId,
             @RequestBody String... tags) {
-        NoteDto updatedNote = noteService.removeTags(noteId, getEmailFromPrincipal(), tags);
+        NoteDto updatedNote = noteService.removeTags(noteId, getUserIdFromPrincipal(), tags);
         return ResponseEntity.ok(updatedNote);
     }
 
+    @Operation(summary = "Adding tags to many notes", description = "Targets either a list of note ids or every note that has all filter tags")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Success adding"),
+            @ApiResponse(responseCode = "400", description = "Invalid target", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    @PostMapping("/tags/bulk")
+    public ResponseEntity<BulkTagResponse> addTagsBulk(@RequestBody BulkTagRequest request) {
+        BulkTagResponse response = noteService.addTagsBulk(request, getUserIdFromPrincipal());
+        return ResponseEntity.ok(response);
+    }
+
+    @Operation(summary = "Deleting tags from many notes", description = "Targets either a list of note ids or every note that has all filter tags")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Success deleting"),
+            @ApiResponse(responseCode = "400", description = "Invalid target", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    @DeleteMapping("/tags/bulk")
+    public ResponseEntity<BulkTagResponse> deleteTagsBulk(@RequestBody BulkTagRequest request) {
+        BulkTagResponse response = noteService.removeTagsBulk(request, getUserIdFromPrincipal());
+        return ResponseEntity.ok(response);
+    }
+
     @Operation(summary = "Find a note by list of tags")
-    @ApiResponse(responseCode = "200")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200"),
+            @ApiResponse(responseCode = "400", description = "Invalid page token", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
     @SecurityRequirement(name = "bearerAuth")
     @GetMapping("/tags")
-    public ResponseEntity<List<NoteDto>> findByAllTags(
-            @Parameter(name = "tags", description = "List of tags", required = true) @RequestParam List<String> tags) {
-        List<NoteDto> foundNotes = noteService.findByAllTags(tags, getEmailFromPrincipal());
+    public ResponseEntity<NotePage> findByAllTags(
+            @Parameter(name = "tags", description = "List of tags", required = true) @RequestParam List<String> tags,
+            @Parameter(name = "exclude", description = "Tags the notes must not have") @RequestParam(required = false) List<String> exclude,
+            @Parameter(name = "pageToken", description = "Next page token from the previous response") @RequestParam(required = false) String pageToken,
+            @Parameter(name = "size", description = "Page size, up to 500") @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        NotePage foundNotes = noteService.findByAllTags(tags, exclude, getUserIdFromPrincipal(), pageToken, size);
+        return ResponseEntity.ok(foundNotes);
+    }
+
+    @Operation(summary = "Find notes having any of the tags")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200"),
+            @ApiResponse(responseCode = "400", description = "Invalid page token", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    @GetMapping("/tags/any")
+    public ResponseEntity<NotePage> findByAnyTags(
+            @Parameter(name = "tags", description = "List of tags", required = true) @RequestParam List<String> tags,
+            @Parameter(name = "exclude", description = "Tags the notes must not have") @RequestParam(required = false) List<String> exclude,
+            @Parameter(name = "pageToken", description = "Next page token from the previous response") @RequestParam(required = false) String pageToken,
+            @Parameter(name = "size", description = "Page size, up to 500") @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        NotePage foundNotes = noteService.findByAnyTags(tags, exclude, getUserIdFromPrincipal(), pageToken, size);
+        return ResponseEntity.ok(foundNotes);
+    }
+
+    @Operation(summary = "Full-text search over note text", description = "Notes of current user ranked by relevance. All words are required; supports \"phrases\", prefix*, -excluded words and | for alternatives")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200"),
+            @ApiResponse(responseCode = "400", description = "Invalid page token", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    @GetMapping("/search")
+    public ResponseEntity<NoteSearchPage> searchNotes(
+            @Parameter(name = "q", description = "Search query", required = true) @RequestParam String q,
+            @Parameter(name = "pageToken", description = "Next page token from the previous response") @RequestParam(required = false) String pageToken,
+            @Parameter(name = "size", description = "Page size, up to 500") @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        NoteSearchPage foundNotes = noteService.searchNotes(q, getUserIdFromPrincipal(), pageToken, size);
         return ResponseEntity.ok(foundNotes);
     }
 
     @Operation(summary = "Find notes by tag part")
-    @ApiResponse(responseCode = "200")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200"),
+            @ApiResponse(responseCode = "400", description = "Invalid page token", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
     @SecurityRequirement(name = "bearerAuth")
     @GetMapping("/tagpart")
-    public ResponseEntity<List<NoteDto>> findByTagPart(
-            @Parameter(name = "tagpart", description = "Tag part", required = true) @RequestParam String tagpart) {
-        List<NoteDto> foundNotes = noteService.findByTagPart(tagpart, getEmailFromPrincipal());
+    public ResponseEntity<NotePage> findByTagPart(
+            @Parameter(name = "tagpart", description = "Tag part", required = true) @RequestParam String tagpart,
+            @Parameter(name = "pageToken", description = "Next page token from the previous response") @RequestParam(required = false) String pageToken,
+            @Parameter(name = "size", description = "Page size, up to 500") @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        NotePage foundNotes = noteService.findByTagPart(tagpart, getUserIdFromPrincipal(), pageToken, size);
         return ResponseEntity.ok(foundNotes);
     }
 
-    @Operation(summary = "Find all notes for a user")
+    @Operation(summary = "Find all notes for a user", description = "Returns an ETag that changes with any of the user's notes; with If-None-Match set to it, an unchanged listing is answered with 304")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200"),
+            @ApiResponse(responseCode = "304", description = "Notes not modified"),
+            @ApiResponse(responseCode = "400", description = "Invalid page token", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "404", description = "User not found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
     })
     @SecurityRequirement(name = "bearerAuth")
     @GetMapping("/user")
-    public ResponseEntity<List<NoteDto>> findByUser() {
-        List<NoteDto> foundNotes = noteService.findByUser(getEmailFromPrincipal());
-        return ResponseEntity.ok(foundNotes);
+    public ResponseEntity<NotePage> findByUser(
+            @Parameter(name = "pageToken", description = "Next page token from the previous response") @RequestParam(required = false) String pageToken,
+            @Parameter(name = "size", description = "Page size, up to 500") @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size,
+            WebRequest request) {
+        Long userId = getUserIdFromPrincipal();
+        return noteService.findByUser(userId, pageToken, size,
+                version -> request.checkNotModified(ETags.notesPage(userId, version, pageToken, size)))
+                .map(foundNotes -> ResponseEntity.ok().cacheControl(REVALIDATE).body(foundNotes))
+                .orElse(null);
     }
 
-    @Operation(summary = "Find all tags for current user")
+    @Operation(summary = "Find all tags for current user", description = "Supports If-None-Match like the note listings")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200"),
+            @ApiResponse(responseCode = "304", description = "Tags not modified"),
             @ApiResponse(responseCode = "404", description = "User not found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
     })
     @SecurityRequirement(name = "bearerAuth")
     @GetMapping("/tags/all")
-    public ResponseEntity<List<String>> getAllTags() {
-        List<String> tags = noteService.getAllTags(getEmailFromPrincipal());
-        return ResponseEntity.ok(tags);
+    public ResponseEntity<List<String>> getAllTags(WebRequest request) {
+        Long userId = getUserIdFromPrincipal();
+        return noteService.getAllTags(userId, version -> request.checkNotModified(ETags.tags(userId, version)))
+                .map(tags -> ResponseEntity.ok().cacheControl(REVALIDATE).body(tags))
+                .orElse(null);
+    }
+
+    @Operation(summary = "Tag statistics for current user", description = "Each tag in use with the number of notes that have it, most used first")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200")
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    @GetMapping("/tags/stats")
+    public ResponseEntity<List<TagCountDto>> getTagStats() {
+        List<TagCountDto> stats = noteService.getTagStats(getUserIdFromPrincipal());
+        return ResponseEntity.ok(stats);
+    }
+
+    @Operation(summary = "Export all notes of current user", description = "Streams notes as newline-delimited JSON, one note per line")
+    @ApiResponse(responseCode = "200")
+    @SecurityRequirement(name = "bearerAuth")
+    @GetMapping(value = "/export", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportNotes() {
+        Long userId = getUserIdFromPrincipal();
+        StreamingResponseBody body = outputStream -> {
+            try (NdjsonNoteWriter writer = new NdjsonNoteWriter(outputStream, objectMapper, EXPORT_FLUSH_EVERY)) {
+                noteService.exportNotes(userId, writer);
+                logger.debug("Exported {} notes for user={}", writer.getWritten(), userId);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
     }
 
-    private String getEmailFromPrincipal() {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        logger.debug("Getting email from principal: {}", email);
-        return email;
+    private Long getUserIdFromPrincipal() {
+        UserPrincipal principal = (UserPrincipal) SecurityContextHolder.getContext().getAuthentication()
+                .getPrincipal();
+        logger.debug("Getting user id from principal: {}", principal.id());
+        return principal.id();
     }
 
 }
@@ -0,0 +1,27 @@
+package ru.bicev.notes.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Tag change applied to many notes at once. Exactly one target must be set:
+ * either explicit {@code noteIds} or {@code filterTags}, which selects every
+ * note that has all of the given tags.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkTagRequest {
+
+    private List<Long> noteIds;
+
+    private List<String> filterTags;
+
+    private List<String> tags;
+
+}
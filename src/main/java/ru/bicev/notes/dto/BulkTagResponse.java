@@ -0,0 +1,19 @@
+package ru.bicev.notes.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkTagResponse {
+
+    /**
+     * Number of note-tag pairs that were added or removed.
+     */
+    private int changedTags;
+
+}
@@ -11,6 +11,14 @@ import lombok.Setter;
 @AllArgsConstructor
 public class JwtResponse {
 
+    /**
+     * Access token for the Authorization header.
+     */
     private String token;
 
+    /**
+     * Exchanged at /api/users/refresh for a new pair of tokens, once.
+     */
+    private String refreshToken;
+
 }
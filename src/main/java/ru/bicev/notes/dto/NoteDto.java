@@ -3,6 +3,8 @@ package ru.bicev.notes.dto;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import jakarta.validation.constraints.NotBlank;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -24,8 +26,19 @@ public class NoteDto {
 
     private List<String> tags;
 
+    /**
+     * Version the note was read or written at. Clients see it as the ETag
+     * header, not in the body.
+     */
+    @JsonIgnore
+    private Long version;
+
+    public NoteDto(Long id, String userEmail, String text, List<String> tags) {
+        this(id, userEmail, text, tags, null);
+    }
+
     public void setTags(List<String> tags) {
-        this.tags = tags.stream().map(String::toUpperCase).collect(Collectors.toList());
+        this.tags = tags == null ? null : tags.stream().map(String::toUpperCase).collect(Collectors.toList());
     }
 
 }
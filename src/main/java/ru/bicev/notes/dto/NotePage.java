@@ -0,0 +1,23 @@
+package ru.bicev.notes.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotePage {
+
+    private List<NoteDto> notes;
+
+    /**
+     * Opaque cursor for the next page, {@code null} on the last page.
+     */
+    private String nextPageToken;
+
+}
@@ -0,0 +1,40 @@
+package ru.bicev.notes.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * JSON Merge Patch (RFC 7396) of a note. Only the members present in the
+ * document are applied: an absent member leaves the field as it is, and
+ * {@code "tags": null} removes all tags. Presence is recorded by the setters,
+ * which Jackson calls only for members it reads.
+ */
+@Getter
+@NoArgsConstructor
+public class NotePatch {
+
+    private String text;
+
+    private List<String> tags;
+
+    @JsonIgnore
+    private boolean textSet;
+
+    @JsonIgnore
+    private boolean tagsSet;
+
+    public void setText(String text) {
+        this.text = text;
+        this.textSet = true;
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+        this.tagsSet = true;
+    }
+
+}
@@ -0,0 +1,24 @@
+package ru.bicev.notes.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class NoteSearchHit {
+
+    private NoteDto note;
+
+    /**
+     * Best matching fragment of the note text, matched terms wrapped in
+     * {@code <b>}; the rest of the text is HTML-escaped.
+     */
+    private String snippet;
+
+    private float score;
+
+}
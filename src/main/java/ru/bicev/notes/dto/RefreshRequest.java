@@ -0,0 +1,18 @@
+package ru.bicev.notes.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefreshRequest {
+
+    @NotBlank
+    private String refreshToken;
+
+}
@@ -0,0 +1,18 @@
+package ru.bicev.notes.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TagCountDto {
+
+    private String name;
+
+    private int noteCount;
+
+}
@@ -1,32 +1,45 @@
 package ru.bicev.notes.entity;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+
+import org.hibernate.annotations.DynamicUpdate;
 
-import jakarta.persistence.CollectionTable;
-import jakarta.persistence.Column;
-import jakarta.persistence.ElementCollection;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
+import jakarta.persistence.JoinTable;
+import jakarta.persistence.ManyToMany;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+/**
+ * Updates list only the changed columns, so a tag change or a patch of the
+ * text does not rewrite the rest of the row.
+ */
 @Entity
-@Table(name = "notes")
+@DynamicUpdate
+@Table(name = "notes", indexes = @Index(name = "idx_notes_users_id_id", columnList = "users_id, id"))
 @Getter
 @Setter
 @NoArgsConstructor
 public class Note {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notes_seq")
+    @SequenceGenerator(name = "notes_seq", sequenceName = "notes_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -35,24 +48,55 @@ public class Note {
 
     private String text;
 
-    @ElementCollection
-    @CollectionTable(name = "notes_tags", joinColumns = @JoinColumn(name = "note_id"))
-    @Column(name = "tag")
-    private List<String> tags = new ArrayList<>();
+    /**
+     * Incremented on every change to the text or the tag set; it is the
+     * note's ETag and makes concurrent edits fail instead of overwriting.
+     */
+    @Version
+    private Long version;
+
+    /**
+     * Changed only in place through the methods below: Hibernate writes a
+     * modified set as the rows added and removed, but a replaced one as a
+     * delete of every row followed by a full reinsert.
+     */
+    @ManyToMany
+    @Setter(AccessLevel.NONE)
+    @JoinTable(name = "note_tags",
+            joinColumns = @JoinColumn(name = "note_id"),
+            inverseJoinColumns = @JoinColumn(name = "tag_id"),
+            indexes = @Index(name = "idx_note_tags_tag_id", columnList = "tag_id, note_id"))
+    private Set<Tag> tags = new LinkedHashSet<>();
 
     public Note(User user, String text) {
         this.user = user;
         this.text = text;
     }
 
-    public void addTags(String... tags) {
-        Collections.addAll(this.tags, tags);
+    /**
+     * Adds the tags and returns those the note did not have yet.
+     */
+    public List<Tag> addTags(Collection<Tag> tags) {
+        return tags.stream().filter(this.tags::add).toList();
+    }
+
+    /**
+     * Makes the tag set equal to {@code tags}, keeping the entries that are
+     * already present so only the difference is written.
+     */
+    public void replaceTags(Collection<Tag> tags) {
+        this.tags.retainAll(tags);
+        this.tags.addAll(tags);
     }
 
-    public void removeTags(String... tags) {
-        for (String tag : tags) {
-            this.tags.remove(tag);
-        }
+    /**
+     * Removes the tags with the given names and returns the removed ones.
+     */
+    public List<Tag> removeTags(String... names) {
+        List<String> removedNames = Arrays.asList(names);
+        List<Tag> removed = this.tags.stream().filter(tag -> removedNames.contains(tag.getName())).toList();
+        removed.forEach(this.tags::remove);
+        return removed;
     }
 
     public void removeAllTags() {
@@ -61,7 +105,11 @@ public class Note {
 
     public boolean containsTag(String tag) {
         return this.tags.stream()
-                .anyMatch(existingTag -> existingTag.equalsIgnoreCase(tag));
+                .anyMatch(existingTag -> existingTag.getName().equalsIgnoreCase(tag));
+    }
+
+    public List<String> getTagNames() {
+        return this.tags.stream().map(Tag::getName).toList();
     }
 
 }
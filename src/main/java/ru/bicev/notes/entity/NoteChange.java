@@ -0,0 +1,43 @@
+package ru.bicev.notes.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Outbox row written in the same transaction as a change to what the search
+ * index holds of a note: its creation, its text or its deletion. Rows are
+ * only inserted through {@code NoteChangeRepository}. The id is an identity
+ * rather than a pooled sequence, so ids grow in insertion order across
+ * instances and can serve as the sync watermark.
+ */
+@Entity
+@Table(name = "note_changes", indexes = @Index(name = "idx_note_changes_changed_at", columnList = "changed_at"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class NoteChange {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "note_id", nullable = false)
+    private Long noteId;
+
+    /**
+     * Epoch milliseconds of the writer's clock.
+     */
+    @Column(name = "changed_at", nullable = false)
+    private long changedAt;
+
+}
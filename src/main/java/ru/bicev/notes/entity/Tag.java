@@ -0,0 +1,80 @@
+package ru.bicev.notes.entity;
+
+import java.util.Objects;
+
+import org.hibernate.annotations.SQLInsert;
+import org.hibernate.jdbc.Expectation;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Entry of a user's tag dictionary. Each distinct upper-cased tag name is
+ * stored once per user; notes reference it by id through {@code note_tags}.
+ *
+ * The insert skips names another transaction has created meanwhile instead of
+ * failing on the unique constraint, so a flushed entry may not exist; callers
+ * re-read the names after flushing. Parameters follow Hibernate's column
+ * order: attributes by name, then the id.
+ */
+@Entity
+@Table(name = "tags", uniqueConstraints = @UniqueConstraint(name = "uk_tags_users_id_name", columnNames = {
+        "users_id", "name" }))
+@Getter
+@Setter
+@NoArgsConstructor
+@SQLInsert(sql = "INSERT INTO tags (name, note_count, users_id, id) VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING",
+        verify = Expectation.None.class)
+public class Tag {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tags_seq")
+    @SequenceGenerator(name = "tags_seq", sequenceName = "tags_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "users_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private String name;
+
+    /**
+     * Number of the user's notes that carry this tag. Maintained with
+     * relative updates in the same transaction as the note writes, so the
+     * value on a loaded entity may be behind the database.
+     */
+    @Column(name = "note_count", nullable = false)
+    private int noteCount;
+
+    public Tag(Long userId, String name) {
+        this.userId = userId;
+        this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Tag)) {
+            return false;
+        }
+        Tag other = (Tag) o;
+        return Objects.equals(userId, other.userId) && Objects.equals(name, other.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(userId, name);
+    }
+
+}
@@ -34,6 +34,14 @@ public class User {
     @Column(nullable = false)
     private String password;
 
+    /**
+     * Incremented by every change to the user's notes or tags, so note
+     * listings can be revalidated without reading them. Written only by
+     * {@code UserRepository.incrementNotesVersion}.
+     */
+    @Column(name = "notes_version", nullable = false, updatable = false)
+    private long notesVersion;
+
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Note> notes;
 
@@ -0,0 +1,9 @@
+package ru.bicev.notes.exception;
+
+public class BatchSizeExceededException extends RuntimeException {
+
+    public BatchSizeExceededException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,9 @@
+package ru.bicev.notes.exception;
+
+public class InvalidBulkRequestException extends RuntimeException {
+
+    public InvalidBulkRequestException(String message) {
+        super(message);
+    }
+
+}
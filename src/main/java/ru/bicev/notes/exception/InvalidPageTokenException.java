@@ -0,0 +1,9 @@
+package ru.bicev.notes.exception;
+
+public class InvalidPageTokenException extends RuntimeException {
+
+    public InvalidPageTokenException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,9 @@
+package ru.bicev.notes.exception;
+
+public class InvalidPatchException extends RuntimeException {
+
+    public InvalidPatchException(String message) {
+        super(message);
+    }
+
+}
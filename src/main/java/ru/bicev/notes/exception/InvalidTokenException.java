@@ -0,0 +1,9 @@
+package ru.bicev.notes.exception;
+
+public class InvalidTokenException extends RuntimeException {
+
+    public InvalidTokenException(String message) {
+        super(message);
+    }
+
+}
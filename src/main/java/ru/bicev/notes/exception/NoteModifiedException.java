@@ -0,0 +1,9 @@
+package ru.bicev.notes.exception;
+
+public class NoteModifiedException extends RuntimeException {
+
+    public NoteModifiedException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,9 @@
+package ru.bicev.notes.exception;
+
+public class PasswordHashingBusyException extends RuntimeException {
+
+    public PasswordHashingBusyException(String message) {
+        super(message);
+    }
+
+}
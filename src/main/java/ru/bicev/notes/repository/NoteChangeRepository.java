@@ -0,0 +1,42 @@
+package ru.bicev.notes.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import ru.bicev.notes.entity.NoteChange;
+
+public interface NoteChangeRepository extends JpaRepository<NoteChange, Long> {
+
+    @Modifying
+    @Query(value = "INSERT INTO note_changes (note_id, changed_at) VALUES (:noteId, :changedAt)", nativeQuery = true)
+    int record(@Param("noteId") Long noteId, @Param("changedAt") long changedAt);
+
+    /**
+     * Records a change for each of the notes with one statement; the notes
+     * must already be flushed.
+     */
+    @Modifying
+    @Query(value = """
+                INSERT INTO note_changes (note_id, changed_at)
+                SELECT n.id, :changedAt FROM notes n WHERE n.id IN (:noteIds)
+            """, nativeQuery = true)
+    int recordAll(@Param("noteIds") Collection<Long> noteIds, @Param("changedAt") long changedAt);
+
+    @Query("SELECT c FROM NoteChange c WHERE c.id > :after ORDER BY c.id")
+    List<NoteChange> findAfter(@Param("after") long after, Limit limit);
+
+    @Query("SELECT MAX(c.id) FROM NoteChange c WHERE c.changedAt <= :before")
+    Optional<Long> findLastIdBefore(@Param("before") long before);
+
+    @Modifying
+    @Query("DELETE FROM NoteChange c WHERE c.changedAt < :before")
+    int deleteBefore(@Param("before") long before);
+
+}
@@ -1,34 +1,96 @@
 package ru.bicev.notes.repository;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import ru.bicev.notes.entity.Note;
-import ru.bicev.notes.entity.User;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface NoteRepository extends JpaRepository<Note, Long> {
+import jakarta.persistence.QueryHint;
 
-    List<Note> findByUser(User user);
+public interface NoteRepository extends JpaRepository<Note, Long>, NoteTagBulkRepository {
 
-    Optional<Note> findByIdAndUser(Long id, User user);
-    
-    @Query("SELECT n FROM Note n JOIN n.tags t WHERE t LIKE %:tagPart% AND n.user = :user")
-    List<Note> findByTagPart(@Param("tagPart") String tagPart, @Param("user") User user);
+    @EntityGraph(attributePaths = { "user", "tags" })
+    Optional<Note> findByIdAndUserId(Long id, Long userId);
 
-    @Query("SELECT DISTINCT n FROM Note n JOIN n.tags t WHERE t IN :tags AND n.user = :user")
-    List<Note> findByAnyTags(@Param("tags") List<String> tags, @Param("user") User user);
+    @Query("SELECT n.version FROM Note n WHERE n.id = :id AND n.user.id = :userId")
+    Optional<Long> findVersion(@Param("id") Long id, @Param("userId") Long userId);
 
+    /**
+     * Page queries fetch the owner but not the tags: a collection fetch would
+     * defeat the row limit. Tags of the page are loaded with
+     * {@link #fetchTags(Collection)}.
+     */
+    @Query("SELECT n FROM Note n JOIN FETCH n.user WHERE n.user.id = :userId AND n.id > :after ORDER BY n.id")
+    List<Note> findPageByUser(@Param("userId") Long userId, @Param("after") long after, Limit limit);
+
+    /**
+     * Matching tags are found in the user's dictionary (trigram-indexed on
+     * PostgreSQL) and resolved to notes through note_tags; EXISTS avoids the
+     * DISTINCT sort over whole note rows.
+     */
     @Query("""
-                SELECT n FROM Note n JOIN n.tags t
-                WHERE t IN :tags AND n.user = :user
-                GROUP BY n
-                HAVING COUNT(DISTINCT t) = :tagCount
+                SELECT n FROM Note n JOIN FETCH n.user
+                WHERE n.user.id = :userId AND n.id > :after
+                AND EXISTS (SELECT 1 FROM n.tags t WHERE t.userId = :userId AND t.name LIKE %:tagPart%)
+                ORDER BY n.id
             """)
-    List<Note> findByAllTags(@Param("tags") List<String> tags, @Param("tagCount") long tagCount,
-            @Param("user") User user);
+    List<Note> findPageByTagPart(@Param("tagPart") String tagPart, @Param("userId") Long userId,
+            @Param("after") long after, Limit limit);
+
+    /**
+     * Bulk tag changes bypass the entities, so they bump the versions of the
+     * notes they changed themselves.
+     */
+    @Modifying
+    @Query(value = "UPDATE notes SET version = version + 1 WHERE id IN (:noteIds)", nativeQuery = true)
+    int incrementVersions(@Param("noteIds") Collection<Long> noteIds);
+
+    @EntityGraph(attributePaths = { "user", "tags" })
+    List<Note> findByIdInOrderById(Collection<Long> ids);
+
+    /**
+     * Initializes the tags of already loaded notes with one query.
+     */
+    @Query("SELECT DISTINCT n FROM Note n LEFT JOIN FETCH n.tags WHERE n IN :notes")
+    List<Note> fetchTags(@Param("notes") Collection<Note> notes);
+
+    /**
+     * Every note of the user paired with each of its tag names; notes without
+     * tags come with a {@code null} name. Used to build the in-memory tag index.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT n.id, t.name FROM Note n LEFT JOIN n.tags t WHERE n.user.id = :userId")
+    Stream<Object[]> streamTagsByUser(@Param("userId") Long userId);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT n.id, n.user.id, n.text, n.version FROM Note n ORDER BY n.id")
+    Stream<Object[]> streamSearchEntries();
+
+    @Query("SELECT n.id, n.user.id, n.text, n.version FROM Note n WHERE n.id IN :ids")
+    List<Object[]> findSearchEntries(@Param("ids") Collection<Long> ids);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT n.id, n.version FROM Note n")
+    Stream<Object[]> streamVersions();
 
 }
@@ -0,0 +1,24 @@
+package ru.bicev.notes.repository;
+
+import java.util.List;
+
+/**
+ * Bulk tag changes that bypass the entities. Each returns the note id of
+ * every {@code note_tags} row it inserted or deleted, so the caller bumps the
+ * versions of exactly the notes that changed.
+ */
+public interface NoteTagBulkRepository {
+
+    List<Long> addTagToNotes(Long tagId, List<Long> noteIds, Long userId);
+
+    /**
+     * Tag ids belong to a single user's dictionary, so matching on them alone
+     * already restricts the change to that user's notes.
+     */
+    List<Long> addTagToTaggedNotes(Long tagId, List<Long> filterTagIds, long filterCount);
+
+    List<Long> removeTagsFromNotes(List<Long> tagIds, List<Long> noteIds);
+
+    List<Long> removeTagsFromTaggedNotes(List<Long> tagIds, List<Long> filterTagIds, long filterCount);
+
+}
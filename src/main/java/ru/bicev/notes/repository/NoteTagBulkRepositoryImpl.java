@@ -0,0 +1,82 @@
+package ru.bicev.notes.repository;
+
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import ru.bicev.notes.util.ReturningSql;
+
+class NoteTagBulkRepositoryImpl implements NoteTagBulkRepository {
+
+    private static final String ADD_TAG_TO_NOTES = """
+                INSERT INTO note_tags (note_id, tag_id)
+                SELECT n.id, :tagId FROM notes n
+                WHERE n.users_id = :userId AND n.id IN (:noteIds)
+                AND NOT EXISTS (SELECT 1 FROM note_tags nt WHERE nt.note_id = n.id AND nt.tag_id = :tagId)
+            """;
+    private static final String ADD_TAG_TO_TAGGED_NOTES = """
+                INSERT INTO note_tags (note_id, tag_id)
+                SELECT m.note_id, :tagId FROM (
+                    SELECT f.note_id FROM note_tags f WHERE f.tag_id IN (:filterTagIds)
+                    GROUP BY f.note_id HAVING COUNT(*) = :filterCount
+                ) m
+                WHERE NOT EXISTS (SELECT 1 FROM note_tags nt WHERE nt.note_id = m.note_id AND nt.tag_id = :tagId)
+            """;
+    private static final String REMOVE_TAGS_FROM_NOTES =
+            "DELETE FROM note_tags WHERE tag_id IN (:tagIds) AND note_id IN (:noteIds)";
+    private static final String REMOVE_TAGS_FROM_TAGGED_NOTES = """
+                DELETE FROM note_tags
+                WHERE tag_id IN (:tagIds)
+                AND note_id IN (SELECT f.note_id FROM note_tags f WHERE f.tag_id IN (:filterTagIds)
+                                GROUP BY f.note_id HAVING COUNT(*) = :filterCount)
+            """;
+
+    private final EntityManager entityManager;
+    private final ReturningSql returning;
+
+    NoteTagBulkRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+        boolean h2 = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect() instanceof H2Dialect;
+        this.returning = h2 ? ReturningSql.H2 : ReturningSql.POSTGRESQL;
+    }
+
+    @Override
+    public List<Long> addTagToNotes(Long tagId, List<Long> noteIds, Long userId) {
+        return noteIds(returning.inserted(ADD_TAG_TO_NOTES, "note_id"),
+                Map.of("tagId", tagId, "noteIds", noteIds, "userId", userId));
+    }
+
+    @Override
+    public List<Long> addTagToTaggedNotes(Long tagId, List<Long> filterTagIds, long filterCount) {
+        return noteIds(returning.inserted(ADD_TAG_TO_TAGGED_NOTES, "note_id"),
+                Map.of("tagId", tagId, "filterTagIds", filterTagIds, "filterCount", filterCount));
+    }
+
+    @Override
+    public List<Long> removeTagsFromNotes(List<Long> tagIds, List<Long> noteIds) {
+        return noteIds(returning.deleted(REMOVE_TAGS_FROM_NOTES, "note_id"),
+                Map.of("tagIds", tagIds, "noteIds", noteIds));
+    }
+
+    @Override
+    public List<Long> removeTagsFromTaggedNotes(List<Long> tagIds, List<Long> filterTagIds, long filterCount) {
+        return noteIds(returning.deleted(REMOVE_TAGS_FROM_TAGGED_NOTES, "note_id"),
+                Map.of("tagIds", tagIds, "filterTagIds", filterTagIds, "filterCount", filterCount));
+    }
+
+    /**
+     * Runs the statement as a query; in the default flush mode pending entity
+     * changes, such as newly resolved tags, are flushed first.
+     */
+    private List<Long> noteIds(String sql, Map<String, Object> parameters) {
+        Query query = entityManager.createNativeQuery(sql);
+        parameters.forEach(query::setParameter);
+        return ((List<?>) query.getResultList()).stream().map(id -> ((Number) id).longValue()).toList();
+    }
+
+}
@@ -0,0 +1,47 @@
+package ru.bicev.notes.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import ru.bicev.notes.entity.RevokedToken;
+
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+    /**
+     * Plain INSERT rather than save(), so revoking the same id twice fails on
+     * the primary key instead of silently merging.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO revoked_tokens (jti, expires_at, refresh) VALUES (:jti, :expiresAt, :refresh)",
+            nativeQuery = true)
+    int insert(@Param("jti") String jti, @Param("expiresAt") long expiresAt, @Param("refresh") boolean refresh);
+
+    /**
+     * Read-write on purpose: readOnly transactions go to replicas, which may
+     * not have a revocation made a moment ago.
+     */
+    @Transactional
+    @Query("SELECT CASE WHEN COUNT(r) > 0 THEN true ELSE false END FROM RevokedToken r WHERE r.jti = :jti")
+    boolean existsOnPrimary(@Param("jti") String jti);
+
+    /**
+     * Read-write for the same reason as {@link #existsOnPrimary}: the filter
+     * built from this list replaces the one that already holds recent
+     * revocations.
+     */
+    @Transactional
+    @Query("SELECT r.jti FROM RevokedToken r WHERE r.expiresAt > :now AND r.refresh = false")
+    List<String> findLiveAccessIds(@Param("now") long now);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RevokedToken r WHERE r.expiresAt <= :now")
+    int deleteExpired(@Param("now") long now);
+
+}
@@ -0,0 +1,39 @@
+package ru.bicev.notes.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import ru.bicev.notes.dto.TagCountDto;
+import ru.bicev.notes.entity.Tag;
+
+public interface TagRepository extends JpaRepository<Tag, Long> {
+
+    List<Tag> findByUserIdAndNameIn(Long userId, Collection<String> names);
+
+    @Query("SELECT t.name FROM Tag t WHERE t.userId = :userId AND t.noteCount > 0 ORDER BY t.name")
+    List<String> findNamesInUse(@Param("userId") Long userId);
+
+    @Query("""
+                SELECT new ru.bicev.notes.dto.TagCountDto(t.name, t.noteCount) FROM Tag t
+                WHERE t.userId = :userId AND t.noteCount > 0
+                ORDER BY t.noteCount DESC, t.name
+            """)
+    List<TagCountDto> findCountsInUse(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("UPDATE Tag t SET t.noteCount = t.noteCount + :delta WHERE t.id IN :ids")
+    int adjustNoteCount(@Param("ids") Collection<Long> ids, @Param("delta") int delta);
+
+    @Modifying
+    @Query(value = """
+                UPDATE tags SET note_count = (SELECT COUNT(*) FROM note_tags nt WHERE nt.tag_id = tags.id)
+                WHERE id IN (:ids)
+            """, nativeQuery = true)
+    int recountNotes(@Param("ids") Collection<Long> ids);
+
+}
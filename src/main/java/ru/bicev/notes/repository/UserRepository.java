@@ -1,6 +1,10 @@
 package ru.bicev.notes.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import ru.bicev.notes.entity.User;
 import java.util.Optional;
@@ -9,4 +13,19 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByEmail(String email);
 
+    @Query("SELECT u.notesVersion FROM User u WHERE u.id = :userId")
+    Optional<Long> findNotesVersion(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("UPDATE User u SET u.notesVersion = u.notesVersion + 1 WHERE u.id = :userId")
+    int incrementNotesVersion(@Param("userId") Long userId);
+
+    /**
+     * Replaces only the hash, leaving notesVersion to concurrent writers.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = :password WHERE u.id = :userId")
+    int updatePassword(@Param("userId") Long userId, @Param("password") String password);
+
 }
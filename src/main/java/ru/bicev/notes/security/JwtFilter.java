@@ -2,6 +2,7 @@ package ru.bicev.notes.security;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,19 +10,36 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import ru.bicev.notes.service.JwtService;
+import ru.bicev.notes.service.TokenService;
 
 public class JwtFilter extends OncePerRequestFilter {
 
+    private static final List<String> PUBLIC_PATHS = List.of(
+            "/api/users/register", "/api/users/login",
+            "/api/users/refresh", "/api/users/logout",
+            "/swagger-ui", "/swagger-ui.html",
+            "/v3/api-docs", "/swagger-resources", "/webjars",
+            "/actuator");
+
     private final JwtService jwtService;
+    private final TokenService tokenService;
+    private final Timer validTimer;
+    private final Timer invalidTimer;
     private static Logger logger = LoggerFactory.getLogger(JwtFilter.class);
 
-    public JwtFilter(JwtService jwtService) {
+    public JwtFilter(JwtService jwtService, TokenService tokenService, MeterRegistry meterRegistry) {
         this.jwtService = jwtService;
+        this.tokenService = tokenService;
+        this.validTimer = validationTimer("valid", meterRegistry);
+        this.invalidTimer = validationTimer("invalid", meterRegistry);
     }
 
     @Override
@@ -37,42 +55,48 @@ public class JwtFilter extends OncePerRequestFilter {
         }
 
         logger.debug("Path : {}", path);
-        List<String> publicPaths = List.of(
-                "/api/users/register", "/api/users/login",
-                "/swagger-ui", "/swagger-ui.html",
-                "/v3/api-docs", "/swagger-resources", "/webjars");
 
-        if (publicPaths.stream().anyMatch(path::startsWith)) {
+        if (isPublicPath(path)) {
             filterChain.doFilter(request, response);
             return;
         }
 
         String authHeader = request.getHeader("Authorization");
-        logger.debug("Authorization header: {}", authHeader);
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String jwt = authHeader.substring(7);
+            long start = System.nanoTime();
             try {
-                String email = jwtService.extractUsername(jwt);
-                logger.debug("JWT received: {}", jwt);
-                if (jwtService.isTokenValid(jwt, email)) {
-
-                    UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(email, null,
-                            List.of());
+                Claims claims = jwtService.validateToken(jwt);
+                if (tokenService.isRevoked(claims.getId())) {
+                    invalidTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    logger.warn("Token is revoked: {}", JwtService.fingerprint(jwt));
+                    response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Invalid or expired token");
+                    return;
+                }
+                validTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                logger.debug("JWT received: {}", JwtService.fingerprint(jwt));
+                String email = claims.getSubject();
+                Long userId = claims.get(JwtService.USER_ID_CLAIM, Long.class);
+                if (userId != null && email != null) {
+
+                    UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(
+                            new UserPrincipal(userId, email), null, List.of());
                     SecurityContextHolder.getContext().setAuthentication(auth);
                     logger.info("User authenticated: {}", email);
 
                 } else {
-                    logger.warn("Token is invalid: {}", jwt);
+                    logger.warn("Token is invalid: {}", JwtService.fingerprint(jwt));
                     response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Invalid or expired token");
                     return;
                 }
             } catch (IllegalArgumentException e) {
-                logger.error("Invalid token format", e);
+                invalidTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                logger.warn("Invalid token format: {}", JwtService.fingerprint(jwt));
                 response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid token format");
                 return;
             }
         } else {
-            logger.warn("Invalid or missing authHeader: {}", authHeader);
+            logger.warn("Invalid or missing Authorization header on path: {}", path);
             response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Authorization header missing or invalid");
             return;
         }
@@ -80,4 +104,22 @@ public class JwtFilter extends OncePerRequestFilter {
 
     }
 
+    /**
+     * Whether the path is served without a token.
+     */
+    public static boolean isPublicPath(String path) {
+        return PUBLIC_PATHS.stream().anyMatch(path::startsWith);
+    }
+
+    /**
+     * Covers cache hits as well as full verifications; the histogram shows
+     * the two as separate modes. Includes the revocation check.
+     */
+    private static Timer validationTimer(String outcome, MeterRegistry meterRegistry) {
+        return Timer.builder("notes.jwt.validation")
+                .description("Validation of bearer tokens")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
 }
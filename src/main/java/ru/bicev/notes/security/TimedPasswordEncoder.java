@@ -0,0 +1,56 @@
+package ru.bicev.notes.security;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Times the hashing and checking of passwords by the wrapped encoder. With
+ * BCrypt these are by far the slowest steps of registration and login, so
+ * their latency bounds login throughput.
+ */
+public class TimedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final Timer encodeTimer;
+    private final Timer matchTimer;
+    private final Timer mismatchTimer;
+
+    public TimedPasswordEncoder(PasswordEncoder delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.encodeTimer = Timer.builder("notes.password.encode")
+                .description("Hashing of new passwords")
+                .register(meterRegistry);
+        this.matchTimer = checkTimer("match", meterRegistry);
+        this.mismatchTimer = checkTimer("mismatch", meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return encodeTimer.record(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        long start = System.nanoTime();
+        boolean matches = delegate.matches(rawPassword, encodedPassword);
+        (matches ? matchTimer : mismatchTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return matches;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private static Timer checkTimer(String outcome, MeterRegistry meterRegistry) {
+        return Timer.builder("notes.password.check")
+                .description("Checks of passwords against stored hashes")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+}
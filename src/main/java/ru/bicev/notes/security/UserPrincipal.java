@@ -0,0 +1,17 @@
+package ru.bicev.notes.security;
+
+import java.security.Principal;
+
+/**
+ * Authenticated user resolved from the JWT by {@link JwtFilter}. Lives in the
+ * security context for the duration of a single request, so controllers and
+ * services get the user id without touching the users table.
+ */
+public record UserPrincipal(Long id, String email) implements Principal {
+
+    @Override
+    public String getName() {
+        return email;
+    }
+
+}
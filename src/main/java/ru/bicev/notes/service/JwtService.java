@@ -1,7 +1,12 @@
 package ru.bicev.notes.service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
+import java.util.UUID;
 
 import javax.crypto.SecretKey;
 
@@ -10,44 +15,106 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import ru.bicev.notes.util.BoundedCache;
 
 @Service
 public class JwtService {
 
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String TOKEN_TYPE_CLAIM = "typ";
+    public static final String REFRESH_TYPE = "refresh";
+
     private final SecretKey secretKey;
+    private final JwtParser parser;
+    private final long jwtExpiration;
+    private final long refreshExpiration;
+    private final BoundedCache<String, Claims> verifiedTokens;
     private static final Logger logger = LoggerFactory.getLogger(JwtService.class);
 
-    @Value("${jwt.expiration}")
-    private long jwtExpiration;
-
-    public JwtService(SecretKey secretKey) {
+    public JwtService(SecretKey secretKey,
+            @Value("${jwt.expiration}") long jwtExpiration,
+            @Value("${jwt.refresh-expiration:2592000000}") long refreshExpiration,
+            @Value("${jwt.cache.max-size:10000}") int cacheSize) {
         this.secretKey = secretKey;
+        this.parser = Jwts.parser().verifyWith(secretKey).build();
+        this.jwtExpiration = jwtExpiration;
+        this.refreshExpiration = refreshExpiration;
+        this.verifiedTokens = cacheSize > 0 ? new BoundedCache<>(cacheSize) : null;
     }
 
-    public String generateToken(String email) {
+    /**
+     * Short-lived access token for the Authorization header. Every token
+     * carries a random id (jti) by which it can be revoked.
+     */
+    public String generateToken(Long userId, String email) {
         Instant now = Instant.now();
         return Jwts.builder()
+                .id(UUID.randomUUID().toString())
                 .subject(email)
+                .claim(USER_ID_CLAIM, userId)
                 .issuedAt(Date.from(now))
                 .expiration(Date.from(now.plusMillis(jwtExpiration)))
                 .signWith(secretKey, Jwts.SIG.HS256)
                 .compact();
     }
 
-    public String extractUsername(String token) {
-        try {
-            return Jwts.parser()
-                    .verifyWith(secretKey)
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload()
-                    .getSubject();
-        } catch (Exception e) {
-            logger.warn("Invalid token: {} Exception: {}", token, e);
-            throw new IllegalArgumentException("Invalid token", e);
+    /**
+     * Long-lived token that is only accepted by {@link #validateRefreshToken}
+     * to obtain a new pair of tokens.
+     */
+    public String generateRefreshToken(Long userId, String email) {
+        Instant now = Instant.now();
+        return Jwts.builder()
+                .id(UUID.randomUUID().toString())
+                .subject(email)
+                .claim(USER_ID_CLAIM, userId)
+                .claim(TOKEN_TYPE_CLAIM, REFRESH_TYPE)
+                .issuedAt(Date.from(now))
+                .expiration(Date.from(now.plusMillis(refreshExpiration)))
+                .signWith(secretKey, Jwts.SIG.HS256)
+                .compact();
+    }
+
+    /**
+     * Verifies the signature and expiry of the token and returns its claims.
+     * Successfully verified tokens are cached by digest until they expire, so
+     * repeated requests with the same token skip parsing and HMAC checks.
+     *
+     * @throws IllegalArgumentException if the token is malformed, forged,
+     *                                  expired or a refresh token
+     */
+    public Claims validateToken(String token) {
+        Claims claims = verifiedTokens == null ? verify(token) : verifyCached(token);
+        if (REFRESH_TYPE.equals(claims.get(TOKEN_TYPE_CLAIM))) {
+            throw new IllegalArgumentException("Refresh token used as access token");
         }
+        return claims;
+    }
+
+    /**
+     * Verifies a refresh token. Not cached: refresh tokens are presented once
+     * each, as every refresh replaces them.
+     *
+     * @throws IllegalArgumentException if the token is malformed, forged,
+     *                                  expired or not a refresh token
+     */
+    public Claims validateRefreshToken(String token) {
+        Claims claims = verify(token);
+        if (!REFRESH_TYPE.equals(claims.get(TOKEN_TYPE_CLAIM))) {
+            throw new IllegalArgumentException("Not a refresh token");
+        }
+        return claims;
+    }
 
+    public String extractUsername(String token) {
+        return validateToken(token).getSubject();
+    }
+
+    public Long extractUserId(String token) {
+        return validateToken(token).get(USER_ID_CLAIM, Long.class);
     }
 
     public boolean isTokenValid(String token, String username) {
@@ -57,16 +124,52 @@ public class JwtService {
 
     public boolean isTokenExpired(String token) {
         try {
-            return Jwts.parser().verifyWith(secretKey).build()
-                    .parseSignedClaims(token)
-                    .getPayload()
-                    .getExpiration()
-                    .before(new Date());
-        } catch (Exception e) {
-            logger.warn("Token expired: {} Exception: {}", token, e);
+            return validateToken(token).getExpiration().before(new Date());
+        } catch (IllegalArgumentException e) {
             return true;
         }
+    }
+
+    /**
+     * Short, stable identifier of a token for logs: the first characters of
+     * its digest, which is enough to correlate requests and reveals nothing
+     * of the token itself.
+     */
+    public static String fingerprint(String token) {
+        return digest(token).substring(0, 8);
+    }
+
+    private Claims verifyCached(String token) {
+        String digest = digest(token);
+        Claims claims = verifiedTokens.get(digest);
+        if (claims == null) {
+            claims = verify(token);
+            verifiedTokens.put(digest, claims, claims.getExpiration().getTime());
+        }
+        return claims;
+    }
 
+    private Claims verify(String token) {
+        try {
+            Claims claims = parser.parseSignedClaims(token).getPayload();
+            if (claims.getExpiration() == null) {
+                throw new IllegalArgumentException("Token has no expiration");
+            }
+            return claims;
+        } catch (Exception e) {
+            logger.warn("Invalid token: {} ({})", fingerprint(token), e.getClass().getSimpleName());
+            throw new IllegalArgumentException("Invalid token", e);
+        }
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] hash = sha256.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 
 }
@@ -0,0 +1,386 @@
+package ru.bicev.notes.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.uhighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import ru.bicev.notes.util.AfterCommit;
+
+/**
+ * Embedded Lucene index over note text. Changes made by
+ * {@link NoteServiceImpl} are applied after their transaction commits and
+ * become visible through a near-real-time reader refresh, normally before
+ * the next search and at the latest at the next background commit. They are
+ * made durable by a commit on a single background thread every
+ * {@code notes.search.commit-interval} milliseconds and on shutdown; changes
+ * lost in a crash are repaired by the next sync. The index lives in
+ * {@code notes.search.index-dir}, or in memory when that is not set.
+ *
+ * Every document records the version of the note it was built from, so
+ * {@link NoteService#syncSearchIndex}, run by {@link SearchIndexRunner}, can
+ * tell which of the notes recorded as changed elsewhere, such as through the
+ * reactive module, need indexing again.
+ */
+@Component
+public class NoteSearchIndex {
+
+    private static final String ID = "id";
+    private static final String NOTE_ID = "noteId";
+    private static final String VERSION = "version";
+    private static final String USER_ID = "userId";
+    private static final String TEXT = "text";
+    private static final int SNIPPET_LENGTH = 200;
+    private static final Logger logger = LoggerFactory.getLogger(NoteSearchIndex.class);
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final SnippetFormatter formatter = new SnippetFormatter();
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final ScheduledExecutorService committer;
+
+    public NoteSearchIndex(@Value("${notes.search.index-dir:}") String indexDir,
+            @Value("${notes.search.commit-interval:5000}") long commitInterval) throws IOException {
+        Directory directory = indexDir.isBlank() ? new ByteBuffersDirectory() : FSDirectory.open(Path.of(indexDir));
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+        this.searcherManager = new SearcherManager(writer, null);
+        this.committer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "search-index-commit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        committer.scheduleWithFixedDelay(this::commit, commitInterval, commitInterval, TimeUnit.MILLISECONDS);
+        logger.info("Search index opened: dir={}, notes={}", indexDir.isBlank() ? "memory" : indexDir, size());
+    }
+
+    /**
+     * A {@code null} version is recorded as unknown, and the next sync indexes
+     * the note again.
+     */
+    public record Entry(Long noteId, Long userId, String text, Long version) {
+    }
+
+    public record Hit(Long noteId, float score, String snippet) {
+    }
+
+    public record Hits(List<Hit> hits, long totalHits) {
+    }
+
+    public void index(Long noteId, Long userId, String text, Long version) {
+        index(List.of(new Entry(noteId, userId, text, version)));
+    }
+
+    /**
+     * Adds or replaces the entries once the current transaction commits, with
+     * a single reader refresh for the whole list.
+     */
+    public void index(List<Entry> entries) {
+        List<Entry> copy = List.copyOf(entries);
+        AfterCommit.run(() -> apply(() -> {
+            for (Entry entry : copy) {
+                writer.updateDocument(new Term(ID, entry.noteId().toString()), toDocument(entry));
+            }
+        }));
+    }
+
+    public void delete(Long noteId) {
+        delete(List.of(noteId));
+    }
+
+    public void delete(Collection<Long> noteIds) {
+        Term[] terms = noteIds.stream().map(noteId -> new Term(ID, noteId.toString())).toArray(Term[]::new);
+        AfterCommit.run(() -> apply(() -> writer.deleteDocuments(terms)));
+    }
+
+    /**
+     * Runs a ranked search over the user's notes. The query uses the simple
+     * query syntax: words, "phrases", prefix*, -excluded and | for OR, with
+     * all words required by default.
+     */
+    public Hits search(Long userId, String queryText, int offset, int limit) {
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, TEXT);
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        Query textQuery = parser.parse(queryText);
+        if (textQuery == null) {
+            return new Hits(List.of(), 0);
+        }
+        Query query = new BooleanQuery.Builder()
+                .add(textQuery, BooleanClause.Occur.MUST)
+                .add(new TermQuery(new Term(USER_ID, userId.toString())), BooleanClause.Occur.FILTER)
+                .build();
+        IndexSearcher searcher = acquire();
+        try {
+            TopDocs top = searcher.search(query, offset + limit);
+            ScoreDoc[] scoreDocs = top.scoreDocs;
+            if (scoreDocs.length <= offset) {
+                return new Hits(List.of(), top.totalHits.value);
+            }
+            ScoreDoc[] page = Arrays.copyOfRange(scoreDocs, offset, scoreDocs.length);
+            UnifiedHighlighter highlighter = UnifiedHighlighter.builder(searcher, analyzer)
+                    .withFormatter(formatter)
+                    .withMaxLength(10_000)
+                    .build();
+            String[] snippets = highlighter.highlight(TEXT, textQuery, new TopDocs(top.totalHits, page), 1);
+            List<Hit> hits = new ArrayList<>(page.length);
+            for (int i = 0; i < page.length; i++) {
+                Document document = searcher.storedFields().document(page[i].doc);
+                String snippet = snippets[i] != null ? snippets[i] : formatter.abbreviate(document.get(TEXT));
+                hits.add(new Hit(Long.valueOf(document.get(ID)), page[i].score, snippet));
+            }
+            return new Hits(hits, top.totalHits.value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            release(searcher);
+        }
+    }
+
+    /**
+     * Replaces the whole index with the given entries and commits.
+     */
+    public int rebuild(Stream<Entry> entries) {
+        int[] count = { 0 };
+        apply(() -> {
+            writer.deleteAll();
+            for (Entry entry : (Iterable<Entry>) entries::iterator) {
+                writer.updateDocument(new Term(ID, entry.noteId().toString()), toDocument(entry));
+                count[0]++;
+            }
+        });
+        commit();
+        logger.info("Search index rebuilt: notes={}", count[0]);
+        return count[0];
+    }
+
+    /**
+     * Maps every indexed note id to the note version its document was built
+     * from; documents without a known version map to -1.
+     */
+    public Map<Long, Long> versions() {
+        IndexSearcher searcher = acquire();
+        try {
+            Map<Long, Long> versions = new HashMap<>(searcher.getIndexReader().numDocs() * 4 / 3 + 1);
+            for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                LeafReader reader = leaf.reader();
+                NumericDocValues noteIds = reader.getNumericDocValues(NOTE_ID);
+                NumericDocValues noteVersions = reader.getNumericDocValues(VERSION);
+                StoredFields storedFields = reader.storedFields();
+                Bits liveDocs = reader.getLiveDocs();
+                for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                    if (liveDocs != null && !liveDocs.get(doc)) {
+                        continue;
+                    }
+                    long noteId = noteIds != null && noteIds.advanceExact(doc)
+                            ? noteIds.longValue()
+                            : Long.parseLong(storedFields.document(doc, Set.of(ID)).get(ID));
+                    long version = noteVersions != null && noteVersions.advanceExact(doc)
+                            ? noteVersions.longValue()
+                            : -1;
+                    versions.put(noteId, version);
+                }
+            }
+            return versions;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            release(searcher);
+        }
+    }
+
+    /**
+     * Like {@link #versions()}, but only for the given note ids, looked up by
+     * term; ids without a document are left out.
+     */
+    public Map<Long, Long> versions(Collection<Long> noteIds) {
+        IndexSearcher searcher = acquire();
+        try {
+            Map<Long, Long> versions = new HashMap<>(noteIds.size() * 4 / 3 + 1);
+            for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                LeafReader reader = leaf.reader();
+                Terms ids = reader.terms(ID);
+                if (ids == null) {
+                    continue;
+                }
+                TermsEnum idTerms = ids.iterator();
+                Bits liveDocs = reader.getLiveDocs();
+                PostingsEnum postings = null;
+                for (Long noteId : noteIds) {
+                    if (!idTerms.seekExact(new BytesRef(noteId.toString()))) {
+                        continue;
+                    }
+                    postings = idTerms.postings(postings, PostingsEnum.NONE);
+                    for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                        if (liveDocs != null && !liveDocs.get(doc)) {
+                            continue;
+                        }
+                        NumericDocValues noteVersions = reader.getNumericDocValues(VERSION);
+                        versions.put(noteId, noteVersions != null && noteVersions.advanceExact(doc)
+                                ? noteVersions.longValue()
+                                : -1);
+                    }
+                }
+            }
+            return versions;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            release(searcher);
+        }
+    }
+
+    public int size() {
+        IndexSearcher searcher = acquire();
+        try {
+            return searcher.getIndexReader().numDocs();
+        } finally {
+            release(searcher);
+        }
+    }
+
+    /**
+     * Makes the changes applied so far durable. Runs on the commit thread, so
+     * request threads never wait for an fsync; it also picks up changes whose
+     * refresh was skipped because another one was in progress.
+     */
+    public void commit() {
+        try {
+            if (writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            logger.error("Search index commit failed, rebuild the index to recover", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        committer.shutdown();
+        try {
+            committer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        searcherManager.close();
+        writer.close();
+    }
+
+    private Document toDocument(Entry entry) {
+        Document document = new Document();
+        document.add(new StringField(ID, entry.noteId().toString(), Field.Store.YES));
+        document.add(new NumericDocValuesField(NOTE_ID, entry.noteId()));
+        document.add(new NumericDocValuesField(VERSION, entry.version() == null ? -1 : entry.version()));
+        document.add(new StringField(USER_ID, entry.userId().toString(), Field.Store.NO));
+        document.add(new TextField(TEXT, entry.text() == null ? "" : entry.text(), Field.Store.YES));
+        return document;
+    }
+
+    /**
+     * Applies a change and refreshes the reader without committing. A failure
+     * is logged rather than thrown: the database change has already
+     * committed, and a stale index is repaired by a rebuild.
+     */
+    private void apply(IndexChange change) {
+        try {
+            change.run();
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            logger.error("Search index update failed, rebuild the index to recover", e);
+        }
+    }
+
+    private IndexSearcher acquire() {
+        try {
+            return searcherManager.acquire();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void release(IndexSearcher searcher) {
+        try {
+            searcherManager.release(searcher);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Wraps matches in {@code <b>} and HTML-escapes the rest. The fallback for
+     * hits without a passage goes through the same escaping, since note text
+     * is user input.
+     */
+    private static class SnippetFormatter extends DefaultPassageFormatter {
+
+        SnippetFormatter() {
+            super("<b>", "</b>", "... ", true);
+        }
+
+        String abbreviate(String text) {
+            if (text == null) {
+                return null;
+            }
+            int end = Math.min(text.length(), SNIPPET_LENGTH);
+            StringBuilder snippet = new StringBuilder(end + 16);
+            append(snippet, text, 0, end);
+            return end < text.length() ? snippet.append("...").toString() : snippet.toString();
+        }
+
+    }
+
+    @FunctionalInterface
+    private interface IndexChange {
+        void run() throws IOException;
+    }
+
+}
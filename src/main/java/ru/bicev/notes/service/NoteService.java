@@ -1,29 +1,68 @@
 package ru.bicev.notes.service;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
 
+import ru.bicev.notes.dto.BulkTagRequest;
+import ru.bicev.notes.dto.BulkTagResponse;
 import ru.bicev.notes.dto.NoteDto;
+import ru.bicev.notes.dto.NotePage;
+import ru.bicev.notes.dto.NotePatch;
+import ru.bicev.notes.dto.NoteSearchPage;
+import ru.bicev.notes.dto.TagCountDto;
 
 public interface NoteService {
 
-    NoteDto createNote(NoteDto noteDto, String email);
+    NoteDto createNote(NoteDto noteDto, Long userId);
 
-    NoteDto editNote(Long noteId, NoteDto noteDto, String email);
+    List<NoteDto> createNotes(List<NoteDto> noteDtos, Long userId);
 
-    void deleteNote(Long noteId, String email);
+    NoteDto editNote(Long noteId, NoteDto noteDto, Long userId);
 
-    NoteDto addTags(Long noteId, String email, String... tags);
+    NoteDto editNote(Long noteId, NoteDto noteDto, Long userId, LongPredicate rejected);
 
-    NoteDto removeTags(Long noteId, String email, String... tags);
+    NoteDto patchNote(Long noteId, NotePatch patch, Long userId, LongPredicate rejected);
 
-    List<NoteDto> findByUser(String email);
+    void deleteNote(Long noteId, Long userId);
 
-    List<NoteDto> findByTagPart(String tagPart, String email);
+    NoteDto addTags(Long noteId, Long userId, String... tags);
 
-    NoteDto findByIdAndUser(Long noteId, String email);
+    NoteDto removeTags(Long noteId, Long userId, String... tags);
 
-    List<NoteDto> findByAllTags(List<String> tags, String email);
+    BulkTagResponse addTagsBulk(BulkTagRequest request, Long userId);
 
-    List<String> getAllTags(String email);
+    BulkTagResponse removeTagsBulk(BulkTagRequest request, Long userId);
+
+    NotePage findByUser(Long userId, String pageToken, int size);
+
+    Optional<NotePage> findByUser(Long userId, String pageToken, int size, LongPredicate unchanged);
+
+    NotePage findByTagPart(String tagPart, Long userId, String pageToken, int size);
+
+    NoteDto findByIdAndUser(Long noteId, Long userId);
+
+    Optional<NoteDto> findByIdAndUser(Long noteId, Long userId, LongPredicate unchanged);
+
+    NotePage findByAllTags(List<String> tags, List<String> excludeTags, Long userId, String pageToken, int size);
+
+    NotePage findByAnyTags(List<String> tags, List<String> excludeTags, Long userId, String pageToken, int size);
+
+    NoteSearchPage searchNotes(String query, Long userId, String pageToken, int size);
+
+    List<String> getAllTags(Long userId);
+
+    Optional<List<String>> getAllTags(Long userId, LongPredicate unchanged);
+
+    List<TagCountDto> getTagStats(Long userId);
+
+    void exportNotes(Long userId, Consumer<NoteDto> consumer);
+
+    int rebuildSearchIndex();
+
+    int reconcileSearchIndex();
+
+    int syncSearchIndex();
 
 }
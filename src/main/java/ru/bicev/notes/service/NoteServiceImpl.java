@@ -1,163 +1,877 @@
 package ru.bicev.notes.service;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.LongPredicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import ru.bicev.notes.dto.BulkTagRequest;
+import ru.bicev.notes.dto.BulkTagResponse;
 import ru.bicev.notes.dto.NoteDto;
+import ru.bicev.notes.dto.NotePage;
+import ru.bicev.notes.dto.NotePatch;
+import ru.bicev.notes.dto.NoteSearchHit;
+import ru.bicev.notes.dto.NoteSearchPage;
+import ru.bicev.notes.dto.TagCountDto;
 import ru.bicev.notes.entity.Note;
+import ru.bicev.notes.entity.NoteChange;
+import ru.bicev.notes.entity.Tag;
 import ru.bicev.notes.entity.User;
+import ru.bicev.notes.exception.BatchSizeExceededException;
+import ru.bicev.notes.exception.InvalidBulkRequestException;
+import ru.bicev.notes.exception.InvalidPatchException;
+import ru.bicev.notes.exception.NoteModifiedException;
 import ru.bicev.notes.exception.NoteNotFoundException;
 import ru.bicev.notes.exception.UserNotFoundException;
+import ru.bicev.notes.repository.NoteChangeRepository;
 import ru.bicev.notes.repository.NoteRepository;
+import ru.bicev.notes.repository.TagRepository;
 import ru.bicev.notes.repository.UserRepository;
+import ru.bicev.notes.util.AfterCommit;
 import ru.bicev.notes.util.NoteMapper;
+import ru.bicev.notes.util.PageTokens;
 
 @Service
 public class NoteServiceImpl implements NoteService {
 
     private final NoteRepository noteRepository;
+    private final NoteChangeRepository noteChangeRepository;
+    private final TagRepository tagRepository;
     private final UserRepository userRepository;
+    private final UserCache userCache;
+    private final TagIndex tagIndex;
+    private final NoteSearchIndex searchIndex;
+    private final EntityManager entityManager;
+    private final Counter notesCreated;
+    private final Counter notesDeleted;
+    private final Counter tagsCreated;
+    private final int maxBatchSize;
+    private final long changesRetention;
+    /**
+     * Id of the last recorded note change the search index is known to
+     * reflect; the next sync reads the changes past it.
+     */
+    private volatile long changesWatermark;
+    /**
+     * Start of the last completed sync, reconcile or rebuild, in epoch
+     * milliseconds.
+     */
+    private volatile long lastSyncStart;
+    private static final int FLUSH_EVERY = 500;
+    private static final int MAX_SEARCH_WINDOW = 10_000;
+    private static final int EXPORT_CHUNK = 500;
+    private static final int SYNC_CHUNK = 500;
+    private static final int VERSION_CHUNK = 1000;
+    private static final int CHANGE_CHUNK = 1000;
+    /**
+     * How long a transaction that records a note change may stay open. A sync
+     * reads younger changes again, since an open transaction may still commit
+     * one with a lower id.
+     */
+    private static final long CHANGE_SETTLE_MILLIS = 300_000;
     private static final Logger logger = LoggerFactory.getLogger(NoteServiceImpl.class);
 
-    public NoteServiceImpl(NoteRepository noteRepository, UserRepository userRepository) {
+    public NoteServiceImpl(NoteRepository noteRepository, NoteChangeRepository noteChangeRepository,
+            TagRepository tagRepository, UserRepository userRepository, UserCache userCache, TagIndex tagIndex,
+            NoteSearchIndex searchIndex, EntityManager entityManager, MeterRegistry meterRegistry,
+            @Value("${notes.batch.max-size:5000}") int maxBatchSize,
+            @Value("${notes.search.changes-retention:86400000}") long changesRetention) {
         this.noteRepository = noteRepository;
+        this.noteChangeRepository = noteChangeRepository;
+        this.tagRepository = tagRepository;
         this.userRepository = userRepository;
+        this.userCache = userCache;
+        this.tagIndex = tagIndex;
+        this.searchIndex = searchIndex;
+        this.entityManager = entityManager;
+        this.notesCreated = Counter.builder("notes.notes").description("Notes written").tag("operation", "create")
+                .register(meterRegistry);
+        this.notesDeleted = Counter.builder("notes.notes").description("Notes written").tag("operation", "delete")
+                .register(meterRegistry);
+        this.tagsCreated = Counter.builder("notes.tags").description("Tag dictionary entries written")
+                .tag("operation", "create")
+                .register(meterRegistry);
+        this.maxBatchSize = maxBatchSize;
+        this.changesRetention = changesRetention;
     }
 
     @Transactional
     @Override
-    public NoteDto createNote(NoteDto noteDto, String email) {
-        User currentUser = getCurrentUser(email);
+    public NoteDto createNote(NoteDto noteDto, Long userId) {
+        User currentUser = userCache.getUser(userId);
         Note note = new Note();
         note.setText(noteDto.getText());
-        note.setTags(noteDto.getTags());
+        note.addTags(resolveTags(userId, noteDto.getTags()).values());
         note.setUser(currentUser);
         Note savedNote = noteRepository.save(note);
-        logger.info("Note created: id={}, user={}", savedNote.getId(), email);
+        adjustNoteCounts(savedNote.getTags(), 1);
+        tagIndex.noteChanged(savedNote.getId(), userId, List.of(), savedNote.getTagNames());
+        noteChangeRepository.record(savedNote.getId(), System.currentTimeMillis());
+        searchIndex.index(savedNote.getId(), userId, savedNote.getText(), savedNote.getVersion());
+        notesChanged(userId);
+        notesCreated.increment();
+        logger.info("Note created: id={}, user={}", savedNote.getId(), userId);
         return NoteMapper.toDto(savedNote);
     }
 
+    /**
+     * Inserts all notes in one transaction. Ids come from a pooled sequence, so
+     * Hibernate sends notes and their tags as JDBC batches; the persistence
+     * context is flushed and cleared every {@value #FLUSH_EVERY} notes. Tags of
+     * the whole batch are resolved against the dictionary up front.
+     */
     @Transactional
     @Override
-    public void deleteNote(Long noteId, String email) {
-        Note foundNote = getNoteByIdAndUser(noteId, getCurrentUser(email));
+    public List<NoteDto> createNotes(List<NoteDto> noteDtos, Long userId) {
+        if (noteDtos.size() > maxBatchSize) {
+            logger.warn("Batch of {} notes exceeds the limit of {} for user={}", noteDtos.size(), maxBatchSize,
+                    userId);
+            throw new BatchSizeExceededException("Batch may contain at most " + maxBatchSize + " notes");
+        }
+        User currentUser = userCache.getUser(userId);
+        Map<String, Tag> tags = resolveTags(userId, noteDtos.stream()
+                .filter(noteDto -> noteDto.getTags() != null)
+                .flatMap(noteDto -> noteDto.getTags().stream())
+                .toList());
+        Map<Tag, Integer> counts = new HashMap<>();
+        List<NoteDto> createdNotes = new ArrayList<>(noteDtos.size());
+        List<NoteSearchIndex.Entry> searchEntries = new ArrayList<>(noteDtos.size());
+        for (NoteDto noteDto : noteDtos) {
+            Note note = new Note(currentUser, noteDto.getText());
+            if (noteDto.getTags() != null) {
+                noteDto.getTags().forEach(name -> note.getTags().add(tags.get(name.toUpperCase())));
+            }
+            note.getTags().forEach(tag -> counts.merge(tag, 1, Integer::sum));
+            noteRepository.save(note);
+            tagIndex.noteChanged(note.getId(), userId, List.of(), note.getTagNames());
+            searchEntries.add(new NoteSearchIndex.Entry(note.getId(), userId, note.getText(), note.getVersion()));
+            createdNotes.add(NoteMapper.toDto(note));
+            if (createdNotes.size() % FLUSH_EVERY == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        adjustNoteCounts(counts);
+        recordChanges(searchEntries.stream().map(NoteSearchIndex.Entry::noteId).toList());
+        searchIndex.index(searchEntries);
+        notesChanged(userId);
+        notesCreated.increment(createdNotes.size());
+        logger.info("Notes created: count={}, user={}", createdNotes.size(), userId);
+        return createdNotes;
+    }
+
+    @Transactional
+    @Override
+    public void deleteNote(Long noteId, Long userId) {
+        Note foundNote = getNoteByIdAndUser(noteId, userId);
         noteRepository.delete(foundNote);
-        logger.info("Note deleted: id={}, user={}", noteId, email);
+        adjustNoteCounts(foundNote.getTags(), -1);
+        tagIndex.noteDeleted(noteId, userId, foundNote.getTagNames());
+        noteChangeRepository.record(noteId, System.currentTimeMillis());
+        searchIndex.delete(noteId);
+        notesChanged(userId);
+        notesDeleted.increment();
+        logger.info("Note deleted: id={}, user={}", noteId, userId);
     }
 
     @Transactional
     @Override
-    public NoteDto editNote(Long noteId, NoteDto noteDto, String email) {
-        Note foundNote = getNoteByIdAndUser(noteId, getCurrentUser(email));
-        foundNote.setText(noteDto.getText());
-        foundNote.setTags(noteDto.getTags());
-        Note editedNote = noteRepository.save(foundNote);
-        logger.info("Note edited: id={}, user={}", editedNote.getId(), email);
-        return NoteMapper.toDto(editedNote);
+    public NoteDto editNote(Long noteId, NoteDto noteDto, Long userId) {
+        return update(noteId, getNoteByIdAndUser(noteId, userId), noteDto.getText(), tagsOf(noteDto), userId);
     }
 
+    /**
+     * Edits the note unless {@code rejected} refuses the version it was
+     * loaded at; this is how an If-Match precondition reaches the service. An
+     * edit that commits between the check and the flush fails on the version
+     * column instead.
+     */
     @Transactional
     @Override
-    public NoteDto addTags(Long noteId, String email, String... tags) {
-        Note foundNote = getNoteByIdAndUser(noteId, getCurrentUser(email));
+    public NoteDto editNote(Long noteId, NoteDto noteDto, Long userId, LongPredicate rejected) {
+        Note foundNote = getNoteAtVersion(noteId, userId, rejected);
+        return update(noteId, foundNote, noteDto.getText(), tagsOf(noteDto), userId);
+    }
+
+    /**
+     * Applies a merge patch: the text and the tags are changed only if the
+     * patch has them, and only the columns and tag rows that differ are
+     * written. A patch that changes nothing writes nothing.
+     */
+    @Transactional
+    @Override
+    public NoteDto patchNote(Long noteId, NotePatch patch, Long userId, LongPredicate rejected) {
+        if (patch.isTextSet() && (patch.getText() == null || patch.getText().isBlank())) {
+            logger.warn("Patch of note with id: {} has blank text", noteId);
+            throw new InvalidPatchException("Text must not be blank");
+        }
+        Note foundNote = getNoteAtVersion(noteId, userId, rejected);
+        List<String> tags = patch.isTagsSet() ? (patch.getTags() == null ? List.of() : patch.getTags()) : null;
+        return update(noteId, foundNote, patch.getText(), tags, userId);
+    }
+
+    @Transactional
+    @Override
+    public NoteDto addTags(Long noteId, Long userId, String... tags) {
+        Note foundNote = getNoteByIdAndUser(noteId, userId);
         if (tags == null || tags.length == 0) {
             logger.warn("No tags provided to add/remove for note with id: {}", noteId);
             return NoteMapper.toDto(foundNote);
         }
-        String[] upperTags = Arrays.stream(tags).map(String::toUpperCase).toArray(String[]::new);
-        foundNote.addTags(upperTags);
+        List<Tag> added = foundNote.addTags(resolveTags(userId, Arrays.asList(tags)).values());
         Note savedNote = noteRepository.save(foundNote);
+        adjustNoteCounts(added, 1);
+        tagIndex.noteChanged(noteId, userId, List.of(), added.stream().map(Tag::getName).toList());
+        notesChanged(userId);
         logger.info("Added {} tags: {} to note with id: {}", tags.length, Arrays.toString(tags), noteId);
         return NoteMapper.toDto(savedNote);
     }
 
     @Transactional
     @Override
-    public NoteDto removeTags(Long noteId, String email, String... tags) {
-        Note foundNote = getNoteByIdAndUser(noteId, getCurrentUser(email));
+    public NoteDto removeTags(Long noteId, Long userId, String... tags) {
+        Note foundNote = getNoteByIdAndUser(noteId, userId);
         if (tags == null || tags.length == 0) {
             logger.warn("No tags provided to add/remove for note with id: {}", noteId);
             return NoteMapper.toDto(foundNote);
         }
         String[] upperTags = Arrays.stream(tags).map(String::toUpperCase).toArray(String[]::new);
-        foundNote.removeTags(upperTags);
+        List<Tag> removed = foundNote.removeTags(upperTags);
         Note savedNote = noteRepository.save(foundNote);
+        adjustNoteCounts(removed, -1);
+        tagIndex.noteChanged(noteId, userId, Arrays.asList(upperTags), List.of());
+        notesChanged(userId);
         logger.info("Removed {} tags: {} to note with id: {}", tags.length, Arrays.toString(tags), noteId);
         return NoteMapper.toDto(savedNote);
 
     }
 
+    /**
+     * Adds tags to every target note with one INSERT ... SELECT per tag; notes
+     * that already have a tag are skipped. No note entities are loaded; the
+     * inserts return the notes they tagged, and only those are bumped.
+     */
+    @Transactional
+    @Override
+    public BulkTagResponse addTagsBulk(BulkTagRequest request, Long userId) {
+        List<String> tags = toUpperCase(request.getTags());
+        if (tags.isEmpty()) {
+            logger.warn("No tags provided to add/remove in bulk for user={}", userId);
+            return new BulkTagResponse(0);
+        }
+        int changed = 0;
+        Set<Long> changedNotes = new HashSet<>();
+        if (targetsNoteIds(request)) {
+            for (Tag tag : resolveTags(userId, tags).values()) {
+                List<Long> tagged = noteRepository.addTagToNotes(tag.getId(), request.getNoteIds(), userId);
+                adjustNoteCounts(List.of(tag), tagged.size());
+                changed += tagged.size();
+                changedNotes.addAll(tagged);
+            }
+        } else {
+            List<String> filterTags = toUpperCase(request.getFilterTags());
+            List<Long> filterTagIds = findTagIds(userId, filterTags);
+            if (filterTagIds.size() < filterTags.size()) {
+                logger.info("No notes match filter tags: {} for user={}", filterTags, userId);
+                return new BulkTagResponse(0);
+            }
+            for (Tag tag : resolveTags(userId, tags).values()) {
+                List<Long> tagged = noteRepository.addTagToTaggedNotes(tag.getId(), filterTagIds,
+                        filterTagIds.size());
+                adjustNoteCounts(List.of(tag), tagged.size());
+                changed += tagged.size();
+                changedNotes.addAll(tagged);
+            }
+        }
+        bulkChanged(changedNotes, userId);
+        logger.info("Bulk added tags: {} to {} notes for user={}", tags, changed, userId);
+        return new BulkTagResponse(changed);
+    }
+
+    /**
+     * Removes tags from every target note with a single DELETE statement,
+     * which returns the notes it untagged for the version bump.
+     */
+    @Transactional
+    @Override
+    public BulkTagResponse removeTagsBulk(BulkTagRequest request, Long userId) {
+        List<String> tags = toUpperCase(request.getTags());
+        if (tags.isEmpty()) {
+            logger.warn("No tags provided to add/remove in bulk for user={}", userId);
+            return new BulkTagResponse(0);
+        }
+        boolean byNoteIds = targetsNoteIds(request);
+        List<Long> tagIds = findTagIds(userId, tags);
+        if (tagIds.isEmpty()) {
+            logger.info("None of the tags: {} exist for user={}", tags, userId);
+            return new BulkTagResponse(0);
+        }
+        List<Long> untagged;
+        if (byNoteIds) {
+            untagged = noteRepository.removeTagsFromNotes(tagIds, request.getNoteIds());
+        } else {
+            List<String> filterTags = toUpperCase(request.getFilterTags());
+            List<Long> filterTagIds = findTagIds(userId, filterTags);
+            if (filterTagIds.size() < filterTags.size()) {
+                logger.info("No notes match filter tags: {} for user={}", filterTags, userId);
+                return new BulkTagResponse(0);
+            }
+            untagged = noteRepository.removeTagsFromTaggedNotes(tagIds, filterTagIds, filterTagIds.size());
+        }
+        if (!untagged.isEmpty()) {
+            tagRepository.recountNotes(tagIds);
+        }
+        bulkChanged(new HashSet<>(untagged), userId);
+        logger.info("Bulk removed {} tags: {} for user={}", untagged.size(), tags, userId);
+        return new BulkTagResponse(untagged.size());
+    }
+
     @Transactional(readOnly = true)
     @Override
-    public List<NoteDto> findByAllTags(List<String> tags, String email) {
-        logger.info("Searched notes with tags: {} for user={}", tags, email);
-        List<String> upperTags = tags.stream().map(String::toUpperCase).collect(Collectors.toList());
-        return findNotes(user -> noteRepository.findByAllTags(upperTags, upperTags.size(), user), email);
+    public NotePage findByAllTags(List<String> tags, List<String> excludeTags, Long userId, String pageToken,
+            int size) {
+        logger.info("Searched notes with tags: {} excluding: {} for user={}", tags, excludeTags, userId);
+        int pageSize = PageTokens.pageSize(size);
+        List<Long> ids = tagIndex.find(userId, toUpperCase(tags), List.of(), toUpperCase(excludeTags),
+                PageTokens.decode(pageToken), pageSize + 1);
+        return toPage(findNotes(ids), pageSize);
     }
 
     @Transactional(readOnly = true)
     @Override
-    public NoteDto findByIdAndUser(Long noteId, String email) {
-        Note foundNote = getNoteByIdAndUser(noteId, getCurrentUser(email));
-        logger.info("Searched note with id: {} and user={}", noteId, email);
+    public NotePage findByAnyTags(List<String> tags, List<String> excludeTags, Long userId, String pageToken,
+            int size) {
+        logger.info("Searched notes with any of tags: {} excluding: {} for user={}", tags, excludeTags, userId);
+        List<String> anyTags = toUpperCase(tags);
+        if (anyTags.isEmpty()) {
+            return new NotePage(List.of(), null);
+        }
+        int pageSize = PageTokens.pageSize(size);
+        List<Long> ids = tagIndex.find(userId, List.of(), anyTags, toUpperCase(excludeTags),
+                PageTokens.decode(pageToken), pageSize + 1);
+        return toPage(findNotes(ids), pageSize);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public NoteDto findByIdAndUser(Long noteId, Long userId) {
+        Note foundNote = getNoteByIdAndUser(noteId, userId);
+        logger.info("Searched note with id: {} and user={}", noteId, userId);
         return NoteMapper.toDto(foundNote);
     }
 
+    /**
+     * Reads only the note's version when {@code unchanged} accepts it, so
+     * revalidating a note the client already has costs one index lookup. The
+     * version is read before the note in the same transaction, so it is never
+     * newer than the returned content.
+     */
     @Transactional(readOnly = true)
     @Override
-    public List<NoteDto> findByTagPart(String tagPart, String email) {
-        logger.info("Searched notes with tagPart: {} for user={}", tagPart, email);
-        return findNotes(user -> noteRepository.findByTagPart(tagPart.toUpperCase(), user), email);
+    public Optional<NoteDto> findByIdAndUser(Long noteId, Long userId, LongPredicate unchanged) {
+        long version = noteRepository.findVersion(noteId, userId).orElseThrow(() -> {
+            logger.warn("Note with id: {} was not found", noteId);
+            return new NoteNotFoundException("Note was not found");
+        });
+        if (unchanged.test(version)) {
+            logger.debug("Note with id: {} is unchanged at version {}", noteId, version);
+            return Optional.empty();
+        }
+        return Optional.of(findByIdAndUser(noteId, userId));
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public NotePage findByTagPart(String tagPart, Long userId, String pageToken, int size) {
+        logger.info("Searched notes with tagPart: {} for user={}", tagPart, userId);
+        int pageSize = PageTokens.pageSize(size);
+        return toPage(withTags(noteRepository.findPageByTagPart(tagPart.toUpperCase(), userId,
+                PageTokens.decode(pageToken), Limit.of(pageSize + 1))), pageSize);
     }
 
     @Transactional(readOnly = true)
     @Override
-    public List<NoteDto> findByUser(String email) {
-        logger.info("Searched notes for user={}", email);
-        return findNotes(noteRepository::findByUser, email);
+    public NotePage findByUser(Long userId, String pageToken, int size) {
+        logger.info("Searched notes for user={}", userId);
+        int pageSize = PageTokens.pageSize(size);
+        return toPage(withTags(noteRepository.findPageByUser(userId, PageTokens.decode(pageToken),
+                Limit.of(pageSize + 1))), pageSize);
     }
 
     @Transactional(readOnly = true)
     @Override
-    public List<String> getAllTags(String email) {
-        User currentUser = getCurrentUser(email);
-        List<Note> notes = noteRepository.findByUser(currentUser);
-        if (notes.isEmpty()) {
-            logger.info("No notes found for user={}", email);
-            return Collections.emptyList();
+    public Optional<NotePage> findByUser(Long userId, String pageToken, int size, LongPredicate unchanged) {
+        if (unchanged.test(getNotesVersion(userId))) {
+            logger.debug("Notes of user={} are unchanged", userId);
+            return Optional.empty();
         }
-        logger.info("Searched tags for user={}", email);
-        return notes.stream()
-                .flatMap(note -> note.getTags().stream())
-                .distinct()
-                .collect(Collectors.toList());
+        return Optional.of(findByUser(userId, pageToken, size));
     }
 
-    private Note getNoteByIdAndUser(Long noteId, User user) {
-        return noteRepository.findByIdAndUser(noteId, user).orElseThrow(() -> {
+    /**
+     * Ranks the user's notes against the query with the full-text index and
+     * loads the matching page from the database in one query. Pages are
+     * addressed by offset and end after {@value #MAX_SEARCH_WINDOW} results.
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public NoteSearchPage searchNotes(String query, Long userId, String pageToken, int size) {
+        logger.info("Searched notes with query: {} for user={}", query, userId);
+        int pageSize = PageTokens.pageSize(size);
+        int offset = PageTokens.decodeOffset(pageToken);
+        if (query == null || query.isBlank() || offset >= MAX_SEARCH_WINDOW) {
+            return new NoteSearchPage(List.of(), 0, null);
+        }
+        NoteSearchIndex.Hits result = searchIndex.search(userId, query, offset,
+                Math.min(pageSize, MAX_SEARCH_WINDOW - offset));
+        Map<Long, Note> notes = findNotes(result.hits().stream().map(NoteSearchIndex.Hit::noteId).toList())
+                .stream()
+                .collect(Collectors.toMap(Note::getId, Function.identity()));
+        List<NoteSearchHit> hits = new ArrayList<>(result.hits().size());
+        for (NoteSearchIndex.Hit hit : result.hits()) {
+            Note note = notes.get(hit.noteId());
+            if (note != null) {
+                hits.add(new NoteSearchHit(NoteMapper.toDto(note), hit.snippet(), hit.score()));
+            }
+        }
+        int nextOffset = offset + result.hits().size();
+        boolean hasNext = !result.hits().isEmpty() && nextOffset < result.totalHits()
+                && nextOffset < MAX_SEARCH_WINDOW;
+        return new NoteSearchPage(hits, result.totalHits(), hasNext ? PageTokens.encodeOffset(nextOffset) : null);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<String> getAllTags(Long userId) {
+        logger.info("Searched tags for user={}", userId);
+        return tagRepository.findNamesInUse(userId);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public Optional<List<String>> getAllTags(Long userId, LongPredicate unchanged) {
+        if (unchanged.test(getNotesVersion(userId))) {
+            logger.debug("Tags of user={} are unchanged", userId);
+            return Optional.empty();
+        }
+        return Optional.of(getAllTags(userId));
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<TagCountDto> getTagStats(Long userId) {
+        logger.info("Searched tag stats for user={}", userId);
+        return tagRepository.findCountsInUse(userId);
+    }
+
+    /**
+     * Passes every note of the user to the consumer in id order. Notes are read
+     * in keyset chunks of {@value #EXPORT_CHUNK}, two queries each, and the
+     * persistence context is cleared after every chunk, so memory use does
+     * not grow with the account size.
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public void exportNotes(Long userId, Consumer<NoteDto> consumer) {
+        long after = 0L;
+        List<Note> chunk;
+        do {
+            chunk = withTags(noteRepository.findPageByUser(userId, after, Limit.of(EXPORT_CHUNK)));
+            chunk.forEach(note -> consumer.accept(NoteMapper.toDto(note)));
+            if (!chunk.isEmpty()) {
+                after = chunk.get(chunk.size() - 1).getId();
+            }
+            entityManager.clear();
+        } while (chunk.size() == EXPORT_CHUNK);
+        logger.info("Exported notes for user={}", userId);
+    }
+
+    /**
+     * Replaces the full-text index with the current text of every note.
+     * Changes recorded while it runs are applied by the next sync.
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public int rebuildSearchIndex() {
+        long start = System.currentTimeMillis();
+        long watermark = settledWatermark(start);
+        try (Stream<Object[]> rows = noteRepository.streamSearchEntries()) {
+            int indexed = searchIndex.rebuild(rows.map(NoteServiceImpl::toSearchEntry));
+            syncedUpTo(watermark, start);
+            return indexed;
+        }
+    }
+
+    /**
+     * Indexes again every note whose version differs from the indexed one and
+     * removes notes that no longer exist, scanning the whole table and the
+     * whole index. Run at startup, it catches what the recorded changes
+     * cannot: updates lost in a crash before the index commit and changes
+     * purged while the instance was down. Reads the primary, since a lagging
+     * replica would hand back older text than the index already has.
+     */
+    @Transactional
+    @Override
+    public int reconcileSearchIndex() {
+        long start = System.currentTimeMillis();
+        long watermark = settledWatermark(start);
+        Map<Long, Long> indexed = searchIndex.versions();
+        List<Long> stale = new ArrayList<>();
+        try (Stream<Object[]> rows = noteRepository.streamVersions()) {
+            rows.forEach(row -> {
+                Long indexedVersion = indexed.remove((Long) row[0]);
+                if (!row[1].equals(indexedVersion)) {
+                    stale.add((Long) row[0]);
+                }
+            });
+        }
+        for (int from = 0; from < stale.size(); from += SYNC_CHUNK) {
+            List<Long> chunk = stale.subList(from, Math.min(from + SYNC_CHUNK, stale.size()));
+            searchIndex.index(noteRepository.findSearchEntries(chunk).stream()
+                    .map(NoteServiceImpl::toSearchEntry)
+                    .toList());
+        }
+        if (!indexed.isEmpty()) {
+            searchIndex.delete(indexed.keySet());
+        }
+        syncedUpTo(watermark, start);
+        logger.info("Search index reconciled: reindexed={}, removed={}", stale.size(), indexed.size());
+        return stale.size() + indexed.size();
+    }
+
+    /**
+     * Applies the note changes recorded past the watermark, by this or any
+     * other instance and by the reactive module: changed notes whose indexed
+     * version differs are indexed again and deleted ones are removed. Changes
+     * younger than {@value #CHANGE_SETTLE_MILLIS} ms are read again by the
+     * next sync; the watermark only moves past older ones. Changes older than
+     * {@code notes.search.changes-retention} are purged, so an instance that
+     * has not synced for that long falls back to a reconcile.
+     */
+    @Transactional
+    @Override
+    public int syncSearchIndex() {
+        long start = System.currentTimeMillis();
+        if (start - lastSyncStart > changesRetention - CHANGE_SETTLE_MILLIS) {
+            logger.warn("Search index not synced since {}, recorded changes may be purged", lastSyncStart);
+            return reconcileSearchIndex();
+        }
+        long settled = start - CHANGE_SETTLE_MILLIS;
+        long after = changesWatermark;
+        long watermark = after;
+        int synced = 0;
+        List<NoteChange> changes;
+        do {
+            changes = noteChangeRepository.findAfter(after, Limit.of(SYNC_CHUNK));
+            Set<Long> noteIds = new HashSet<>();
+            for (NoteChange change : changes) {
+                noteIds.add(change.getNoteId());
+                after = change.getId();
+                if (change.getChangedAt() <= settled) {
+                    watermark = change.getId();
+                }
+            }
+            synced += syncNotes(noteIds);
+        } while (changes.size() == SYNC_CHUNK);
+        int purged = noteChangeRepository.deleteBefore(start - changesRetention);
+        syncedUpTo(watermark, start);
+        if (synced > 0 || purged > 0) {
+            logger.info("Search index synced: updated={}, watermark={}, purged changes={}", synced, watermark,
+                    purged);
+        }
+        return synced;
+    }
+
+    private int syncNotes(Collection<Long> noteIds) {
+        if (noteIds.isEmpty()) {
+            return 0;
+        }
+        Map<Long, Long> indexed = searchIndex.versions(noteIds);
+        List<NoteSearchIndex.Entry> stale = new ArrayList<>();
+        for (Object[] row : noteRepository.findSearchEntries(noteIds)) {
+            NoteSearchIndex.Entry entry = toSearchEntry(row);
+            if (!entry.version().equals(indexed.remove(entry.noteId()))) {
+                stale.add(entry);
+            }
+        }
+        if (!stale.isEmpty()) {
+            searchIndex.index(stale);
+        }
+        if (!indexed.isEmpty()) {
+            searchIndex.delete(indexed.keySet());
+        }
+        return stale.size() + indexed.size();
+    }
+
+    /**
+     * Id of the last change that is settled at {@code start}. Read before a
+     * full pass, so every change up to it is reflected in what the pass sees.
+     */
+    private long settledWatermark(long start) {
+        return noteChangeRepository.findLastIdBefore(start - CHANGE_SETTLE_MILLIS).orElse(0L);
+    }
+
+    /**
+     * Moves the watermark once the pass has committed, together with the
+     * index changes it made.
+     */
+    private void syncedUpTo(long watermark, long start) {
+        AfterCommit.run(() -> {
+            changesWatermark = watermark;
+            lastSyncStart = start;
+        });
+    }
+
+    private static NoteSearchIndex.Entry toSearchEntry(Object[] row) {
+        return new NoteSearchIndex.Entry((Long) row[0], (Long) row[1], (String) row[2], (Long) row[3]);
+    }
+
+    /**
+     * Sets the text and the tags of the note, leaving either alone when it is
+     * null. With @DynamicUpdate and the tag set changed in place, only what
+     * differs is written; a note that ends up unchanged is not written.
+     */
+    private NoteDto update(Long noteId, Note foundNote, String text, Collection<String> tagNames, Long userId) {
+        List<String> previousTags = foundNote.getTagNames();
+        boolean textChanged = text != null && !text.equals(foundNote.getText());
+        Collection<Tag> tags = tagNames == null ? null : resolveTags(userId, tagNames).values();
+        Set<Tag> removed = new HashSet<>();
+        List<Tag> added = List.of();
+        if (tags != null) {
+            removed.addAll(foundNote.getTags());
+            removed.removeAll(tags);
+            added = tags.stream().filter(tag -> !foundNote.getTags().contains(tag)).toList();
+        }
+        if (!textChanged && removed.isEmpty() && added.isEmpty()) {
+            logger.info("Note with id: {} is unchanged", noteId);
+            return NoteMapper.toDto(foundNote);
+        }
+        if (textChanged) {
+            foundNote.setText(text);
+        }
+        if (tags != null) {
+            foundNote.replaceTags(tags);
+        }
+        Note editedNote = noteRepository.save(foundNote);
+        // Flushed here so the returned DTO carries the incremented version.
+        noteRepository.flush();
+        adjustNoteCounts(removed, -1);
+        adjustNoteCounts(added, 1);
+        if (!removed.isEmpty() || !added.isEmpty()) {
+            tagIndex.noteChanged(noteId, userId, previousTags, editedNote.getTagNames());
+        }
+        if (textChanged) {
+            noteChangeRepository.record(noteId, System.currentTimeMillis());
+            searchIndex.index(noteId, userId, editedNote.getText(), editedNote.getVersion());
+        }
+        notesChanged(userId);
+        logger.info("Note edited: id={}, user={}", editedNote.getId(), userId);
+        return NoteMapper.toDto(editedNote);
+    }
+
+    private List<String> tagsOf(NoteDto noteDto) {
+        return noteDto.getTags() == null ? List.of() : noteDto.getTags();
+    }
+
+    private Note getNoteByIdAndUser(Long noteId, Long userId) {
+        return noteRepository.findByIdAndUserId(noteId, userId).orElseThrow(() -> {
             logger.warn("Note with id: {} was not found", noteId);
             return new NoteNotFoundException("Note was not found");
         });
     }
 
-    private User getCurrentUser(String email) {
-        return userRepository.findByEmail(email).orElseThrow(() -> {
-            logger.warn("User with email: {} was not found", email);
+    /**
+     * Loads the note for a conditional write, see
+     * {@link #editNote(Long, NoteDto, Long, LongPredicate)}.
+     */
+    private Note getNoteAtVersion(Long noteId, Long userId, LongPredicate rejected) {
+        Note foundNote = getNoteByIdAndUser(noteId, userId);
+        if (rejected.test(foundNote.getVersion())) {
+            logger.warn("Note with id: {} was modified since the version the client has", noteId);
+            throw new NoteModifiedException("Note was modified");
+        }
+        return foundNote;
+    }
+
+    private long getNotesVersion(Long userId) {
+        return userRepository.findNotesVersion(userId).orElseThrow(() -> {
+            logger.warn("User with id: {} was not found", userId);
             return new UserNotFoundException("User not found");
         });
     }
 
-    private List<NoteDto> findNotes(Function<User, List<Note>> findFunction, String email) {
-        User currentUser = getCurrentUser(email);
-        return NoteMapper.toDtoList(findFunction.apply(currentUser));
+    /**
+     * Moves the user's notes version on, which changes the ETag of every
+     * listing. Called last in each write, as the update locks the user row
+     * until the transaction ends.
+     */
+    private void notesChanged(Long userId) {
+        userRepository.incrementNotesVersion(userId);
+    }
+
+    /**
+     * Records a change of each note for the other instances' search index
+     * sync, in chunks that keep the IN list within the driver's parameter
+     * limit.
+     */
+    private void recordChanges(List<Long> noteIds) {
+        entityManager.flush();
+        long changedAt = System.currentTimeMillis();
+        for (int from = 0; from < noteIds.size(); from += CHANGE_CHUNK) {
+            noteChangeRepository.recordAll(noteIds.subList(from, Math.min(from + CHANGE_CHUNK, noteIds.size())),
+                    changedAt);
+        }
+    }
+
+    /**
+     * Bumps the versions of the notes a bulk tag change touched, in chunks
+     * that keep the IN list within the driver's parameter limit. Nothing is
+     * bumped or evicted when no note changed.
+     */
+    private void bulkChanged(Set<Long> noteIds, Long userId) {
+        if (noteIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(noteIds);
+        for (int from = 0; from < ids.size(); from += VERSION_CHUNK) {
+            noteRepository.incrementVersions(ids.subList(from, Math.min(from + VERSION_CHUNK, ids.size())));
+        }
+        tagIndex.evict(userId);
+        notesChanged(userId);
+    }
+
+    /**
+     * Maps tag names to entries of the user's tag dictionary, creating the
+     * missing ones. Names are upper-cased; the map keeps their first-seen order.
+     * New entries are inserted in one batch that skips names a concurrent
+     * transaction has just created, and are then read back so those names map
+     * to the rows that won.
+     */
+    private Map<String, Tag> resolveTags(Long userId, Collection<String> names) {
+        Map<String, Tag> resolved = new LinkedHashMap<>();
+        if (names == null || names.isEmpty()) {
+            return resolved;
+        }
+        Set<String> upperNames = new LinkedHashSet<>();
+        names.forEach(name -> upperNames.add(name.toUpperCase()));
+        Map<String, Tag> existing = new LinkedHashMap<>();
+        tagRepository.findByUserIdAndNameIn(userId, upperNames).forEach(tag -> existing.put(tag.getName(), tag));
+        List<Tag> created = new ArrayList<>();
+        for (String name : upperNames) {
+            Tag tag = existing.get(name);
+            if (tag == null) {
+                tag = new Tag(userId, name);
+                created.add(tag);
+            }
+            resolved.put(name, tag);
+        }
+        if (!created.isEmpty()) {
+            tagRepository.saveAll(created);
+            entityManager.flush();
+            int inserted = created.size();
+            List<String> createdNames = created.stream().map(Tag::getName).toList();
+            for (Tag stored : tagRepository.findByUserIdAndNameIn(userId, createdNames)) {
+                Tag tag = resolved.get(stored.getName());
+                if (tag != null && !tag.getId().equals(stored.getId())) {
+                    entityManager.detach(tag);
+                    resolved.put(stored.getName(), stored);
+                    inserted--;
+                }
+            }
+            tagsCreated.increment(inserted);
+            logger.info("Tags created: {} for user={}", inserted, userId);
+        }
+        return resolved;
+    }
+
+    /**
+     * Applies per-tag note count changes with one UPDATE per distinct delta.
+     */
+    private void adjustNoteCounts(Map<Tag, Integer> deltas) {
+        Map<Integer, List<Tag>> byDelta = new HashMap<>();
+        deltas.forEach((tag, delta) -> byDelta.computeIfAbsent(delta, d -> new ArrayList<>()).add(tag));
+        byDelta.forEach((delta, tags) -> adjustNoteCounts(tags, delta));
+    }
+
+    private void adjustNoteCounts(Collection<Tag> tags, int delta) {
+        if (!tags.isEmpty() && delta != 0) {
+            tagRepository.adjustNoteCount(tags.stream().map(Tag::getId).sorted().toList(), delta);
+        }
+    }
+
+    private List<Long> findTagIds(Long userId, List<String> names) {
+        return tagRepository.findByUserIdAndNameIn(userId, names).stream().map(Tag::getId).toList();
+    }
+
+    /**
+     * Checks that the request has exactly one target and returns {@code true}
+     * when it is a list of note ids rather than a tag filter.
+     */
+    private boolean targetsNoteIds(BulkTagRequest request) {
+        boolean hasNoteIds = request.getNoteIds() != null && !request.getNoteIds().isEmpty();
+        boolean hasFilter = request.getFilterTags() != null && !request.getFilterTags().isEmpty();
+        if (hasNoteIds == hasFilter) {
+            throw new InvalidBulkRequestException("Either noteIds or filterTags must be provided");
+        }
+        if (hasNoteIds && request.getNoteIds().size() > maxBatchSize) {
+            throw new BatchSizeExceededException("Batch may contain at most " + maxBatchSize + " notes");
+        }
+        return hasNoteIds;
+    }
+
+    private List<String> toUpperCase(List<String> tags) {
+        if (tags == null) {
+            return List.of();
+        }
+        return tags.stream().map(String::toUpperCase).distinct().collect(Collectors.toList());
+    }
+
+    private List<Note> findNotes(List<Long> ids) {
+        return ids.isEmpty() ? List.of() : noteRepository.findByIdInOrderById(ids);
+    }
+
+    /**
+     * Loads the tags of a page of notes with one query instead of one per note.
+     */
+    private List<Note> withTags(List<Note> notes) {
+        if (!notes.isEmpty()) {
+            noteRepository.fetchTags(notes);
+        }
+        return notes;
+    }
+
+    /**
+     * Builds a page from a query that fetched one row more than the page size;
+     * the extra row only signals that another page exists.
+     */
+    private NotePage toPage(List<Note> notes, int pageSize) {
+        if (notes.size() <= pageSize) {
+            return new NotePage(NoteMapper.toDtoList(notes), null);
+        }
+        List<Note> page = notes.subList(0, pageSize);
+        return new NotePage(NoteMapper.toDtoList(page), PageTokens.encode(page.get(pageSize - 1).getId()));
     }
 
 }
@@ -0,0 +1,52 @@
+package ru.bicev.notes.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rebuilds the full-text index at startup when it is started with
+ * {@code --rebuild-search-index} or the index is empty (a new or lost index
+ * directory), and otherwise reconciles it with the whole notes table by note
+ * version. After that, every {@code notes.search.sync-interval} milliseconds,
+ * only the note changes recorded since the last sync are applied, so notes
+ * changed outside this instance reach it as well.
+ */
+@Component
+public class SearchIndexRunner implements ApplicationRunner {
+
+    static final String REBUILD_OPTION = "rebuild-search-index";
+
+    private final NoteService noteService;
+    private final NoteSearchIndex searchIndex;
+    private static final Logger logger = LoggerFactory.getLogger(SearchIndexRunner.class);
+
+    public SearchIndexRunner(NoteService noteService, NoteSearchIndex searchIndex) {
+        this.noteService = noteService;
+        this.searchIndex = searchIndex;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (args.containsOption(REBUILD_OPTION) || searchIndex.size() == 0) {
+            logger.info("Rebuilding search index");
+            noteService.rebuildSearchIndex();
+        } else {
+            noteService.reconcileSearchIndex();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${notes.search.sync-interval:60000}",
+            fixedDelayString = "${notes.search.sync-interval:60000}")
+    public void sync() {
+        try {
+            noteService.syncSearchIndex();
+        } catch (RuntimeException e) {
+            logger.error("Search index sync failed", e);
+        }
+    }
+
+}
@@ -0,0 +1,206 @@
+package ru.bicev.notes.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.roaringbitmap.longlong.PeekableLongIterator;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import ru.bicev.notes.repository.NoteRepository;
+import ru.bicev.notes.util.AfterCommit;
+import ru.bicev.notes.util.BoundedCache;
+
+/**
+ * In-process inverted index from tag name to the ids of a user's notes, held
+ * as compressed bitmaps. A user's index is loaded from the database on the
+ * first query and then kept up to date by {@link NoteServiceImpl}, whose
+ * changes are applied once their transaction commits. Entries expire after
+ * {@code notes.tag-index.ttl} milliseconds so that writes made by other
+ * application instances are eventually seen.
+ *
+ * Each user's index has a read-write lock: queries run concurrently, while
+ * loading and updates are exclusive. Locks are used instead of monitors
+ * because loading reads from the database, and a virtual thread blocking
+ * inside {@code synchronized} pins its carrier thread.
+ */
+@Component
+public class TagIndex {
+
+    private final NoteRepository noteRepository;
+    private final BoundedCache<Long, UserTags> indexes;
+    private final long ttlMillis;
+    private static final Logger logger = LoggerFactory.getLogger(TagIndex.class);
+
+    public TagIndex(NoteRepository noteRepository, @Value("${notes.tag-index.max-users:1000}") int maxUsers,
+            @Value("${notes.tag-index.ttl:300000}") long ttlMillis) {
+        this.noteRepository = noteRepository;
+        this.indexes = new BoundedCache<>(maxUsers);
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns, in ascending order, up to {@code limit} ids greater than
+     * {@code after} of the user's notes that have every tag in {@code all},
+     * at least one tag in {@code any} (when it is not empty) and no tag in
+     * {@code none}. Must be called inside a transaction the first time a
+     * user's index is loaded.
+     */
+    public List<Long> find(Long userId, Collection<String> all, Collection<String> any, Collection<String> none,
+            long after, int limit) {
+        UserTags tags = indexFor(userId);
+        tags.lock.readLock().lock();
+        try {
+            Roaring64Bitmap matched = null;
+            for (String tag : all) {
+                Roaring64Bitmap notes = tags.byTag.get(tag);
+                if (notes == null) {
+                    return List.of();
+                }
+                matched = matched == null ? notes.clone() : Roaring64Bitmap.and(matched, notes);
+            }
+            if (!any.isEmpty()) {
+                Roaring64Bitmap union = new Roaring64Bitmap();
+                for (String tag : any) {
+                    Roaring64Bitmap notes = tags.byTag.get(tag);
+                    if (notes != null) {
+                        union.or(notes);
+                    }
+                }
+                matched = matched == null ? union : Roaring64Bitmap.and(matched, union);
+            }
+            if (matched == null) {
+                matched = tags.notes.clone();
+            }
+            for (String tag : none) {
+                Roaring64Bitmap notes = tags.byTag.get(tag);
+                if (notes != null) {
+                    matched.andNot(notes);
+                }
+            }
+            List<Long> ids = new ArrayList<>(limit);
+            PeekableLongIterator iterator = matched.getLongIteratorFrom(after + 1);
+            while (iterator.hasNext() && ids.size() < limit) {
+                ids.add(iterator.next());
+            }
+            return ids;
+        } finally {
+            tags.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records that a note lost {@code removedTags} and gained
+     * {@code addedTags}; a new note is recorded with no removed tags.
+     */
+    public void noteChanged(Long noteId, Long userId, Collection<String> removedTags, Collection<String> addedTags) {
+        List<String> removed = List.copyOf(removedTags);
+        List<String> added = List.copyOf(addedTags);
+        AfterCommit.run(() -> update(userId, tags -> {
+            tags.notes.addLong(noteId);
+            removed.forEach(tag -> tags.remove(tag, noteId));
+            added.forEach(tag -> tags.add(tag, noteId));
+        }));
+    }
+
+    public void noteDeleted(Long noteId, Long userId, Collection<String> tags) {
+        List<String> removed = List.copyOf(tags);
+        AfterCommit.run(() -> update(userId, userTags -> {
+            userTags.notes.removeLong(noteId);
+            removed.forEach(tag -> userTags.remove(tag, noteId));
+        }));
+    }
+
+    /**
+     * Drops the user's index after commit, for changes that are not tracked
+     * note by note. It is loaded again on the next query.
+     */
+    public void evict(Long userId) {
+        AfterCommit.run(() -> indexes.remove(userId));
+    }
+
+    private UserTags indexFor(Long userId) {
+        UserTags tags = indexes.get(userId);
+        if (tags == null) {
+            tags = new UserTags();
+            indexes.put(userId, tags, System.currentTimeMillis() + ttlMillis);
+        }
+        if (tags.loaded) {
+            return tags;
+        }
+        tags.lock.writeLock().lock();
+        try {
+            if (!tags.loaded) {
+                try (Stream<Object[]> rows = noteRepository.streamTagsByUser(userId)) {
+                    UserTags target = tags;
+                    rows.forEach(row -> {
+                        Long noteId = (Long) row[0];
+                        target.notes.addLong(noteId);
+                        if (row[1] != null) {
+                            target.add((String) row[1], noteId);
+                        }
+                    });
+                }
+                tags.loaded = true;
+                logger.info("Tag index loaded: tags={}, notes={}, user={}", tags.byTag.size(),
+                        tags.notes.getLongCardinality(), userId);
+            }
+        } finally {
+            tags.lock.writeLock().unlock();
+        }
+        return tags;
+    }
+
+    /**
+     * Applies a change to a loaded index. An index that has not finished
+     * loading is skipped: its load started after the change was committed,
+     * so the change is already part of what it reads.
+     */
+    private void update(Long userId, Consumer<UserTags> change) {
+        UserTags tags = indexes.get(userId);
+        if (tags == null) {
+            return;
+        }
+        tags.lock.writeLock().lock();
+        try {
+            if (tags.loaded) {
+                change.accept(tags);
+            }
+        } finally {
+            tags.lock.writeLock().unlock();
+        }
+    }
+
+    private static final class UserTags {
+
+        private final Map<String, Roaring64Bitmap> byTag = new HashMap<>();
+        private final Roaring64Bitmap notes = new Roaring64Bitmap();
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private volatile boolean loaded;
+
+        private void add(String tag, long noteId) {
+            byTag.computeIfAbsent(tag, t -> new Roaring64Bitmap()).addLong(noteId);
+        }
+
+        private void remove(String tag, long noteId) {
+            Roaring64Bitmap tagged = byTag.get(tag);
+            if (tagged != null) {
+                tagged.removeLong(noteId);
+                if (tagged.isEmpty()) {
+                    byTag.remove(tag);
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,151 @@
+package ru.bicev.notes.service;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.jsonwebtoken.Claims;
+import ru.bicev.notes.dto.JwtResponse;
+import ru.bicev.notes.exception.InvalidTokenException;
+import ru.bicev.notes.repository.RevokedTokenRepository;
+import ru.bicev.notes.util.BloomFilter;
+import ru.bicev.notes.util.RevocationFilter;
+
+/**
+ * Issues access/refresh token pairs, rotates refresh tokens and revokes
+ * tokens by id. Revoked ids are stored in {@code revoked_tokens}; revoked
+ * access token ids also go into an in-memory {@link RevocationFilter}.
+ * {@link #isRevoked} answers from the filter alone for tokens that were
+ * never revoked and asks the database only on a filter hit. Refresh tokens
+ * are revoked through the table's primary key and cannot be reused on any
+ * instance, so their ids stay out of the filter.
+ *
+ * The filter is built from the table before the application serves requests
+ * and rebuilt every {@code jwt.revocation.rebuild-interval} milliseconds, which
+ * drops expired ids and purges their rows. Between rebuilds it only learns
+ * about revocations made by this instance; with several instances, an access
+ * token revoked elsewhere stays usable here until the next rebuild. The
+ * reactive module checks tokens against the same table and filter class.
+ */
+@Service
+public class TokenService {
+
+    private final JwtService jwtService;
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final RevocationFilter revokedIds;
+    private static final Logger logger = LoggerFactory.getLogger(TokenService.class);
+
+    public TokenService(JwtService jwtService, RevokedTokenRepository revokedTokenRepository,
+            @Value("${jwt.revocation.expected-entries:100000}") int expectedEntries) {
+        this.jwtService = jwtService;
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.revokedIds = new RevocationFilter(expectedEntries);
+        rebuildFilter();
+    }
+
+    /**
+     * Replaces the filter with one built from the live access token ids in
+     * the table. Runs on the scheduler thread only, never concurrently.
+     */
+    @Scheduled(initialDelayString = "${jwt.revocation.rebuild-interval:300000}",
+            fixedDelayString = "${jwt.revocation.rebuild-interval:300000}")
+    public void rebuildFilter() {
+        long now = System.currentTimeMillis();
+        int purged = revokedTokenRepository.deleteExpired(now);
+        BloomFilter rebuilt = revokedIds.beginRebuild();
+        List<String> live = revokedTokenRepository.findLiveAccessIds(now);
+        if (live.size() > revokedIds.expectedEntries()) {
+            logger.warn("Revocation filter holds {} ids, more than jwt.revocation.expected-entries={}",
+                    live.size(), revokedIds.expectedEntries());
+        }
+        live.forEach(rebuilt::add);
+        revokedIds.finishRebuild(rebuilt);
+        logger.info("Revocation filter loaded: revoked={}, purged={}", live.size(), purged);
+    }
+
+    public JwtResponse issue(Long userId, String email) {
+        return new JwtResponse(jwtService.generateToken(userId, email),
+                jwtService.generateRefreshToken(userId, email));
+    }
+
+    /**
+     * Exchanges a refresh token for a new pair and revokes it, so each refresh
+     * token works once. Presenting it again fails even if two requests race.
+     *
+     * @throws InvalidTokenException if the token is invalid, expired or
+     *                               already used
+     */
+    public JwtResponse refresh(String refreshToken) {
+        Claims claims = parseRefreshToken(refreshToken);
+        if (!revoke(claims, true)) {
+            logger.warn("Reused refresh token: {}", JwtService.fingerprint(refreshToken));
+            throw new InvalidTokenException("Refresh token has already been used");
+        }
+        return issue(claims.get(JwtService.USER_ID_CLAIM, Long.class), claims.getSubject());
+    }
+
+    /**
+     * Revokes the refresh token and, if given and still valid, the access
+     * token it was used with.
+     *
+     * @throws InvalidTokenException if the refresh token is invalid or expired
+     */
+    public void logout(String refreshToken, String accessToken) {
+        revoke(parseRefreshToken(refreshToken), true);
+        if (accessToken != null) {
+            try {
+                revoke(jwtService.validateToken(accessToken), false);
+            } catch (IllegalArgumentException e) {
+                // An invalid or expired access token is unusable anyway.
+            }
+        }
+    }
+
+    /**
+     * Whether the token id was revoked. Tokens issued before ids were
+     * introduced have none and cannot be revoked.
+     */
+    public boolean isRevoked(String jti) {
+        if (jti == null || !revokedIds.mightContain(jti)) {
+            return false;
+        }
+        return revokedTokenRepository.existsOnPrimary(jti);
+    }
+
+    /**
+     * Stores the id before adding an access token id to the filter, so a
+     * concurrent rebuild either reads the row or gets the id from
+     * {@link RevocationFilter#add}.
+     *
+     * @return {@code false} if the token had already been revoked
+     */
+    private boolean revoke(Claims claims, boolean refresh) {
+        String jti = claims.getId();
+        if (jti == null) {
+            return true;
+        }
+        try {
+            revokedTokenRepository.insert(jti, claims.getExpiration().getTime(), refresh);
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+        if (!refresh) {
+            revokedIds.add(jti);
+        }
+        return true;
+    }
+
+    private Claims parseRefreshToken(String refreshToken) {
+        try {
+            return jwtService.validateRefreshToken(refreshToken);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidTokenException("Invalid or expired refresh token");
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+package ru.bicev.notes.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import ru.bicev.notes.entity.User;
+import ru.bicev.notes.exception.UserNotFoundException;
+import ru.bicev.notes.repository.UserRepository;
+import ru.bicev.notes.util.BoundedCache;
+
+/**
+ * In-process cache of {@link User} entities keyed by id. Entries are detached,
+ * so only the id and scalar columns may be used from them.
+ */
+@Component
+public class UserCache {
+
+    private final UserRepository userRepository;
+    private final BoundedCache<Long, User> cache;
+    private static final Logger logger = LoggerFactory.getLogger(UserCache.class);
+
+    public UserCache(UserRepository userRepository, @Value("${users.cache.max-size:10000}") int maxSize) {
+        this.userRepository = userRepository;
+        this.cache = new BoundedCache<>(maxSize);
+    }
+
+    public User getUser(Long userId) {
+        User cached = cache.get(userId);
+        if (cached != null) {
+            return cached;
+        }
+        User user = userRepository.findById(userId).orElseThrow(() -> {
+            logger.warn("User with id: {} was not found", userId);
+            return new UserNotFoundException("User not found");
+        });
+        cache.put(userId, user);
+        return user;
+    }
+
+    public void evict(Long userId) {
+        cache.remove(userId);
+    }
+
+}
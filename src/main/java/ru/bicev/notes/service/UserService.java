@@ -6,7 +6,7 @@ public interface UserService {
 
     UserDto registerUser(String email, String password);
 
-    boolean checkCredentials(String email, String password);
+    UserDto authenticate(String email, String password);
 
     UserDto getUserByEmail(String email);
 
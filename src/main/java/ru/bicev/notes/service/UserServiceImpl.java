@@ -7,6 +7,7 @@ import org.springframework.stereotype.Service;
 
 import ru.bicev.notes.dto.UserDto;
 import ru.bicev.notes.entity.User;
+import ru.bicev.notes.exception.AccessDeniedException;
 import ru.bicev.notes.exception.DuplicateUserException;
 import ru.bicev.notes.exception.UserNotFoundException;
 import ru.bicev.notes.repository.UserRepository;
@@ -38,15 +39,26 @@ public class UserServiceImpl implements UserService {
         return UserMapper.toDto(savedUser);
     }
 
+    /**
+     * One lookup and one hash check. A hash made with a different cost than
+     * the configured one is replaced while the raw password is at hand.
+     */
     @Override
-    public boolean checkCredentials(String email, String password) {
+    public UserDto authenticate(String email, String password) {
         User foundUser = userRepository.findByEmail(email).orElseThrow(() -> {
             logger.warn("User with email: {} was not found", email);
             return new UserNotFoundException("User not found");
         });
+        if (!passwordEncoder.matches(password, foundUser.getPassword())) {
+            logger.warn("Invalid password for email: {}", email);
+            throw new AccessDeniedException("Invalid password");
+        }
+        if (passwordEncoder.upgradeEncoding(foundUser.getPassword())) {
+            userRepository.updatePassword(foundUser.getId(), passwordEncoder.encode(password));
+            logger.info("Rehashed password of user with email: {}", email);
+        }
         logger.info("Checked user with email: {}", email);
-        return passwordEncoder.matches(password, foundUser.getPassword());
-
+        return UserMapper.toDto(foundUser);
     }
 
     @Override
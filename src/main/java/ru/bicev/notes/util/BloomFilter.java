@@ -0,0 +1,77 @@
+package ru.bicev.notes.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter over strings. {@link #mightContain} never returns
+ * {@code false} for an added value and returns {@code true} for other values
+ * at about the configured rate while the filter holds no more than the
+ * expected number of entries.
+ *
+ * Lookups hash the characters in place and read the bit array without locks
+ * or allocation, so they can sit on the path of every request. Adds are
+ * lock-free as well; values cannot be removed.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final int bitCount;
+    private final int hashCount;
+
+    public BloomFilter(int expectedEntries, double falsePositiveRate) {
+        if (expectedEntries <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter sizing");
+        }
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (ln2 * ln2));
+        int wordCount = (int) Math.min((bits + 63) / 64, Integer.MAX_VALUE / 64);
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = wordCount * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedEntries * ln2));
+    }
+
+    public void add(CharSequence value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = index(h1 + i * h2);
+            words.accumulateAndGet(bit >>> 6, 1L << bit, (word, mask) -> word | mask);
+        }
+    }
+
+    public boolean mightContain(CharSequence value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = index(h1 + i * h2);
+            if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int index(int combined) {
+        return (combined < 0 ? ~combined : combined) % bitCount;
+    }
+
+    /**
+     * FNV-1a over the characters followed by the MurmurHash3 finalizer, so
+     * both halves of the result are usable as independent hashes.
+     */
+    private static long hash(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+}
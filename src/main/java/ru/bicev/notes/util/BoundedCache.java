@@ -0,0 +1,93 @@
+package ru.bicev.notes.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Small thread-safe LRU cache. Once {@code maxSize} entries are stored, the
+ * least recently used entry is evicted on every insert. Entries may also carry
+ * an absolute expiry time after which they are no longer returned.
+ *
+ * Guarded by a {@link ReentrantLock} rather than {@code synchronized}: the
+ * cache sits on request paths, and a virtual thread waiting for a monitor
+ * pins its carrier thread.
+ */
+public class BoundedCache<K, V> {
+
+    private final Map<K, Entry<V>> entries;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public BoundedCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public V get(K key) {
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt() <= System.currentTimeMillis()) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.value();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(K key, V value) {
+        put(key, value, Long.MAX_VALUE);
+    }
+
+    public void put(K key, V value, long expiresAtMillis) {
+        lock.lock();
+        try {
+            entries.put(key, new Entry<>(value, expiresAtMillis));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void remove(K key) {
+        lock.lock();
+        try {
+            entries.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+
+}
@@ -0,0 +1,36 @@
+package ru.bicev.notes.util;
+
+import java.util.Objects;
+
+/**
+ * Strong entity tags of the notes API. A single note is tagged with its
+ * version column; the listings of a user share the user's notes version
+ * counter, so any write to their notes or tags changes the tag of every
+ * listing. A listing tag also carries a hash of the resource kind and the
+ * normalized query, since every page of a listing, and the tag list, is a
+ * representation of its own.
+ */
+public class ETags {
+
+    public static String note(Long noteId, long version) {
+        return "\"note-" + noteId + "-v" + version + "\"";
+    }
+
+    /**
+     * Tags a page of {@code /api/notes/user}. Page tokens are compared by the
+     * position they decode to and sizes as clamped by the service.
+     */
+    public static String notesPage(Long userId, long notesVersion, String pageToken, int size) {
+        return notes(userId, notesVersion, "user", PageTokens.decode(pageToken), PageTokens.pageSize(size));
+    }
+
+    public static String tags(Long userId, long notesVersion) {
+        return notes(userId, notesVersion, "tags");
+    }
+
+    private static String notes(Long userId, long notesVersion, Object... representation) {
+        return "\"notes-" + userId + "-v" + notesVersion + "-" + Integer.toHexString(Objects.hash(representation))
+                + "\"";
+    }
+
+}
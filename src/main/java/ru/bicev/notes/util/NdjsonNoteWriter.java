@@ -0,0 +1,55 @@
+package ru.bicev.notes.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import ru.bicev.notes.dto.NoteDto;
+
+/**
+ * Writes notes as newline-delimited JSON. Output is buffered by the generator
+ * and flushed to the client every {@code flushEvery} notes.
+ */
+public class NdjsonNoteWriter implements Consumer<NoteDto>, Closeable {
+
+    private final JsonGenerator generator;
+    private final ObjectWriter writer;
+    private final int flushEvery;
+    private int written;
+
+    public NdjsonNoteWriter(OutputStream out, ObjectMapper objectMapper, int flushEvery) throws IOException {
+        this.generator = objectMapper.getFactory().createGenerator(out);
+        this.writer = objectMapper.writerFor(NoteDto.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.flushEvery = flushEvery;
+    }
+
+    @Override
+    public void accept(NoteDto note) {
+        try {
+            writer.writeValue(generator, note);
+            generator.writeRaw('\n');
+            if (++written % flushEvery == 0) {
+                generator.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int getWritten() {
+        return written;
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+
+}
@@ -9,6 +9,10 @@ import ru.bicev.notes.entity.User;
 
 public class NoteMapper {
 
+    /**
+     * Tags are not mapped: they have to be resolved against the user's tag
+     * dictionary first.
+     */
     public static Note toEntity(NoteDto noteDto, User user) {
         Note note = new Note();
         if (noteDto.getId() != null) {
@@ -16,19 +20,25 @@ public class NoteMapper {
         }
         note.setText(noteDto.getText());
         note.setUser(user);
-        if (noteDto.getTags() != null && !noteDto.getTags().isEmpty()) {
-            note.setTags(noteDto.getTags());
-        }
-
         return note;
     }
 
     public static NoteDto toDto(Note note) {
+        NoteDto noteDto = toDto(note.getId(), note.getUser().getEmail(), note.getText(), note.getTagNames());
+        noteDto.setVersion(note.getVersion());
+        return noteDto;
+    }
+
+    /**
+     * Builds the DTO from plain values, for callers that do not load notes as
+     * JPA entities (the reactive module).
+     */
+    public static NoteDto toDto(Long id, String userEmail, String text, List<String> tags) {
         NoteDto noteDto = new NoteDto();
-        noteDto.setId(note.getId());
-        noteDto.setUserEmail(note.getUser().getEmail());
-        noteDto.setText(note.getText());
-        noteDto.setTags(note.getTags());
+        noteDto.setId(id);
+        noteDto.setUserEmail(userEmail);
+        noteDto.setText(text);
+        noteDto.setTags(tags);
         return noteDto;
     }
 
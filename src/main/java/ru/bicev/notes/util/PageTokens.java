@@ -0,0 +1,63 @@
+package ru.bicev.notes.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import ru.bicev.notes.exception.InvalidPageTokenException;
+
+/**
+ * Encodes keyset cursors for note listings. A token wraps the id of the last
+ * note of the previous page; the next page starts right after it. Ranked
+ * search results have no stable key, so their tokens wrap an offset instead.
+ */
+public class PageTokens {
+
+    private static final String PREFIX = "n:";
+    private static final String OFFSET_PREFIX = "o:";
+    private static final int MAX_PAGE_SIZE = 500;
+
+    /**
+     * Clamps a requested page size to the range every listing serves.
+     */
+    public static int pageSize(int requested) {
+        return Math.max(1, Math.min(requested, MAX_PAGE_SIZE));
+    }
+
+    public static String encode(Long lastId) {
+        byte[] raw = (PREFIX + lastId).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    public static long decode(String token) {
+        return decode(token, PREFIX);
+    }
+
+    public static String encodeOffset(int offset) {
+        byte[] raw = (OFFSET_PREFIX + offset).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    public static int decodeOffset(String token) {
+        long offset = decode(token, OFFSET_PREFIX);
+        if (offset < 0 || offset > Integer.MAX_VALUE) {
+            throw new InvalidPageTokenException("Invalid page token");
+        }
+        return (int) offset;
+    }
+
+    private static long decode(String token, String prefix) {
+        if (token == null || token.isBlank()) {
+            return 0L;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            if (!raw.startsWith(prefix)) {
+                throw new InvalidPageTokenException("Invalid page token");
+            }
+            return Long.parseLong(raw.substring(prefix.length()));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPageTokenException("Invalid page token");
+        }
+    }
+
+}
@@ -0,0 +1,34 @@
+package ru.bicev.notes.util;
+
+import java.util.Locale;
+
+/**
+ * Turns an INSERT or DELETE into a query over a column of the rows it
+ * touched. PostgreSQL appends {@code RETURNING}; H2, which the tests run on,
+ * has no {@code RETURNING} and reads the rows from a data change delta table
+ * instead. Shared by the servlet and the reactive application.
+ */
+public enum ReturningSql {
+
+    POSTGRESQL,
+    H2;
+
+    /**
+     * Picks the syntax by database product name; anything but H2 is taken
+     * for PostgreSQL.
+     */
+    public static ReturningSql forDatabase(String productName) {
+        return productName.toUpperCase(Locale.ROOT).contains("H2") ? H2 : POSTGRESQL;
+    }
+
+    public String inserted(String insert, String column) {
+        return this == H2 ? "SELECT " + column + " FROM FINAL TABLE (" + insert + ")"
+                : insert + " RETURNING " + column;
+    }
+
+    public String deleted(String delete, String column) {
+        return this == H2 ? "SELECT " + column + " FROM OLD TABLE (" + delete + ")"
+                : delete + " RETURNING " + column;
+    }
+
+}
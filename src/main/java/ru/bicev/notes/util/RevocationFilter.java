@@ -0,0 +1,61 @@
+package ru.bicev.notes.util;
+
+/**
+ * Revoked access token ids in a {@link BloomFilter} that is replaced as a
+ * whole by a rebuild from {@code revoked_tokens}, which is how expired ids
+ * leave it. Shared by the servlet and the reactive application.
+ *
+ * A rebuild publishes the new filter before reading the table; ids added
+ * from then on go into both filters, so none added while the table is read
+ * is lost by the swap. Rebuilds must not run concurrently.
+ */
+public class RevocationFilter {
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final int expectedEntries;
+    private volatile BloomFilter current;
+    private volatile BloomFilter next;
+
+    public RevocationFilter(int expectedEntries) {
+        this.expectedEntries = expectedEntries;
+        this.current = new BloomFilter(expectedEntries, FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Starts a rebuild; the ids read from the table go into the returned
+     * filter, which becomes current with {@link #finishRebuild}.
+     */
+    public BloomFilter beginRebuild() {
+        BloomFilter rebuilt = new BloomFilter(expectedEntries, FALSE_POSITIVE_RATE);
+        next = rebuilt;
+        return rebuilt;
+    }
+
+    public void finishRebuild(BloomFilter rebuilt) {
+        current = rebuilt;
+        next = null;
+    }
+
+    /**
+     * Adds the id to the filter being rebuilt before the current one: a
+     * rebuild that has not read the table yet sees the id's row, and one that
+     * has already swapped is the current filter.
+     */
+    public void add(String jti) {
+        BloomFilter rebuilt = next;
+        if (rebuilt != null) {
+            rebuilt.add(jti);
+        }
+        current.add(jti);
+    }
+
+    public boolean mightContain(String jti) {
+        return current.mightContain(jti);
+    }
+
+    public int expectedEntries() {
+        return expectedEntries;
+    }
+
+}
@@ -0,0 +1,54 @@
+package ru.bicev.notes.util;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+import org.slf4j.Marker;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * Keeps about one in {@code rate} INFO and lower events of the listed
+ * loggers and drops the rest before an event is even created. These are the
+ * per-request success messages; warnings and errors always pass, as does
+ * every other logger. Configured in {@code logback-spring.xml}.
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    private Set<String> loggers = Set.of();
+    private int rate = 1;
+
+    /**
+     * Comma-separated logger names.
+     */
+    public void setLoggers(String loggers) {
+        this.loggers = Arrays.stream(loggers.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    public void setRate(int rate) {
+        if (rate < 1) {
+            throw new IllegalArgumentException("Sample rate must be positive");
+        }
+        this.rate = rate;
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params,
+            Throwable t) {
+        // A null format is an isXxxEnabled() check, which is left to the level.
+        if (rate == 1 || format == null || level.isGreaterOrEqual(Level.WARN)
+                || !loggers.contains(logger.getName())) {
+            return FilterReply.NEUTRAL;
+        }
+        return ThreadLocalRandom.current().nextInt(rate) == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+}
@@ -0,0 +1,14 @@
+-- Outbox of changes to what the search index holds of a note: creation, text
+-- and deletion. Both the servlet and the reactive application write a row in
+-- the same transaction as the change, and every instance's periodic search
+-- index sync reads the rows past its own watermark. The id is an identity so
+-- it grows in insertion order; changed_at is in epoch milliseconds. Rows are
+-- purged after notes.search.changes-retention.
+
+CREATE TABLE note_changes (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    note_id BIGINT NOT NULL,
+    changed_at BIGINT NOT NULL
+);
+
+CREATE INDEX idx_note_changes_changed_at ON note_changes (changed_at);
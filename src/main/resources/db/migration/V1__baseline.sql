@@ -0,0 +1,19 @@
+-- Schema as it was created by Hibernate ddl-auto before migrations were introduced.
+-- Existing databases are baselined at this version and skip this script.
+
+CREATE TABLE users (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email VARCHAR(255) NOT NULL UNIQUE,
+    password VARCHAR(255) NOT NULL
+);
+
+CREATE TABLE notes (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    text VARCHAR(255),
+    users_id BIGINT REFERENCES users (id)
+);
+
+CREATE TABLE notes_tags (
+    note_id BIGINT NOT NULL REFERENCES notes (id),
+    tag VARCHAR(255)
+);
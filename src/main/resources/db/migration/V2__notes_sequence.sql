@@ -0,0 +1,9 @@
+-- Note ids come from a pooled sequence so Hibernate can batch inserts.
+-- Hibernate treats each value as the upper bound of a block of 50 ids,
+-- so the first value handed out is MAX(id) + 50.
+
+CREATE SEQUENCE notes_seq INCREMENT BY 50;
+
+SELECT setval('notes_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM notes), false);
+
+ALTER TABLE notes ALTER COLUMN id DROP IDENTITY IF EXISTS;
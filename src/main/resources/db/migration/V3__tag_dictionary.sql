@@ -0,0 +1,32 @@
+-- Tags move from free-text rows in notes_tags to a per-user dictionary.
+-- Notes reference dictionary entries by id; duplicate tags on a note and
+-- case variants of the same tag collapse into one row.
+
+CREATE TABLE tags (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    users_id BIGINT NOT NULL REFERENCES users (id),
+    name VARCHAR(255) NOT NULL,
+    CONSTRAINT uk_tags_users_id_name UNIQUE (users_id, name)
+);
+
+CREATE TABLE note_tags (
+    note_id BIGINT NOT NULL REFERENCES notes (id),
+    tag_id BIGINT NOT NULL REFERENCES tags (id),
+    PRIMARY KEY (note_id, tag_id)
+);
+
+CREATE INDEX idx_note_tags_tag_id ON note_tags (tag_id, note_id);
+
+INSERT INTO tags (users_id, name)
+SELECT DISTINCT n.users_id, UPPER(nt.tag)
+FROM notes_tags nt
+JOIN notes n ON n.id = nt.note_id
+WHERE nt.tag IS NOT NULL AND n.users_id IS NOT NULL;
+
+INSERT INTO note_tags (note_id, tag_id)
+SELECT DISTINCT nt.note_id, t.id
+FROM notes_tags nt
+JOIN notes n ON n.id = nt.note_id
+JOIN tags t ON t.users_id = n.users_id AND t.name = UPPER(nt.tag);
+
+DROP TABLE notes_tags;
@@ -0,0 +1,8 @@
+-- Substring tag search (name LIKE '%part%') cannot use a b-tree index.
+-- A trigram GIN index lets PostgreSQL find matching dictionary entries
+-- without reading every tag. Creating the extension needs a role that is
+-- allowed to do so; on managed databases enable pg_trgm beforehand.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX idx_tags_name_trgm ON tags USING gin (name gin_trgm_ops);
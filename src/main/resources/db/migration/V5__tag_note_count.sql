@@ -0,0 +1,6 @@
+-- Per-tag note counters so tag listings and statistics read the tags table
+-- alone instead of counting note_tags rows on every request.
+
+ALTER TABLE tags ADD COLUMN note_count INT NOT NULL DEFAULT 0;
+
+UPDATE tags SET note_count = (SELECT COUNT(*) FROM note_tags nt WHERE nt.tag_id = tags.id);
@@ -0,0 +1,5 @@
+-- Every note listing filters on the owner and walks ids in order (keyset
+-- pagination, export), and single-note lookups check the owner. Without this
+-- index each of them scans the whole notes table.
+
+CREATE INDEX idx_notes_users_id_id ON notes (users_id, id);
@@ -0,0 +1,7 @@
+-- Versions behind the ETags of the notes API: notes.version is the JPA
+-- optimistic lock column of a single note, users.notes_version is bumped by
+-- every change to the user's notes or tags and versions the listings.
+
+ALTER TABLE notes ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE users ADD COLUMN notes_version BIGINT NOT NULL DEFAULT 0;
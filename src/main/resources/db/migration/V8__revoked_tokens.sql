@@ -0,0 +1,13 @@
+-- Revoked token ids (jti) of access and refresh tokens. Rows are only needed
+-- until the token would have expired anyway and are purged each time the
+-- in-memory revocation filter is rebuilt (jwt.revocation.rebuild-interval).
+-- Only access token ids go into the filter; refresh tokens are checked
+-- against the table itself when they are used.
+
+CREATE TABLE revoked_tokens (
+    jti VARCHAR(36) PRIMARY KEY,
+    expires_at BIGINT NOT NULL,
+    refresh BOOLEAN NOT NULL DEFAULT FALSE
+);
+
+CREATE INDEX idx_revoked_tokens_expires_at ON revoked_tokens (expires_at);
@@ -0,0 +1,9 @@
+-- Tag ids come from a pooled sequence, as note ids do since V2, so Hibernate
+-- can batch the inserts of new dictionary entries. The first value handed
+-- out is MAX(id) + 50 for the same reason as in V2.
+
+CREATE SEQUENCE tags_seq INCREMENT BY 50;
+
+SELECT setval('tags_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM tags), false);
+
+ALTER TABLE tags ALTER COLUMN id DROP IDENTITY IF EXISTS;
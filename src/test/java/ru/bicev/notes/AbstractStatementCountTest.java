@@ -0,0 +1,70 @@
+package ru.bicev.notes;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManagerFactory;
+import ru.bicev.notes.dto.JwtResponse;
+import ru.bicev.notes.dto.LoginRequest;
+
+/**
+ * Shared fixture of the statement count tests: Hibernate statistics and an
+ * authenticated user. The scheduled search index sync and revocation filter
+ * rebuild are pushed out so they cannot add statements to a count.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.open-in-view=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "notes.search.sync-interval=3600000",
+        "jwt.revocation.rebuild-interval=3600000"
+})
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public abstract class AbstractStatementCountTest {
+
+    @Autowired
+    protected MockMvc mockMvc;
+
+    @Autowired
+    protected ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    protected Statistics statistics;
+    private String token;
+
+    protected void login(String email) throws Exception {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        LoginRequest login = new LoginRequest(email, "password");
+        mockMvc.perform(post("/api/users/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(login)))
+                .andExpect(status().isCreated());
+        MvcResult result = mockMvc.perform(post("/api/users/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(login)))
+                .andExpect(status().isOk())
+                .andReturn();
+        token = objectMapper.readValue(result.getResponse().getContentAsString(), JwtResponse.class).getToken();
+    }
+
+    protected ResultActions perform(MockHttpServletRequestBuilder request) throws Exception {
+        return mockMvc.perform(request.header("Authorization", "Bearer " + token));
+    }
+
+}
@@ -1,7 +1,8 @@
 package ru.bicev.notes;
 
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.junit.jupiter.api.Test;
@@ -9,27 +10,32 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.core.Authentication;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import ru.bicev.notes.config.TestSecurityConfig;
 import ru.bicev.notes.controller.AuthController;
 import ru.bicev.notes.controller.GlobalExceptionHandler;
+import ru.bicev.notes.dto.JwtResponse;
 import ru.bicev.notes.dto.LoginRequest;
+import ru.bicev.notes.dto.RefreshRequest;
 import ru.bicev.notes.dto.UserDto;
+import ru.bicev.notes.exception.AccessDeniedException;
 import ru.bicev.notes.exception.DuplicateUserException;
-import ru.bicev.notes.service.JwtService;
+import ru.bicev.notes.exception.InvalidTokenException;
+import ru.bicev.notes.exception.PasswordHashingBusyException;
+import ru.bicev.notes.service.TokenService;
 import ru.bicev.notes.service.UserService;
 
 @WebMvcTest(AuthController.class)
-@Import({ TestSecurityConfig.class, GlobalExceptionHandler.class })
+@Import({ TestSecurityConfig.class, GlobalExceptionHandler.class, SimpleMeterRegistry.class })
 public class AuthControllerTest {
 
         @Autowired
@@ -42,17 +48,16 @@ public class AuthControllerTest {
         private UserService userService;
 
         @MockitoBean
-        private AuthenticationManager authenticationManager;
-
-        @MockitoBean
-        private JwtService jwtService;
+        private TokenService tokenService;
 
         String token = "mocked-jwt-token";
+        String refreshToken = "mocked-refresh-token";
         private UserDto userDto = new UserDto(1L, "test@email.com");
         private LoginRequest loginRequest = new LoginRequest("test@email.com", "password");
         String expectedJson = """
                         {
-                            "token": "mocked-jwt-token"
+                            "token": "mocked-jwt-token",
+                            "refreshToken": "mocked-refresh-token"
                         }
                         """;
 
@@ -71,11 +76,9 @@ public class AuthControllerTest {
 
         @Test
         void testLogin_returnsJwtToken() throws Exception {
-                when(authenticationManager.authenticate(any()))
-                                .thenReturn(mock(Authentication.class));
-                when(userService.checkCredentials(loginRequest.getEmail(), loginRequest.getPassword()))
-                                .thenReturn(true);
-                when(jwtService.generateToken(loginRequest.getEmail())).thenReturn(token);
+                when(userService.authenticate(loginRequest.getEmail(), loginRequest.getPassword()))
+                                .thenReturn(userDto);
+                when(tokenService.issue(1L, loginRequest.getEmail())).thenReturn(new JwtResponse(token, refreshToken));
 
                 mockMvc.perform(post("/api/users/login")
                                 .contentType(MediaType.APPLICATION_JSON)
@@ -84,6 +87,64 @@ public class AuthControllerTest {
                                 .andExpect(content().json(expectedJson));
         }
 
+        @Test
+        void testLogin_invalidPassword() throws Exception {
+                when(userService.authenticate(loginRequest.getEmail(), loginRequest.getPassword()))
+                                .thenThrow(new AccessDeniedException("Invalid password"));
+
+                mockMvc.perform(post("/api/users/login")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(loginRequest)))
+                                .andExpect(status().isForbidden());
+
+                verify(tokenService, never()).issue(any(), any());
+        }
+
+        @Test
+        void testLogin_hashingBusy() throws Exception {
+                when(userService.authenticate(loginRequest.getEmail(), loginRequest.getPassword()))
+                                .thenThrow(new PasswordHashingBusyException("Too many logins in progress, try again later"));
+
+                mockMvc.perform(post("/api/users/login")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(loginRequest)))
+                                .andExpect(status().isServiceUnavailable())
+                                .andExpect(header().string("Retry-After", "1"));
+        }
+
+        @Test
+        void testRefresh_returnsNewTokens() throws Exception {
+                when(tokenService.refresh(refreshToken)).thenReturn(new JwtResponse(token, refreshToken));
+
+                mockMvc.perform(post("/api/users/refresh")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(new RefreshRequest(refreshToken))))
+                                .andExpect(status().isOk())
+                                .andExpect(content().json(expectedJson));
+        }
+
+        @Test
+        void testRefresh_reusedToken() throws Exception {
+                when(tokenService.refresh(refreshToken))
+                                .thenThrow(new InvalidTokenException("Refresh token has already been used"));
+
+                mockMvc.perform(post("/api/users/refresh")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(new RefreshRequest(refreshToken))))
+                                .andExpect(status().isUnauthorized());
+        }
+
+        @Test
+        void testLogout_revokesBothTokens() throws Exception {
+                mockMvc.perform(post("/api/users/logout")
+                                .header("Authorization", "Bearer " + token)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(new RefreshRequest(refreshToken))))
+                                .andExpect(status().isNoContent());
+
+                verify(tokenService).logout(refreshToken, token);
+        }
+
         @Test
         public void duplicateUserExceptionTest() throws Exception {
                 when(userService.registerUser(loginRequest.getEmail(), loginRequest.getPassword()))
@@ -0,0 +1,71 @@
+package ru.bicev.notes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ru.bicev.notes.exception.PasswordHashingBusyException;
+import ru.bicev.notes.security.BoundedPasswordEncoder;
+
+public class BoundedPasswordEncoderTest {
+
+    @Test
+    public void rejectsWhenThreadsAndQueueAreFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder blocking = new PasswordEncoder() {
+
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "hash:" + rawPassword;
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return encodedPassword.equals(encode(rawPassword));
+            }
+
+        };
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(blocking, 1, 1, meterRegistry)) {
+            CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("first"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("second"));
+            waitForQueued(meterRegistry);
+
+            assertThrows(PasswordHashingBusyException.class, () -> encoder.encode("third"));
+
+            release.countDown();
+            assertEquals("hash:first", running.get(5, TimeUnit.SECONDS));
+            assertEquals("hash:second", queued.get(5, TimeUnit.SECONDS));
+            assertTrue(encoder.matches("fourth", "hash:fourth"));
+        }
+    }
+
+    /**
+     * The second task is submitted from another thread; wait until it is in
+     * the queue before probing the limit.
+     */
+    private static void waitForQueued(SimpleMeterRegistry meterRegistry) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("executor.queued").gauge().value() < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+}
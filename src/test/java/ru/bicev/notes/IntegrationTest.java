@@ -13,10 +13,15 @@ import org.springframework.test.web.servlet.MvcResult;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import ru.bicev.notes.dto.BulkTagRequest;
 import ru.bicev.notes.dto.JwtResponse;
 import ru.bicev.notes.dto.LoginRequest;
 import ru.bicev.notes.dto.NoteDto;
+import ru.bicev.notes.dto.NotePage;
+import ru.bicev.notes.dto.RefreshRequest;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -77,6 +82,37 @@ public class IntegrationTest {
         savedNoteId = createdNote.getId();
     }
 
+    @Test
+    @Order(3)
+    public void testCreateNotesBatch() throws Exception {
+        List<NoteDto> batch = List.of(
+                new NoteDto(null, null, "Batch note 1", List.of("Batch")),
+                new NoteDto(null, null, "Batch note 2", List.of("Batch")));
+        String token = obtainJwt("integrationTest@email.com", "password");
+
+        mockMvc.perform(post("/api/notes/batch")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.size()").value(2))
+                .andExpect(jsonPath("$[1].tags[0]").value("BATCH"));
+
+        MvcResult result = mockMvc.perform(get("/api/notes/tags")
+                .header("Authorization", "Bearer " + token)
+                .param("tags", "Batch"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.notes.size()").value(2))
+                .andReturn();
+
+        for (NoteDto note : objectMapper.readValue(result.getResponse().getContentAsString(), NotePage.class)
+                .getNotes()) {
+            mockMvc.perform(delete("/api/notes/" + note.getId())
+                    .header("Authorization", "Bearer " + token))
+                    .andExpect(status().isNoContent());
+        }
+    }
+
     @Test
     @Order(4)
     public void testGetNoteById() throws Exception {
@@ -97,6 +133,32 @@ public class IntegrationTest {
                 .andExpect(jsonPath("$.text").value(updateNoteDto.getText()));
     }
 
+    @Test
+    @Order(11)
+    public void testPatchNote() throws Exception {
+        String jwt = obtainJwt("integrationTest@email.com", "password");
+        MvcResult before = mockMvc.perform(get("/api/notes/" + savedNoteId)
+                .header("Authorization", "Bearer " + jwt))
+                .andExpect(status().isOk())
+                .andReturn();
+        List<String> tags = objectMapper.readValue(before.getResponse().getContentAsString(), NoteDto.class)
+                .getTags();
+
+        mockMvc.perform(patch("/api/notes/" + savedNoteId)
+                .header("Authorization", "Bearer " + jwt)
+                .contentType("application/merge-patch+json")
+                .content("{\"text\": \"Patched note\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.text").value("Patched note"))
+                .andExpect(jsonPath("$.tags.size()").value(tags.size()));
+
+        mockMvc.perform(patch("/api/notes/" + savedNoteId)
+                .header("Authorization", "Bearer " + jwt)
+                .contentType("application/merge-patch+json")
+                .content("{\"text\": \"\"}"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @Order(12)
     public void testDeleteNote() throws Exception {
@@ -135,7 +197,25 @@ public class IntegrationTest {
                 .header("Authorization", "Bearer " + obtainJwt("integrationTest@email.com", "password"))
                 .param("tags", "First tag", "Second tag"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.size()").value(1));
+                .andExpect(jsonPath("$.notes.size()").value(1));
+    }
+
+    @Test
+    @Order(7)
+    public void testFindByAnyTags() throws Exception {
+        String token = obtainJwt("integrationTest@email.com", "password");
+        mockMvc.perform(get("/api/notes/tags/any")
+                .header("Authorization", "Bearer " + token)
+                .param("tags", "First tag", "Missing tag"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.notes.size()").value(1));
+
+        mockMvc.perform(get("/api/notes/tags")
+                .header("Authorization", "Bearer " + token)
+                .param("tags", "First tag")
+                .param("exclude", "Second tag"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.notes.size()").value(0));
     }
 
     @Test
@@ -145,7 +225,7 @@ public class IntegrationTest {
                 .header("Authorization", "Bearer " + obtainJwt("integrationTest@email.com", "password"))
                 .param("tagpart", "ta"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.size()").value(1));
+                .andExpect(jsonPath("$.notes.size()").value(1));
     }
 
     @Test
@@ -154,7 +234,39 @@ public class IntegrationTest {
         mockMvc.perform(get("/api/notes/user")
                 .header("Authorization", "Bearer " + obtainJwt("integrationTest@email.com", "password")))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.size()").value(1));
+                .andExpect(jsonPath("$.notes.size()").value(1));
+    }
+
+    @Test
+    @Order(9)
+    public void testSearchNotes() throws Exception {
+        String token = obtainJwt("integrationTest@email.com", "password");
+        mockMvc.perform(get("/api/notes/search")
+                .header("Authorization", "Bearer " + token)
+                .param("q", "integration"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalHits").value(1))
+                .andExpect(jsonPath("$.hits[0].note.id").value(savedNoteId))
+                .andExpect(jsonPath("$.hits[0].snippet").value(containsString("<b>Integration</b>")));
+
+        mockMvc.perform(get("/api/notes/search")
+                .header("Authorization", "Bearer " + token)
+                .param("q", "batch"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalHits").value(0));
+    }
+
+    @Test
+    @Order(10)
+    public void testExportNotes() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/notes/export")
+                .header("Authorization", "Bearer " + obtainJwt("integrationTest@email.com", "password")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString(noteDto.getText())));
     }
 
     @Test
@@ -166,6 +278,147 @@ public class IntegrationTest {
                 .andExpect(jsonPath("$.size()").value(2));
     }
 
+    @Test
+    @Order(10)
+    public void testGetTagStats() throws Exception {
+        mockMvc.perform(get("/api/notes/tags/stats")
+                .header("Authorization", "Bearer " + obtainJwt("integrationTest@email.com", "password")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size()").value(2))
+                .andExpect(jsonPath("$[0].noteCount").value(1))
+                .andExpect(jsonPath("$[1].noteCount").value(1));
+    }
+
+    @Test
+    @Order(12)
+    public void testBulkTags() throws Exception {
+        String token = obtainJwt("integrationTest@email.com", "password");
+        MvcResult created = mockMvc.perform(post("/api/notes/batch")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(
+                        new NoteDto(null, null, "Bulk note 1", List.of("Bulk")),
+                        new NoteDto(null, null, "Bulk note 2", List.of("Bulk", "Extra"))))))
+                .andExpect(status().isCreated())
+                .andReturn();
+        List<NoteDto> notes = List.of(objectMapper.readValue(created.getResponse().getContentAsString(), NoteDto[].class));
+
+        mockMvc.perform(post("/api/notes/tags/bulk")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(
+                        new BulkTagRequest(null, List.of("bulk"), List.of("extra", "added")))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changedTags").value(3));
+
+        mockMvc.perform(get("/api/notes/tags/any")
+                .header("Authorization", "Bearer " + token)
+                .param("tags", "Added"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.notes.size()").value(2));
+
+        mockMvc.perform(delete("/api/notes/tags/bulk")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new BulkTagRequest(
+                        List.of(notes.get(0).getId(), notes.get(1).getId()), null, List.of("added")))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changedTags").value(2));
+
+        mockMvc.perform(get("/api/notes/tags/stats")
+                .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.name == 'ADDED')]").isEmpty())
+                .andExpect(jsonPath("$[?(@.name == 'BULK')].noteCount").value(2))
+                .andExpect(jsonPath("$[?(@.name == 'EXTRA')].noteCount").value(2));
+
+        mockMvc.perform(get("/api/notes/" + notes.get(0).getId())
+                .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tags.size()").value(2));
+
+        for (NoteDto note : notes) {
+            mockMvc.perform(delete("/api/notes/" + note.getId())
+                    .header("Authorization", "Bearer " + token))
+                    .andExpect(status().isNoContent());
+        }
+    }
+
+    @Test
+    @Order(12)
+    public void testConditionalRequests() throws Exception {
+        String token = obtainJwt("integrationTest@email.com", "password");
+        MvcResult created = mockMvc.perform(post("/api/notes")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new NoteDto(null, null, "Versioned note", List.of("V")))))
+                .andExpect(status().isCreated())
+                .andReturn();
+        Long noteId = objectMapper.readValue(created.getResponse().getContentAsString(), NoteDto.class).getId();
+
+        String noteTag = mockMvc.perform(get("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        String listTag = mockMvc.perform(get("/api/notes/user")
+                .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        String tagsTag = mockMvc.perform(get("/api/notes/tags/all")
+                .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(listTag, tagsTag);
+
+        mockMvc.perform(get("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + token)
+                .header("If-None-Match", noteTag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/notes/tags/all")
+                .header("Authorization", "Bearer " + token)
+                .header("If-None-Match", tagsTag))
+                .andExpect(status().isNotModified());
+
+        String editedTag = mockMvc.perform(put("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + token)
+                .header("If-Match", noteTag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new NoteDto(null, null, "Versioned note 2", List.of("V")))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(put("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + token)
+                .header("If-Match", noteTag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new NoteDto(null, null, "Lost update", List.of("V")))))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(get("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + token)
+                .header("If-None-Match", editedTag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/notes/user")
+                .header("Authorization", "Bearer " + token)
+                .header("If-None-Match", listTag))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/notes/tags/bulk")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new BulkTagRequest(List.of(noteId), null, List.of("W")))))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + token)
+                .header("If-None-Match", editedTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.text").value("Versioned note 2"))
+                .andExpect(jsonPath("$.tags.size()").value(2));
+
+        mockMvc.perform(delete("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + token))
+                .andExpect(status().isNoContent());
+    }
+
     @Test
     @Order(13)
     public void testGetNonExistentNote_shouldReturn404() throws Exception {
@@ -228,6 +481,51 @@ public class IntegrationTest {
                 .andExpect(status().isInternalServerError());
     }
 
+    @Test
+    @Order(20)
+    public void testRefreshAndLogout() throws Exception {
+        JwtResponse tokens = objectMapper.readValue(mockMvc.perform(post("/api/users/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(login)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(), JwtResponse.class);
+        String refreshRequest = objectMapper.writeValueAsString(new RefreshRequest(tokens.getRefreshToken()));
+
+        JwtResponse refreshed = objectMapper.readValue(mockMvc.perform(post("/api/users/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(refreshRequest))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(), JwtResponse.class);
+
+        mockMvc.perform(post("/api/users/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(refreshRequest))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(get("/api/notes/user")
+                .header("Authorization", "Bearer " + tokens.getRefreshToken()))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/notes/user")
+                .header("Authorization", "Bearer " + refreshed.getToken()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/users/logout")
+                .header("Authorization", "Bearer " + refreshed.getToken())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new RefreshRequest(refreshed.getRefreshToken()))))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/notes/user")
+                .header("Authorization", "Bearer " + refreshed.getToken()))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(post("/api/users/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new RefreshRequest(refreshed.getRefreshToken()))))
+                .andExpect(status().isUnauthorized());
+    }
+
     private String obtainJwt(String email, String password) throws Exception {
         LoginRequest loginReq = new LoginRequest(email, password);
         MvcResult result = mockMvc.perform(post("/api/users/login")
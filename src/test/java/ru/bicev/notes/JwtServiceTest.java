@@ -0,0 +1,111 @@
+package ru.bicev.notes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.crypto.SecretKey;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.security.Keys;
+import ru.bicev.notes.service.JwtService;
+
+public class JwtServiceTest {
+
+    private final SecretKey key = Keys
+            .hmacShaKeyFor("test-secret-key-test-secret-key-test-secret-key".getBytes(StandardCharsets.UTF_8));
+    private final SecretKey otherKey = Keys
+            .hmacShaKeyFor("other-secret-key-other-secret-key-other-secret".getBytes(StandardCharsets.UTF_8));
+
+    private JwtService jwtService;
+
+    @BeforeEach
+    public void setUp() {
+        jwtService = new JwtService(key, 60_000, 600_000, 100);
+    }
+
+    @Test
+    public void validateTokenSuccess() {
+        String token = jwtService.generateToken(7L, "test@email.com");
+
+        Claims claims = jwtService.validateToken(token);
+
+        assertEquals("test@email.com", claims.getSubject());
+        assertEquals(7L, claims.get(JwtService.USER_ID_CLAIM, Long.class));
+        assertTrue(jwtService.isTokenValid(token, "test@email.com"));
+        assertFalse(jwtService.isTokenExpired(token));
+    }
+
+    @Test
+    public void validateToken_ReturnsCachedClaims() {
+        String token = jwtService.generateToken(7L, "test@email.com");
+
+        assertSame(jwtService.validateToken(token), jwtService.validateToken(token));
+    }
+
+    @Test
+    public void validateToken_CacheDisabled() {
+        JwtService uncached = new JwtService(key, 60_000, 600_000, 0);
+        String token = uncached.generateToken(7L, "test@email.com");
+
+        assertEquals("test@email.com", uncached.validateToken(token).getSubject());
+    }
+
+    @Test
+    public void validateToken_ForgedToken() {
+        String forged = new JwtService(otherKey, 60_000, 600_000, 100).generateToken(7L, "test@email.com");
+
+        assertThrows(IllegalArgumentException.class, () -> jwtService.validateToken(forged));
+    }
+
+    @Test
+    public void validateToken_ExpiredToken() {
+        String expired = new JwtService(key, -1_000, 600_000, 100).generateToken(7L, "test@email.com");
+
+        assertThrows(IllegalArgumentException.class, () -> jwtService.validateToken(expired));
+        assertTrue(jwtService.isTokenExpired(expired));
+    }
+
+    @Test
+    public void fingerprint_DoesNotRevealToken() {
+        String token = jwtService.generateToken(7L, "test@email.com");
+        String other = jwtService.generateToken(8L, "test@email.com");
+
+        assertEquals(8, JwtService.fingerprint(token).length());
+        assertEquals(JwtService.fingerprint(token), JwtService.fingerprint(token));
+        assertFalse(token.contains(JwtService.fingerprint(token)));
+        assertFalse(JwtService.fingerprint(token).equals(JwtService.fingerprint(other)));
+    }
+
+    @Test
+    public void refreshToken_OnlyAcceptedAsRefreshToken() {
+        String access = jwtService.generateToken(7L, "test@email.com");
+        String refresh = jwtService.generateRefreshToken(7L, "test@email.com");
+
+        Claims claims = jwtService.validateRefreshToken(refresh);
+
+        assertEquals("test@email.com", claims.getSubject());
+        assertEquals(7L, claims.get(JwtService.USER_ID_CLAIM, Long.class));
+        assertThrows(IllegalArgumentException.class, () -> jwtService.validateToken(refresh));
+        assertThrows(IllegalArgumentException.class, () -> jwtService.validateRefreshToken(access));
+    }
+
+    @Test
+    public void generateToken_GivesEveryTokenAnId() {
+        String token = jwtService.generateToken(7L, "test@email.com");
+        String other = jwtService.generateToken(7L, "test@email.com");
+
+        assertNotNull(jwtService.validateToken(token).getId());
+        assertNotEquals(jwtService.validateToken(token).getId(), jwtService.validateToken(other).getId());
+    }
+
+}
@@ -0,0 +1,95 @@
+package ru.bicev.notes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ru.bicev.notes.dto.JwtResponse;
+import ru.bicev.notes.dto.LoginRequest;
+import ru.bicev.notes.dto.NoteDto;
+
+/**
+ * The Prometheus endpoint, served on the management port without a token,
+ * exposes request latency per route and the application's own meters.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "management.server.port=0",
+        "management.endpoints.web.exposure.include=health,prometheus",
+        "management.metrics.distribution.percentiles-histogram.http.server.requests=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureObservability
+public class MetricsTest {
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @LocalServerPort
+    private int port;
+
+    @LocalManagementPort
+    private int managementPort;
+
+    @Test
+    public void exposesApplicationMetrics() throws Exception {
+        LoginRequest login = new LoginRequest("metrics@email.com", "password");
+        assertEquals(201, send(post("/api/users/register", login)).statusCode());
+        String token = objectMapper.readValue(send(post("/api/users/login", login)).body(), JwtResponse.class)
+                .getToken();
+        HttpRequest create = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/notes"))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(
+                        new NoteDto(null, null, "Measured note", List.of("Metrics")))))
+                .build();
+        Long noteId = objectMapper.readValue(send(create).body(), NoteDto.class).getId();
+        HttpRequest get = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/notes/" + noteId))
+                .header("Authorization", "Bearer " + token)
+                .build();
+        assertEquals(200, send(get).statusCode());
+
+        HttpResponse<String> scrape = send(HttpRequest.newBuilder(
+                URI.create("http://localhost:" + managementPort + "/actuator/prometheus")).build());
+
+        assertEquals(200, scrape.statusCode());
+        String metrics = scrape.body();
+        assertTrue(metrics.contains("http_server_requests_seconds_bucket{"));
+        assertTrue(metrics.contains("uri=\"/api/notes/{noteId}\""));
+        assertTrue(metrics.contains("notes_jwt_validation_seconds_count{outcome=\"valid\""));
+        assertTrue(metrics.contains("notes_password_check_seconds_count{outcome=\"match\""));
+        assertTrue(metrics.contains("notes_password_encode_seconds_count"));
+        assertTrue(metrics.contains("notes_http_statements_count{method=\"GET\",uri=\"/api/notes/{noteId}\""));
+        assertTrue(metrics.contains("notes_notes_total{operation=\"create\"} 1.0"));
+        assertTrue(metrics.contains("notes_tags_total{operation=\"create\"} 1.0"));
+        assertTrue(metrics.contains("hikaricp_connections_acquire_seconds"));
+        assertTrue(metrics.contains("hibernate_statements_total"));
+    }
+
+    private HttpRequest post(String path, Object body) throws Exception {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                .build();
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws Exception {
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+}
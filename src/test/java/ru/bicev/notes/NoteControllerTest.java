@@ -1,39 +1,62 @@
 package ru.bicev.notes;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.when;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
-import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 
 import ru.bicev.notes.config.TestSecurityConfig;
+import ru.bicev.notes.config.WithMockUserPrincipal;
 import ru.bicev.notes.controller.GlobalExceptionHandler;
 import ru.bicev.notes.controller.NoteController;
+import ru.bicev.notes.dto.BulkTagRequest;
+import ru.bicev.notes.dto.BulkTagResponse;
 import ru.bicev.notes.dto.NoteDto;
+import ru.bicev.notes.dto.NotePage;
+import ru.bicev.notes.dto.NotePatch;
+import ru.bicev.notes.dto.NoteSearchHit;
+import ru.bicev.notes.dto.NoteSearchPage;
+import ru.bicev.notes.dto.TagCountDto;
 import ru.bicev.notes.exception.AccessDeniedException;
+import ru.bicev.notes.exception.BatchSizeExceededException;
+import ru.bicev.notes.exception.InvalidBulkRequestException;
+import ru.bicev.notes.exception.InvalidPatchException;
+import ru.bicev.notes.exception.NoteModifiedException;
 import ru.bicev.notes.exception.NoteNotFoundException;
 import ru.bicev.notes.exception.UserNotFoundException;
 import ru.bicev.notes.service.NoteService;
+import ru.bicev.notes.util.PageTokens;
 
 @WebMvcTest(NoteController.class)
-@Import({ TestSecurityConfig.class, GlobalExceptionHandler.class })
+@Import({ TestSecurityConfig.class, GlobalExceptionHandler.class, SimpleMeterRegistry.class })
 public class NoteControllerTest {
 
     @Autowired
@@ -48,12 +71,13 @@ public class NoteControllerTest {
     List<String> tags = List.of("tag1", "tag2");
     private NoteDto noteDto = new NoteDto(1L, "test@email.com", "Test note", tags);
     private NoteDto savedNote = new NoteDto(1L, "test@email.com", "Test note", tags);
+    private NotePage page = new NotePage(List.of(noteDto, savedNote), "next-page");
     String[] tagsArray = { "tag1", "tag2" };
 
     @Test
-    @WithMockUser(username = "test@email.com")
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
     public void createNoteSuccess() throws Exception {
-        when(noteService.createNote(any(), anyString())).thenReturn(savedNote);
+        when(noteService.createNote(any(), anyLong())).thenReturn(savedNote);
 
         mockMvc.perform(post("/api/notes")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -65,9 +89,71 @@ public class NoteControllerTest {
     }
 
     @Test
-    @WithMockUser(username = "test@email.com")
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
+    public void createNotesSuccess() throws Exception {
+        when(noteService.createNotes(anyList(), eq(1L))).thenReturn(List.of(savedNote, savedNote));
+
+        mockMvc.perform(post("/api/notes/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(noteDto, noteDto))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.size()").value(2));
+    }
+
+    @Test
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
+    public void createNotes_BatchSizeExceeded() throws Exception {
+        when(noteService.createNotes(anyList(), eq(1L)))
+                .thenThrow(new BatchSizeExceededException("Batch may contain at most 5000 notes"));
+
+        mockMvc.perform(post("/api/notes/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(noteDto))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
+    public void addTagsBulkSuccess() throws Exception {
+        when(noteService.addTagsBulk(any(), eq(1L))).thenReturn(new BulkTagResponse(4));
+
+        mockMvc.perform(post("/api/notes/tags/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(
+                        new BulkTagRequest(List.of(1L, 2L), null, List.of("tag1", "tag2")))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changedTags").value(4));
+    }
+
+    @Test
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
+    public void addTagsBulk_InvalidBulkRequest() throws Exception {
+        when(noteService.addTagsBulk(any(), eq(1L)))
+                .thenThrow(new InvalidBulkRequestException("Either noteIds or filterTags must be provided"));
+
+        mockMvc.perform(post("/api/notes/tags/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new BulkTagRequest(null, null, List.of("tag1")))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
+    public void deleteTagsBulkSuccess() throws Exception {
+        when(noteService.removeTagsBulk(any(), eq(1L))).thenReturn(new BulkTagResponse(2));
+
+        mockMvc.perform(delete("/api/notes/tags/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(
+                        new BulkTagRequest(null, List.of("tag1"), List.of("tag2")))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changedTags").value(2));
+    }
+
+    @Test
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
     public void findByIdAndUserSuccess() throws Exception {
-        when(noteService.findByIdAndUser(eq(1L), anyString())).thenReturn(savedNote);
+        when(noteService.findByIdAndUser(eq(1L), anyLong(), any())).thenReturn(Optional.of(savedNote));
 
         mockMvc.perform(get("/api/notes/1"))
                 .andExpect(status().isOk())
@@ -77,32 +163,125 @@ public class NoteControllerTest {
     }
 
     @Test
-    @WithMockUser(username = "test@email.com")
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
+    public void findByIdAndUser_ReturnsETag() throws Exception {
+        when(noteService.findByIdAndUser(eq(1L), eq(1L), any())).thenAnswer(invocation -> {
+            LongPredicate unchanged = invocation.getArgument(2);
+            return unchanged.test(3L) ? Optional.empty() : Optional.of(savedNote);
+        });
+
+        mockMvc.perform(get("/api/notes/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"note-1-v3\""))
+                .andExpect(header().string("Cache-Control", "no-cache, private"))
+                .andExpect(jsonPath("$.version").doesNotExist());
+    }
+
+    @Test
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
+    public void findByIdAndUser_NotModified() throws Exception {
+        when(noteService.findByIdAndUser(eq(1L), eq(1L), any())).thenAnswer(invocation -> {
+            LongPredicate unchanged = invocation.getArgument(2);
+            return unchanged.test(3L) ? Optional.empty() : Optional.of(savedNote);
+        });
+
+        mockMvc.perform(get("/api/notes/1").header("If-None-Match", "\"note-1-v3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"note-1-v3\""))
+                .andExpect(content().string(""));
+
+        mockMvc.perform(get("/api/notes/1").header("If-None-Match", "\"note-1-v2\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1));
+    }
+
+    @Test
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
     public void updateNoteSuccess() throws Exception {
-        when(noteService.editNote(eq(1L), any(NoteDto.class), anyString())).thenReturn(savedNote);
+        savedNote.setVersion(4L);
+        when(noteService.editNote(eq(1L), any(NoteDto.class), anyLong(), any())).thenReturn(savedNote);
 
         mockMvc.perform(put("/api/notes/1")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(noteDto)))
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"note-1-v4\""))
                 .andExpect(jsonPath("$.text").value("Test note"))
                 .andExpect(jsonPath("$.id").value(1));
 
     }
 
     @Test
-    @WithMockUser(username = "test@email.com")
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
+    public void patchNoteSuccess() throws Exception {
+        savedNote.setVersion(5L);
+        when(noteService.patchNote(eq(1L), any(NotePatch.class), eq(1L), any())).thenAnswer(invocation -> {
+            NotePatch patch = invocation.getArgument(1);
+            assertEquals(true, patch.isTextSet());
+            assertEquals(false, patch.isTagsSet());
+            return savedNote;
+        });
+
+        mockMvc.perform(patch("/api/notes/1")
+                .contentType("application/merge-patch+json")
+                .content("{\"text\": \"Test note\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"note-1-v5\""))
+                .andExpect(jsonPath("$.tags.size()").value(tags.size()));
+    }
+
+    @Test
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
+    public void patchNote_InvalidPatch() throws Exception {
+        when(noteService.patchNote(eq(1L), any(NotePatch.class), eq(1L), any()))
+                .thenThrow(new InvalidPatchException("Text must not be blank"));
+
+        mockMvc.perform(patch("/api/notes/1")
+                .contentType("application/merge-patch+json")
+                .content("{\"text\": null}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Text must not be blank"));
+    }
+
+    @Test
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
+    public void updateNote_IfMatch() throws Exception {
+        savedNote.setVersion(4L);
+        when(noteService.editNote(eq(1L), any(NoteDto.class), eq(1L), any())).thenAnswer(invocation -> {
+            LongPredicate rejected = invocation.getArgument(3);
+            if (rejected.test(3L)) {
+                throw new NoteModifiedException("Note was modified");
+            }
+            return savedNote;
+        });
+
+        mockMvc.perform(put("/api/notes/1")
+                .header("If-Match", "\"note-1-v2\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(noteDto)))
+                .andExpect(status().isPreconditionFailed());
+
+        mockMvc.perform(put("/api/notes/1")
+                .header("If-Match", "\"note-1-v3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(noteDto)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"note-1-v4\""));
+    }
+
+    @Test
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
     public void deleteNoteSuccess() throws Exception {
-        doNothing().when(noteService).deleteNote(eq(1L), anyString());
+        doNothing().when(noteService).deleteNote(eq(1L), anyLong());
 
         mockMvc.perform(delete("/api/notes/1"))
                 .andExpect(status().isNoContent());
     }
 
     @Test
-    @WithMockUser(username = "test@email.com")
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
     public void addTagsSuccess() throws Exception {
-        when(noteService.addTags(eq(1L), anyString(), eq(tagsArray))).thenReturn(savedNote);
+        when(noteService.addTags(eq(1L), anyLong(), eq(tagsArray))).thenReturn(savedNote);
 
         mockMvc.perform(post("/api/notes/1/tags")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -114,9 +293,9 @@ public class NoteControllerTest {
     }
 
     @Test
-    @WithMockUser(username = "test@email.com")
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
     public void deleteTagsSuccess() throws Exception {
-        when(noteService.removeTags(eq(1L), anyString(), eq(tagsArray))).thenReturn(savedNote);
+        when(noteService.removeTags(eq(1L), anyLong(), eq(tagsArray))).thenReturn(savedNote);
 
         mockMvc.perform(delete("/api/notes/1/tags")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -128,46 +307,94 @@ public class NoteControllerTest {
     }
 
     @Test
-    @WithMockUser(username = "test@email.com")
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
     public void findByAllTagsSuccess() throws Exception {
-        when(noteService.findByAllTags(eq(tags), anyString())).thenReturn(List.of(noteDto, savedNote));
+        when(noteService.findByAllTags(eq(tags), isNull(), anyLong(), isNull(), eq(50))).thenReturn(page);
 
         mockMvc.perform(get("/api/notes/tags")
                 .param("tags", "tag1", "tag2")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.size()").value(2));
+                .andExpect(jsonPath("$.notes.size()").value(2))
+                .andExpect(jsonPath("$.nextPageToken").value("next-page"));
 
     }
 
     @Test
-    @WithMockUser(username = "test@email.com")
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
+    public void findByAnyTagsSuccess() throws Exception {
+        when(noteService.findByAnyTags(eq(tags), eq(List.of("tag3")), eq(1L), isNull(), eq(50))).thenReturn(page);
+
+        mockMvc.perform(get("/api/notes/tags/any")
+                .param("tags", "tag1", "tag2")
+                .param("exclude", "tag3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.notes.size()").value(2));
+    }
+
+    @Test
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
     public void findByTagPartSuccess() throws Exception {
-        when(noteService.findByTagPart(eq("ag"), anyString())).thenReturn(List.of(noteDto, savedNote));
+        when(noteService.findByTagPart(eq("ag"), anyLong(), isNull(), eq(50))).thenReturn(page);
 
         mockMvc.perform(get("/api/notes/tagpart")
                 .param("tagpart", "ag")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.size()").value(2));
+                .andExpect(jsonPath("$.notes.size()").value(2))
+                .andExpect(jsonPath("$.nextPageToken").value("next-page"));
 
     }
 
     @Test
-    @WithMockUser(username = "test@email.com")
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
     public void findByUserSuccess() throws Exception {
-        when(noteService.findByUser(anyString())).thenReturn(List.of(noteDto, savedNote));
+        when(noteService.findByUser(anyLong(), isNull(), eq(50), any())).thenReturn(Optional.of(page));
 
         mockMvc.perform(get("/api/notes/user"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.size()").value(2));
+                .andExpect(jsonPath("$.notes.size()").value(2))
+                .andExpect(jsonPath("$.nextPageToken").value("next-page"));
 
     }
 
     @Test
-    @WithMockUser(username = "test@email.com")
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
+    public void findByUser_NotModified() throws Exception {
+        when(noteService.findByUser(eq(1L), any(), anyInt(), any())).thenAnswer(invocation -> {
+            LongPredicate unchanged = invocation.getArgument(3);
+            return unchanged.test(7L) ? Optional.empty() : Optional.of(page);
+        });
+        when(noteService.getAllTags(eq(1L), any())).thenAnswer(invocation -> {
+            LongPredicate unchanged = invocation.getArgument(1);
+            return unchanged.test(7L) ? Optional.empty() : Optional.of(tags);
+        });
+
+        String etag = mockMvc.perform(get("/api/notes/user"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/notes/user").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        // The same position and the same size after clamping.
+        mockMvc.perform(get("/api/notes/user").param("pageToken", "").param("size", "50")
+                .header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        // Another page, another size or the tag list is another representation.
+        mockMvc.perform(get("/api/notes/user").param("pageToken", PageTokens.encode(10L))
+                .header("If-None-Match", etag))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/notes/user").param("size", "5").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/notes/tags/all").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
     public void findAllTagsSuccess() throws Exception {
-        when(noteService.getAllTags(anyString())).thenReturn(tags);
+        when(noteService.getAllTags(anyLong(), any())).thenReturn(Optional.of(tags));
 
         mockMvc.perform(get("/api/notes/tags/all"))
                 .andExpect(status().isOk())
@@ -176,9 +403,57 @@ public class NoteControllerTest {
     }
 
     @Test
-    @WithMockUser(username = "test@email.com")
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
+    public void searchNotesSuccess() throws Exception {
+        NoteSearchPage page = new NoteSearchPage(List.of(new NoteSearchHit(savedNote, "<b>Note</b>", 1.5f)), 1, null);
+        when(noteService.searchNotes("note", 1L, null, 50)).thenReturn(page);
+
+        mockMvc.perform(get("/api/notes/search").param("q", "note"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalHits").value(1))
+                .andExpect(jsonPath("$.hits[0].note.id").value(savedNote.getId()))
+                .andExpect(jsonPath("$.hits[0].snippet").value("<b>Note</b>"));
+    }
+
+    @Test
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
+    public void getTagStatsSuccess() throws Exception {
+        when(noteService.getTagStats(1L)).thenReturn(List.of(new TagCountDto("TAG1", 3), new TagCountDto("TAG2", 1)));
+
+        mockMvc.perform(get("/api/notes/tags/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("TAG1"))
+                .andExpect(jsonPath("$[0].noteCount").value(3));
+    }
+
+    @Test
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
+    public void exportNotesSuccess() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<NoteDto> consumer = invocation.getArgument(1);
+            consumer.accept(noteDto);
+            consumer.accept(savedNote);
+            return null;
+        }).when(noteService).exportNotes(eq(1L), any());
+
+        MvcResult result = mockMvc.perform(get("/api/notes/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("Test note", objectMapper.readValue(lines[0], NoteDto.class).getText());
+    }
+
+    @Test
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
     public void userNotFoundTest() throws Exception {
-        when(noteService.createNote(any(), anyString())).thenThrow(new UserNotFoundException("User not found"));
+        when(noteService.createNote(any(), anyLong())).thenThrow(new UserNotFoundException("User not found"));
 
         mockMvc.perform(post("/api/notes")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -187,9 +462,9 @@ public class NoteControllerTest {
     }
 
     @Test
-    @WithMockUser(username = "test@email.com")
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
     public void noteNotFoundTest() throws Exception {
-        when(noteService.findByIdAndUser(eq(1L), anyString())).thenThrow(new NoteNotFoundException("Note not found"));
+        when(noteService.findByIdAndUser(eq(1L), anyLong(), any())).thenThrow(new NoteNotFoundException("Note not found"));
 
         mockMvc.perform(get("/api/notes/1"))
                 .andExpect(status().isNotFound());
@@ -197,9 +472,9 @@ public class NoteControllerTest {
     }
 
     @Test
-    @WithMockUser(username = "test@email.com")
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
     public void accessDemiedExceptionTest() throws Exception {
-        when(noteService.findByIdAndUser(eq(1L), anyString())).thenThrow(new AccessDeniedException("Access denied"));
+        when(noteService.findByIdAndUser(eq(1L), anyLong(), any())).thenThrow(new AccessDeniedException("Access denied"));
 
         mockMvc.perform(get("/api/notes/1"))
                 .andExpect(status().isForbidden());
@@ -207,9 +482,9 @@ public class NoteControllerTest {
     }
 
     @Test
-    @WithMockUser(username = "test@email.com")
+    @WithMockUserPrincipal(id = 1L, email = "test@email.com")
     public void genericExceptionTest() throws Exception {
-        when(noteService.findByIdAndUser(eq(1L), anyString())).thenThrow(new RuntimeException("Exception"));
+        when(noteService.findByIdAndUser(eq(1L), anyLong(), any())).thenThrow(new RuntimeException("Exception"));
 
         mockMvc.perform(get("/api/notes/1"))
                 .andExpect(status().isInternalServerError());
@@ -0,0 +1,127 @@
+package ru.bicev.notes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ru.bicev.notes.service.NoteSearchIndex;
+
+public class NoteSearchIndexTest {
+
+    private NoteSearchIndex searchIndex;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        searchIndex = new NoteSearchIndex("", 1000);
+        searchIndex.index(List.of(
+                new NoteSearchIndex.Entry(1L, 1L, "Buy milk and bread", 0L),
+                new NoteSearchIndex.Entry(2L, 1L, "Milk, milk and more milk for the <party>", 0L),
+                new NoteSearchIndex.Entry(3L, 1L, "Call the plumber", 0L),
+                new NoteSearchIndex.Entry(4L, 2L, "Milk for another user", 0L)));
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        searchIndex.close();
+    }
+
+    @Test
+    public void searchRanksByRelevance() {
+        NoteSearchIndex.Hits result = searchIndex.search(1L, "milk", 0, 10);
+
+        assertEquals(2, result.totalHits());
+        assertEquals(List.of(2L, 1L), ids(result));
+        assertTrue(result.hits().get(0).score() > result.hits().get(1).score());
+    }
+
+    @Test
+    public void searchRequiresAllWords() {
+        assertEquals(List.of(1L), ids(searchIndex.search(1L, "milk bread", 0, 10)));
+        assertEquals(Set.of(1L, 3L), Set.copyOf(ids(searchIndex.search(1L, "bread | plumber", 0, 10))));
+        assertEquals(List.of(2L), ids(searchIndex.search(1L, "milk -bread", 0, 10)));
+        assertEquals(List.of(3L), ids(searchIndex.search(1L, "plumb*", 0, 10)));
+    }
+
+    @Test
+    public void searchIsScopedToUser() {
+        assertEquals(List.of(4L), ids(searchIndex.search(2L, "milk", 0, 10)));
+        assertEquals(0, searchIndex.search(3L, "milk", 0, 10).totalHits());
+    }
+
+    @Test
+    public void searchPagesByOffset() {
+        NoteSearchIndex.Hits second = searchIndex.search(1L, "milk", 1, 1);
+
+        assertEquals(2, second.totalHits());
+        assertEquals(List.of(1L), ids(second));
+        assertEquals(List.of(), ids(searchIndex.search(1L, "milk", 2, 1)));
+    }
+
+    @Test
+    public void snippetHighlightsMatchesAndEscapesText() {
+        String snippet = searchIndex.search(1L, "party", 0, 10).hits().get(0).snippet();
+
+        assertTrue(snippet.contains("<b>party</b>"));
+        assertTrue(snippet.contains("&lt;"));
+    }
+
+    @Test
+    public void snippetWithoutPassageIsEscaped() {
+        // The match lies past the highlighter's max length, so no passage is found.
+        searchIndex.index(5L, 1L, "<script>alert(1)</script> " + "filler ".repeat(2_000) + "needle", 0L);
+
+        String snippet = searchIndex.search(1L, "needle", 0, 10).hits().get(0).snippet();
+
+        assertFalse(snippet.contains("<script>"));
+        assertTrue(snippet.startsWith("&lt;script&gt;"));
+    }
+
+    @Test
+    public void indexReplacesAndDeletes() {
+        searchIndex.index(1L, 1L, "Buy bread", 1L);
+        searchIndex.delete(2L);
+
+        assertEquals(List.of(), ids(searchIndex.search(1L, "milk", 0, 10)));
+        assertEquals(List.of(1L), ids(searchIndex.search(1L, "bread", 0, 10)));
+        assertEquals(3, searchIndex.size());
+    }
+
+    @Test
+    public void versionsMapsNotesToIndexedVersions() {
+        searchIndex.index(1L, 1L, "Buy bread", 3L);
+        searchIndex.delete(List.of(2L, 3L));
+
+        assertEquals(Map.of(1L, 3L, 4L, 0L), searchIndex.versions());
+    }
+
+    @Test
+    public void versionsOfGivenNotesSkipsMissing() {
+        searchIndex.index(1L, 1L, "Buy bread", 3L);
+        searchIndex.delete(2L);
+
+        assertEquals(Map.of(1L, 3L, 3L, 0L), searchIndex.versions(List.of(1L, 2L, 3L, 9L)));
+    }
+
+    @Test
+    public void rebuildReplacesIndex() {
+        int indexed = searchIndex.rebuild(Stream.of(new NoteSearchIndex.Entry(5L, 1L, "Fresh milk", 0L)));
+
+        assertEquals(1, indexed);
+        assertEquals(1, searchIndex.size());
+        assertEquals(List.of(5L), ids(searchIndex.search(1L, "milk", 0, 10)));
+    }
+
+    private List<Long> ids(NoteSearchIndex.Hits result) {
+        return result.hits().stream().map(NoteSearchIndex.Hit::noteId).toList();
+    }
+
+}
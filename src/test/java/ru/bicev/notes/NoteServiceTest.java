@@ -2,33 +2,66 @@ package ru.bicev.notes;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import ru.bicev.notes.dto.BulkTagRequest;
+import ru.bicev.notes.dto.BulkTagResponse;
 import ru.bicev.notes.dto.NoteDto;
+import ru.bicev.notes.dto.NotePage;
+import ru.bicev.notes.dto.NotePatch;
+import ru.bicev.notes.dto.NoteSearchPage;
+import ru.bicev.notes.dto.TagCountDto;
 import ru.bicev.notes.entity.Note;
+import ru.bicev.notes.entity.NoteChange;
+import ru.bicev.notes.entity.Tag;
 import ru.bicev.notes.entity.User;
+import ru.bicev.notes.exception.BatchSizeExceededException;
+import ru.bicev.notes.exception.InvalidBulkRequestException;
+import ru.bicev.notes.exception.InvalidPageTokenException;
+import ru.bicev.notes.exception.InvalidPatchException;
+import ru.bicev.notes.exception.NoteModifiedException;
 import ru.bicev.notes.exception.NoteNotFoundException;
 import ru.bicev.notes.exception.UserNotFoundException;
+import ru.bicev.notes.repository.NoteChangeRepository;
 import ru.bicev.notes.repository.NoteRepository;
+import ru.bicev.notes.repository.TagRepository;
 import ru.bicev.notes.repository.UserRepository;
+import ru.bicev.notes.service.NoteSearchIndex;
 import ru.bicev.notes.service.NoteServiceImpl;
+import ru.bicev.notes.service.TagIndex;
+import ru.bicev.notes.service.UserCache;
+import ru.bicev.notes.util.PageTokens;
 
 @ExtendWith(MockitoExtension.class)
 public class NoteServiceTest {
@@ -36,10 +69,27 @@ public class NoteServiceTest {
     @Mock
     private NoteRepository noteRepository;
 
+    @Mock
+    private NoteChangeRepository noteChangeRepository;
+
+    @Mock
+    private TagRepository tagRepository;
+
     @Mock
     private UserRepository userRepository;
 
-    @InjectMocks
+    @Mock
+    private UserCache userCache;
+
+    @Mock
+    private TagIndex tagIndex;
+
+    @Mock
+    private NoteSearchIndex searchIndex;
+
+    @Mock
+    private EntityManager entityManager;
+
     private NoteServiceImpl noteService;
 
     private User firstU;
@@ -54,82 +104,147 @@ public class NoteServiceTest {
 
     @BeforeEach
     public void setUp() {
-        firstU = new User(1L, "first@email.com", "rawPassword", null);
+        noteService = new NoteServiceImpl(noteRepository, noteChangeRepository, tagRepository, userRepository,
+                userCache, tagIndex, searchIndex, entityManager, new SimpleMeterRegistry(), 3, 86_400_000L);
+        AtomicLong tagIds = new AtomicLong(100);
+        lenient().when(tagRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Tag> created = invocation.getArgument(0);
+            created.forEach(tag -> tag.setId(tagIds.incrementAndGet()));
+            return created;
+        });
+
+        firstU = new User(1L, "first@email.com", "rawPassword", 0L, null);
 
         firstN = new Note(firstU, "First note");
         secondN = new Note(firstU, "Second note");
         updatedNote = new Note(firstU, "Updated note");
-        updatedNote.setTags(List.of("TAG1", "TAG2"));
+        updatedNote.addTags(List.of(new Tag(1L, "TAG1"), new Tag(1L, "TAG2")));
 
         noteDto = new NoteDto(null, "first@email.com", "First note", List.of("TAG1", "TAG2", "TAG3"));
 
         notes = List.of(
                 new Note(firstU, "List note 1"),
                 new Note(firstU, "List note 2"));
-        notes.get(0).addTags("TAG1");
-        notes.get(1).addTags("TAG2", "TAG3");
+        notes.get(0).addTags(List.of(new Tag(1L, "TAG1")));
+        notes.get(1).addTags(List.of(new Tag(1L, "TAG2"), new Tag(1L, "TAG3")));
     }
 
     //region createNote()
     @Test
     public void createNoteSuccess() {
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.of(firstU));
+        when(userCache.getUser(1L)).thenReturn(firstU);
         when(noteRepository.save(any(Note.class))).thenReturn(firstN);
 
-        NoteDto createdNote = noteService.createNote(noteDto, "first@email.com");
+        NoteDto createdNote = noteService.createNote(noteDto, 1L);
 
         assertNotNull(createdNote);
         assertEquals(firstN.getId(), createdNote.getId());
         assertEquals(firstN.getText(), createdNote.getText());
 
         verify(noteRepository, times(1)).save(any(Note.class));
-        verify(userRepository, times(1)).findByEmail("first@email.com");
+        verify(userCache, times(1)).getUser(1L);
+        verify(tagIndex, times(1)).noteChanged(firstN.getId(), 1L, List.of(), firstN.getTagNames());
+        verify(searchIndex, times(1)).index(firstN.getId(), 1L, firstN.getText(), firstN.getVersion());
+        verify(noteChangeRepository, times(1)).record(eq(firstN.getId()), anyLong());
+    }
+
+    @Test
+    public void createNote_UsesTagCreatedConcurrently() {
+        when(userCache.getUser(1L)).thenReturn(firstU);
+        when(noteRepository.save(any(Note.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        // TAG1 is missing on lookup but another transaction inserts it first
+        when(tagRepository.findByUserIdAndNameIn(eq(1L), anyCollection()))
+                .thenReturn(List.of(), List.of(tag(7L, "TAG1"), tag(102L, "TAG2"), tag(103L, "TAG3")));
+
+        noteService.createNote(noteDto, 1L);
+
+        verify(entityManager, times(1)).detach(any(Tag.class));
+        verify(tagRepository, times(1)).adjustNoteCount(List.of(7L, 102L, 103L), 1);
     }
 
     @Test
     public void createNote_UserNotFound() {
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.empty());
+        when(userCache.getUser(1L)).thenThrow(new UserNotFoundException("User not found"));
+
+        assertThrows(UserNotFoundException.class, () -> noteService.createNote(noteDto, 1L));
+    }
+    //endregion
+
+    //region createNotes()
+    @Test
+    public void createNotesSuccess() {
+        when(userCache.getUser(1L)).thenReturn(firstU);
+
+        List<NoteDto> createdNotes = noteService.createNotes(List.of(noteDto, noteDto, noteDto), 1L);
+
+        assertEquals(3, createdNotes.size());
+        assertEquals(noteDto.getText(), createdNotes.get(2).getText());
+        assertEquals(noteDto.getTags(), createdNotes.get(2).getTags());
+
+        verify(noteRepository, times(3)).save(any(Note.class));
+        verify(userCache, times(1)).getUser(1L);
+        // One lookup for the whole batch and one read-back of the created tags
+        verify(tagRepository, times(2)).findByUserIdAndNameIn(eq(1L), anyCollection());
+        verify(noteChangeRepository, times(1)).recordAll(anyCollection(), anyLong());
+    }
+
+    @Test
+    public void createNotes_ReusesExistingTags() {
+        when(userCache.getUser(1L)).thenReturn(firstU);
+        when(tagRepository.findByUserIdAndNameIn(eq(1L), anyCollection()))
+                .thenReturn(List.of(tag(1L, "TAG1"), tag(2L, "TAG2")));
+
+        noteService.createNotes(List.of(noteDto, noteDto), 1L);
+
+        verify(tagRepository, times(1)).saveAll(List.of(new Tag(1L, "TAG3")));
+    }
+
+    @Test
+    public void createNotes_BatchSizeExceededException() {
+        assertThrows(BatchSizeExceededException.class,
+                () -> noteService.createNotes(List.of(noteDto, noteDto, noteDto, noteDto), 1L));
 
-        assertThrows(UserNotFoundException.class, () -> noteService.createNote(noteDto, "first@email.com"));
+        verifyNoInteractions(noteRepository);
     }
     //endregion
 
     //region deleteNote()
     @Test
     public void deleteNoteSuccess() {
-        when(noteRepository.findByIdAndUser(eq(1L), any(User.class))).thenReturn(Optional.of(firstN));
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.of(firstU));
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(firstN));
 
-        noteService.deleteNote(1L, "first@email.com");
+        noteService.deleteNote(1L, 1L);
 
-        verify(noteRepository, times(1)).findByIdAndUser(eq(1L), any(User.class));
+        verify(noteRepository, times(1)).findByIdAndUserId(1L, 1L);
         verify(noteRepository, times(1)).delete(any(Note.class));
+        verify(tagIndex, times(1)).noteDeleted(1L, 1L, firstN.getTagNames());
+        verify(noteChangeRepository, times(1)).record(eq(1L), anyLong());
     }
 
     @Test
     public void deleteNote_NoteNotFoundException() {
-        when(noteRepository.findByIdAndUser(eq(1L), any(User.class))).thenReturn(Optional.empty());
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.of(firstU));
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.empty());
 
-        assertThrows(NoteNotFoundException.class, () -> noteService.deleteNote(1L, "first@email.com"));
+        assertThrows(NoteNotFoundException.class, () -> noteService.deleteNote(1L, 1L));
     }
 
     @Test
-    public void deleteNote_UserNotFoundException() {
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.empty());
+    public void deleteNote_DoesNotLoadUser() {
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(firstN));
+
+        noteService.deleteNote(1L, 1L);
 
-        assertThrows(UserNotFoundException.class, () -> noteService.deleteNote(1L, "first@email.com"));
+        verifyNoInteractions(userCache);
     }
     //endregion
 
     //region updateNote()
     @Test
     public void updateNoteSuccess() {
-        when(noteRepository.findByIdAndUser(eq(1L), any(User.class))).thenReturn(Optional.of(firstN));
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.of(firstU));
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(firstN));
         when(noteRepository.save(any(Note.class))).thenReturn(updatedNote);
 
-        NoteDto updatedNoteDto = noteService.editNote(1L, noteDto, "first@email.com");
+        NoteDto updatedNoteDto = noteService.editNote(1L, noteDto, 1L);
 
         assertNotNull(updatedNoteDto);
         assertEquals(updatedNote.getId(), updatedNoteDto.getId());
@@ -140,203 +255,798 @@ public class NoteServiceTest {
 
     @Test
     public void updateNote_NoteNotFoundException() {
-        when(noteRepository.findByIdAndUser(eq(1L), any(User.class))).thenReturn(Optional.empty());
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.of(firstU));
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.empty());
 
-        assertThrows(NoteNotFoundException.class, () -> noteService.editNote(1L, noteDto, "first@email.com"));
+        assertThrows(NoteNotFoundException.class, () -> noteService.editNote(1L, noteDto, 1L));
     }
 
     @Test
-    public void updateNote_UserNotFoundException() {
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.empty());
+    public void updateNote_DoesNotLoadUser() {
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(firstN));
+        when(noteRepository.save(any(Note.class))).thenReturn(firstN);
 
-        assertThrows(UserNotFoundException.class, () -> noteService.editNote(1L, noteDto, "first@email.com"));
+        noteService.editNote(1L, noteDto, 1L);
+
+        verifyNoInteractions(userCache);
+    }
+    //endregion
+
+    //region patchNote()
+    @Test
+    public void patchNote_TextLeavesTags() {
+        firstN.setVersion(1L);
+        firstN.addTags(List.of(tag(1L, "TAG1")));
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(firstN));
+        when(noteRepository.save(any(Note.class))).thenReturn(firstN);
+        NotePatch patch = new NotePatch();
+        patch.setText("Patched note");
+
+        NoteDto patched = noteService.patchNote(1L, patch, 1L, version -> false);
+
+        assertEquals("Patched note", patched.getText());
+        assertEquals(List.of("TAG1"), patched.getTags());
+        verifyNoInteractions(tagRepository, tagIndex);
+        verify(searchIndex, times(1)).index(any(), eq(1L), eq("Patched note"), any());
+        verify(noteChangeRepository, times(1)).record(any(), anyLong());
+    }
+
+    @Test
+    public void patchNote_NullTagsRemovesAll() {
+        firstN.setVersion(1L);
+        firstN.addTags(List.of(tag(1L, "TAG1"), tag(2L, "TAG2")));
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(firstN));
+        when(noteRepository.save(any(Note.class))).thenReturn(firstN);
+        NotePatch patch = new NotePatch();
+        patch.setTags(null);
+
+        NoteDto patched = noteService.patchNote(1L, patch, 1L, version -> false);
+
+        assertEquals("First note", patched.getText());
+        assertTrue(patched.getTags().isEmpty());
+        verify(tagRepository, times(1)).adjustNoteCount(List.of(1L, 2L), -1);
+        verifyNoInteractions(searchIndex, noteChangeRepository);
+    }
+
+    @Test
+    public void patchNote_UnchangedWritesNothing() {
+        firstN.setVersion(1L);
+        firstN.addTags(List.of(tag(1L, "TAG1")));
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(firstN));
+        when(tagRepository.findByUserIdAndNameIn(eq(1L), anyCollection())).thenReturn(List.of(tag(1L, "TAG1")));
+        NotePatch patch = new NotePatch();
+        patch.setText("First note");
+        patch.setTags(List.of("tag1"));
+
+        noteService.patchNote(1L, patch, 1L, version -> false);
+
+        verify(noteRepository, never()).save(any(Note.class));
+        verify(userRepository, never()).incrementNotesVersion(anyLong());
+    }
+
+    @Test
+    public void patchNote_BlankText() {
+        NotePatch patch = new NotePatch();
+        patch.setText(" ");
+
+        assertThrows(InvalidPatchException.class, () -> noteService.patchNote(1L, patch, 1L, version -> false));
+
+        verifyNoInteractions(noteRepository);
+    }
+
+    @Test
+    public void patchNote_RejectedVersion() {
+        firstN.setVersion(3L);
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(firstN));
+        NotePatch patch = new NotePatch();
+        patch.setText("Patched note");
+
+        assertThrows(NoteModifiedException.class,
+                () -> noteService.patchNote(1L, patch, 1L, version -> version != 2L));
+
+        verify(noteRepository, never()).save(any(Note.class));
     }
     //endregion
 
     //region addTags()
     @Test
     public void addTagsSuccess() {
-        when(noteRepository.findByIdAndUser(eq(1L), any(User.class))).thenReturn(Optional.of(firstN));
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.of(firstU));
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(firstN));
         when(noteRepository.save(any(Note.class))).thenReturn(updatedNote);
 
-        NoteDto taggedNote = noteService.addTags(1L, "first@email.com", "TAG1", "TAG2");
+        NoteDto taggedNote = noteService.addTags(1L, 1L, "TAG1", "TAG2");
 
         assertNotNull(taggedNote);
-        assertEquals(updatedNote.getTags(), taggedNote.getTags());
+        assertEquals(updatedNote.getTagNames(), taggedNote.getTags());
 
         verify(noteRepository, times(1)).save(any(Note.class));
     }
 
     @Test
     public void addTags_NoteNotFoundException() {
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.of(firstU));
-        when(noteRepository.findByIdAndUser(eq(1L), any(User.class))).thenReturn(Optional.empty());
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.empty());
 
-        assertThrows(NoteNotFoundException.class, () -> noteService.addTags(1L, "first@email.com", "TAG1", "TAG2"));
+        assertThrows(NoteNotFoundException.class, () -> noteService.addTags(1L, 1L, "TAG1", "TAG2"));
     }
 
     @Test
-    public void addTags_UserNotFoundException() {
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.empty());
+    public void addTags_DoesNotLoadUser() {
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(firstN));
+        when(noteRepository.save(any(Note.class))).thenReturn(firstN);
 
-        assertThrows(UserNotFoundException.class, () -> noteService.addTags(1L, "first@email.com", "TAG1", "TAG2"));
+        noteService.addTags(1L, 1L, "TAG1", "TAG2");
+
+        verifyNoInteractions(userCache);
     }
     //endregion
 
     //region removeTags()
     @Test
     public void removeTagsSuccess() {
-        when(noteRepository.findByIdAndUser(eq(1L), any(User.class))).thenReturn(Optional.of(secondN));
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.of(firstU));
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(secondN));
         when(noteRepository.save(any(Note.class))).thenReturn(secondN);
 
-        NoteDto taggedNote = noteService.removeTags(1L, "first@email.com", "TAG1", "TAG2");
+        NoteDto taggedNote = noteService.removeTags(1L, 1L, "TAG1", "TAG2");
 
         assertNotNull(taggedNote);
-        assertEquals(secondN.getTags(), taggedNote.getTags());
+        assertEquals(secondN.getTagNames(), taggedNote.getTags());
 
         verify(noteRepository, times(1)).save(any(Note.class));
     }
 
     @Test
     public void removeTags_NoteNotFoundException() {
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.of(firstU));
-        when(noteRepository.findByIdAndUser(eq(1L), any(User.class))).thenReturn(Optional.empty());
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.empty());
 
-        assertThrows(NoteNotFoundException.class, () -> noteService.removeTags(1L, "first@email.com", "TAG1", "TAG2"));
+        assertThrows(NoteNotFoundException.class, () -> noteService.removeTags(1L, 1L, "TAG1", "TAG2"));
     }
 
     @Test
-    public void removeTags_UserNotFoundException() {
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.empty());
+    public void removeTags_DoesNotLoadUser() {
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(firstN));
+        when(noteRepository.save(any(Note.class))).thenReturn(firstN);
 
-        assertThrows(UserNotFoundException.class, () -> noteService.removeTags(1L, "first@email.com", "TAG1", "TAG2"));
+        noteService.removeTags(1L, 1L, "TAG1", "TAG2");
+
+        verifyNoInteractions(userCache);
+    }
+    //endregion
+
+    //region addTagsBulk()
+    @Test
+    public void addTagsBulk_ByNoteIdsSuccess() {
+        when(tagRepository.findByUserIdAndNameIn(eq(1L), anyCollection()))
+                .thenReturn(List.of(tag(1L, "TAG1"), tag(2L, "TAG2")));
+        when(noteRepository.addTagToNotes(1L, List.of(1L, 2L), 1L)).thenReturn(List.of(1L, 2L));
+        when(noteRepository.addTagToNotes(2L, List.of(1L, 2L), 1L)).thenReturn(List.of(1L));
+
+        BulkTagResponse response = noteService.addTagsBulk(
+                new BulkTagRequest(List.of(1L, 2L), null, List.of("tag1", "TAG1", "tag2")), 1L);
+
+        assertEquals(3, response.getChangedTags());
+        verifyNoInteractions(userCache);
+        verify(tagIndex, times(1)).evict(1L);
+    }
+
+    @Test
+    public void addTagsBulk_ByFilterTagsSuccess() {
+        when(tagRepository.findByUserIdAndNameIn(1L, List.of("TAG1", "TAG2")))
+                .thenReturn(List.of(tag(1L, "TAG1"), tag(2L, "TAG2")));
+        when(tagRepository.findByUserIdAndNameIn(1L, Set.of("NEW"))).thenReturn(List.of(tag(3L, "NEW")));
+        when(noteRepository.addTagToTaggedNotes(3L, List.of(1L, 2L), 2)).thenReturn(List.of(1L, 2L, 3L, 4L, 5L));
+
+        BulkTagResponse response = noteService.addTagsBulk(
+                new BulkTagRequest(null, List.of("tag1", "tag2"), List.of("new")), 1L);
+
+        assertEquals(5, response.getChangedTags());
+    }
+
+    @Test
+    public void addTagsBulk_UnknownFilterTag() {
+        when(tagRepository.findByUserIdAndNameIn(1L, List.of("TAG1", "MISSING")))
+                .thenReturn(List.of(tag(1L, "TAG1")));
+
+        BulkTagResponse response = noteService.addTagsBulk(
+                new BulkTagRequest(null, List.of("tag1", "missing"), List.of("new")), 1L);
+
+        assertEquals(0, response.getChangedTags());
+        verifyNoInteractions(noteRepository);
+    }
+
+    @Test
+    public void addTagsBulk_CreatesMissingTags() {
+        when(noteRepository.addTagToNotes(any(), eq(List.of(1L)), eq(1L))).thenReturn(List.of(1L));
+
+        noteService.addTagsBulk(new BulkTagRequest(List.of(1L), null, List.of("new")), 1L);
+
+        verify(tagRepository, times(1)).saveAll(List.of(new Tag(1L, "NEW")));
+    }
+
+    @Test
+    public void addTagsBulk_InvalidBulkRequestException() {
+        assertThrows(InvalidBulkRequestException.class, () -> noteService.addTagsBulk(
+                new BulkTagRequest(List.of(1L), List.of("TAG1"), List.of("NEW")), 1L));
+        assertThrows(InvalidBulkRequestException.class, () -> noteService.addTagsBulk(
+                new BulkTagRequest(null, List.of(), List.of("NEW")), 1L));
+        verifyNoInteractions(noteRepository);
+    }
+
+    @Test
+    public void addTagsBulk_BatchSizeExceededException() {
+        assertThrows(BatchSizeExceededException.class, () -> noteService.addTagsBulk(
+                new BulkTagRequest(List.of(1L, 2L, 3L, 4L), null, List.of("NEW")), 1L));
+        verifyNoInteractions(noteRepository);
+    }
+
+    @Test
+    public void addTagsBulk_NoTags() {
+        BulkTagResponse response = noteService.addTagsBulk(new BulkTagRequest(List.of(1L), null, List.of()), 1L);
+
+        assertEquals(0, response.getChangedTags());
+        verifyNoInteractions(noteRepository);
+    }
+    //endregion
+
+    //region removeTagsBulk()
+    @Test
+    public void removeTagsBulk_ByNoteIdsSuccess() {
+        when(tagRepository.findByUserIdAndNameIn(1L, List.of("TAG1", "TAG2")))
+                .thenReturn(List.of(tag(1L, "TAG1"), tag(2L, "TAG2")));
+        when(noteRepository.removeTagsFromNotes(List.of(1L, 2L), List.of(1L, 2L))).thenReturn(List.of(1L, 1L, 2L));
+
+        BulkTagResponse response = noteService.removeTagsBulk(
+                new BulkTagRequest(List.of(1L, 2L), null, List.of("tag1", "tag2")), 1L);
+
+        assertEquals(3, response.getChangedTags());
+    }
+
+    @Test
+    public void removeTagsBulk_ByFilterTagsSuccess() {
+        when(tagRepository.findByUserIdAndNameIn(1L, List.of("OLD"))).thenReturn(List.of(tag(2L, "OLD")));
+        when(tagRepository.findByUserIdAndNameIn(1L, List.of("TAG1"))).thenReturn(List.of(tag(1L, "TAG1")));
+        when(noteRepository.removeTagsFromTaggedNotes(List.of(2L), List.of(1L), 1)).thenReturn(List.of(1L, 1L, 2L, 3L));
+
+        BulkTagResponse response = noteService.removeTagsBulk(
+                new BulkTagRequest(List.of(), List.of("tag1"), List.of("old")), 1L);
+
+        assertEquals(4, response.getChangedTags());
+    }
+
+    @Test
+    public void removeTagsBulk_UnknownTags() {
+        BulkTagResponse response = noteService.removeTagsBulk(
+                new BulkTagRequest(List.of(1L), null, List.of("missing")), 1L);
+
+        assertEquals(0, response.getChangedTags());
+        verifyNoInteractions(noteRepository);
+    }
+
+    @Test
+    public void removeTagsBulk_InvalidBulkRequestException() {
+        assertThrows(InvalidBulkRequestException.class, () -> noteService.removeTagsBulk(
+                new BulkTagRequest(null, null, List.of("OLD")), 1L));
+        verifyNoInteractions(noteRepository);
     }
     //endregion
 
     //region findByAllTags()
     @Test
     public void findByAllTagsSuccess() {
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.of(firstU));
-        when(noteRepository.findByAllTags(anyList(), anyLong(), any(User.class))).thenReturn(notes);
+        when(tagIndex.find(1L, List.of("TAG1", "TAG2"), List.of(), List.of(), 0L, 51)).thenReturn(List.of(1L, 2L));
+        when(noteRepository.findByIdInOrderById(List.of(1L, 2L))).thenReturn(notes);
 
-        List<NoteDto> foundNotes = noteService.findByAllTags(List.of("TAG1", "TAG2"), "first@email.com");
+        List<NoteDto> foundNotes = noteService.findByAllTags(List.of("tag1", "TAG2"), null, 1L, null, 50).getNotes();
         assertNotNull(foundNotes);
         assertEquals(notes.size(), foundNotes.size());
         assertEquals(notes.get(0).getText(), foundNotes.get(0).getText());
         assertEquals(notes.get(1).getText(), foundNotes.get(1).getText());
+    }
 
-        verify(noteRepository, times(1)).findByAllTags(anyList(), anyLong(), any(User.class));
+    @Test
+    public void findByAllTags_NoMatchesSkipsQuery() {
+        when(tagIndex.find(1L, List.of("TAG1"), List.of(), List.of("TAG2"), 0L, 51)).thenReturn(List.of());
+
+        NotePage page = noteService.findByAllTags(List.of("TAG1"), List.of("tag2"), 1L, null, 50);
+
+        assertEquals(0, page.getNotes().size());
+        assertNull(page.getNextPageToken());
+        verifyNoInteractions(noteRepository);
+    }
+
+    @Test
+    public void findByAllTags_DoesNotLoadUser() {
+        noteService.findByAllTags(List.of("TAG1", "TAG2"), null, 1L, null, 50);
+
+        verifyNoInteractions(userCache);
+    }
+    //endregion
+
+    //region findByAnyTags()
+    @Test
+    public void findByAnyTagsSuccess() {
+        when(tagIndex.find(1L, List.of(), List.of("TAG1", "TAG2"), List.of(), 0L, 51)).thenReturn(List.of(1L, 2L));
+        when(noteRepository.findByIdInOrderById(List.of(1L, 2L))).thenReturn(notes);
+
+        List<NoteDto> foundNotes = noteService.findByAnyTags(List.of("tag1", "tag2"), null, 1L, null, 50).getNotes();
+
+        assertEquals(notes.size(), foundNotes.size());
     }
 
     @Test
-    public void findByAllTags_UserNotFoundException() {
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.empty());
+    public void findByAnyTags_NoTags() {
+        NotePage page = noteService.findByAnyTags(List.of(), null, 1L, null, 50);
 
-        assertThrows(UserNotFoundException.class,
-                () -> noteService.findByAllTags(List.of("TAG1", "TAG2"), "first@email.com"));
+        assertEquals(0, page.getNotes().size());
+        verifyNoInteractions(tagIndex);
     }
     //endregion
 
     //region findByIdAndUser()
     @Test
     public void findByIdAndUserSuccess() {
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.of(firstU));
-        when(noteRepository.findByIdAndUser(1L, firstU)).thenReturn(Optional.of(firstN));
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(firstN));
 
-        NoteDto foundNote = noteService.findByIdAndUser(1L, "first@email.com");
+        NoteDto foundNote = noteService.findByIdAndUser(1L, 1L);
 
         assertNotNull(foundNote);
         assertEquals(firstN.getText(), foundNote.getText());
 
-        verify(noteRepository, times(1)).findByIdAndUser(1L, firstU);
+        verify(noteRepository, times(1)).findByIdAndUserId(1L, 1L);
     }
 
     @Test
     public void findByIdAndUser_NoteNotFoundException() {
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.of(firstU));
-        when(noteRepository.findByIdAndUser(1L, firstU)).thenReturn(Optional.empty());
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.empty());
 
-        assertThrows(NoteNotFoundException.class, () -> noteService.findByIdAndUser(1L, "first@email.com"));
+        assertThrows(NoteNotFoundException.class, () -> noteService.findByIdAndUser(1L, 1L));
     }
 
     @Test
-    public void findByIdAndUser_UserNotFoundException() {
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.empty());
+    public void findByIdAndUser_DoesNotLoadUser() {
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(firstN));
 
-        assertThrows(UserNotFoundException.class, () -> noteService.findByIdAndUser(1L, "first@email.com"));
+        noteService.findByIdAndUser(1L, 1L);
+
+        verifyNoInteractions(userCache);
     }
     //endregion
 
     //region findByTagPart()
     @Test
     public void findByTagPartSuccess() {
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.of(firstU));
-        when(noteRepository.findByTagPart("AG", firstU)).thenReturn(notes);
+        when(noteRepository.findPageByTagPart(eq("AG"), eq(1L), eq(0L), any(Limit.class))).thenReturn(notes);
 
-        List<NoteDto> foundNotes = noteService.findByTagPart("AG", "first@email.com");
+        List<NoteDto> foundNotes = noteService.findByTagPart("AG", 1L, null, 50).getNotes();
         assertNotNull(foundNotes);
         assertEquals(notes.size(), foundNotes.size());
         assertEquals(notes.get(0).getText(), foundNotes.get(0).getText());
         assertEquals(notes.get(1).getText(), foundNotes.get(1).getText());
 
-        verify(noteRepository, times(1)).findByTagPart("AG", firstU);
+        verify(noteRepository, times(1)).findPageByTagPart(eq("AG"), eq(1L), eq(0L), any(Limit.class));
     }
 
     @Test
-    public void findByTagPartUserNotFoundException() {
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.empty());
+    public void findByTagPart_DoesNotLoadUser() {
+        noteService.findByTagPart("AG", 1L, null, 50);
 
-        assertThrows(UserNotFoundException.class, () -> noteService.findByTagPart("AG", "first@email.com"));
+        verifyNoInteractions(userCache);
     }
     //endregion
 
     //region findByUser()
     @Test
     public void findByUserSuccess() {
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.of(firstU));
-        when(noteRepository.findByUser(firstU)).thenReturn(notes);
+        when(noteRepository.findPageByUser(eq(1L), eq(0L), any(Limit.class))).thenReturn(notes);
 
-        List<NoteDto> foundNotes = noteService.findByUser("first@email.com");
+        List<NoteDto> foundNotes = noteService.findByUser(1L, null, 50).getNotes();
 
         assertNotNull(foundNotes);
         assertEquals(notes.size(), foundNotes.size());
         assertEquals(notes.get(0).getText(), foundNotes.get(0).getText());
         assertEquals(notes.get(1).getText(), foundNotes.get(1).getText());
 
-        verify(noteRepository, times(1)).findByUser(firstU);
+        verify(noteRepository, times(1)).findPageByUser(eq(1L), eq(0L), any(Limit.class));
+        verify(noteRepository, times(1)).fetchTags(notes);
+    }
+
+    @Test
+    public void findByUser_DoesNotLoadUser() {
+        noteService.findByUser(1L, null, 50);
+
+        verifyNoInteractions(userCache);
+    }
+    @Test
+    public void findByUser_ReturnsNextPageToken() {
+        firstN.setId(1L);
+        secondN.setId(2L);
+        updatedNote.setId(3L);
+        when(noteRepository.findPageByUser(1L, 0L, Limit.of(3))).thenReturn(List.of(firstN, secondN, updatedNote));
+        when(noteRepository.findPageByUser(1L, 2L, Limit.of(3))).thenReturn(List.of(updatedNote));
+
+        NotePage firstPage = noteService.findByUser(1L, null, 2);
+
+        assertEquals(2, firstPage.getNotes().size());
+        assertNotNull(firstPage.getNextPageToken());
+
+        NotePage secondPage = noteService.findByUser(1L, firstPage.getNextPageToken(), 2);
+
+        assertEquals(1, secondPage.getNotes().size());
+        assertEquals(updatedNote.getText(), secondPage.getNotes().get(0).getText());
+        assertNull(secondPage.getNextPageToken());
+    }
+
+    @Test
+    public void findByUser_InvalidPageTokenException() {
+        assertThrows(InvalidPageTokenException.class, () -> noteService.findByUser(1L, "not-a-token", 50));
+    }
+    //endregion
+
+    //region searchNotes()
+    @Test
+    public void searchNotes_KeepsRankOrder() {
+        firstN.setId(1L);
+        secondN.setId(2L);
+        when(searchIndex.search(1L, "note", 0, 2)).thenReturn(new NoteSearchIndex.Hits(List.of(
+                new NoteSearchIndex.Hit(2L, 2.0f, "Second <b>note</b>"),
+                new NoteSearchIndex.Hit(1L, 1.0f, "First <b>note</b>")), 3));
+        when(noteRepository.findByIdInOrderById(List.of(2L, 1L))).thenReturn(List.of(firstN, secondN));
+
+        NoteSearchPage page = noteService.searchNotes("note", 1L, null, 2);
+
+        assertEquals(2, page.getHits().size());
+        assertEquals(2L, page.getHits().get(0).getNote().getId());
+        assertEquals("Second <b>note</b>", page.getHits().get(0).getSnippet());
+        assertEquals(1L, page.getHits().get(1).getNote().getId());
+        assertEquals(3, page.getTotalHits());
+        assertNotNull(page.getNextPageToken());
+
+        when(searchIndex.search(1L, "note", 2, 2)).thenReturn(new NoteSearchIndex.Hits(List.of(), 3));
+
+        noteService.searchNotes("note", 1L, page.getNextPageToken(), 2);
+
+        verify(searchIndex, times(1)).search(1L, "note", 2, 2);
+    }
+
+    @Test
+    public void searchNotes_SkipsNotesMissingFromDatabase() {
+        firstN.setId(1L);
+        when(searchIndex.search(1L, "note", 0, 50)).thenReturn(new NoteSearchIndex.Hits(List.of(
+                new NoteSearchIndex.Hit(1L, 1.0f, "First note"),
+                new NoteSearchIndex.Hit(9L, 0.5f, "Deleted note")), 2));
+        when(noteRepository.findByIdInOrderById(List.of(1L, 9L))).thenReturn(List.of(firstN));
+
+        NoteSearchPage page = noteService.searchNotes("note", 1L, null, 50);
+
+        assertEquals(1, page.getHits().size());
+        assertNull(page.getNextPageToken());
+    }
+
+    @Test
+    public void searchNotes_BlankQuery() {
+        NoteSearchPage page = noteService.searchNotes(" ", 1L, null, 50);
+
+        assertEquals(0, page.getHits().size());
+        verifyNoInteractions(searchIndex);
+    }
+
+    @Test
+    public void searchNotes_InvalidPageTokenException() {
+        String keysetToken = PageTokens.encode(5L);
+
+        assertThrows(InvalidPageTokenException.class, () -> noteService.searchNotes("note", 1L, "not-a-token", 50));
+        assertThrows(InvalidPageTokenException.class, () -> noteService.searchNotes("note", 1L, keysetToken, 50));
+    }
+    //endregion
+
+    //region reconcileSearchIndex()
+    @Test
+    public void reconcileSearchIndex_ReindexesChangedAndRemovesDeleted() {
+        when(searchIndex.versions()).thenReturn(new HashMap<>(Map.of(1L, 0L, 2L, 1L, 9L, 0L)));
+        when(noteRepository.streamVersions()).thenReturn(Stream.of(
+                new Object[] { 1L, 0L }, new Object[] { 2L, 2L }, new Object[] { 3L, 0L }));
+        when(noteRepository.findSearchEntries(List.of(2L, 3L))).thenReturn(List.of(
+                new Object[] { 2L, 1L, "Edited elsewhere", 2L }, new Object[] { 3L, 1L, "Created elsewhere", 0L }));
+
+        assertEquals(3, noteService.reconcileSearchIndex());
+
+        verify(searchIndex, times(1)).index(List.of(
+                new NoteSearchIndex.Entry(2L, 1L, "Edited elsewhere", 2L),
+                new NoteSearchIndex.Entry(3L, 1L, "Created elsewhere", 0L)));
+        verify(searchIndex, times(1)).delete(Set.of(9L));
     }
 
     @Test
-    public void findByUser_UserNotFoundException() {
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.empty());
+    public void reconcileSearchIndex_InSync() {
+        when(searchIndex.versions()).thenReturn(new HashMap<>(Map.of(1L, 0L)));
+        when(noteRepository.streamVersions()).thenReturn(Stream.<Object[]>of(new Object[] { 1L, 0L }));
 
-        assertThrows(UserNotFoundException.class, () -> noteService.findByUser("first@email.com"));
+        assertEquals(0, noteService.reconcileSearchIndex());
+
+        verify(searchIndex, never()).index(anyList());
+        verify(searchIndex, never()).delete(anyCollection());
+    }
+    //endregion
+
+    //region syncSearchIndex()
+    @Test
+    public void syncSearchIndex_ReconcilesFirst() {
+        when(searchIndex.versions()).thenReturn(new HashMap<>());
+        when(noteRepository.streamVersions()).thenReturn(Stream.empty());
+        when(noteChangeRepository.findLastIdBefore(anyLong())).thenReturn(Optional.empty());
+
+        assertEquals(0, noteService.syncSearchIndex());
+
+        verify(searchIndex, times(1)).versions();
+        verify(noteChangeRepository, never()).findAfter(anyLong(), any());
+    }
+
+    @Test
+    public void syncSearchIndex_AppliesRecordedChanges() {
+        when(searchIndex.versions()).thenReturn(new HashMap<>());
+        when(noteRepository.streamVersions()).thenReturn(Stream.empty());
+        when(noteChangeRepository.findLastIdBefore(anyLong())).thenReturn(Optional.of(10L));
+        noteService.reconcileSearchIndex();
+        long now = System.currentTimeMillis();
+        when(noteChangeRepository.findAfter(10L, Limit.of(500))).thenReturn(List.of(
+                new NoteChange(11L, 1L, now - 600_000), new NoteChange(12L, 2L, now - 600_000),
+                new NoteChange(13L, 9L, now)));
+        when(searchIndex.versions(Set.of(1L, 2L, 9L))).thenReturn(new HashMap<>(Map.of(1L, 0L, 9L, 0L)));
+        when(noteRepository.findSearchEntries(Set.of(1L, 2L, 9L))).thenReturn(List.of(
+                new Object[] { 1L, 1L, "Unchanged", 0L }, new Object[] { 2L, 1L, "Created elsewhere", 0L }));
+
+        assertEquals(2, noteService.syncSearchIndex());
+
+        verify(searchIndex, times(1)).index(List.of(new NoteSearchIndex.Entry(2L, 1L, "Created elsewhere", 0L)));
+        verify(searchIndex, times(1)).delete(Set.of(9L));
+        verify(searchIndex, times(1)).versions();
+
+        when(noteChangeRepository.findAfter(12L, Limit.of(500))).thenReturn(List.of());
+
+        assertEquals(0, noteService.syncSearchIndex());
+    }
+    //endregion
+
+    //region exportNotes()
+    @Test
+    public void exportNotesSuccess() {
+        notes.get(0).setId(1L);
+        notes.get(1).setId(2L);
+        when(noteRepository.findPageByUser(1L, 0L, Limit.of(500))).thenReturn(notes);
+        List<NoteDto> exported = new ArrayList<>();
+
+        noteService.exportNotes(1L, exported::add);
+
+        assertEquals(notes.size(), exported.size());
+        assertEquals(notes.get(1).getText(), exported.get(1).getText());
+        verify(noteRepository, times(1)).fetchTags(notes);
+        verify(entityManager, times(1)).clear();
+        verifyNoInteractions(userCache);
+    }
+
+    @Test
+    public void exportNotes_ReadsInChunks() {
+        List<Note> fullChunk = new ArrayList<>();
+        for (long id = 1; id <= 500; id++) {
+            Note note = new Note(firstU, "Note " + id);
+            note.setId(id);
+            fullChunk.add(note);
+        }
+        when(noteRepository.findPageByUser(1L, 0L, Limit.of(500))).thenReturn(fullChunk);
+        when(noteRepository.findPageByUser(1L, 500L, Limit.of(500))).thenReturn(List.of());
+        List<NoteDto> exported = new ArrayList<>();
+
+        noteService.exportNotes(1L, exported::add);
+
+        assertEquals(500, exported.size());
+        verify(noteRepository, times(1)).fetchTags(fullChunk);
+        verify(entityManager, times(2)).clear();
     }
     //endregion
 
     //region getAllTags()
     @Test
     public void getAllTagsSuccess() {
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.of(firstU));
-        when(noteRepository.findByUser(firstU)).thenReturn(notes);
+        when(tagRepository.findNamesInUse(1L)).thenReturn(List.of("TAG1", "TAG2", "TAG3"));
 
-        List<String> tags = noteService.getAllTags("first@email.com");
+        List<String> tags = noteService.getAllTags(1L);
         assertNotNull(tags);
-        assertEquals(List.of("TAG1", "TAG2", "TAG3").size(), tags.size());
         assertEquals(List.of("TAG1", "TAG2", "TAG3"), tags);
 
-        verify(noteRepository, times(1)).findByUser(firstU);
+        verifyNoInteractions(noteRepository);
+    }
+
+    @Test
+    public void getAllTags_DoesNotLoadUser() {
+        noteService.getAllTags(1L);
+
+        verifyNoInteractions(userCache);
     }
+    //endregion
 
+    //region getTagStats()
     @Test
-    public void getAllTags_UserNotFoundException() {
-        when(userRepository.findByEmail("first@email.com")).thenReturn(Optional.empty());
+    public void getTagStatsSuccess() {
+        when(tagRepository.findCountsInUse(1L)).thenReturn(List.of(new TagCountDto("TAG1", 2)));
 
-        assertThrows(UserNotFoundException.class, () -> noteService.getAllTags("first@email.com"));
+        List<TagCountDto> stats = noteService.getTagStats(1L);
+
+        assertEquals(1, stats.size());
+        assertEquals(2, stats.get(0).getNoteCount());
+        verifyNoInteractions(noteRepository);
     }
     //endregion
 
+    //region tag counters
+    @Test
+    public void createNote_IncrementsTagCounts() {
+        when(userCache.getUser(1L)).thenReturn(firstU);
+        when(tagRepository.findByUserIdAndNameIn(eq(1L), anyCollection()))
+                .thenReturn(List.of(tag(1L, "TAG1"), tag(2L, "TAG2"), tag(3L, "TAG3")));
+        when(noteRepository.save(any(Note.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        noteService.createNote(noteDto, 1L);
+
+        verify(tagRepository, times(1)).adjustNoteCount(List.of(1L, 2L, 3L), 1);
+    }
+
+    @Test
+    public void createNotes_GroupsTagCountsByDelta() {
+        when(userCache.getUser(1L)).thenReturn(firstU);
+        when(tagRepository.findByUserIdAndNameIn(eq(1L), anyCollection()))
+                .thenReturn(List.of(tag(1L, "TAG1"), tag(2L, "TAG2"), tag(3L, "TAG3")));
+        NoteDto onlyFirst = new NoteDto(null, null, "Only first", List.of("TAG1"));
+
+        noteService.createNotes(List.of(noteDto, noteDto, onlyFirst), 1L);
+
+        verify(tagRepository, times(1)).adjustNoteCount(List.of(1L), 3);
+        verify(tagRepository, times(1)).adjustNoteCount(List.of(2L, 3L), 2);
+    }
+
+    @Test
+    public void editNote_AdjustsChangedTagCounts() {
+        Note note = new Note(firstU, "Tagged note");
+        note.addTags(List.of(tag(1L, "TAG1"), tag(4L, "OLD")));
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(note));
+        when(tagRepository.findByUserIdAndNameIn(eq(1L), anyCollection()))
+                .thenReturn(List.of(tag(1L, "TAG1"), tag(2L, "TAG2"), tag(3L, "TAG3")));
+        when(noteRepository.save(any(Note.class))).thenReturn(note);
+
+        noteService.editNote(1L, noteDto, 1L);
+
+        verify(tagRepository, times(1)).adjustNoteCount(List.of(4L), -1);
+        verify(tagRepository, times(1)).adjustNoteCount(List.of(2L, 3L), 1);
+    }
+
+    @Test
+    public void deleteNote_DecrementsTagCounts() {
+        firstN.addTags(List.of(tag(1L, "TAG1")));
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(firstN));
+
+        noteService.deleteNote(1L, 1L);
+
+        verify(tagRepository, times(1)).adjustNoteCount(List.of(1L), -1);
+        verify(searchIndex, times(1)).delete(1L);
+    }
+
+    @Test
+    public void removeTagsBulk_RecountsTags() {
+        when(tagRepository.findByUserIdAndNameIn(1L, List.of("TAG1"))).thenReturn(List.of(tag(1L, "TAG1")));
+        when(noteRepository.removeTagsFromNotes(List.of(1L), List.of(1L, 2L))).thenReturn(List.of(1L, 2L));
+
+        noteService.removeTagsBulk(new BulkTagRequest(List.of(1L, 2L), null, List.of("tag1")), 1L);
+
+        verify(tagRepository, times(1)).recountNotes(List.of(1L));
+    }
+    //endregion
+
+    //region versions
+    @Test
+    public void findByIdAndUser_UnchangedDoesNotLoadNote() {
+        when(noteRepository.findVersion(1L, 1L)).thenReturn(Optional.of(3L));
+
+        assertTrue(noteService.findByIdAndUser(1L, 1L, version -> version == 3L).isEmpty());
+
+        verify(noteRepository, never()).findByIdAndUserId(anyLong(), anyLong());
+    }
+
+    @Test
+    public void findByIdAndUser_ChangedLoadsNote() {
+        when(noteRepository.findVersion(1L, 1L)).thenReturn(Optional.of(4L));
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(firstN));
+
+        assertEquals(firstN.getText(), noteService.findByIdAndUser(1L, 1L, version -> version == 3L)
+                .orElseThrow().getText());
+    }
+
+    @Test
+    public void findByIdAndUser_VersionOfMissingNote() {
+        when(noteRepository.findVersion(1L, 1L)).thenReturn(Optional.empty());
+
+        assertThrows(NoteNotFoundException.class, () -> noteService.findByIdAndUser(1L, 1L, version -> false));
+    }
+
+    @Test
+    public void findByUser_UnchangedDoesNotLoadNotes() {
+        when(userRepository.findNotesVersion(1L)).thenReturn(Optional.of(7L));
+
+        assertTrue(noteService.findByUser(1L, null, 50, version -> version == 7L).isEmpty());
+        assertTrue(noteService.getAllTags(1L, version -> version == 7L).isEmpty());
+
+        verifyNoInteractions(noteRepository, tagRepository);
+    }
+
+    @Test
+    public void editNote_RejectedVersion() {
+        firstN.setVersion(3L);
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(firstN));
+
+        assertThrows(NoteModifiedException.class,
+                () -> noteService.editNote(1L, noteDto, 1L, version -> version != 2L));
+
+        verify(noteRepository, never()).save(any(Note.class));
+        verify(userRepository, never()).incrementNotesVersion(anyLong());
+    }
+
+    @Test
+    public void editNote_AcceptedVersion() {
+        firstN.setVersion(2L);
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(firstN));
+        when(noteRepository.save(any(Note.class))).thenReturn(firstN);
+
+        noteService.editNote(1L, noteDto, 1L, version -> version != 2L);
+
+        verify(noteRepository, times(1)).flush();
+        verify(userRepository, times(1)).incrementNotesVersion(1L);
+    }
+
+    @Test
+    public void writes_IncrementNotesVersion() {
+        when(userCache.getUser(1L)).thenReturn(firstU);
+        when(noteRepository.save(any(Note.class))).thenReturn(firstN);
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(firstN));
+
+        noteService.createNote(noteDto, 1L);
+        noteService.addTags(1L, 1L, "TAG1");
+        noteService.deleteNote(1L, 1L);
+
+        verify(userRepository, times(3)).incrementNotesVersion(1L);
+    }
+
+    @Test
+    public void bulkTags_IncrementChangedVersions() {
+        when(tagRepository.findByUserIdAndNameIn(1L, Set.of("TAG1"))).thenReturn(List.of(tag(1L, "TAG1")));
+        when(tagRepository.findByUserIdAndNameIn(1L, List.of("TAG1"))).thenReturn(List.of(tag(1L, "TAG1")));
+        when(tagRepository.findByUserIdAndNameIn(1L, List.of("FILTER"))).thenReturn(List.of(tag(2L, "FILTER")));
+        when(noteRepository.addTagToNotes(1L, List.of(1L, 2L), 1L)).thenReturn(List.of(2L));
+        when(noteRepository.removeTagsFromTaggedNotes(List.of(1L), List.of(2L), 1)).thenReturn(List.of(3L, 3L));
+
+        noteService.addTagsBulk(new BulkTagRequest(List.of(1L, 2L), null, List.of("tag1")), 1L);
+        noteService.removeTagsBulk(new BulkTagRequest(null, List.of("filter"), List.of("tag1")), 1L);
+
+        verify(noteRepository, times(1)).incrementVersions(List.of(2L));
+        verify(noteRepository, times(1)).incrementVersions(List.of(3L));
+        verify(tagIndex, times(2)).evict(1L);
+        verify(userRepository, times(2)).incrementNotesVersion(1L);
+    }
+
+    @Test
+    public void bulkTags_NothingChanged() {
+        when(tagRepository.findByUserIdAndNameIn(1L, Set.of("TAG1"))).thenReturn(List.of(tag(1L, "TAG1")));
+        when(tagRepository.findByUserIdAndNameIn(1L, List.of("TAG1"))).thenReturn(List.of(tag(1L, "TAG1")));
+
+        noteService.addTagsBulk(new BulkTagRequest(List.of(1L, 2L), null, List.of("tag1")), 1L);
+        noteService.removeTagsBulk(new BulkTagRequest(List.of(1L, 2L), null, List.of("tag1")), 1L);
+
+        verify(noteRepository, never()).incrementVersions(anyCollection());
+        verify(tagRepository, never()).recountNotes(anyCollection());
+        verify(tagIndex, never()).evict(anyLong());
+        verify(userRepository, never()).incrementNotesVersion(anyLong());
+    }
+    //endregion
+
+    private Tag tag(Long id, String name) {
+        Tag tag = new Tag(1L, name);
+        tag.setId(id);
+        return tag;
+    }
+
 }
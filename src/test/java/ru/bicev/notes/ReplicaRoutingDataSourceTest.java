@@ -0,0 +1,127 @@
+package ru.bicev.notes;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import ru.bicev.notes.config.ReplicaRoutingDataSource;
+import ru.bicev.notes.security.UserPrincipal;
+
+@ExtendWith(MockitoExtension.class)
+public class ReplicaRoutingDataSourceTest {
+
+    @Mock
+    private DataSource primary;
+
+    @Mock
+    private DataSource firstReplica;
+
+    @Mock
+    private DataSource secondReplica;
+
+    @Mock
+    private Connection primaryConnection;
+
+    @Mock
+    private Connection firstConnection;
+
+    @Mock
+    private Connection secondConnection;
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @BeforeEach
+    public void setUp() {
+        routingDataSource = new ReplicaRoutingDataSource(primary, List.of(firstReplica, secondReplica), 10, 60_000,
+                60_000);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void readsFromReplicasInTurn() throws SQLException {
+        when(firstReplica.getConnection()).thenReturn(firstConnection);
+        when(secondReplica.getConnection()).thenReturn(secondConnection);
+
+        assertSame(firstConnection, routingDataSource.getConnection());
+        assertSame(secondConnection, routingDataSource.getConnection());
+        assertSame(firstConnection, routingDataSource.getConnection());
+    }
+
+    @Test
+    public void skipsFailedReplica() throws SQLException {
+        when(firstReplica.getConnection()).thenThrow(new SQLException("Connection refused"));
+        when(secondReplica.getConnection()).thenReturn(secondConnection);
+
+        assertSame(secondConnection, routingDataSource.getConnection());
+        assertSame(secondConnection, routingDataSource.getConnection());
+        assertSame(secondConnection, routingDataSource.getConnection());
+
+        verify(firstReplica, times(1)).getConnection();
+    }
+
+    @Test
+    public void fallsBackToPrimaryWhenNoReplicaIsAvailable() throws SQLException {
+        when(firstReplica.getConnection()).thenThrow(new SQLException("Connection refused"));
+        when(secondReplica.getConnection()).thenThrow(new SQLException("Connection refused"));
+        when(primary.getConnection()).thenReturn(primaryConnection);
+
+        assertSame(primaryConnection, routingDataSource.getConnection());
+        assertSame(primaryConnection, routingDataSource.getConnection());
+
+        verify(firstReplica, times(1)).getConnection();
+        verify(secondReplica, times(1)).getConnection();
+    }
+
+    @Test
+    public void readsOwnWritesFromPrimary() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(firstReplica.getConnection()).thenReturn(firstConnection);
+        authenticate(1L);
+
+        routingDataSource.writeDataSource().getConnection();
+
+        assertSame(primaryConnection, routingDataSource.getConnection());
+
+        authenticate(2L);
+
+        assertSame(firstConnection, routingDataSource.getConnection());
+    }
+
+    @Test
+    public void writeWindowExpires() throws SQLException {
+        routingDataSource = new ReplicaRoutingDataSource(primary, List.of(firstReplica), 10, 0, 60_000);
+        when(firstReplica.getConnection()).thenReturn(firstConnection);
+        authenticate(1L);
+
+        routingDataSource.writeDataSource().getConnection();
+
+        assertSame(firstConnection, routingDataSource.getConnection());
+    }
+
+    private void authenticate(Long userId) {
+        UserPrincipal principal = new UserPrincipal(userId, "user" + userId + "@email.com");
+        SecurityContextHolder.getContext()
+                .setAuthentication(new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+    }
+
+}
@@ -0,0 +1,150 @@
+package ru.bicev.notes;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ru.bicev.notes.dto.NoteDto;
+import ru.bicev.notes.repository.NoteRepository;
+import ru.bicev.notes.security.UserPrincipal;
+import ru.bicev.notes.service.NoteService;
+import ru.bicev.notes.service.UserService;
+
+/**
+ * Runs against two embedded H2 databases: the primary and a replica that is a
+ * copy of it plus one note that exists only there, which tells the reads
+ * apart. The replica is created after startup, so until then reads fall back
+ * to the primary.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReplicaRoutingTest.PRIMARY_URL,
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "notes.datasource.replica-urls=" + ReplicaRoutingTest.REPLICA_URL + ";IFEXISTS=TRUE",
+        "notes.datasource.replica-connection-timeout=250",
+        "notes.datasource.replica-retry-after=0",
+        "notes.datasource.read-your-writes-window=60000"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ReplicaRoutingTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;MODE=PostgreSQL;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;MODE=PostgreSQL;DB_CLOSE_DELAY=-1";
+    private static final long REPLICA_NOTE_ID = 1_000_000L;
+
+    @Autowired
+    private NoteService noteService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Long userId;
+
+    @BeforeAll
+    public void setUp() throws Exception {
+        userId = userService.registerUser("replica@email.com", "password").getId();
+        noteService.createNote(new NoteDto(null, null, "Primary note", List.of("Tag")), userId);
+
+        Path script = Files.createTempFile("replica", ".sql");
+        try (Connection primary = DriverManager.getConnection(PRIMARY_URL, "sa", "");
+                Statement statement = primary.createStatement()) {
+            statement.execute("SCRIPT TO '" + script + "'");
+        }
+        try (Connection replica = DriverManager.getConnection(REPLICA_URL, "sa", "");
+                Statement statement = replica.createStatement()) {
+            statement.execute("RUNSCRIPT FROM '" + script + "'");
+            statement.execute("INSERT INTO notes (id, text, users_id) VALUES (" + REPLICA_NOTE_ID
+                    + ", 'Replica note', " + userId + ")");
+        }
+        Files.delete(script);
+
+        // The replica pool reconnects in the background; until then reads still go to the primary.
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!Boolean.TRUE.equals(readOnly.execute(status -> noteRepository.existsById(REPLICA_NOTE_ID)))) {
+            assertTrue(System.currentTimeMillis() < deadline, "Replica did not become available");
+            Thread.sleep(50);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void readOnlyTransactionsUseReplica() {
+        List<String> texts = findTexts();
+
+        assertTrue(texts.contains("Primary note"));
+        assertTrue(texts.contains("Replica note"));
+    }
+
+    @Test
+    public void readWriteTransactionsUsePrimary() {
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        Boolean onPrimary = readWrite.execute(status -> noteRepository.existsById(REPLICA_NOTE_ID));
+        Boolean onReplica = readOnly.execute(status -> noteRepository.existsById(REPLICA_NOTE_ID));
+
+        assertFalse(onPrimary);
+        assertTrue(onReplica);
+    }
+
+    @Test
+    public void readsOwnWritesFromPrimary() {
+        authenticate(userId);
+        noteService.createNote(new NoteDto(null, null, "Fresh note", List.of("Tag")), userId);
+
+        List<String> ownView = findTexts();
+
+        assertTrue(ownView.contains("Fresh note"));
+        assertFalse(ownView.contains("Replica note"));
+
+        authenticate(userId + 1);
+
+        List<String> otherView = findTexts();
+
+        assertFalse(otherView.contains("Fresh note"));
+        assertTrue(otherView.contains("Replica note"));
+    }
+
+    private List<String> findTexts() {
+        return noteService.findByUser(userId, null, 50).getNotes().stream().map(NoteDto::getText).toList();
+    }
+
+    private void authenticate(Long id) {
+        UserPrincipal principal = new UserPrincipal(id, "user" + id + "@email.com");
+        SecurityContextHolder.getContext()
+                .setAuthentication(new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+    }
+
+}
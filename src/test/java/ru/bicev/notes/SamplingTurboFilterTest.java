@@ -0,0 +1,89 @@
+package ru.bicev.notes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import ru.bicev.notes.util.SamplingTurboFilter;
+
+public class SamplingTurboFilterTest {
+
+    private LoggerContext context;
+    private ListAppender<ILoggingEvent> events;
+    private SamplingTurboFilter filter;
+
+    @BeforeEach
+    public void setUp() {
+        context = new LoggerContext();
+        events = new ListAppender<>();
+        events.setContext(context);
+        events.start();
+        context.getLogger(Logger.ROOT_LOGGER_NAME).addAppender(events);
+        filter = new SamplingTurboFilter();
+        filter.setLoggers("sampled, other.sampled");
+        filter.setContext(context);
+        filter.start();
+        context.addTurboFilter(filter);
+    }
+
+    @Test
+    public void samplesInfoOfListedLoggers() {
+        filter.setRate(10);
+
+        log("sampled", 10_000);
+
+        // One in ten, with a margin far beyond any plausible deviation.
+        int kept = events.list.size();
+        assertTrue(kept > 700 && kept < 1300, "kept " + kept);
+    }
+
+    @Test
+    public void keepsWarningsAndOtherLoggers() {
+        filter.setRate(1000);
+
+        for (int i = 0; i < 100; i++) {
+            context.getLogger("sampled").warn("Warning {}", i);
+            context.getLogger("sampled").error("Error {}", i);
+        }
+        log("unlisted", 100);
+
+        assertEquals(300, events.list.size());
+    }
+
+    @Test
+    public void rateOfOneKeepsEverything() {
+        filter.setRate(1);
+
+        log("other.sampled", 100);
+
+        assertEquals(100, events.list.size());
+    }
+
+    @Test
+    public void levelChecksAreNotSampled() {
+        filter.setRate(1000);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(context.getLogger("sampled").isInfoEnabled());
+        }
+    }
+
+    @Test
+    public void rejectsNonPositiveRate() {
+        assertThrows(IllegalArgumentException.class, () -> filter.setRate(0));
+    }
+
+    private void log(String logger, int count) {
+        for (int i = 0; i < count; i++) {
+            context.getLogger(logger).info("Event {}", i);
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+package ru.bicev.notes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import ru.bicev.notes.dto.NoteDto;
+
+/**
+ * Counts the JDBC statements each read endpoint prepares. The counts must not
+ * depend on the number of notes returned; if one of these tests fails, a
+ * lazy association is being loaded per note again. Endpoints with an ETag
+ * read the version first, and with a matching If-None-Match nothing else.
+ */
+public class StatementCountTest extends AbstractStatementCountTest {
+
+    private static final int NOTES = 30;
+
+    private Long noteId;
+
+    @BeforeAll
+    public void setUp() throws Exception {
+        login("statementCount@email.com");
+
+        List<NoteDto> batch = new ArrayList<>();
+        for (int i = 0; i < NOTES; i++) {
+            batch.add(new NoteDto(null, null, "Counted note " + i, List.of("Common", "Tag" + i, "Group" + i % 3)));
+        }
+        MvcResult created = perform(post("/api/notes/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isCreated())
+                .andReturn();
+        noteId = objectMapper.readValue(created.getResponse().getContentAsString(), NoteDto[].class)[0].getId();
+    }
+
+    @Test
+    public void findByUser() throws Exception {
+        assertStatements(3, get("/api/notes/user"), NOTES);
+        assertStatements(3, get("/api/notes/user").param("size", "5"), 5);
+        assertNotModified("/api/notes/user");
+    }
+
+    @Test
+    public void findByTagPart() throws Exception {
+        assertStatements(2, get("/api/notes/tagpart").param("tagpart", "comm"), NOTES);
+    }
+
+    @Test
+    public void findByTags() throws Exception {
+        // The first query builds the user's tag index.
+        perform(get("/api/notes/tags").param("tags", "Common")).andExpect(status().isOk());
+
+        assertStatements(1, get("/api/notes/tags").param("tags", "Common"), NOTES);
+        assertStatements(1, get("/api/notes/tags/any").param("tags", "Group0", "Group1"), 20);
+    }
+
+    @Test
+    public void searchNotes() throws Exception {
+        statistics.clear();
+
+        perform(get("/api/notes/search").param("q", "counted"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hits.size()").value(NOTES));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void findById() throws Exception {
+        statistics.clear();
+
+        perform(get("/api/notes/" + noteId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tags.size()").value(3));
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertNotModified("/api/notes/" + noteId);
+    }
+
+    @Test
+    public void tags() throws Exception {
+        statistics.clear();
+        perform(get("/api/notes/tags/all")).andExpect(status().isOk());
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertNotModified("/api/notes/tags/all");
+
+        statistics.clear();
+        perform(get("/api/notes/tags/stats")).andExpect(status().isOk());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void exportNotes() throws Exception {
+        statistics.clear();
+
+        MvcResult result = perform(get("/api/notes/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    private void assertStatements(long expected, MockHttpServletRequestBuilder request, int notes) throws Exception {
+        statistics.clear();
+
+        perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.notes.size()").value(notes))
+                .andExpect(jsonPath("$.notes[0].userEmail").value("statementCount@email.com"))
+                .andExpect(jsonPath("$.notes[0].tags.size()").value(3));
+
+        assertEquals(expected, statistics.getPrepareStatementCount());
+    }
+
+    private void assertNotModified(String uri) throws Exception {
+        String etag = perform(get(uri)).andExpect(status().isOk()).andReturn().getResponse().getHeader("ETag");
+        statistics.clear();
+
+        perform(get(uri).header("If-None-Match", etag)).andExpect(status().isNotModified());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+}
@@ -0,0 +1,91 @@
+package ru.bicev.notes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import ru.bicev.notes.repository.NoteRepository;
+import ru.bicev.notes.service.TagIndex;
+
+@ExtendWith(MockitoExtension.class)
+public class TagIndexTest {
+
+    @Mock
+    private NoteRepository noteRepository;
+
+    private TagIndex tagIndex;
+
+    @BeforeEach
+    public void setUp() {
+        tagIndex = new TagIndex(noteRepository, 10, 60_000);
+        when(noteRepository.streamTagsByUser(1L)).thenReturn(Stream.of(
+                new Object[] { 1L, "WORK" },
+                new Object[] { 1L, "URGENT" },
+                new Object[] { 2L, "WORK" },
+                new Object[] { 3L, "HOME" },
+                new Object[] { 4L, null }));
+    }
+
+    @Test
+    public void findAllTags() {
+        assertEquals(List.of(1L), tagIndex.find(1L, List.of("WORK", "URGENT"), List.of(), List.of(), 0, 10));
+        assertEquals(List.of(), tagIndex.find(1L, List.of("WORK", "MISSING"), List.of(), List.of(), 0, 10));
+    }
+
+    @Test
+    public void findAnyTags() {
+        assertEquals(List.of(1L, 2L, 3L), tagIndex.find(1L, List.of(), List.of("WORK", "HOME"), List.of(), 0, 10));
+    }
+
+    @Test
+    public void findExcludedTags() {
+        assertEquals(List.of(3L, 4L), tagIndex.find(1L, List.of(), List.of(), List.of("WORK"), 0, 10));
+        assertEquals(List.of(2L), tagIndex.find(1L, List.of("WORK"), List.of(), List.of("URGENT"), 0, 10));
+    }
+
+    @Test
+    public void findPagesAfterId() {
+        assertEquals(List.of(2L, 3L), tagIndex.find(1L, List.of(), List.of(), List.of(), 1L, 2));
+    }
+
+    @Test
+    public void loadsOncePerUser() {
+        tagIndex.find(1L, List.of("WORK"), List.of(), List.of(), 0, 10);
+        tagIndex.find(1L, List.of("HOME"), List.of(), List.of(), 0, 10);
+
+        verify(noteRepository, times(1)).streamTagsByUser(1L);
+    }
+
+    @Test
+    public void appliesNoteChanges() {
+        tagIndex.find(1L, List.of("WORK"), List.of(), List.of(), 0, 10);
+
+        tagIndex.noteChanged(5L, 1L, List.of(), List.of("WORK"));
+        tagIndex.noteChanged(1L, 1L, List.of("WORK"), List.of("HOME"));
+        tagIndex.noteDeleted(2L, 1L, List.of("WORK"));
+
+        assertEquals(List.of(5L), tagIndex.find(1L, List.of("WORK"), List.of(), List.of(), 0, 10));
+        assertEquals(List.of(1L, 3L), tagIndex.find(1L, List.of("HOME"), List.of(), List.of(), 0, 10));
+    }
+
+    @Test
+    public void evictReloads() {
+        tagIndex.find(1L, List.of("WORK"), List.of(), List.of(), 0, 10);
+        when(noteRepository.streamTagsByUser(1L)).thenReturn(Stream.<Object[]>of(new Object[] { 7L, "WORK" }));
+
+        tagIndex.evict(1L);
+
+        assertEquals(List.of(7L), tagIndex.find(1L, List.of("WORK"), List.of(), List.of(), 0, 10));
+    }
+
+}
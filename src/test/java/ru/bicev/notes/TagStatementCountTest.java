@@ -0,0 +1,115 @@
+package ru.bicev.notes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import ru.bicev.notes.dto.NoteDto;
+
+/**
+ * Counts the JDBC statements each single-note tag mutation executes. JDBC
+ * batching is off here, so every note_tags row written is a statement of its
+ * own: the counts must be the same for a note with 3 tags and one with 50,
+ * which only holds while the tag set is written as a diff instead of being
+ * deleted and reinserted.
+ */
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.jdbc.batch_size=0")
+public class TagStatementCountTest extends AbstractStatementCountTest {
+
+    @BeforeAll
+    public void setUp() throws Exception {
+        login("tagStatementCount@email.com");
+        // Creates the dictionary entries used below, so no test pays for them.
+        createNote(tags(50), "Added", "Renamed");
+    }
+
+    @Test
+    public void addTag() throws Exception {
+        for (int size : new int[] { 3, 50 }) {
+            Long noteId = createNote(tags(size));
+            // Note, dictionary, one row, its counter, note and user versions.
+            assertStatements(6, post("/api/notes/" + noteId + "/tags").content(json("Added")), size + 1);
+            // Already present: nothing to write but the user version.
+            assertStatements(3, post("/api/notes/" + noteId + "/tags").content(json("added", "TAG0")), size + 1);
+        }
+    }
+
+    @Test
+    public void removeTag() throws Exception {
+        for (int size : new int[] { 3, 50 }) {
+            Long noteId = createNote(tags(size));
+            // Note with its tags, one row, its counter, note and user versions.
+            assertStatements(5, delete("/api/notes/" + noteId + "/tags").content(json("tag0")), size - 1);
+            assertStatements(2, delete("/api/notes/" + noteId + "/tags").content(json("tag0")), size - 1);
+        }
+    }
+
+    @Test
+    public void editNote() throws Exception {
+        for (int size : new int[] { 3, 50 }) {
+            Long noteId = createNote(tags(size));
+            List<String> tags = new ArrayList<>(tags(size));
+            tags.set(0, "Renamed");
+            NoteDto edited = new NoteDto(null, null, "Edited text", tags);
+            // One row out, one in, a counter for each, the note with its text
+            // and version in a single update, and the recorded text change.
+            assertStatements(9, put("/api/notes/" + noteId).content(objectMapper.writeValueAsString(edited)), size);
+        }
+    }
+
+    @Test
+    public void patchNote() throws Exception {
+        for (int size : new int[] { 3, 50 }) {
+            Long noteId = createNote(tags(size));
+            // The tag set is not touched when the patch has no tags; the text
+            // change is recorded for the search index sync.
+            assertStatements(4, patch("/api/notes/" + noteId).content("{\"text\": \"Patched text\"}"), size);
+            assertStatements(6, patch("/api/notes/" + noteId).content(
+                    objectMapper.writeValueAsString(Map.of("tags", tags(size - 1)))), size - 1);
+        }
+    }
+
+    private void assertStatements(long expected, MockHttpServletRequestBuilder request, int tags) throws Exception {
+        statistics.clear();
+
+        perform(request.contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tags.size()").value(tags));
+
+        assertEquals(0, statistics.getCollectionRecreateCount());
+        assertEquals(0, statistics.getCollectionRemoveCount());
+        assertEquals(expected, statistics.getPrepareStatementCount());
+    }
+
+    private Long createNote(List<String> tags, String... extraTags) throws Exception {
+        List<String> allTags = new ArrayList<>(tags);
+        allTags.addAll(List.of(extraTags));
+        MvcResult created = perform(post("/api/notes")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new NoteDto(null, null, "Tagged note", allTags))))
+                .andExpect(status().isCreated())
+                .andReturn();
+        return objectMapper.readValue(created.getResponse().getContentAsString(), NoteDto.class).getId();
+    }
+
+    private List<String> tags(int size) {
+        return IntStream.range(0, size).mapToObj(i -> "Tag" + i).toList();
+    }
+
+    private String json(String... tags) throws Exception {
+        return objectMapper.writeValueAsString(tags);
+    }
+
+}
@@ -0,0 +1,132 @@
+package ru.bicev.notes;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import io.jsonwebtoken.security.Keys;
+import ru.bicev.notes.dto.JwtResponse;
+import ru.bicev.notes.exception.InvalidTokenException;
+import ru.bicev.notes.repository.RevokedTokenRepository;
+import ru.bicev.notes.service.JwtService;
+import ru.bicev.notes.service.TokenService;
+import ru.bicev.notes.util.BloomFilter;
+
+@ExtendWith(MockitoExtension.class)
+public class TokenServiceTest {
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    private final JwtService jwtService = new JwtService(
+            Keys.hmacShaKeyFor("test-secret-key-test-secret-key-test-secret-key".getBytes(StandardCharsets.UTF_8)),
+            60_000, 600_000, 100);
+
+    private TokenService tokenService;
+
+    @BeforeEach
+    public void setUp() {
+        when(revokedTokenRepository.findLiveAccessIds(anyLong())).thenReturn(List.of("revoked-at-startup"));
+        tokenService = new TokenService(jwtService, revokedTokenRepository, 1000);
+    }
+
+    @Test
+    public void isRevoked_AsksDatabaseOnlyOnFilterHit() {
+        when(revokedTokenRepository.existsOnPrimary("revoked-at-startup")).thenReturn(true);
+
+        assertTrue(tokenService.isRevoked("revoked-at-startup"));
+        assertFalse(tokenService.isRevoked("never-revoked"));
+        assertFalse(tokenService.isRevoked(null));
+
+        verify(revokedTokenRepository, never()).existsOnPrimary("never-revoked");
+    }
+
+    @Test
+    public void refresh_RotatesRefreshToken() {
+        JwtResponse issued = tokenService.issue(7L, "test@email.com");
+        String jti = jwtService.validateRefreshToken(issued.getRefreshToken()).getId();
+
+        JwtResponse refreshed = tokenService.refresh(issued.getRefreshToken());
+
+        assertNotEquals(issued.getRefreshToken(), refreshed.getRefreshToken());
+        verify(revokedTokenRepository).insert(eq(jti), anyLong(), eq(true));
+        // Refresh token ids are checked through the table, not the filter.
+        assertFalse(tokenService.isRevoked(jti));
+        verify(revokedTokenRepository, never()).existsOnPrimary(jti);
+    }
+
+    @Test
+    public void refresh_RejectsUsedToken() {
+        JwtResponse issued = tokenService.issue(7L, "test@email.com");
+        when(revokedTokenRepository.insert(anyString(), anyLong(), anyBoolean()))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        assertThrows(InvalidTokenException.class, () -> tokenService.refresh(issued.getRefreshToken()));
+    }
+
+    @Test
+    public void refresh_RejectsAccessToken() {
+        JwtResponse issued = tokenService.issue(7L, "test@email.com");
+
+        assertThrows(InvalidTokenException.class, () -> tokenService.refresh(issued.getToken()));
+    }
+
+    @Test
+    public void logout_RevokesBothTokens() {
+        JwtResponse issued = tokenService.issue(7L, "test@email.com");
+        String accessJti = jwtService.validateToken(issued.getToken()).getId();
+        when(revokedTokenRepository.existsOnPrimary(accessJti)).thenReturn(true);
+
+        tokenService.logout(issued.getRefreshToken(), issued.getToken());
+
+        assertTrue(tokenService.isRevoked(accessJti));
+        verify(revokedTokenRepository).insert(eq(accessJti), anyLong(), eq(false));
+    }
+
+    @Test
+    public void rebuildFilter_DropsIdsNoLongerLive() {
+        when(revokedTokenRepository.findLiveAccessIds(anyLong())).thenReturn(List.of("revoked-later"));
+        when(revokedTokenRepository.existsOnPrimary("revoked-later")).thenReturn(true);
+
+        tokenService.rebuildFilter();
+
+        assertTrue(tokenService.isRevoked("revoked-later"));
+        assertFalse(tokenService.isRevoked("revoked-at-startup"));
+        verify(revokedTokenRepository, never()).existsOnPrimary("revoked-at-startup");
+    }
+
+    @Test
+    public void bloomFilter_HasNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("token-" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("token-" + i));
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+
+}
@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -21,6 +22,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 
 import ru.bicev.notes.dto.UserDto;
 import ru.bicev.notes.entity.User;
+import ru.bicev.notes.exception.AccessDeniedException;
 import ru.bicev.notes.exception.DuplicateUserException;
 import ru.bicev.notes.exception.UserNotFoundException;
 import ru.bicev.notes.repository.UserRepository;
@@ -42,7 +44,7 @@ public class UserServiceTest {
 
     @BeforeEach
     public void setUp() {
-        user = new User(1L, "test@email.com", "encodedPassword", null);
+        user = new User(1L, "test@email.com", "encodedPassword", 0L, null);
     }
 
     @Test
@@ -69,39 +71,51 @@ public class UserServiceTest {
     }
 
     @Test
-    public void checkCredentialsSuccess() {
+    public void authenticateSuccess() {
         when(userRepository.findByEmail("test@email.com")).thenReturn(Optional.of(user));
         when(passwordEncoder.matches("rawPassword", "encodedPassword")).thenReturn(true);
 
-        boolean check = userService.checkCredentials("test@email.com", "rawPassword");
+        UserDto authenticated = userService.authenticate("test@email.com", "rawPassword");
 
-        assertEquals(true, check);
+        assertEquals(user.getId(), authenticated.getId());
+        assertEquals(user.getEmail(), authenticated.getEmail());
 
         verify(userRepository, times(1)).findByEmail("test@email.com");
         verify(passwordEncoder, times(1)).matches("rawPassword", "encodedPassword");
-
+        verify(passwordEncoder, never()).encode(anyString());
     }
 
     @Test
-    public void checkCredentialsFail() {
+    public void authenticate_AccessDeniedException() {
         when(userRepository.findByEmail("test@email.com")).thenReturn(Optional.of(user));
         when(passwordEncoder.matches("rawPassword", "encodedPassword")).thenReturn(false);
 
-        boolean check = userService.checkCredentials("test@email.com", "rawPassword");
-
-        assertEquals(false, check);
+        assertThrows(AccessDeniedException.class,
+                () -> userService.authenticate("test@email.com", "rawPassword"));
 
         verify(userRepository, times(1)).findByEmail("test@email.com");
         verify(passwordEncoder, times(1)).matches("rawPassword", "encodedPassword");
-
+        verify(userRepository, never()).updatePassword(any(), anyString());
     }
 
     @Test
-    public void checkCredentials_UserNotFoundException() {
+    public void authenticate_UserNotFoundException() {
         when(userRepository.findByEmail("test@email.com")).thenReturn(Optional.empty());
 
         assertThrows(UserNotFoundException.class,
-                () -> userService.checkCredentials("test@email.com", "rawPassword"));
+                () -> userService.authenticate("test@email.com", "rawPassword"));
+    }
+
+    @Test
+    public void authenticateRehashesOnCostChange() {
+        when(userRepository.findByEmail("test@email.com")).thenReturn(Optional.of(user));
+        when(passwordEncoder.matches("rawPassword", "encodedPassword")).thenReturn(true);
+        when(passwordEncoder.upgradeEncoding("encodedPassword")).thenReturn(true);
+        when(passwordEncoder.encode("rawPassword")).thenReturn("rehashedPassword");
+
+        userService.authenticate("test@email.com", "rawPassword");
+
+        verify(userRepository, times(1)).updatePassword(1L, "rehashedPassword");
     }
 
     @Test
@@ -0,0 +1,49 @@
+package ru.bicev.notes;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+/**
+ * With {@code spring.threads.virtual.enabled=true} Tomcat handles requests,
+ * and the application task executor runs async work (streamed exports), on
+ * virtual threads.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.threads.virtual.enabled=true"
+})
+public class VirtualThreadsTest {
+
+    @Autowired
+    private ServletWebServerApplicationContext context;
+
+    @Autowired
+    private AsyncTaskExecutor applicationTaskExecutor;
+
+    @Test
+    public void tomcatUsesVirtualThreads() {
+        TomcatWebServer webServer = (TomcatWebServer) context.getWebServer();
+
+        assertInstanceOf(VirtualThreadExecutor.class,
+                webServer.getTomcat().getConnector().getProtocolHandler().getExecutor());
+    }
+
+    @Test
+    public void asyncTasksRunOnVirtualThreads() throws Exception {
+        CompletableFuture<Boolean> isVirtual = applicationTaskExecutor
+                .submitCompletable(() -> Thread.currentThread().isVirtual());
+
+        assertTrue(isVirtual.get(5, TimeUnit.SECONDS));
+    }
+
+}
@@ -0,0 +1,16 @@
+package ru.bicev.notes.config;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+import org.springframework.security.test.context.support.WithSecurityContext;
+
+@Retention(RetentionPolicy.RUNTIME)
+@WithSecurityContext(factory = WithMockUserPrincipalSecurityContextFactory.class)
+public @interface WithMockUserPrincipal {
+
+    long id() default 1L;
+
+    String email() default "test@email.com";
+
+}
@@ -0,0 +1,22 @@
+package ru.bicev.notes.config;
+
+import java.util.List;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.test.context.support.WithSecurityContextFactory;
+
+import ru.bicev.notes.security.UserPrincipal;
+
+public class WithMockUserPrincipalSecurityContextFactory implements WithSecurityContextFactory<WithMockUserPrincipal> {
+
+    @Override
+    public SecurityContext createSecurityContext(WithMockUserPrincipal annotation) {
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(new UsernamePasswordAuthenticationToken(
+                new UserPrincipal(annotation.id(), annotation.email()), null, List.of()));
+        return context;
+    }
+
+}